@@ -2,8 +2,10 @@ package dynamic_reports;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DynamicReportsApplication {
 
 	public static void main(String[] args) {
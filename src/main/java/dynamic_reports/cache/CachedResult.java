@@ -0,0 +1,100 @@
+package dynamic_reports.cache;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import dynamic_reports.pipeline.SourceColumns;
+import dynamic_reports.store.RowStore;
+
+/**
+ * Every column of every row a source query returned, kept as raw JDBC values in a columnar {@link RowStore} so
+ * any column mapping, filter or format can be applied to it later.
+ */
+public final class CachedResult {
+
+    private final RowStore rows;
+    private final Duration ttl;
+
+    private CachedResult(RowStore rows, Duration ttl) {
+        this.rows = rows;
+        this.ttl = ttl;
+    }
+
+    public RowStore getRows() {
+        return rows;
+    }
+
+    public SourceColumns getColumns() {
+        return rows.getColumns();
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * Heap and spill file bytes of the rows.
+     */
+    public long getEstimatedBytes() {
+        return rows.heapBytes() + rows.spilledBytes();
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    void release() throws IOException {
+        rows.close();
+    }
+
+    /**
+     * Collects rows until they exceed {@code maxBytes}, after which the result is considered too large to cache.
+     */
+    public static final class Builder {
+
+        private final RowStore rows;
+        private final long maxBytes;
+        private final Duration ttl;
+        private boolean overflowed;
+
+        Builder(RowStore rows, long maxBytes, Duration ttl) {
+            this.rows = rows;
+            this.maxBytes = maxBytes;
+            this.ttl = ttl;
+        }
+
+        /**
+         * Adds a source row holding every column by 0-based index.
+         *
+         * @return false once the result has outgrown the budget, the rows collected so far are then released
+         */
+        public boolean add(Object[] row) throws IOException {
+            if (overflowed) {
+                return false;
+            }
+            rows.add(row);
+            if (rows.heapBytes() + rows.spilledBytes() > maxBytes) {
+                overflowed = true;
+                rows.close();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Releases the rows collected so far, for a result that will not be cached after all.
+         */
+        public void discard() throws IOException {
+            overflowed = true;
+            rows.close();
+        }
+
+        public CachedResult build() throws IOException {
+            if (overflowed) {
+                throw new IllegalStateException("The result exceeded " + maxBytes + " bytes and was not collected");
+            }
+            rows.finish();
+            return new CachedResult(rows, ttl);
+        }
+    }
+}
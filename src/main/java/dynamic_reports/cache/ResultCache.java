@@ -0,0 +1,156 @@
+package dynamic_reports.cache;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import dynamic_reports.pipeline.SourceColumns;
+import dynamic_reports.store.RowStore;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Raw source results shared by reports that call the same stored procedure or query with the same parameters,
+ * so changing the column formats or filters of a report does not re-run the source.
+ *
+ * Entries are weighed by their estimated heap size and evicted by Caffeine's W-TinyLFU policy once
+ * {@code reports.cache.max-size} is reached. Each entry expires after the TTL of its source,
+ * {@code reports.cache.ttl.<spName or queryName>}, or {@code reports.cache.default-ttl}; a TTL of 0 turns
+ * caching off for that source.
+ */
+@Slf4j
+@Component
+public class ResultCache {
+
+    private final Environment environment;
+    private final boolean enabled;
+    private final long maxEntryBytes;
+    private final Duration defaultTtl;
+    private final long storeHeapBudget;
+    private final Path spillDirectory;
+    private final Cache<ResultCacheKey, CachedResult> cache;
+
+    public ResultCache(Environment environment,
+            @Value("${reports.cache.enabled:true}") boolean enabled,
+            @Value("${reports.cache.max-size:256MB}") DataSize maxSize,
+            @Value("${reports.cache.max-entry-size:64MB}") DataSize maxEntrySize,
+            @Value("${reports.cache.default-ttl:10m}") Duration defaultTtl,
+            @Value("${reports.store.heap-budget:32MB}") DataSize storeHeapBudget,
+            @Value("${reports.store.spill-dir:${java.io.tmpdir}/dynamic-reports/spill}") String spillDirectory) {
+        this.environment = environment;
+        this.enabled = enabled;
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE);
+        this.defaultTtl = defaultTtl;
+        this.storeHeapBudget = storeHeapBudget.toBytes();
+        this.spillDirectory = Paths.get(spillDirectory);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((ResultCacheKey key, CachedResult result) -> (int) result.getEstimatedBytes())
+                .expireAfter(new Expiry<ResultCacheKey, CachedResult>() {
+                    @Override
+                    public long expireAfterCreate(ResultCacheKey key, CachedResult result, long currentTime) {
+                        return result.getTtl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(ResultCacheKey key, CachedResult result, long currentTime, long currentDuration) {
+                        return result.getTtl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(ResultCacheKey key, CachedResult result, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((ResultCacheKey key, CachedResult result, RemovalCause cause) -> release(key, result))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * The TTL of results from {@code source}, zero when they are not cached.
+     */
+    public Duration ttl(String source) {
+        if (!enabled) {
+            return Duration.ZERO;
+        }
+        String ttl = environment.getProperty("reports.cache.ttl." + source);
+        return ttl == null ? defaultTtl : DurationStyle.detectAndParse(ttl);
+    }
+
+    public boolean isCached(String source) {
+        Duration ttl = ttl(source);
+        return !ttl.isZero() && !ttl.isNegative();
+    }
+
+    /**
+     * The cached result for {@code key}, or null. Counted as a hit or a miss.
+     */
+    public CachedResult get(ResultCacheKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * A builder for the result of {@code key}, bounded by {@code reports.cache.max-entry-size}. Rows beyond
+     * {@code reports.store.heap-budget} are spilled to a memory-mapped file in {@code reports.store.spill-dir}.
+     */
+    public CachedResult.Builder newEntry(ResultCacheKey key, SourceColumns columns) {
+        return new CachedResult.Builder(new RowStore(columns, storeHeapBudget, spillDirectory), maxEntryBytes, ttl(key.source()));
+    }
+
+    public void put(ResultCacheKey key, CachedResult result) {
+        cache.put(key, result);
+        log.debug("Cached {} rows ({} bytes) of {} for {}", result.size(), result.getEstimatedBytes(), key.source(), result.getTtl());
+    }
+
+    /**
+     * Drops every cached result of the stored procedure or query {@code source}.
+     *
+     * @return the number of results dropped
+     */
+    public int invalidate(String source) {
+        int[] removed = new int[1];
+        cache.asMap().keySet().removeIf(key -> {
+            if (key.source().equals(source)) {
+                removed[0]++;
+                return true;
+            }
+            return false;
+        });
+        return removed[0];
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static void release(ResultCacheKey key, CachedResult result) {
+        if (result == null) {
+            return;
+        }
+        try {
+            result.release();
+        } catch (IOException e) {
+            log.warn("Could not release the cached result of {}", key.source(), e);
+        }
+    }
+
+    public ResultCacheStatistics statistics() {
+        CacheStats stats = cache.stats();
+        long weightedSize = cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+        return new ResultCacheStatistics(cache.estimatedSize(), weightedSize, stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), stats.evictionWeight());
+    }
+}
@@ -0,0 +1,10 @@
+package dynamic_reports.cache;
+
+import java.util.List;
+
+/**
+ * Identifies a cached result: the stored procedure or named query it came from, and the statement and bound
+ * parameters that produced it.
+ */
+public record ResultCacheKey(String source, String sql, List<Object> params) {
+}
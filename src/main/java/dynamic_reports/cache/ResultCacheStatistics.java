@@ -0,0 +1,8 @@
+package dynamic_reports.cache;
+
+/**
+ * Counters of the {@link ResultCache} since startup, evictions include expired entries.
+ */
+public record ResultCacheStatistics(long entries, long weightedBytes, long hitCount, long missCount, double hitRate,
+        long evictionCount, long evictionBytes) {
+}
@@ -0,0 +1,44 @@
+package dynamic_reports.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import dynamic_reports.cache.ResultCache;
+import dynamic_reports.cache.ResultCacheStatistics;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheAdminController {
+
+    private final ResultCache resultCache;
+
+    @GetMapping
+    public ResultCacheStatistics statistics() {
+        return resultCache.statistics();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> invalidateAll() {
+        resultCache.invalidateAll();
+        log.info("Invalidated all cached results");
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Drops the cached results of one stored procedure or named query, e.g. after its underlying data was reloaded.
+     */
+    @DeleteMapping("/{source}")
+    public ResponseEntity<Void> invalidate(@PathVariable String source) {
+        int removed = resultCache.invalidate(source);
+        log.info("Invalidated {} cached results of {}", removed, source);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,87 @@
+package dynamic_reports.controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.dto.ReportJobStatus;
+import dynamic_reports.job.ReportJob;
+import dynamic_reports.job.ReportJobService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Background report generation: submit a report, poll its status, then download the spooled file.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/report/jobs")
+public class ReportJobsController {
+
+    private final ReportJobService reportJobService;
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody ReportConfig reqBody) {
+        log.info("Received request to queue report with name: {}", reqBody.getName());
+        try {
+            ReportJob job = reportJobService.submit(reqBody);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/report/jobs/" + job.getId()))
+                    .body(ReportJobStatus.of(job));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid report configuration: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            log.warn(e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ReportJobStatus> status(@PathVariable String id) {
+        ReportJob job = reportJobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ReportJobStatus.of(job));
+    }
+
+    /**
+     * Downloads the file of a finished job, honouring a single {@code Range}. 409 while the job has not succeeded.
+     */
+    @GetMapping("/{id}/file")
+    public void download(@PathVariable String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ReportJob job = reportJobService.get(id);
+        if (job == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        if (job.getStatus() != ReportJob.Status.SUCCEEDED) {
+            response.sendError(HttpStatus.CONFLICT.value(), "Report job " + id + " is " + job.getStatus());
+            return;
+        }
+        FileDownloads.send(job.getFile(), job.getFileName(), job.getContentType(), request, response);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> cancel(@PathVariable String id) {
+        return reportJobService.cancel(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+}
@@ -0,0 +1,129 @@
+package dynamic_reports.controller;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.dto.ReportTemplateCall;
+import dynamic_reports.dto.ReportTemplateInfo;
+import dynamic_reports.service.ReportAdmission;
+import dynamic_reports.service.ReportCancellation;
+import dynamic_reports.service.ReportService;
+import dynamic_reports.service.ReportTemplate;
+import dynamic_reports.service.ReportTemplateService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Named report templates: register a report configuration once, then stream it with only its parameters and
+ * filter overrides.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/report/templates")
+public class ReportTemplatesController {
+
+    private final ReportTemplateService reportTemplateService;
+    private final ReportService reportService;
+    private final ResponseCompression responseCompression;
+
+    @PutMapping("/{name}")
+    public ResponseEntity<?> register(@PathVariable String name, @RequestBody ReportConfig reqBody) {
+        log.info("Received request to register report template {}", name);
+        boolean replaced = reportTemplateService.get(name) != null;
+        try {
+            ReportTemplate template = reportTemplateService.register(name, reqBody);
+            ReportTemplateInfo info = ReportTemplateInfo.of(template);
+            return replaced ? ResponseEntity.ok(info) : ResponseEntity.created(URI.create("/report/templates/" + name)).body(info);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid report template {}: {}", name, e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public List<ReportTemplateInfo> list() {
+        return reportTemplateService.list().stream().map(ReportTemplateInfo::of).toList();
+    }
+
+    @GetMapping("/{name}")
+    public ResponseEntity<ReportTemplateInfo> get(@PathVariable String name) {
+        ReportTemplate template = reportTemplateService.get(name);
+        if (template == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ReportTemplateInfo.of(template));
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> remove(@PathVariable String name) {
+        return reportTemplateService.remove(name) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/{name}/stream")
+    public ResponseEntity<StreamingResponseBody> stream(@PathVariable String name, @RequestBody(required = false) ReportTemplateCall reqBody,
+            HttpServletRequest request) {
+        ReportTemplate template = reportTemplateService.get(name);
+        if (template == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ReportTemplateCall call = reqBody != null ? reqBody : new ReportTemplateCall();
+        log.info("Received request to stream report template {}", name);
+
+        try {
+            reportTemplateService.validateCall(template, call);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid call of report template {}: {}", name, e.getMessage());
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(out -> out.write(message));
+        }
+
+        ReportAdmission.Permit permit;
+        try {
+            permit = reportService.admit(template.getConfig());
+        } catch (RejectedExecutionException e) {
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return ReportsController.busy(e).body(out -> out.write(message));
+        }
+        ReportsController.closeOnCompletion(request, permit);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Disposition", "attachment; filename=" + reportTemplateService.fileName(template));
+        headers.add("Content-Type", reportTemplateService.contentType(template));
+        ResponseCompression.Coding coding = responseCompression.negotiate(request, headers, reportService.isCompressible(template.getConfig()));
+
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                ReportCancellation cancellation = ReportsController.cancelOnDisconnect(request);
+                try (OutputStream encoded = ResponseCompression.encode(cancellation.cancelOnFailure(out, ReportsController.CLIENT_DISCONNECTED),
+                        coding)) {
+                    reportService.streamTemplate(template, call, encoded, cancellation);
+                }
+                log.info("Successfully streamed report template: {}", name);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+}
@@ -1,16 +1,37 @@
 package dynamic_reports.controller;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import dynamic_reports.dto.BatchReportConfig;
 import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.schedule.ScheduledReportService;
+import dynamic_reports.schedule.StoredReport;
+import dynamic_reports.service.BatchReportService;
+import dynamic_reports.service.GeneratedReport;
+import dynamic_reports.service.ReportAdmission;
+import dynamic_reports.service.ReportCancellation;
 import dynamic_reports.service.ReportService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,46 +40,319 @@ import lombok.extern.slf4j.Slf4j;
 @RestController
 public class ReportsController {
 
+    private static final String SERVER_TIMING = "Server-Timing";
+    static final String CLIENT_DISCONNECTED = "client disconnected";
+    // seconds a client turned away by admission control is asked to wait
+    static final String RETRY_AFTER = "30";
+    private static final MediaType TEXT_PLAIN = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
     private final ReportService reportService;
+    private final BatchReportService batchReportService;
+    private final ScheduledReportService scheduledReportService;
+    private final ResponseCompression responseCompression;
 
     @PostMapping("/report")
-    public ResponseEntity<byte[]> generateReport(@RequestBody ReportConfig reqBody) {
+    public ResponseEntity<?> generateReport(@RequestBody ReportConfig reqBody, HttpServletRequest request) {
 
         // Log the incoming request
         log.info("Received request to generate report with name: {}", reqBody.getName());
 
-        byte[] excelFile = null;
+        GeneratedReport report;
+        HttpHeaders headers = new HttpHeaders();
 
         try {
             // Validate the request body (optional, could also be done in service layer)
             if (reqBody == null || reqBody.getDatasource() == null || reqBody.getMeta() == null) {
                 log.error("Missing required fields in the report configuration.");
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                        .body("Missing required fields in the report configuration.".getBytes(StandardCharsets.UTF_8));
+                return error(HttpStatus.BAD_REQUEST, "Missing required fields in the report configuration.");
+            }
+
+            // A report a schedule generated ahead of time is served from the store, the source is not run
+            StoredReport stored = scheduledReportService.find(reqBody);
+            if (stored != null) {
+                // sent as stored, with its length; /report/stream compresses it on the way
+                ResponseEntity<InputStreamResource> notModified = responseCompression.notModified(request, stored.version(), null, false);
+                if (notModified != null) {
+                    return notModified;
+                }
+                InputStream content = scheduledReportService.open(stored);
+                if (content != null) {
+                    log.info("Serving report {} pre-generated at {}", reqBody.getName(), stored.createdAt());
+                    return ResponseEntity.ok()
+                            .header("Content-Disposition", "attachment; filename=" + reportService.fileName(reqBody))
+                            .header("Content-Type", reportService.contentType(reqBody))
+                            .eTag(ResponseCompression.etag(stored.version(), null))
+                            .contentLength(stored.size())
+                            .body(new InputStreamResource(content));
+                }
             }
 
             // Generate the report by calling the service method
-            excelFile = reportService.generateReport(reqBody);
+            report = reportService.generateReport(reqBody);
+            if (report.failure() != null) {
+                return error(status(report.failure()), report.content());
+            }
+
+            // Set headers for the response
+            headers.add("Content-Disposition", "attachment; filename=" + reportService.fileName(reqBody));
+            headers.add("Content-Type", reportService.contentType(reqBody));
+            headers.add(SERVER_TIMING, report.result().getTimings().toServerTiming());
 
+        } catch (RejectedExecutionException e) {
+            return busy(e).body(e.getMessage().getBytes(StandardCharsets.UTF_8));
         } catch (Exception e) {
             // Log the exception for debugging purposes
             log.error("An error occurred while generating the report: {}", e.getMessage(), e);
 
             // Return a structured error response (could be a JSON object with message and error code)
-            String errorMessage = "An error occurred: " + e.getMessage();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(errorMessage.getBytes(StandardCharsets.UTF_8));
+            return error(HttpStatus.INTERNAL_SERVER_ERROR, "An error occurred: " + e.getMessage());
+        }
+
+        // Return the response with the report file and headers, compressed for clients that accept it
+        log.info("Successfully generated report: {}", reqBody.getName());
+        return responseCompression.send(request, headers, report.content(), reportService.isCompressible(reqBody));
+    }
+
+    /**
+     * The first rows of a report, to check its columns and filters without generating all of it.
+     */
+    @PostMapping("/report/preview")
+    public ResponseEntity<byte[]> previewReport(@RequestBody ReportConfig reqBody, @RequestParam(required = false) Integer rows,
+            @RequestParam(required = false) String format, HttpServletRequest request) {
+
+        log.info("Received request to preview report with name: {}", reqBody.getName());
+
+        ReportConfig preview;
+        try {
+            preview = reportService.previewConfig(reqBody, rows, format);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid report configuration: {}", e.getMessage());
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        GeneratedReport report;
+        try {
+            report = reportService.previewReport(preview);
+        } catch (RejectedExecutionException e) {
+            return busy(e).body(e.getMessage().getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.error("An error occurred while previewing the report: {}", e.getMessage(), e);
+            return error(e instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR,
+                    "An error occurred: " + e.getMessage());
         }
 
-        // Set headers for the response
         HttpHeaders headers = new HttpHeaders();
-        headers.add("Content-Disposition", "attachment; filename=report.xlsx");
-        headers.add("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        headers.add("Content-Disposition", "inline; filename=" + reportService.fileName(preview));
+        headers.add("Content-Type", reportService.contentType(preview));
+        headers.add(SERVER_TIMING, report.result().getTimings().toServerTiming());
+        return responseCompression.send(request, headers, report.content(), reportService.isCompressible(preview));
+    }
+
+    @PostMapping("/report/stream")
+    public ResponseEntity<StreamingResponseBody> streamReport(@RequestBody ReportConfig reqBody, HttpServletRequest request) {
+
+        log.info("Received request to stream report with name: {}", reqBody.getName());
+
+        // Reject invalid configurations before the response is committed, once streaming starts the status is fixed
+        try {
+            reportService.validateConfig(reqBody);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid report configuration: {}", e.getMessage());
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(out -> out.write(message));
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Disposition", "attachment; filename=" + reportService.fileName(reqBody));
+        headers.add("Content-Type", reportService.contentType(reqBody));
+        boolean compressible = reportService.isCompressible(reqBody);
+        // the length of a compressed stream is only known at its end
+        ResponseCompression.Coding coding = responseCompression.negotiate(request, headers, compressible);
+
+        StoredReport stored = scheduledReportService.find(reqBody);
+        if (stored != null) {
+            ResponseEntity<StreamingResponseBody> notModified = responseCompression.notModified(request, stored.version(), coding, compressible);
+            if (notModified != null) {
+                return notModified;
+            }
+            InputStream content = scheduledReportService.open(stored);
+            if (content != null) {
+                log.info("Streaming report {} pre-generated at {}", reqBody.getName(), stored.createdAt());
+                closeOnCompletion(request, content);
+                headers.setETag(ResponseCompression.etag(stored.version(), coding));
+                if (coding == null) {
+                    headers.setContentLength(stored.size());
+                }
+                InputStream file = content;
+                return ResponseEntity.ok()
+                        .headers(headers)
+                        .body(out -> {
+                            try (file; OutputStream encoded = ResponseCompression.encode(out, coding)) {
+                                file.transferTo(encoded);
+                            }
+                        });
+            }
+        }
+
+        // a report waiting for memory holds the request thread, not yet the response
+        ReportAdmission.Permit permit;
+        try {
+            permit = reportService.admit(reqBody);
+        } catch (RejectedExecutionException e) {
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return busy(e).body(out -> out.write(message));
+        }
+        closeOnCompletion(request, permit);
+
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                ReportCancellation cancellation = cancelOnDisconnect(request);
+                try (OutputStream encoded = ResponseCompression.encode(cancellation.cancelOnFailure(out, CLIENT_DISCONNECTED), coding)) {
+                    reportService.streamReport(reqBody, encoded, cancellation);
+                }
+                log.info("Successfully streamed report: {}", reqBody.getName());
+            }
+        };
+
+        return ResponseEntity.ok()
+                .headers(headers)
+                .body(body);
+    }
+
+    @PostMapping("/report/batch")
+    public ResponseEntity<StreamingResponseBody> batchReport(@RequestBody BatchReportConfig reqBody, HttpServletRequest request) {
+
+        log.info("Received request to generate report batch with name: {}", reqBody.getName());
+
+        try {
+            batchReportService.validateConfig(reqBody);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid batch configuration: {}", e.getMessage());
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(out -> out.write(message));
+        }
+
+        ReportAdmission.Permit permit;
+        try {
+            permit = batchReportService.admit(reqBody);
+        } catch (RejectedExecutionException e) {
+            byte[] message = e.getMessage().getBytes(StandardCharsets.UTF_8);
+            return busy(e).body(out -> out.write(message));
+        }
+        closeOnCompletion(request, permit);
+
+        // the source is fetched once and every report of the batch is generated from the same rows
+        StreamingResponseBody body = out -> {
+            try (permit) {
+                ReportCancellation cancellation = cancelOnDisconnect(request);
+                batchReportService.streamBatch(reqBody, cancellation.cancelOnFailure(out, CLIENT_DISCONNECTED), cancellation);
+                log.info("Successfully generated report batch: {}", reqBody.getName());
+            }
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Disposition", "attachment; filename=" + batchReportService.fileName(reqBody));
+        headers.add("Content-Type", batchReportService.contentType(reqBody));
 
-        // Return the response with Excel file and headers
-        log.info("Successfully generated report: {}", reqBody.getName());
         return ResponseEntity.ok()
                 .headers(headers)
-                .body(excelFile);
+                .body(body);
+    }
+
+    /**
+     * A plain text error message with {@code status}, in place of the report.
+     */
+    static ResponseEntity<byte[]> error(HttpStatus status, byte[] message) {
+        return ResponseEntity.status(status)
+                .contentType(TEXT_PLAIN)
+                .body(message);
+    }
+
+    static ResponseEntity<byte[]> error(HttpStatus status, String message) {
+        return error(status, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HttpStatus status(GeneratedReport.Failure failure) {
+        return switch (failure) {
+            case INVALID_CONFIG -> HttpStatus.BAD_REQUEST;
+            case NO_DATA -> HttpStatus.NOT_FOUND;
+            case ERROR -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+    }
+
+    /**
+     * 503 with a {@code Retry-After}, for a report admission control turned away.
+     */
+    static ResponseEntity.BodyBuilder busy(RejectedExecutionException e) {
+        log.warn(e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER);
+    }
+
+    /**
+     * Closes {@code resource}, an admission permit or an open file, when the async request completes, times out
+     * or fails, also when the streamed body never runs because the client went away before it started. The body
+     * closes the resource as well; closing it again does nothing.
+     */
+    static void closeOnCompletion(HttpServletRequest request, AutoCloseable resource) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(resource, new CallableProcessingInterceptor() {
+            @Override
+            public <T> Object handleTimeout(NativeWebRequest webRequest, Callable<T> task) {
+                close(resource);
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> Object handleError(NativeWebRequest webRequest, Callable<T> task, Throwable t) {
+                close(resource);
+                return RESULT_NONE;
+            }
+
+            @Override
+            public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                close(resource);
+            }
+        });
+    }
+
+    private static void close(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            log.warn("Could not close {} of a finished request", resource, e);
+        }
+    }
+
+    /**
+     * A cancellation of the streamed response, cancelled when the container reports an error on the connection
+     * or the async request times out. Writes to a closed connection cancel it too.
+     */
+    static ReportCancellation cancelOnDisconnect(HttpServletRequest request) {
+        ReportCancellation cancellation = new ReportCancellation();
+        if (!request.isAsyncStarted()) {
+            return cancellation;
+        }
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onError(AsyncEvent event) {
+                cancellation.cancel(CLIENT_DISCONNECTED);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                cancellation.cancel("request timed out");
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        return cancellation;
     }
 }
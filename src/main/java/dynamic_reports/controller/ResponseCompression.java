@@ -0,0 +1,250 @@
+package dynamic_reports.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Compresses report responses for clients that accept it, negotiated from {@code Accept-Encoding}: gzip or
+ * deflate, for formats that are not compressed already. Reports built in memory are compressed before they are
+ * sent, so they keep their {@code Content-Length}, and are tagged with a hash of their content. A request whose
+ * {@code If-None-Match} names that tag gets a 304 without the body. Reports are requested by POST but only read,
+ * so the tag is checked as it would be for a GET.
+ */
+@Component
+class ResponseCompression {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    enum Coding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        final String token;
+
+        Coding(String token) {
+            this.token = token;
+        }
+    }
+
+    private final boolean enabled;
+    private final long minSize;
+
+    ResponseCompression(@Value("${reports.compression.enabled:true}") boolean enabled,
+            @Value("${reports.compression.min-size:2KB}") DataSize minSize) {
+        this.enabled = enabled;
+        this.minSize = minSize.toBytes();
+    }
+
+    /**
+     * The response to {@code request} with the report {@code content}: compressed if it is {@code compressible}
+     * and at least {@code reports.compression.min-size}, or a 304 if the client already has it.
+     */
+    ResponseEntity<byte[]> send(HttpServletRequest request, HttpHeaders headers, byte[] content, boolean compressible) {
+        compressible = enabled && compressible;
+        Coding coding = compressible && content.length >= minSize ? negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING)) : null;
+        String hash = hash(content);
+        ResponseEntity<byte[]> notModified = notModified(request, hash, coding, compressible);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        byte[] body = coding != null ? encode(content, coding) : content;
+        HttpHeaders response = new HttpHeaders();
+        response.addAll(headers);
+        if (compressible) {
+            response.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        }
+        if (coding != null) {
+            response.set(HttpHeaders.CONTENT_ENCODING, coding.token);
+        }
+        response.setETag(etag(hash, coding));
+        response.setContentLength(body.length);
+        return ResponseEntity.ok().headers(response).body(body);
+    }
+
+    /**
+     * A 304 for a client whose {@code If-None-Match} names the content with {@code hash}, in any coding; null if
+     * it has to be sent.
+     */
+    <T> ResponseEntity<T> notModified(HttpServletRequest request, String hash, Coding coding, boolean compressible) {
+        String matched = matchingTag(request.getHeader(HttpHeaders.IF_NONE_MATCH), hash);
+        if (matched == null) {
+            return null;
+        }
+        HttpHeaders response = new HttpHeaders();
+        if (enabled && compressible) {
+            response.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        }
+        // the tag of the representation the client holds
+        response.setETag(matched.equals("*") ? etag(hash, coding) : matched);
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(response).build();
+    }
+
+    /**
+     * The coding a streamed report is sent in, null to send it as is. The coding is set on {@code headers}.
+     */
+    Coding negotiate(HttpServletRequest request, HttpHeaders headers, boolean compressible) {
+        if (!enabled || !compressible) {
+            return null;
+        }
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        Coding coding = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (coding != null) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, coding.token);
+        }
+        return coding;
+    }
+
+    /**
+     * The preferred coding of an {@code Accept-Encoding} header, gzip on a tie, null if the client accepts
+     * neither.
+     */
+    static Coding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String token = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = quality(parts);
+            switch (token) {
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, q);
+                case "deflate" -> deflate = Math.max(deflate, q);
+                case "*" -> any = q;
+                default -> {
+                }
+            }
+        }
+        // codings not listed take the weight of *
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? Coding.GZIP : Coding.DEFLATE;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    static byte[] encode(byte[] content, Coding coding) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(content.length / 4, 64));
+        try (OutputStream out = encode(bytes, coding)) {
+            out.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A stream that compresses what is written to it onto {@code out}, or passes it on as is if {@code coding}
+     * is null. Closing it completes the coding and leaves {@code out} open.
+     */
+    static OutputStream encode(OutputStream out, Coding coding) throws IOException {
+        OutputStream target = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                out.flush();
+            }
+        };
+        if (coding == null) {
+            return target;
+        }
+        return switch (coding) {
+            case GZIP -> new GZIPOutputStream(target, BUFFER_SIZE);
+            case DEFLATE -> new DeflaterOutputStream(target, new Deflater(), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // not the stream's default deflater, so it is not ended by close
+                        def.end();
+                    }
+                }
+            };
+        };
+    }
+
+    static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The strong entity tag of content with {@code hash}, one per coding it is sent in.
+     */
+    static String etag(String hash, Coding coding) {
+        return "\"" + hash + (coding != null ? "-" + coding.token : "") + "\"";
+    }
+
+    /**
+     * The tag of {@code ifNoneMatch} naming the content with {@code hash}, in any coding, or {@code *}; null if
+     * none does.
+     */
+    static String matchingTag(String ifNoneMatch, String hash) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return tag;
+            }
+            // If-None-Match compares weakly
+            String opaque = tag.startsWith("W/") ? tag.substring(2) : tag;
+            if (opaque.equals(etag(hash, null))) {
+                return tag;
+            }
+            for (Coding coding : Coding.values()) {
+                if (opaque.equals(etag(hash, coding))) {
+                    return tag;
+                }
+            }
+        }
+        return null;
+    }
+}
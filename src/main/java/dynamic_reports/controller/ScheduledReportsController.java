@@ -0,0 +1,76 @@
+package dynamic_reports.controller;
+
+import java.net.URI;
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import dynamic_reports.dto.ScheduledReportConfig;
+import dynamic_reports.dto.ScheduledReportInfo;
+import dynamic_reports.schedule.ScheduledReport;
+import dynamic_reports.schedule.ScheduledReportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reports generated ahead of time on a cron schedule, then served to the matching {@code /report} requests.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/report/schedules")
+public class ScheduledReportsController {
+
+    private final ScheduledReportService scheduledReportService;
+
+    @PutMapping("/{name}")
+    public ResponseEntity<?> register(@PathVariable String name, @RequestBody ScheduledReportConfig reqBody) {
+        log.info("Received request to schedule report {}", name);
+        boolean replaced = scheduledReportService.get(name) != null;
+        try {
+            ScheduledReportInfo info = ScheduledReportInfo.of(scheduledReportService.register(name, reqBody));
+            return replaced ? ResponseEntity.ok(info) : ResponseEntity.created(URI.create("/report/schedules/" + name)).body(info);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid report schedule {}: {}", name, e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public List<ScheduledReportInfo> list() {
+        return scheduledReportService.list().stream().map(ScheduledReportInfo::of).toList();
+    }
+
+    @GetMapping("/{name}")
+    public ResponseEntity<ScheduledReportInfo> get(@PathVariable String name) {
+        ScheduledReport scheduled = scheduledReportService.get(name);
+        if (scheduled == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ScheduledReportInfo.of(scheduled));
+    }
+
+    @DeleteMapping("/{name}")
+    public ResponseEntity<Void> remove(@PathVariable String name) {
+        return scheduledReportService.remove(name) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Runs the schedule now, in the background; its status shows when it is done.
+     */
+    @PostMapping("/{name}/run")
+    public ResponseEntity<Void> run(@PathVariable String name) {
+        if (!scheduledReportService.runNow(name)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.accepted().location(URI.create("/report/schedules/" + name)).build();
+    }
+}
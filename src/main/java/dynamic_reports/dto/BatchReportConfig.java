@@ -0,0 +1,24 @@
+package dynamic_reports.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Several reports over one datasource, which is fetched once for all of them.
+ */
+@Data
+public class BatchReportConfig {
+
+	private String name;
+	private ReportConfig.Datasource datasource;
+	private String format; // xlsx (default), one sheet per report, or zip, one file per report
+	private List<Report> reports;
+
+	@Data
+	public static class Report {
+		private String name; // the sheet or file name
+		private ReportConfig.Meta meta;
+		private String format; // the file format inside a zip, xlsx (default), csv or ndjson
+	}
+}
@@ -11,13 +11,18 @@ public class ReportConfig {
 	private String name;
 	private Meta meta;
 	private Datasource datasource;
+	private String format; // xlsx (default), csv, ndjson or json
+	private Boolean gzip;
 	
 	@Data
 	public static class Meta {
 	    private Map<String, ColumnConfig> fixed;
-	    private Map<String, CustomColumn> custom;
+	    private Map<String, CustomColumn> custom; // aggregates, one summary row per group
+	    private List<String> groupBy; // fixed columns the custom columns group on, by default those they do not aggregate
 	    private List<Filter> filters;
-//	    private List<Sorting> sorting;
+	    private List<Sorting> sorting; // applied in order, on the typed source values
+	    private Integer limit; // rows written at most, after filtering and sorting
+	    private String partitionBy; // xlsx: one sheet per value of this column
 	
 	}
 	  
@@ -31,9 +36,9 @@ public class ReportConfig {
 
 	@Data
     public static class CustomColumn {
-        private String mappedTo;
+        private String mappedTo; // the fixed column aggregated, by key or name
         private String name;
-        private String action;
+        private String action; // sum, count, min, max, avg or distinct count
 
     }
 
@@ -42,21 +47,24 @@ public class ReportConfig {
         private String column;
         private String condition;
         private String value;
+        private List<String> values; // operands of "in" and "between", "value" may hold them comma separated instead
 
     }
 	@Data
     public static class Datasource {
+        private String type; // "procedure" (default) or "query"
         private String spName;
+        private String queryName; // key of a reports.query.<queryName> statement, for the query type
     	private List<String> spParams;
 
     }
 	
-//	@Data
-//    public static class Sorting {
-//        private String column;
-//        private String order;
-//
-//    }
+	@Data
+    public static class Sorting {
+        private String column;
+        private String order; // asc (default) or desc
+
+    }
 	
 	
 }
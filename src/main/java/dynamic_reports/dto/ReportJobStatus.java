@@ -0,0 +1,20 @@
+package dynamic_reports.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+import dynamic_reports.job.ReportJob;
+
+/**
+ * Status of a background report job as returned by the job API.
+ */
+public record ReportJobStatus(String id, String reportName, String status, Instant submittedAt, Instant startedAt,
+		Instant finishedAt, long rowsFetched, long rowsWritten, long size, String fileName, String error,
+		Map<String, Long> timings) {
+
+	public static ReportJobStatus of(ReportJob job) {
+		return new ReportJobStatus(job.getId(), job.getReportName(), job.getStatus().name(), job.getSubmittedAt(),
+				job.getStartedAt(), job.getFinishedAt(), job.getRowsFetched(), job.getRowsWritten(), job.getSize(),
+				job.getFileName(), job.getError(), job.getTimings());
+	}
+}
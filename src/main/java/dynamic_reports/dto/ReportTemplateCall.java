@@ -0,0 +1,18 @@
+package dynamic_reports.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * A call of a registered report template: the parameters of its source and filters that replace the template's
+ * filters on the same columns.
+ */
+@Data
+public class ReportTemplateCall {
+
+	private String name; // the report name in logs and metrics, the template name by default
+	private List<String> spParams; // the template's by default
+	private List<ReportConfig.Filter> filters;
+
+}
@@ -0,0 +1,19 @@
+package dynamic_reports.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import dynamic_reports.service.ReportTemplate;
+
+/**
+ * A registered report template as returned by the template API.
+ */
+public record ReportTemplateInfo(String name, String source, String format, List<String> columns, int sourceColumns,
+		List<ReportConfig.Filter> filters, Instant registeredAt) {
+
+	public static ReportTemplateInfo of(ReportTemplate template) {
+		ReportConfig config = template.getConfig();
+		return new ReportTemplateInfo(template.getName(), template.getSource(), config.getFormat(), template.getColumns(),
+				template.getSourceColumnCount(), config.getMeta().getFilters(), template.getRegisteredAt());
+	}
+}
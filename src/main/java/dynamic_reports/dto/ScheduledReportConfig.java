@@ -0,0 +1,17 @@
+package dynamic_reports.dto;
+
+import lombok.Data;
+
+/**
+ * A report generated ahead of time on a cron schedule. Its {@code spParams} and filter values may hold date
+ * placeholders, e.g. {@code {yesterday}} or {@code {month.start}}, resolved on the day it runs.
+ */
+@Data
+public class ScheduledReportConfig {
+
+	private String cron; // Spring cron: second minute hour day-of-month month day-of-week, e.g. "0 0 2 * * *"
+	private String zone; // of the cron and the placeholder dates, reports.scheduled.zone by default
+	private String dateFormat; // of the placeholder dates, dd-MM-yyyy by default
+	private ReportConfig report;
+
+}
@@ -0,0 +1,20 @@
+package dynamic_reports.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+import dynamic_reports.schedule.ScheduledReport;
+
+/**
+ * A registered schedule as returned by the schedule API.
+ */
+public record ScheduledReportInfo(String name, String cron, String zone, String dateFormat, String report, List<String> spParams,
+		String format, Instant registeredAt, Instant nextRunAt, Instant lastRunAt, String lastStatus, String lastError) {
+
+	public static ScheduledReportInfo of(ScheduledReport scheduled) {
+		ReportConfig config = scheduled.getConfig();
+		return new ScheduledReportInfo(scheduled.getName(), scheduled.getCron(), scheduled.getZone().getId(), scheduled.getDateFormat(),
+				config.getName(), config.getDatasource().getSpParams(), config.getFormat(), scheduled.getRegisteredAt(),
+				scheduled.getNextRunAt(), scheduled.getLastRunAt(), scheduled.getLastStatus(), scheduled.getLastError());
+	}
+}
@@ -0,0 +1,117 @@
+package dynamic_reports.job;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import dynamic_reports.service.ReportCancellation;
+import dynamic_reports.service.ReportResult;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A report generated in the background. The result is spooled to a file that is served until the job is
+ * cleaned up after {@code reports.jobs.retention}.
+ */
+@Getter
+public class ReportJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final String configHash;
+    private final String reportName;
+    private final String fileName;
+    private final String contentType;
+    private final Instant submittedAt = Instant.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile long rowsFetched;
+    private volatile long rowsWritten;
+    private volatile long size;
+    private volatile Path file;
+    // milliseconds per generation stage, see ReportTimings
+    private volatile Map<String, Long> timings;
+
+    @Getter(AccessLevel.NONE)
+    private volatile Future<?> future;
+    @Getter(AccessLevel.PACKAGE)
+    private final ReportCancellation cancellation = new ReportCancellation();
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean queued = new AtomicBoolean(true);
+
+    ReportJob(String id, String configHash, String reportName, String fileName, String contentType) {
+        this.id = id;
+        this.configHash = configHash;
+        this.reportName = reportName;
+        this.fileName = fileName;
+        this.contentType = contentType;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Takes the job off the queue, true only for the first caller: its task, once it starts, or a cancellation
+     * that comes before.
+     */
+    boolean dequeue() {
+        return queued.compareAndSet(true, false);
+    }
+
+    void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    void succeeded(Path file, long size, ReportResult result) {
+        this.file = file;
+        this.size = size;
+        this.rowsFetched = result.getRowsFetched();
+        this.rowsWritten = result.getRowsWritten();
+        this.timings = result.getTimings().toMillis();
+        finish(Status.SUCCEEDED);
+    }
+
+    void failed(String error) {
+        this.error = error;
+        finish(Status.FAILED);
+    }
+
+    /**
+     * Marks the job cancelled, cancels its query and interrupts it if it is running.
+     *
+     * @return false if the job had already finished
+     */
+    boolean cancel() {
+        if (status.isFinished()) {
+            return false;
+        }
+        finish(Status.CANCELLED);
+        cancellation.cancel("job " + id + " cancelled");
+        if (future != null) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    private synchronized void finish(Status finalStatus) {
+        // a cancelled job stays cancelled even if its worker completes afterwards
+        if (!status.isFinished()) {
+            status = finalStatus;
+            finishedAt = Instant.now();
+        }
+    }
+}
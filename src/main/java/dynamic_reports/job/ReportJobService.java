@@ -0,0 +1,237 @@
+package dynamic_reports.job;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.service.ReportAdmission;
+import dynamic_reports.service.ReportConfigHash;
+import dynamic_reports.service.ReportResult;
+import dynamic_reports.service.ReportService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs reports in the background and spools their output, so a large report does not hold a request thread
+ * and the client connection while the stored procedure runs and the file is built.
+ *
+ * Every job gets its own virtual thread, the blocking JDBC and file I/O do not pin a platform thread, and at
+ * most {@code reports.jobs.max-concurrent} of them generate at the same time. Submissions beyond
+ * {@code reports.jobs.max-queued} waiting jobs are rejected. A submission identical to a job that is still
+ * queued or running gets that job instead of a new one.
+ */
+@Slf4j
+@Service
+public class ReportJobService {
+
+    private static final int SPOOL_BUFFER_SIZE = 64 * 1024;
+
+    private final ReportService reportService;
+    private final ReportSpool spool;
+    private final int maxQueued;
+    private final Duration retention;
+    private final Semaphore running;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    // unfinished jobs by the canonical hash of their configuration
+    private final Map<String, ReportJob> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final ExecutorService executor;
+    // the files of jobs no longer listed are deleted by a later sweep: a download handed to sendfile opens its
+    // file only after the handler returned, with the length already committed
+    private final Set<String> discarded = ConcurrentHashMap.newKeySet(); // since the last sweep
+    private List<String> deletable = List.of(); // held back by the last sweep, guarded by this
+
+    @Autowired
+    public ReportJobService(ReportService reportService, ReportSpool spool, MeterRegistry meterRegistry,
+            @Value("${reports.jobs.max-concurrent:4}") int maxConcurrent,
+            @Value("${reports.jobs.max-queued:100}") int maxQueued,
+            @Value("${reports.jobs.retention:1h}") Duration retention) {
+        this(reportService, spool, meterRegistry, maxConcurrent, maxQueued, retention,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("report-job-", 0).factory()));
+    }
+
+    ReportJobService(ReportService reportService, ReportSpool spool, MeterRegistry meterRegistry, int maxConcurrent, int maxQueued,
+            Duration retention, ExecutorService executor) {
+        this.executor = executor;
+        this.reportService = reportService;
+        this.spool = spool;
+        this.maxQueued = maxQueued;
+        this.retention = retention;
+        this.running = new Semaphore(maxConcurrent, true);
+        FunctionCounter.builder("reports.requests.coalesced", coalesced, AtomicLong::get)
+                .description("Report requests served by an identical request already in flight")
+                .tag("mode", "job")
+                .register(meterRegistry);
+        Gauge.builder("reports.requests.in-flight", inFlight, Map::size)
+                .description("Distinct report jobs queued or running")
+                .tag("mode", "job")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Validates {@code reportConfig} and queues it.
+     *
+     * @throws IllegalArgumentException if the configuration is invalid
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public ReportJob submit(ReportConfig reportConfig) {
+        reportService.validateConfig(reportConfig);
+        String configHash = ReportConfigHash.of(reportConfig);
+        ReportJob[] created = new ReportJob[1];
+        ReportJob job = inFlight.compute(configHash, (hash, existing) -> {
+            if (existing != null && !existing.getStatus().isFinished()) {
+                return existing;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                throw new RejectedExecutionException("Too many report jobs are queued, try again later");
+            }
+            created[0] = new ReportJob(UUID.randomUUID().toString(), hash, reportConfig.getName(),
+                    reportService.fileName(reportConfig), reportService.contentType(reportConfig));
+            return created[0];
+        });
+        if (created[0] == null) {
+            coalesced.incrementAndGet();
+            log.info("Report {} is already queued as job {}", reportConfig.getName(), job.getId());
+            return job;
+        }
+
+        jobs.put(job.getId(), job);
+        job.setFuture(executor.submit(() -> run(job, reportConfig)));
+        log.info("Queued report job {} for {}", job.getId(), reportConfig.getName());
+        return job;
+    }
+
+    public ReportJob get(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancels the job if it has not finished yet and discards it along with its file. The file of a job that
+     * succeeded is deleted by a later sweep, in case it is being downloaded.
+     *
+     * @return false if there is no such job
+     */
+    public boolean cancel(String id) {
+        ReportJob job = jobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+        inFlight.remove(job.getConfigHash(), job);
+        if (job.cancel()) {
+            log.info("Cancelled report job {}", id);
+        }
+        // a job cancelled before its task started never runs, its place in the queue is given back here
+        leaveQueue(job);
+        if (job.getStatus() == ReportJob.Status.SUCCEEDED) {
+            discarded.add(id);
+        } else {
+            spool.delete(id);
+        }
+        return true;
+    }
+
+    private void run(ReportJob job, ReportConfig reportConfig) {
+        try {
+            running.acquire();
+        } catch (InterruptedException e) {
+            leaveQueue(job);
+            inFlight.remove(job.getConfigHash(), job);
+            return;
+        }
+        leaveQueue(job);
+        try {
+            if (job.getStatus().isFinished()) {
+                return;
+            }
+            job.started();
+            Path part = spool.partFile(job.getId());
+            ReportResult result;
+            // a job that cannot be admitted within the admission wait fails like any other
+            try (ReportAdmission.Permit permit = reportService.admit(reportConfig);
+                    OutputStream out = new BufferedOutputStream(Files.newOutputStream(part), SPOOL_BUFFER_SIZE)) {
+                result = reportService.streamReport(reportConfig, out, job.getCancellation());
+            }
+            Path file = spool.publish(job.getId(), part);
+            job.succeeded(file, Files.size(file), result);
+            log.info("Report job {} finished, {} rows written to {} bytes", job.getId(), result.getRowsWritten(), job.getSize());
+        } catch (IOException | RuntimeException e) {
+            if (!job.getStatus().isFinished()) {
+                log.error("Report job {} failed", job.getId(), e);
+            }
+            job.failed(e.getLocalizedMessage());
+            spool.delete(job.getId());
+        } finally {
+            inFlight.remove(job.getConfigHash(), job);
+            running.release();
+        }
+        // a job cancelled while its output was being published must not leave the file behind
+        if (job.getStatus() == ReportJob.Status.CANCELLED) {
+            spool.delete(job.getId());
+        }
+    }
+
+    private void leaveQueue(ReportJob job) {
+        if (job.dequeue()) {
+            queued.decrementAndGet();
+        }
+    }
+
+    /**
+     * Discards finished jobs once they are older than the retention period. Their files, and those of the jobs
+     * cancelled since the last sweep, are deleted by the next sweep, so no download is still about to open them.
+     */
+    @Scheduled(fixedDelayString = "${reports.jobs.cleanup-interval:PT5M}")
+    public synchronized void removeExpiredJobs() {
+        for (String id : deletable) {
+            spool.delete(id);
+        }
+        List<String> next = new ArrayList<>();
+        for (Iterator<String> ids = discarded.iterator(); ids.hasNext();) {
+            next.add(ids.next());
+            ids.remove();
+        }
+        Instant expiry = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.getStatus().isFinished() && job.getFinishedAt().isBefore(expiry)) {
+                next.add(job.getId());
+                log.debug("Removed expired report job {}", job.getId());
+                return true;
+            }
+            return false;
+        });
+        deletable = next;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
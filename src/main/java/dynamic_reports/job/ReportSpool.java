@@ -0,0 +1,65 @@
+package dynamic_reports.job;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local directory that holds the output of report jobs. A job writes to {@code <id>.part} and the file is
+ * renamed to {@code <id>} once complete, so a spooled file is never served half written.
+ */
+@Slf4j
+@Component
+public class ReportSpool {
+
+    private static final String PART_SUFFIX = ".part";
+
+    private final Path directory;
+
+    public ReportSpool(@Value("${reports.jobs.spool-dir:${java.io.tmpdir}/dynamic-reports/jobs}") String directory) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory)).toAbsolutePath();
+        // jobs are only tracked in memory, files left by a previous run cannot be downloaded any more
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                delete(file);
+            }
+        }
+        log.info("Spooling report jobs to {}", this.directory);
+    }
+
+    Path partFile(String jobId) {
+        return directory.resolve(jobId + PART_SUFFIX);
+    }
+
+    /**
+     * Moves the completed {@code part} file of a job to its final name.
+     */
+    Path publish(String jobId, Path part) throws IOException {
+        return Files.move(part, directory.resolve(jobId), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deletes both the part and the published file of a job.
+     */
+    void delete(String jobId) {
+        delete(partFile(jobId));
+        delete(directory.resolve(jobId));
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // left for the cleanup at the next startup
+            log.warn("Could not delete spool file {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package dynamic_reports.pipeline;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import dynamic_reports.dto.ReportConfig;
+
+/**
+ * The {@code meta.custom} aggregate columns of a summary report resolved against its fixed columns. Rows are
+ * grouped on the group-by columns and each custom column aggregates the fixed column it is {@code mappedTo}. The
+ * summary rows hold the group-by columns followed by the custom columns, described by {@link #getOutput()} so they
+ * are sorted, formatted and written like the projected rows of any other report.
+ */
+public final class AggregationPlan {
+
+    public enum Action {
+        SUM, COUNT, MIN, MAX, AVG, DISTINCT_COUNT;
+
+        static Action parse(String action) {
+            String normalized = action == null ? "" : action.trim().toLowerCase(Locale.ROOT).replaceAll("[\\s_-]", "");
+            return switch (normalized) {
+                case "sum" -> SUM;
+                case "count" -> COUNT;
+                case "min" -> MIN;
+                case "max" -> MAX;
+                case "avg", "average" -> AVG;
+                case "distinct", "distinctcount", "countdistinct" -> DISTINCT_COUNT;
+                default -> throw new IllegalArgumentException("Unsupported custom column action " + action
+                        + ", expected sum, count, min, max, avg or distinct count");
+            };
+        }
+    }
+
+    private final int[] groupColumns;
+    private final Action[] actions;
+    private final int[] inputColumns; // -1 for a count of rows
+    private final int[] inputTypes;
+    private final ProjectionPlan output;
+
+    private AggregationPlan(int[] groupColumns, Action[] actions, int[] inputColumns, int[] inputTypes, ProjectionPlan output) {
+        this.groupColumns = groupColumns;
+        this.actions = actions;
+        this.inputColumns = inputColumns;
+        this.inputTypes = inputTypes;
+        this.output = output;
+    }
+
+    /**
+     * The aggregation of {@code custom} over the rows of {@code plan}, or null when the report has no custom columns.
+     * Columns are referenced like filter columns, by {@code meta.fixed} key or output name. Without {@code groupBy}
+     * rows are grouped on every fixed column that no custom column aggregates.
+     *
+     * @throws IllegalArgumentException for an unknown action or column
+     */
+    public static AggregationPlan compile(Map<String, ReportConfig.CustomColumn> custom, List<String> groupBy, ProjectionPlan plan) {
+        if (custom == null || custom.isEmpty()) {
+            return null;
+        }
+        List<Entry<String, ReportConfig.CustomColumn>> aggregates = new ArrayList<>(custom.entrySet());
+        Action[] actions = new Action[aggregates.size()];
+        int[] inputColumns = new int[aggregates.size()];
+        int[] inputTypes = new int[aggregates.size()];
+        boolean[] aggregated = new boolean[plan.width()];
+        for (int i = 0; i < aggregates.size(); i++) {
+            ReportConfig.CustomColumn column = aggregates.get(i).getValue();
+            actions[i] = Action.parse(column.getAction());
+            inputColumns[i] = input(aggregates.get(i).getKey(), column, actions[i], plan);
+            if (inputColumns[i] >= 0) {
+                inputTypes[i] = plan.getSqlType(inputColumns[i]);
+                aggregated[inputColumns[i]] = true;
+            } else {
+                inputTypes[i] = Types.NULL;
+            }
+        }
+
+        int[] groupColumns;
+        if (groupBy != null) {
+            groupColumns = new int[groupBy.size()];
+            for (int i = 0; i < groupBy.size(); i++) {
+                groupColumns[i] = plan.indexOf(groupBy.get(i));
+                if (groupColumns[i] < 0) {
+                    throw new IllegalArgumentException("Cannot group by " + groupBy.get(i) + ", it is not a fixed column of the report");
+                }
+            }
+        } else {
+            List<Integer> columns = new ArrayList<>();
+            for (int column = 0; column < plan.width(); column++) {
+                if (!aggregated[column]) {
+                    columns.add(column);
+                }
+            }
+            groupColumns = columns.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        int width = groupColumns.length + aggregates.size();
+        Map<String, ReportConfig.ColumnConfig> outputColumns = new LinkedHashMap<>();
+        String[] labels = new String[width];
+        int[] sqlTypes = new int[width];
+        String[] names = plan.getNames();
+        for (int i = 0; i < groupColumns.length; i++) {
+            labels[i] = names[groupColumns[i]];
+            sqlTypes[i] = plan.getSqlType(groupColumns[i]);
+            outputColumns.put(plan.getKey(groupColumns[i]), column(labels[i], i, plan.getFormat(groupColumns[i])));
+        }
+        for (int i = 0; i < aggregates.size(); i++) {
+            int position = groupColumns.length + i;
+            String key = aggregates.get(i).getKey();
+            String name = aggregates.get(i).getValue().getName();
+            labels[position] = name != null ? name : key;
+            sqlTypes[position] = outputType(actions[i], inputTypes[i]);
+            // counts are plain numbers, the other aggregates keep the format of the column they aggregate
+            String format = actions[i] == Action.COUNT || actions[i] == Action.DISTINCT_COUNT ? null : plan.getFormat(inputColumns[i]);
+            if (outputColumns.put(key, column(labels[position], position, format)) != null) {
+                throw new IllegalArgumentException("Custom column " + key + " has the key of a group-by column");
+            }
+        }
+        ProjectionPlan output = ProjectionPlan.compile(outputColumns, new SourceColumns(labels, sqlTypes));
+        return new AggregationPlan(groupColumns, actions, inputColumns, inputTypes, output);
+    }
+
+    private static int input(String key, ReportConfig.CustomColumn column, Action action, ProjectionPlan plan) {
+        String mappedTo = column.getMappedTo();
+        if (action == Action.COUNT && (mappedTo == null || mappedTo.isBlank() || mappedTo.equals("*"))) {
+            return -1;
+        }
+        int index = mappedTo != null ? plan.indexOf(mappedTo) : -1;
+        if (index < 0) {
+            throw new IllegalArgumentException("Custom column " + key + " aggregates " + mappedTo + ", which is not a fixed column of the report");
+        }
+        int sqlType = plan.getSqlType(index);
+        if ((action == Action.SUM || action == Action.AVG) && isTemporal(sqlType)) {
+            throw new IllegalArgumentException("Custom column " + key + " cannot " + action.name().toLowerCase(Locale.ROOT)
+                    + " the dates of " + mappedTo);
+        }
+        return index;
+    }
+
+    private static int outputType(Action action, int inputType) {
+        return switch (action) {
+            case COUNT, DISTINCT_COUNT -> Types.BIGINT;
+            case SUM, AVG -> isFloatingPoint(inputType) ? Types.DOUBLE : Types.DECIMAL;
+            case MIN, MAX -> inputType;
+        };
+    }
+
+    static boolean isFloatingPoint(int sqlType) {
+        return sqlType == Types.FLOAT || sqlType == Types.REAL || sqlType == Types.DOUBLE;
+    }
+
+    private static boolean isTemporal(int sqlType) {
+        return sqlType == Types.DATE || sqlType == Types.TIME || sqlType == Types.TIMESTAMP || sqlType == Types.TIMESTAMP_WITH_TIMEZONE;
+    }
+
+    private static ReportConfig.ColumnConfig column(String name, int index, String format) {
+        ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+        column.setName(name);
+        column.setMappedIndex(index);
+        column.setFormat(format);
+        return column;
+    }
+
+    /**
+     * A new, empty aggregator for one run of the report.
+     */
+    public HashAggregator newAggregator() {
+        return new HashAggregator(groupColumns, actions, inputColumns, inputTypes);
+    }
+
+    /**
+     * The columns of the summary rows: the group-by columns, then the custom columns.
+     */
+    public ProjectionPlan getOutput() {
+        return output;
+    }
+}
@@ -0,0 +1,12 @@
+package dynamic_reports.pipeline;
+
+/**
+ * A compiled {@code ColumnConfig.format}. Implementations are immutable and shared between threads.
+ */
+@FunctionalInterface
+public interface CellFormatter {
+
+    CellFormatter IDENTITY = value -> value;
+
+    Object format(Object value);
+}
@@ -0,0 +1,125 @@
+package dynamic_reports.pipeline;
+
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles {@code ColumnConfig.format} values into {@link CellFormatter}s. The format is inspected once per
+ * column, date patterns are turned into {@link DateTimeFormatter}s held in a shared bounded cache, so
+ * formatting a cell does no pattern checks and no formatter allocation.
+ */
+public final class CellFormatters {
+
+    static final int MAX_CACHED_PATTERNS = 256;
+
+    // string cells of date columns are expected in this form, as before
+    private static final DateTimeFormatter INPUT_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy", Locale.ROOT);
+
+    private static final Map<String, DateTimeFormatter> PATTERNS = new ConcurrentHashMap<>();
+
+    private CellFormatters() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code format} is a date pattern that {@link DateTimeFormatter} rejects
+     */
+    public static CellFormatter compile(String format) {
+        if (format == null) {
+            return CellFormatter.IDENTITY;
+        }
+        if (isDatePattern(format)) {
+            DateTimeFormatter formatter = pattern(format);
+            return value -> formatDate(value, formatter);
+        }
+        switch (format.toLowerCase(Locale.ROOT)) {
+            case "uppercase":
+                return value -> value instanceof String ? ((String) value).toUpperCase(Locale.ROOT) : value;
+            case "lowercase":
+                return value -> value instanceof String ? ((String) value).toLowerCase(Locale.ROOT) : value;
+            case "sentencecase":
+                return value -> value instanceof String ? sentenceCase((String) value) : value;
+            default:
+                return CellFormatter.IDENTITY;
+        }
+    }
+
+    public static boolean isDatePattern(String format) {
+        return format != null && format.contains("dd") && format.contains("MM");
+    }
+
+    /**
+     * The shared formatter for {@code pattern}. Once the cache is full further patterns are compiled on every call.
+     */
+    public static DateTimeFormatter pattern(String pattern) {
+        DateTimeFormatter formatter = PATTERNS.get(pattern);
+        if (formatter != null) {
+            return formatter;
+        }
+        formatter = DateTimeFormatter.ofPattern(pattern, Locale.ROOT);
+        if (PATTERNS.size() < MAX_CACHED_PATTERNS) {
+            PATTERNS.putIfAbsent(pattern, formatter);
+        }
+        return formatter;
+    }
+
+    static int cachedPatterns() {
+        return PATTERNS.size();
+    }
+
+    /**
+     * The JDBC and java.time date types as a {@link LocalDateTime}, or null for any other value.
+     */
+    public static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        if (value instanceof java.sql.Date) {
+            return ((java.sql.Date) value).toLocalDate().atStartOfDay();
+        }
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        if (value instanceof LocalDate) {
+            return ((LocalDate) value).atStartOfDay();
+        }
+        if (value instanceof Date) {
+            return LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault());
+        }
+        return null;
+    }
+
+    private static Object formatDate(Object value, DateTimeFormatter formatter) {
+        LocalDateTime dateTime = toLocalDateTime(value);
+        if (dateTime == null && value instanceof String) {
+            try {
+                dateTime = LocalDate.parse((String) value, INPUT_DATE).atStartOfDay();
+            } catch (DateTimeParseException e) {
+                return value; // Return original if parsing fails
+            }
+        }
+        if (dateTime == null) {
+            return value;
+        }
+        try {
+            return formatter.format(dateTime);
+        } catch (DateTimeException e) {
+            return value; // pattern asks for fields a local date-time does not have, e.g. a zone
+        }
+    }
+
+    private static String sentenceCase(String value) {
+        if (value.isEmpty()) {
+            return value;
+        }
+        return value.substring(0, 1).toUpperCase(Locale.ROOT) + value.substring(1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,220 @@
+package dynamic_reports.pipeline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import dynamic_reports.store.ColumnBatch;
+
+/**
+ * Filters and formats the rows of one report and hands the rows that pass to a sink, in source order.
+ *
+ * Rows are transformed on the calling thread until {@code threshold} rows have been pushed, so small reports
+ * never leave it. Beyond that they are collected into chunks that are filtered and formatted on a pool while
+ * the calling thread keeps reading, and finished chunks are drained to the sink in the order they were
+ * submitted. At most {@code maxChunksInFlight} chunks are pending at a time, which bounds the rows held in
+ * memory. Rows pushed as a {@link ColumnBatch} are projected on the pool as well.
+ *
+ * Not thread-safe, every method must be called from the thread that reads the rows.
+ */
+public final class ChunkedTransform implements AutoCloseable {
+
+    /**
+     * Receives the formatted rows, always on the calling thread.
+     */
+    @FunctionalInterface
+    public interface RowSink {
+        void accept(Object[] row) throws IOException;
+    }
+
+    private final ProjectionPlan plan;
+    private final Predicate<Object[]> rowFilter;
+    private final RowSink sink;
+    private final boolean formatRows;
+    private final ExecutorService pool;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+    // every chunk resolves to its rows compacted in place, a null ends the rows that passed the filter
+    private final ArrayDeque<Future<Object[][]>> pending = new ArrayDeque<>();
+
+    private long sequentialRows;
+    private Object[][] chunk;
+    private int chunkLength;
+
+    /**
+     * @param formatRows false to only filter, for rows that are sorted before they are formatted
+     * @param pool runs the chunks, null to transform every row on the calling thread
+     * @param threshold rows transformed on the calling thread before chunks are handed to the pool
+     */
+    public ChunkedTransform(ProjectionPlan plan, Predicate<Object[]> rowFilter, boolean formatRows, RowSink sink,
+            ExecutorService pool, long threshold, int chunkSize, int maxChunksInFlight) {
+        if (chunkSize < 1 || maxChunksInFlight < 1) {
+            throw new IllegalArgumentException("Chunk size and chunks in flight must be positive");
+        }
+        this.plan = plan;
+        this.rowFilter = rowFilter;
+        this.sink = sink;
+        this.formatRows = formatRows;
+        this.pool = pool;
+        this.sequentialRows = pool != null ? Math.max(threshold, 0) : Long.MAX_VALUE;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Transforms one projected row.
+     */
+    public void push(Object[] row) throws IOException {
+        if (sequentialRows > 0) {
+            sequentialRows--;
+            if (accept(row)) {
+                sink.accept(row);
+            }
+            return;
+        }
+        if (chunk == null) {
+            chunk = new Object[chunkSize][];
+        }
+        chunk[chunkLength++] = row;
+        if (chunkLength == chunkSize) {
+            submitChunk();
+        }
+    }
+
+    /**
+     * Projects and transforms every row of {@code batch}.
+     */
+    public void push(ColumnBatch batch) throws IOException {
+        int rowCount = batch.rowCount();
+        int row = 0;
+        for (; row < rowCount && sequentialRows > 0; row++, sequentialRows--) {
+            Object[] projected = plan.project(batch, row);
+            if (accept(projected)) {
+                sink.accept(projected);
+            }
+        }
+        if (row == rowCount) {
+            return;
+        }
+        // a partial chunk of pushed rows goes first, to keep the source order
+        if (chunkLength > 0) {
+            submitChunk();
+        }
+        for (; row < rowCount; row += chunkSize) {
+            int from = row;
+            int to = Math.min(row + chunkSize, rowCount);
+            submit(() -> transform(batch, from, to));
+        }
+    }
+
+    /**
+     * Transforms the rows still collected and drains every pending chunk to the sink.
+     */
+    public void finish() throws IOException {
+        if (chunkLength > 0) {
+            submitChunk();
+        }
+        while (!pending.isEmpty()) {
+            drain();
+        }
+    }
+
+    /**
+     * Cancels the chunks that were not drained, for a report that failed part way.
+     */
+    @Override
+    public void close() {
+        Future<Object[][]> future;
+        while ((future = pending.poll()) != null) {
+            future.cancel(false);
+        }
+    }
+
+    private boolean accept(Object[] row) {
+        // rows are filtered on their typed source values, rejected rows are never formatted
+        if (plan.width() > 0 && rowFilter.test(row)) {
+            if (formatRows) {
+                plan.format(row);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void submitChunk() throws IOException {
+        Object[][] rows = chunk;
+        int length = chunkLength;
+        chunk = null;
+        chunkLength = 0;
+        submit(() -> transform(rows, length));
+    }
+
+    private void submit(Callable<Object[][]> task) throws IOException {
+        while (pending.size() >= maxChunksInFlight) {
+            drain();
+        }
+        pending.add(pool.submit(task));
+    }
+
+    private Object[][] transform(Object[][] rows, int length) {
+        int passed = 0;
+        for (int i = 0; i < length; i++) {
+            Object[] row = rows[i];
+            if (accept(row)) {
+                rows[passed++] = row;
+            }
+        }
+        if (passed < rows.length) {
+            rows[passed] = null;
+        }
+        return rows;
+    }
+
+    private Object[][] transform(ColumnBatch batch, int from, int to) {
+        Object[][] rows = new Object[to - from][];
+        int passed = 0;
+        for (int r = from; r < to; r++) {
+            Object[] row = plan.project(batch, r);
+            if (accept(row)) {
+                rows[passed++] = row;
+            }
+        }
+        if (passed < rows.length) {
+            rows[passed] = null;
+        }
+        return rows;
+    }
+
+    private void drain() throws IOException {
+        Object[][] rows;
+        try {
+            rows = pending.peek().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while transforming report rows");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Report row transform was cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        pending.remove();
+        for (Object[] row : rows) {
+            if (row == null) {
+                break;
+            }
+            sink.accept(row);
+        }
+    }
+}
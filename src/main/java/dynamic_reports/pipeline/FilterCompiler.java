@@ -0,0 +1,323 @@
+package dynamic_reports.pipeline;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import dynamic_reports.dto.ReportConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compiles {@code meta.filters} into one predicate over projected rows. Operands are parsed once, as numbers,
+ * dates or text depending on the source column type, so every row is tested with typed comparisons
+ * in a single pass before it is formatted.
+ *
+ * Supported conditions: {@code > < >= <= = != in between startsWith endsWith contains}.
+ */
+@Slf4j
+public final class FilterCompiler {
+
+    private static final List<DateTimeFormatter> DATE_PATTERNS = List.of(
+            DateTimeFormatter.ofPattern("dd/MM/yyyy", Locale.ROOT),
+            DateTimeFormatter.ofPattern("dd-MM-yyyy", Locale.ROOT),
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", Locale.ROOT),
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+
+    private static final Set<String> TEXT_CONDITIONS = Set.of("startswith", "endswith", "contains");
+    private static final Set<String> EQUALITY_CONDITIONS = Set.of("=", "==", "!=", "<>", "in");
+    private static final Set<String> ORDERING_CONDITIONS = Set.of(">", ">=", "<", "<=", "between");
+
+    private FilterCompiler() {
+    }
+
+    public enum ValueType {
+        NUMBER, DATE, TEXT
+    }
+
+    /**
+     * A filter bound to a column of the plan with its operands parsed. {@code condition} is lower case,
+     * {@code operands} hold BigDecimal, LocalDateTime or String values depending on {@code type}.
+     */
+    public record ResolvedFilter(int column, String condition, ValueType type, List<Object> operands, boolean ignoreCase) {
+    }
+
+    public static Predicate<Object[]> compile(List<ReportConfig.Filter> filters, ProjectionPlan plan) {
+        return compileResolved(resolve(filters, plan), plan);
+    }
+
+    public static Predicate<Object[]> compileResolved(List<ResolvedFilter> filters, ProjectionPlan plan) {
+        List<Predicate<Object[]>> predicates = new ArrayList<>();
+        for (ResolvedFilter filter : filters) {
+            predicates.add(predicate(filter, plan));
+        }
+
+        if (predicates.isEmpty()) {
+            return row -> true;
+        }
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        List<Predicate<Object[]>> chain = List.copyOf(predicates);
+        int size = chain.size();
+        return row -> {
+            for (int i = 0; i < size; i++) {
+                if (!chain.get(i).test(row)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Binds every filter to its column and parses the operands.
+     *
+     * @throws IllegalArgumentException for unknown conditions and operands that do not parse as the column type
+     */
+    public static List<ResolvedFilter> resolve(List<ReportConfig.Filter> filters, ProjectionPlan plan) {
+        List<ResolvedFilter> resolved = new ArrayList<>();
+        for (ReportConfig.Filter filter : filters) {
+            int column = plan.indexOf(filter.getColumn());
+            if (column < 0) {
+                log.warn("Ignoring filter on {}, it is not a fixed column of the report", filter.getColumn());
+                continue;
+            }
+            resolved.add(resolve(filter, column, plan));
+        }
+        return resolved;
+    }
+
+    private static ResolvedFilter resolve(ReportConfig.Filter filter, int column, ProjectionPlan plan) {
+        String condition = filter.getCondition() == null ? "" : filter.getCondition().trim().toLowerCase(Locale.ROOT);
+        List<String> operands = operands(filter, condition);
+        if (operands.isEmpty() || operands.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Filter on " + filter.getColumn() + " has no value");
+        }
+
+        // case transformed columns are matched the way the user sees them in the report
+        boolean ignoreCase = isCaseFormat(plan.getFormat(column));
+
+        if (TEXT_CONDITIONS.contains(condition)) {
+            return new ResolvedFilter(column, condition, ValueType.TEXT, List.of(operands.get(0)), ignoreCase);
+        }
+        if (!EQUALITY_CONDITIONS.contains(condition) && !ORDERING_CONDITIONS.contains(condition)) {
+            throw new IllegalArgumentException("Unsupported filter condition: " + filter.getCondition());
+        }
+        if (condition.equals("between") && operands.size() != 2) {
+            throw new IllegalArgumentException("Filter between on " + filter.getColumn() + " needs exactly two values");
+        }
+
+        ValueType type = valueType(plan.getSqlType(column), ORDERING_CONDITIONS.contains(condition), operands, plan.getFormat(column));
+        Function<Object, Comparable<Object>> convert = converter(type, plan.getFormat(column));
+        List<Object> parsed = new ArrayList<>();
+        for (String operand : operands) {
+            Object value = convert.apply(operand);
+            if (value == null) {
+                throw new IllegalArgumentException("Filter value " + operand + " is not a valid " + type.name().toLowerCase(Locale.ROOT) + " for " + filter.getColumn());
+            }
+            parsed.add(value);
+        }
+        return new ResolvedFilter(column, condition, type, List.copyOf(parsed), ignoreCase);
+    }
+
+    private static Predicate<Object[]> predicate(ResolvedFilter filter, ProjectionPlan plan) {
+        int column = filter.column();
+        boolean ignoreCase = filter.ignoreCase();
+
+        switch (filter.condition()) {
+            case "startswith":
+                return text(column, (String) filter.operands().get(0), ignoreCase, (cell, operand) -> cell.regionMatches(ignoreCase, 0, operand, 0, operand.length()));
+            case "endswith":
+                return text(column, (String) filter.operands().get(0), ignoreCase, (cell, operand) -> cell.regionMatches(ignoreCase, cell.length() - operand.length(), operand, 0, operand.length()));
+            case "contains":
+                return text(column, (String) filter.operands().get(0), ignoreCase, (cell, operand) -> ignoreCase
+                        ? cell.toLowerCase(Locale.ROOT).contains(operand)
+                        : cell.contains(operand));
+            default:
+                break;
+        }
+
+        Function<Object, Comparable<Object>> convert = converter(filter.type(), plan.getFormat(column));
+        @SuppressWarnings("unchecked")
+        Comparator<Object> order = filter.type() == ValueType.TEXT && ignoreCase
+                ? (a, b) -> ((String) a).compareToIgnoreCase((String) b)
+                : (a, b) -> ((Comparable<Object>) a).compareTo(b);
+        Object operand = filter.operands().get(0);
+
+        switch (filter.condition()) {
+            case ">":
+                return ordered(column, convert, order, operand, cmp -> cmp > 0);
+            case ">=":
+                return ordered(column, convert, order, operand, cmp -> cmp >= 0);
+            case "<":
+                return ordered(column, convert, order, operand, cmp -> cmp < 0);
+            case "<=":
+                return ordered(column, convert, order, operand, cmp -> cmp <= 0);
+            case "=":
+            case "==":
+                return ordered(column, convert, order, operand, cmp -> cmp == 0);
+            case "!=":
+            case "<>": {
+                Predicate<Object[]> equal = ordered(column, convert, order, operand, cmp -> cmp == 0);
+                return row -> !equal.test(row);
+            }
+            case "in": {
+                Set<Object> set = new TreeSet<>((a, b) -> order.compare(a, b));
+                set.addAll(filter.operands());
+                return row -> {
+                    Object value = convert.apply(row[column]);
+                    return value != null && set.contains(value);
+                };
+            }
+            case "between": {
+                Object high = filter.operands().get(1);
+                return row -> {
+                    Object value = convert.apply(row[column]);
+                    return value != null && order.compare(value, operand) >= 0 && order.compare(value, high) <= 0;
+                };
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported filter condition: " + filter.condition());
+        }
+    }
+
+    private static List<String> operands(ReportConfig.Filter filter, String condition) {
+        if (filter.getValues() != null && !filter.getValues().isEmpty()) {
+            return filter.getValues();
+        }
+        if (filter.getValue() == null) {
+            return List.of();
+        }
+        if (condition.equals("in") || condition.equals("between")) {
+            return Arrays.stream(filter.getValue().split(",")).map(String::trim).toList();
+        }
+        return List.of(filter.getValue());
+    }
+
+    private static Predicate<Object[]> ordered(int column, Function<Object, Comparable<Object>> convert, Comparator<Object> order,
+            Object operand, IntPredicate accept) {
+        return row -> {
+            Object value = convert.apply(row[column]);
+            return value != null && accept.test(order.compare(value, operand));
+        };
+    }
+
+    private interface TextMatch {
+        boolean test(String cell, String operand);
+    }
+
+    private static Predicate<Object[]> text(int column, String operand, boolean ignoreCase, TextMatch match) {
+        String expected = ignoreCase ? operand.toLowerCase(Locale.ROOT) : operand;
+        return row -> {
+            Object value = row[column];
+            if (value == null) {
+                return false;
+            }
+            String cell = value.toString();
+            return cell.length() >= expected.length() && match.test(cell, expected);
+        };
+    }
+
+    private static boolean isCaseFormat(String format) {
+        return format != null && (format.equalsIgnoreCase("uppercase") || format.equalsIgnoreCase("lowercase")
+                || format.equalsIgnoreCase("sentencecase"));
+    }
+
+    private static ValueType valueType(int sqlType, boolean ordering, List<String> operands, String format) {
+        switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.FLOAT, Types.REAL,
+                    Types.DOUBLE, Types.NUMERIC, Types.DECIMAL:
+                return ValueType.NUMBER;
+            case Types.DATE, Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE:
+                return ValueType.DATE;
+            default:
+                break;
+        }
+        // text sources holding amounts or dates are ordered by value when every operand parses as one
+        if (!ordering) {
+            return ValueType.TEXT;
+        }
+        if (operands.stream().allMatch(operand -> toNumber(operand) != null)) {
+            return ValueType.NUMBER;
+        }
+        Function<Object, Comparable<Object>> dates = converter(ValueType.DATE, format);
+        if (operands.stream().allMatch(operand -> dates.apply(operand) != null)) {
+            return ValueType.DATE;
+        }
+        return ValueType.TEXT;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Function<Object, Comparable<Object>> converter(ValueType type, String format) {
+        switch (type) {
+            case NUMBER:
+                return value -> (Comparable) toNumber(value);
+            case DATE: {
+                List<DateTimeFormatter> patterns = new ArrayList<>();
+                if (CellFormatters.isDatePattern(format)) {
+                    patterns.add(CellFormatters.pattern(format));
+                }
+                patterns.addAll(DATE_PATTERNS);
+                return value -> (Comparable) toDateTime(value, patterns);
+            }
+            default:
+                return value -> value == null ? null : (Comparable) value.toString();
+        }
+    }
+
+    private static BigDecimal toNumber(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof Number) {
+            return new BigDecimal(value.toString());
+        }
+        if (value instanceof String) {
+            String text = ((String) value).trim();
+            if (text.isEmpty()) {
+                return null;
+            }
+            try {
+                return new BigDecimal(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static LocalDateTime toDateTime(Object value, List<DateTimeFormatter> patterns) {
+        if (value instanceof String) {
+            String text = ((String) value).trim();
+            for (DateTimeFormatter pattern : patterns) {
+                try {
+                    TemporalAccessor parsed = pattern.parseBest(text, LocalDateTime::from, LocalDate::from);
+                    return parsed instanceof LocalDate ? ((LocalDate) parsed).atStartOfDay() : (LocalDateTime) parsed;
+                } catch (DateTimeParseException e) {
+                    // try the next pattern
+                }
+            }
+            return null;
+        }
+        return CellFormatters.toLocalDateTime(value);
+    }
+}
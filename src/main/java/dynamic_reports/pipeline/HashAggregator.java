@@ -0,0 +1,414 @@
+package dynamic_reports.pipeline;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Aggregates the rows of a summary report in one streaming pass. Groups are found in an open-addressing table keyed
+ * on the group-by values, so adding a row of an existing group allocates nothing for the lookup. Each aggregate keeps
+ * one slot per group in a primitive array: counts in {@code long[]}, decimal sums as unscaled {@code long}s at the
+ * scale of the column, falling back to {@link BigDecimal} only for a group whose sum overflows. Memory grows with
+ * the number of groups, not the number of rows.
+ */
+@Slf4j
+public final class HashAggregator {
+
+    private static final int INITIAL_GROUPS = 16;
+
+    private final int[] groupColumns;
+    private final Accumulator[] accumulators;
+    private Object[][] groupKeys = new Object[INITIAL_GROUPS][];
+    private int[] groupHashes = new int[INITIAL_GROUPS];
+    private int[] table = new int[INITIAL_GROUPS * 2]; // group + 1 per slot, 0 when the slot is empty
+    private int groupCount;
+
+    HashAggregator(int[] groupColumns, AggregationPlan.Action[] actions, int[] inputColumns, int[] inputTypes) {
+        this.groupColumns = groupColumns;
+        this.accumulators = new Accumulator[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            accumulators[i] = accumulator(actions[i], inputColumns[i], inputTypes[i]);
+            accumulators[i].grow(INITIAL_GROUPS);
+        }
+    }
+
+    private static Accumulator accumulator(AggregationPlan.Action action, int column, int sqlType) {
+        boolean floating = AggregationPlan.isFloatingPoint(sqlType);
+        return switch (action) {
+            case COUNT -> new Count(column);
+            case SUM -> floating ? new DoubleSum(column, false) : new DecimalSum(column, false);
+            case AVG -> floating ? new DoubleSum(column, true) : new DecimalSum(column, true);
+            case MIN -> new Extreme(column, SortCompiler.valueOrder(sqlType));
+            case MAX -> new Extreme(column, SortCompiler.valueOrder(sqlType).reversed());
+            case DISTINCT_COUNT -> new DistinctCount(column);
+        };
+    }
+
+    /**
+     * Adds a filtered row, with its typed source values, to its group.
+     */
+    public void add(Object[] row) {
+        int group = group(row);
+        for (Accumulator accumulator : accumulators) {
+            accumulator.add(group, row);
+        }
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * Hands one summary row per group to {@code sink}, in the order the groups were first seen.
+     */
+    public void drain(ChunkedTransform.RowSink sink) throws IOException {
+        for (int group = 0; group < groupCount; group++) {
+            Object[] row = Arrays.copyOf(groupKeys[group], groupColumns.length + accumulators.length);
+            for (int i = 0; i < accumulators.length; i++) {
+                row[groupColumns.length + i] = accumulators[i].result(group);
+            }
+            sink.accept(row);
+        }
+    }
+
+    private int group(Object[] row) {
+        int hash = 1;
+        for (int column : groupColumns) {
+            hash = 31 * hash + Objects.hashCode(row[column]);
+        }
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return newGroup(slot, row, hash);
+            }
+            int group = entry - 1;
+            if (groupHashes[group] == hash && sameKey(groupKeys[group], row)) {
+                return group;
+            }
+        }
+    }
+
+    private boolean sameKey(Object[] key, Object[] row) {
+        for (int i = 0; i < groupColumns.length; i++) {
+            if (!Objects.equals(key[i], row[groupColumns[i]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int newGroup(int slot, Object[] row, int hash) {
+        int group = groupCount++;
+        if (group == groupKeys.length) {
+            int capacity = groupKeys.length * 2;
+            groupKeys = Arrays.copyOf(groupKeys, capacity);
+            groupHashes = Arrays.copyOf(groupHashes, capacity);
+            for (Accumulator accumulator : accumulators) {
+                accumulator.grow(capacity);
+            }
+        }
+        Object[] key = new Object[groupColumns.length];
+        for (int i = 0; i < groupColumns.length; i++) {
+            key[i] = row[groupColumns[i]];
+        }
+        groupKeys[group] = key;
+        groupHashes[group] = hash;
+        table[slot] = group + 1;
+        // linear probing stays short while the table is at most half full
+        if (groupCount * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return group;
+    }
+
+    private void rehash(int size) {
+        table = new int[size];
+        int mask = size - 1;
+        for (int group = 0; group < groupCount; group++) {
+            int slot = spread(groupHashes[group]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = group + 1;
+        }
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * One aggregate over the values of one column, indexed by group.
+     */
+    private abstract static class Accumulator {
+
+        final int column;
+
+        Accumulator(int column) {
+            this.column = column;
+        }
+
+        void add(int group, Object[] row) {
+            Object value = column >= 0 ? row[column] : Boolean.TRUE;
+            if (value != null) {
+                add(group, value);
+            }
+        }
+
+        abstract void add(int group, Object value);
+
+        abstract void grow(int capacity);
+
+        abstract Object result(int group);
+    }
+
+    /**
+     * Rows, or the non-empty values of a column.
+     */
+    private static final class Count extends Accumulator {
+
+        private long[] counts;
+
+        Count(int column) {
+            super(column);
+        }
+
+        @Override
+        void add(int group, Object value) {
+            counts[group]++;
+        }
+
+        @Override
+        void grow(int capacity) {
+            counts = counts == null ? new long[capacity] : Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        Object result(int group) {
+            return counts[group];
+        }
+    }
+
+    /**
+     * Exact sum or average of decimal and integer values. The sum of a group is an unscaled {@code long} at the scale
+     * of the first value, e.g. 2 for amounts, and moves to a {@link BigDecimal} only when a value does not fit it.
+     */
+    private static final class DecimalSum extends Accumulator {
+
+        private static final int AVERAGE_EXTRA_SCALE = 2;
+
+        private final boolean average;
+        private long[] sums;
+        private long[] counts;
+        private BigDecimal[] overflow; // allocated with the first group that overflows
+        private int scale = -1;
+        private boolean warned;
+
+        DecimalSum(int column, boolean average) {
+            super(column);
+            this.average = average;
+        }
+
+        @Override
+        void add(int group, Object value) {
+            if (scale <= 0 && (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                add(group, ((Number) value).longValue());
+                return;
+            }
+            BigDecimal decimal = SortCompiler.toNumber(value);
+            if (decimal == null) {
+                if (!warned) {
+                    log.warn("Ignoring {} and any other value that is not a number in the sum of column {}", value, column);
+                    warned = true;
+                }
+                return;
+            }
+            counts[group]++;
+            if (scale < 0) {
+                scale = Math.max(decimal.scale(), 0);
+            }
+            if (isOverflown(group)) {
+                overflow[group] = overflow[group].add(decimal);
+                return;
+            }
+            if (decimal.scale() <= scale) {
+                try {
+                    long unscaled = scale == 0 ? decimal.longValueExact() : decimal.setScale(scale).unscaledValue().longValueExact();
+                    sums[group] = Math.addExact(sums[group], unscaled);
+                    return;
+                } catch (ArithmeticException e) {
+                    // too large for a long, the group continues as a BigDecimal
+                }
+            }
+            overflow(group, decimal);
+        }
+
+        private void add(int group, long value) {
+            counts[group]++;
+            if (scale < 0) {
+                scale = 0;
+            }
+            if (!isOverflown(group)) {
+                try {
+                    sums[group] = Math.addExact(sums[group], value);
+                    return;
+                } catch (ArithmeticException e) {
+                    overflow(group, BigDecimal.ZERO);
+                }
+            }
+            overflow[group] = overflow[group].add(BigDecimal.valueOf(value));
+        }
+
+        private boolean isOverflown(int group) {
+            return overflow != null && overflow[group] != null;
+        }
+
+        private void overflow(int group, BigDecimal value) {
+            if (overflow == null) {
+                overflow = new BigDecimal[sums.length];
+            }
+            overflow[group] = BigDecimal.valueOf(sums[group], scale).add(value);
+        }
+
+        @Override
+        void grow(int capacity) {
+            sums = sums == null ? new long[capacity] : Arrays.copyOf(sums, capacity);
+            counts = counts == null ? new long[capacity] : Arrays.copyOf(counts, capacity);
+            if (overflow != null) {
+                overflow = Arrays.copyOf(overflow, capacity);
+            }
+        }
+
+        @Override
+        Object result(int group) {
+            if (counts[group] == 0) {
+                return null;
+            }
+            BigDecimal sum = isOverflown(group) ? overflow[group] : BigDecimal.valueOf(sums[group], scale);
+            if (!average) {
+                return sum;
+            }
+            return sum.divide(BigDecimal.valueOf(counts[group]), Math.max(scale, sum.scale()) + AVERAGE_EXTRA_SCALE, RoundingMode.HALF_UP);
+        }
+    }
+
+    /**
+     * Sum or average of {@code FLOAT} and {@code DOUBLE} columns.
+     */
+    private static final class DoubleSum extends Accumulator {
+
+        private final boolean average;
+        private double[] sums;
+        private long[] counts;
+
+        DoubleSum(int column, boolean average) {
+            super(column);
+            this.average = average;
+        }
+
+        @Override
+        void add(int group, Object value) {
+            double number;
+            if (value instanceof Number n) {
+                number = n.doubleValue();
+            } else {
+                BigDecimal decimal = SortCompiler.toNumber(value);
+                if (decimal == null) {
+                    return;
+                }
+                number = decimal.doubleValue();
+            }
+            sums[group] += number;
+            counts[group]++;
+        }
+
+        @Override
+        void grow(int capacity) {
+            sums = sums == null ? new double[capacity] : Arrays.copyOf(sums, capacity);
+            counts = counts == null ? new long[capacity] : Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        Object result(int group) {
+            if (counts[group] == 0) {
+                return null;
+            }
+            return average ? sums[group] / counts[group] : sums[group];
+        }
+    }
+
+    /**
+     * Smallest value of a column in {@code order}, so the largest one for the reversed order. Values compare like
+     * sorted columns and the value itself is kept, with its type.
+     */
+    private static final class Extreme extends Accumulator {
+
+        private final Comparator<Object> order;
+        private Object[] values;
+
+        Extreme(int column, Comparator<Object> order) {
+            super(column);
+            this.order = order;
+        }
+
+        @Override
+        void add(int group, Object value) {
+            Object current = values[group];
+            if (current == null || order.compare(value, current) < 0) {
+                values[group] = value;
+            }
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = values == null ? new Object[capacity] : Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Object result(int group) {
+            return values[group];
+        }
+    }
+
+    /**
+     * Distinct non-empty values of a column. Decimals are compared by value, so 10.0 and 10.00 count once.
+     */
+    private static final class DistinctCount extends Accumulator {
+
+        private Set<?>[] values;
+
+        DistinctCount(int column) {
+            super(column);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void add(int group, Object value) {
+            Set<Object> distinct = (Set<Object>) values[group];
+            if (distinct == null) {
+                distinct = new HashSet<>();
+                values[group] = distinct;
+            }
+            distinct.add(value instanceof BigDecimal decimal ? decimal.stripTrailingZeros() : value);
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = values == null ? new Set<?>[capacity] : Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        Object result(int group) {
+            return values[group] == null ? 0L : (long) values[group].size();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package dynamic_reports.pipeline;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import dynamic_reports.dto.ReportConfig.ColumnConfig;
+import dynamic_reports.store.ColumnBatch;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The fixed columns of a report resolved against the columns of the source query.
+ * Compiled once per query, after that every row is projected by reading the mapped positions straight
+ * from the {@link ResultSet} into a flat {@code Object[]}.
+ */
+@Slf4j
+public final class ProjectionPlan {
+
+    private final String[] keys;
+    private final String[] names;
+    private final String[] formats;
+    private final CellFormatter[] formatters;
+    private final int[] sourceIndexes; // 1-based JDBC positions, 0 when the mapped index is out of range
+    private final int[] sqlTypes;
+
+    private ProjectionPlan(String[] keys, String[] names, String[] formats, int[] sourceIndexes, int[] sqlTypes) {
+        this.keys = keys;
+        this.names = names;
+        this.formats = formats;
+        this.formatters = new CellFormatter[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            this.formatters[i] = CellFormatters.compile(formats[i]);
+        }
+        this.sourceIndexes = sourceIndexes;
+        this.sqlTypes = sqlTypes;
+    }
+
+    public static ProjectionPlan compile(Map<String, ColumnConfig> fixedData, ResultSetMetaData metaData) throws SQLException {
+        return compile(fixedData, SourceColumns.of(metaData));
+    }
+
+    public static ProjectionPlan compile(Map<String, ColumnConfig> fixedData, SourceColumns sourceColumns) {
+        int columnCount = sourceColumns.count();
+        List<Entry<String, ColumnConfig>> columns = new ArrayList<>();
+        for (Entry<String, ColumnConfig> entry : fixedData.entrySet()) {
+            Integer index = entry.getValue().getMappedIndex();
+            if (index != null && index >= 0) {
+                columns.add(entry);
+            }
+        }
+
+        String[] keys = new String[columns.size()];
+        String[] names = new String[columns.size()];
+        String[] formats = new String[columns.size()];
+        int[] sourceIndexes = new int[columns.size()];
+        int[] sqlTypes = new int[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnConfig column = columns.get(i).getValue();
+            keys[i] = columns.get(i).getKey();
+            names[i] = column.getName();
+            formats[i] = column.getFormat();
+            if (column.getMappedIndex() < columnCount) {
+                sourceIndexes[i] = column.getMappedIndex() + 1;
+                sqlTypes[i] = sourceColumns.sqlType(column.getMappedIndex());
+            } else {
+                sqlTypes[i] = Types.NULL;
+                log.warn("Column {} is mapped to index {} but the source only has {} columns", column.getName(), column.getMappedIndex(), columnCount);
+            }
+        }
+        return new ProjectionPlan(keys, names, formats, sourceIndexes, sqlTypes);
+    }
+
+    public Object[] project(ResultSet rs) throws SQLException {
+        Object[] row = new Object[sourceIndexes.length];
+        for (int i = 0; i < sourceIndexes.length; i++) {
+            if (sourceIndexes[i] > 0) {
+                row[i] = rs.getObject(sourceIndexes[i]);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Projects a row already read from the source, {@code sourceRow} holds every source column by 0-based index.
+     */
+    public Object[] project(Object[] sourceRow) {
+        Object[] row = new Object[sourceIndexes.length];
+        for (int i = 0; i < sourceIndexes.length; i++) {
+            if (sourceIndexes[i] > 0) {
+                row[i] = sourceRow[sourceIndexes[i] - 1];
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Projects {@code row} of a batch of stored source rows, only the mapped columns are decoded.
+     */
+    public Object[] project(ColumnBatch batch, int row) {
+        Object[] projected = new Object[sourceIndexes.length];
+        for (int i = 0; i < sourceIndexes.length; i++) {
+            if (sourceIndexes[i] > 0) {
+                projected[i] = batch.get(sourceIndexes[i] - 1, row);
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * Applies the compiled column formats to {@code row} in place.
+     */
+    public void format(Object[] row) {
+        for (int i = 0; i < formatters.length; i++) {
+            row[i] = formatters[i].format(row[i]);
+        }
+    }
+
+    /**
+     * This plan with the format of each {@code columns[i]} column dropped, for columns the writer formats itself.
+     */
+    public ProjectionPlan withoutFormats(boolean[] columns) {
+        String[] kept = formats.clone();
+        for (int i = 0; i < kept.length; i++) {
+            if (columns[i]) {
+                kept[i] = null;
+            }
+        }
+        return new ProjectionPlan(keys, names, kept, sourceIndexes, sqlTypes);
+    }
+
+    public int width() {
+        return names.length;
+    }
+
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * The {@code meta.fixed} key of {@code column}.
+     */
+    public String getKey(int column) {
+        return keys[column];
+    }
+
+    public String getFormat(int column) {
+        return formats[column];
+    }
+
+    public String[] getFormats() {
+        return formats.clone();
+    }
+
+    /**
+     * The 1-based JDBC position read for {@code column}, 0 if it is mapped past the last source column.
+     */
+    public int getSourceIndex(int column) {
+        return sourceIndexes[column];
+    }
+
+    /**
+     * The {@link Types} code of the source column behind {@code column}.
+     */
+    public int getSqlType(int column) {
+        return sqlTypes[column];
+    }
+
+    /**
+     * Position of the column whose {@code meta.fixed} key, or failing that whose output name, is {@code column}; -1 if none.
+     */
+    public int indexOf(String column) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i].equals(column)) {
+                return i;
+            }
+        }
+        for (int i = 0; i < names.length; i++) {
+            if (names[i] != null && names[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,279 @@
+package dynamic_reports.pipeline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import dynamic_reports.store.ValueSizes;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sorts the rows of one report, stable for rows that compare equal.
+ *
+ * With a row limit only the best {@code limit} rows are kept, in a bounded heap. Without one, rows are buffered
+ * until their estimated size reaches the memory budget, then sorted and spilled to a temp file as a run; the
+ * runs are merged when the rows are drained. A top-N heap that outgrows the budget (a very large limit) is
+ * spilled as a run too and the sorter carries on as an external sort, so memory stays bounded either way.
+ */
+@Slf4j
+public final class RowSorter implements Closeable {
+
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    private record Entry(Object[] row, long sequence) {
+    }
+
+    private final Comparator<Object[]> order;
+    private final Comparator<Entry> entryOrder;
+    private final long limit;
+    private final long memoryBudget;
+    private final Path spillDirectory;
+    private final List<Path> runs = new ArrayList<>();
+
+    // top-N mode: the worst kept row is at the head
+    private PriorityQueue<Entry> heap;
+    // external mode
+    private List<Object[]> buffer;
+    private long bufferedBytes;
+    private long sequence;
+
+    /**
+     * @param limit rows to keep, 0 for all
+     */
+    public RowSorter(Comparator<Object[]> order, long limit, long memoryBudget, Path spillDirectory) {
+        this.order = order;
+        this.entryOrder = Comparator.<Entry, Object[]>comparing(Entry::row, order).thenComparingLong(Entry::sequence);
+        this.limit = limit;
+        this.memoryBudget = memoryBudget;
+        this.spillDirectory = spillDirectory;
+        if (limit > 0) {
+            heap = new PriorityQueue<>(entryOrder.reversed());
+        } else {
+            buffer = new ArrayList<>();
+        }
+    }
+
+    public void add(Object[] row) throws IOException {
+        if (heap != null) {
+            offer(row);
+            return;
+        }
+        buffer.add(row);
+        bufferedBytes += estimate(row);
+        if (bufferedBytes >= memoryBudget) {
+            buffer.sort(order);
+            spill(buffer);
+            buffer.clear();
+            bufferedBytes = 0;
+        }
+    }
+
+    /**
+     * Hands the rows to {@code sink} in order, at most {@code limit} of them.
+     */
+    public void drain(ChunkedTransform.RowSink sink) throws IOException {
+        List<Object[]> inMemory;
+        if (heap != null) {
+            List<Entry> entries = new ArrayList<>(heap);
+            heap = null;
+            entries.sort(entryOrder);
+            inMemory = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                inMemory.add(entry.row());
+            }
+        } else {
+            buffer.sort(order);
+            inMemory = buffer;
+            buffer = null;
+        }
+
+        long remaining = limit > 0 ? limit : Long.MAX_VALUE;
+        if (runs.isEmpty()) {
+            for (int i = 0; i < inMemory.size() && remaining-- > 0; i++) {
+                sink.accept(inMemory.get(i));
+            }
+            return;
+        }
+        log.debug("Merging {} sorted runs with {} rows in memory", runs.size(), inMemory.size());
+        merge(inMemory, remaining, sink);
+    }
+
+    public int spilledRuns() {
+        return runs.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        runs.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void offer(Object[] row) throws IOException {
+        Entry entry = new Entry(row, sequence++);
+        if (heap.size() < limit) {
+            heap.add(entry);
+            bufferedBytes += estimate(row);
+            if (bufferedBytes >= memoryBudget) {
+                // the limit is too large to keep on the heap, continue as an external sort
+                List<Entry> entries = new ArrayList<>(heap);
+                entries.sort(entryOrder);
+                List<Object[]> rows = new ArrayList<>(entries.size());
+                for (Entry kept : entries) {
+                    rows.add(kept.row());
+                }
+                heap = null;
+                spill(rows);
+                buffer = new ArrayList<>();
+                bufferedBytes = 0;
+            }
+        } else if (order.compare(row, heap.peek().row()) < 0) {
+            // equal rows keep the one seen first
+            Entry worst = heap.poll();
+            bufferedBytes += estimate(row) - estimate(worst.row());
+            heap.add(entry);
+        }
+    }
+
+    private void spill(List<Object[]> sortedRows) throws IOException {
+        Files.createDirectories(spillDirectory);
+        Path run = Files.createTempFile(spillDirectory, "sort-run-", ".bin");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), RUN_BUFFER_SIZE))) {
+            for (Object[] row : sortedRows) {
+                RowCodec.write(row, out);
+            }
+        }
+        log.debug("Spilled a sorted run of {} rows to {}", sortedRows.size(), run);
+    }
+
+    private void merge(List<Object[]> inMemory, long remaining, ChunkedTransform.RowSink sink) throws IOException {
+        // runs are numbered in the order they were written, which breaks ties between equal rows
+        List<RunCursor> cursors = new ArrayList<>();
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(
+                Comparator.<RunCursor, Object[]>comparing(RunCursor::head, order).thenComparingInt(RunCursor::index));
+        try {
+            for (Path run : runs) {
+                RunCursor cursor = new FileCursor(cursors.size(), run);
+                cursors.add(cursor);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+            RunCursor memory = new MemoryCursor(cursors.size(), inMemory);
+            if (memory.advance()) {
+                queue.add(memory);
+            }
+            while (!queue.isEmpty() && remaining-- > 0) {
+                RunCursor next = queue.poll();
+                sink.accept(next.head());
+                if (next.advance()) {
+                    queue.add(next);
+                }
+            }
+        } finally {
+            for (RunCursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    private static long estimate(Object[] row) {
+        long bytes = 16 + 4L * row.length;
+        for (Object value : row) {
+            bytes += ValueSizes.estimate(value);
+        }
+        return bytes;
+    }
+
+    private abstract static class RunCursor implements Closeable {
+
+        private final int index;
+        Object[] head;
+
+        RunCursor(int index) {
+            this.index = index;
+        }
+
+        int index() {
+            return index;
+        }
+
+        Object[] head() {
+            return head;
+        }
+
+        abstract boolean advance() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class FileCursor extends RunCursor {
+
+        private final DataInputStream in;
+
+        FileCursor(int index, Path run) throws IOException {
+            super(index);
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), RUN_BUFFER_SIZE));
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            try {
+                head = RowCodec.read(in);
+                return true;
+            } catch (EOFException e) {
+                head = null;
+                return false;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class MemoryCursor extends RunCursor {
+
+        private final List<Object[]> rows;
+        private int next;
+
+        MemoryCursor(int index, List<Object[]> rows) {
+            super(index);
+            this.rows = rows;
+        }
+
+        @Override
+        boolean advance() {
+            if (next == rows.size()) {
+                head = null;
+                return false;
+            }
+            head = rows.get(next);
+            rows.set(next++, null);
+            return true;
+        }
+    }
+}
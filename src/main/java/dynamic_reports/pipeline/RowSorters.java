@@ -0,0 +1,31 @@
+package dynamic_reports.pipeline;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Creates the {@link RowSorter} of a sorted report with the configured memory budget and spill directory.
+ */
+@Component
+public class RowSorters {
+
+    private final long memoryBudget;
+    private final Path spillDirectory;
+
+    public RowSorters(@Value("${reports.sort.memory-budget:64MB}") DataSize memoryBudget,
+            @Value("${reports.sort.spill-dir:${java.io.tmpdir}/dynamic-reports/sort}") String spillDirectory) {
+        this.memoryBudget = memoryBudget.toBytes();
+        this.spillDirectory = Path.of(spillDirectory);
+    }
+
+    /**
+     * @param limit rows to keep, 0 for all
+     */
+    public RowSorter create(Comparator<Object[]> order, long limit) {
+        return new RowSorter(order, limit, memoryBudget, spillDirectory);
+    }
+}
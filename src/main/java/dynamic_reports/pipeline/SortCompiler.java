@@ -0,0 +1,120 @@
+package dynamic_reports.pipeline;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+import dynamic_reports.dto.ReportConfig;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compiles {@code meta.sorting} into one comparator over projected rows. Rows are compared on their typed source
+ * values before they are formatted, so amounts sort numerically and dates chronologically whatever their output
+ * format. Text sorts case-insensitively, and empty cells sort last in either direction, as in Excel.
+ */
+@Slf4j
+public final class SortCompiler {
+
+    private SortCompiler() {
+    }
+
+    /**
+     * The comparator for {@code sorting}, or null when there is nothing to sort on. Columns are referenced like
+     * filter columns, by {@code meta.fixed} key or output name; unknown columns are ignored.
+     *
+     * @throws IllegalArgumentException for an order other than asc or desc
+     */
+    public static Comparator<Object[]> compile(List<ReportConfig.Sorting> sorting, ProjectionPlan plan) {
+        if (sorting == null) {
+            return null;
+        }
+        Comparator<Object[]> order = null;
+        for (ReportConfig.Sorting key : sorting) {
+            int column = plan.indexOf(key.getColumn());
+            if (column < 0) {
+                log.warn("Ignoring sort on {}, it is not a fixed column of the report", key.getColumn());
+                continue;
+            }
+            Comparator<Object[]> byColumn = column(column, valueOrder(plan.getSqlType(column)), descending(key));
+            order = order == null ? byColumn : order.thenComparing(byColumn);
+        }
+        return order;
+    }
+
+    private static boolean descending(ReportConfig.Sorting key) {
+        String order = key.getOrder() == null ? "asc" : key.getOrder().trim().toLowerCase(Locale.ROOT);
+        return switch (order) {
+            case "asc", "ascending" -> false;
+            case "desc", "descending" -> true;
+            default -> throw new IllegalArgumentException("Unsupported sort order " + key.getOrder() + " for " + key.getColumn() + ", expected asc or desc");
+        };
+    }
+
+    private static Comparator<Object[]> column(int column, Comparator<Object> values, boolean descending) {
+        Comparator<Object> directed = descending ? values.reversed() : values;
+        return (left, right) -> {
+            Object a = left[column];
+            Object b = right[column];
+            if (a == null || b == null) {
+                return a == b ? 0 : a == null ? 1 : -1;
+            }
+            return directed.compare(a, b);
+        };
+    }
+
+    /**
+     * Ascending order of the non-null values of a column of {@code sqlType}.
+     */
+    static Comparator<Object> valueOrder(int sqlType) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.FLOAT, Types.REAL,
+                    Types.DOUBLE, Types.NUMERIC, Types.DECIMAL -> typed(SortCompiler::toNumber);
+            case Types.DATE, Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> typed(SortCompiler::toDateTime);
+            default -> (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.toString(), b.toString());
+        };
+    }
+
+    /**
+     * Values of one class are compared directly, mixed classes after converting both; values that do not
+     * convert sort after those that do.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <T extends Comparable<T>> Comparator<Object> typed(Function<Object, T> convert) {
+        return (a, b) -> {
+            if (a.getClass() == b.getClass() && a instanceof Comparable) {
+                return ((Comparable) a).compareTo(b);
+            }
+            T left = convert.apply(a);
+            T right = convert.apply(b);
+            if (left == null || right == null) {
+                return left == right ? a.toString().compareTo(b.toString()) : left == null ? 1 : -1;
+            }
+            return left.compareTo(right);
+        };
+    }
+
+    /**
+     * {@code value} as a decimal, null if it is not a number.
+     */
+    static BigDecimal toNumber(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static LocalDateTime toDateTime(Object value) {
+        return CellFormatters.toLocalDateTime(value);
+    }
+}
@@ -0,0 +1,68 @@
+package dynamic_reports.pipeline;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Labels and {@link java.sql.Types} of the columns a source query returns. Unlike {@link ResultSetMetaData}
+ * it stays valid after the result set is closed, so plans can be compiled before or without a live query.
+ */
+public final class SourceColumns {
+
+    private final String[] labels;
+    private final int[] sqlTypes;
+
+    public SourceColumns(String[] labels, int[] sqlTypes) {
+        this.labels = labels;
+        this.sqlTypes = sqlTypes;
+    }
+
+    public static SourceColumns of(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            sqlTypes[i] = metaData.getColumnType(i + 1);
+        }
+        return new SourceColumns(labels, sqlTypes);
+    }
+
+    public int count() {
+        return labels.length;
+    }
+
+    /**
+     * Label of the column at the 0-based {@code index}.
+     */
+    public String label(int index) {
+        return labels[index];
+    }
+
+    public int sqlType(int index) {
+        return sqlTypes[index];
+    }
+
+    /**
+     * Every column of the current row of {@code rs}, by 0-based index.
+     */
+    public Object[] read(ResultSet rs) throws SQLException {
+        Object[] row = new Object[labels.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = rs.getObject(i + 1);
+        }
+        return row;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SourceColumns other && Arrays.equals(labels, other.labels) && Arrays.equals(sqlTypes, other.sqlTypes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(labels) + Arrays.hashCode(sqlTypes);
+    }
+}
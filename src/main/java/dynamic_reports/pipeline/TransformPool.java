@@ -0,0 +1,68 @@
+package dynamic_reports.pipeline;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The pool shared by every report for transforming large results in parallel chunks, see
+ * {@link ChunkedTransform}. A parallelism of 0 uses one thread per processor, a negative threshold keeps every
+ * report on its calling thread.
+ */
+@Slf4j
+@Component
+public class TransformPool {
+
+    private final ForkJoinPool pool;
+    private final long threshold;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+
+    public TransformPool(@Value("${reports.pipeline.parallelism:0}") int parallelism,
+            @Value("${reports.pipeline.parallel-threshold:20000}") long threshold,
+            @Value("${reports.pipeline.chunk-size:512}") int chunkSize) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = threshold >= 0 ? new ForkJoinPool(threads, transformThreads(), null, false) : null;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+        // enough chunks to keep every thread busy while the oldest one is written
+        this.maxChunksInFlight = 2 * threads;
+        if (pool != null) {
+            log.info("Reports beyond {} rows are transformed on {} threads", threshold, threads);
+        }
+    }
+
+    /**
+     * A transform for one report that writes to {@code sink}.
+     */
+    public ChunkedTransform newTransform(ProjectionPlan plan, Predicate<Object[]> rowFilter, ChunkedTransform.RowSink sink) {
+        return new ChunkedTransform(plan, rowFilter, true, sink, pool, threshold, chunkSize, maxChunksInFlight);
+    }
+
+    /**
+     * A transform that only filters, the rows reach {@code sink} with their typed source values.
+     */
+    public ChunkedTransform newFilter(ProjectionPlan plan, Predicate<Object[]> rowFilter, ChunkedTransform.RowSink sink) {
+        return new ChunkedTransform(plan, rowFilter, false, sink, pool, threshold, chunkSize, maxChunksInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ForkJoinPool.ForkJoinWorkerThreadFactory transformThreads() {
+        return pool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("report-transform-" + thread.getPoolIndex());
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package dynamic_reports.schedule;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local directory of pre-generated report files, by the hash of the configuration they were generated from. A
+ * report is written to {@code <hash>-<created>.part} and renamed to {@code <hash>-<created>} once complete,
+ * replacing the previous file of the same configuration. Files are kept for {@code reports.scheduled.retention}.
+ * The directory survives a restart: the files still within their retention are served again.
+ */
+@Slf4j
+@Component
+public class ReportStore {
+
+    private static final String PART_SUFFIX = ".part";
+    private static final Pattern FILE_NAME = Pattern.compile("([0-9a-f]{64})-(\\d+)");
+
+    private final Path directory;
+    private final Duration retention;
+    // the newest file of every configuration
+    private final Map<String, StoredReport> reports = new ConcurrentHashMap<>();
+
+    public ReportStore(@Value("${reports.scheduled.store-dir:${java.io.tmpdir}/dynamic-reports/scheduled}") String directory,
+            @Value("${reports.scheduled.retention:26h}") Duration retention) throws IOException {
+        this.directory = Files.createDirectories(Paths.get(directory)).toAbsolutePath();
+        this.retention = retention;
+        Instant now = Instant.now();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+                StoredReport stored = name.matches() ? stored(name.group(1), file, Instant.ofEpochMilli(Long.parseLong(name.group(2)))) : null;
+                if (stored == null || stored.isExpired(now)) {
+                    // parts of an interrupted run, or expired while the service was down
+                    delete(file);
+                    continue;
+                }
+                // only the newest file of a configuration is served, an older one was about to be replaced
+                StoredReport other = reports.get(stored.hash());
+                if (other == null || stored.createdAt().isAfter(other.createdAt())) {
+                    reports.put(stored.hash(), stored);
+                    if (other != null) {
+                        delete(other.file());
+                    }
+                } else {
+                    delete(file);
+                }
+            }
+        }
+        log.info("Storing pre-generated reports in {}, {} of them from earlier runs", this.directory, reports.size());
+    }
+
+    private StoredReport stored(String hash, Path file, Instant createdAt) {
+        try {
+            return new StoredReport(hash, file, Files.size(file), createdAt, createdAt.plus(retention));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The stored report of the configuration with {@code hash}, null if there is none or it has expired.
+     */
+    public StoredReport find(String hash) {
+        StoredReport stored = reports.get(hash);
+        if (stored == null || stored.isExpired(Instant.now()) || !Files.exists(stored.file())) {
+            return null;
+        }
+        return stored;
+    }
+
+    public int size() {
+        return reports.size();
+    }
+
+    Path partFile(String hash, Instant createdAt) {
+        return directory.resolve(fileName(hash, createdAt) + PART_SUFFIX);
+    }
+
+    private static String fileName(String hash, Instant createdAt) {
+        return hash + "-" + createdAt.toEpochMilli();
+    }
+
+    /**
+     * Moves the completed {@code part} file to its final name and serves it from now on, in place of an older
+     * file of the same configuration.
+     */
+    StoredReport publish(String hash, Instant created, Path part) throws IOException {
+        // as read back from the file name
+        Instant createdAt = created.truncatedTo(ChronoUnit.MILLIS);
+        Path file = Files.move(part, directory.resolve(fileName(hash, createdAt)), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        StoredReport stored = new StoredReport(hash, file, Files.size(file), createdAt, createdAt.plus(retention));
+        StoredReport previous = reports.put(hash, stored);
+        if (previous != null && !previous.file().equals(file)) {
+            // a download already streaming the old file keeps reading it from its open handle
+            delete(previous.file());
+        }
+        return stored;
+    }
+
+    /**
+     * Deletes stored reports once they are older than the retention period.
+     */
+    @Scheduled(fixedDelayString = "${reports.scheduled.cleanup-interval:PT5M}")
+    public void removeExpired() {
+        Instant now = Instant.now();
+        reports.values().removeIf(stored -> {
+            if (stored.isExpired(now)) {
+                delete(stored.file());
+                log.debug("Removed expired report {}", stored.file());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // left for the cleanup at the next startup
+            log.warn("Could not delete stored report {}", file, e);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package dynamic_reports.schedule;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.scheduling.support.CronExpression;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import dynamic_reports.dto.ReportConfig;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A report configuration generated on a cron schedule. Placeholders in its {@code spParams} and filter values
+ * are replaced by dates relative to the day of the run, formatted with its date format:
+ *
+ * <ul>
+ * <li>{@code {today}} and {@code {yesterday}}</li>
+ * <li>{@code {week.start}} and {@code {week.end}}, Monday to Sunday</li>
+ * <li>{@code {month.start}} and {@code {month.end}}</li>
+ * <li>{@code {previousMonth.start}} and {@code {previousMonth.end}}</li>
+ * </ul>
+ */
+@Getter
+public final class ScheduledReport {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([A-Za-z.]+)}");
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    private final String name;
+    private final String cron;
+    private final ZoneId zone;
+    private final String dateFormat;
+    private final ReportConfig config; // a private copy with its placeholders, never modified
+    private final Instant registeredAt = Instant.now();
+    @Getter(AccessLevel.NONE)
+    private final CronExpression cronExpression;
+    @Getter(AccessLevel.NONE)
+    private final DateTimeFormatter dateFormatter;
+
+    private volatile Instant lastRunAt;
+    private volatile String lastStatus;
+    private volatile String lastError;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean running = new AtomicBoolean();
+    @Getter(AccessLevel.NONE)
+    private volatile ScheduledFuture<?> future;
+
+    /**
+     * @throws IllegalArgumentException if the cron expression, the date format or a placeholder is invalid
+     */
+    ScheduledReport(String name, String cron, ZoneId zone, String dateFormat, ReportConfig config) {
+        this.name = name;
+        this.cron = cron;
+        this.zone = zone;
+        this.dateFormat = dateFormat;
+        this.config = MAPPER.convertValue(config, ReportConfig.class);
+        this.cronExpression = CronExpression.parse(cron);
+        this.dateFormatter = DateTimeFormatter.ofPattern(dateFormat, Locale.ROOT);
+        resolve(LocalDate.now(zone));
+    }
+
+    /**
+     * The next time the schedule fires, null if it never does again.
+     */
+    public Instant getNextRunAt() {
+        LocalDateTime next = cronExpression.next(LocalDateTime.now(zone));
+        return next == null ? null : next.atZone(zone).toInstant();
+    }
+
+    /**
+     * The configuration run on {@code day}, its placeholders replaced.
+     */
+    ReportConfig resolve(LocalDate day) {
+        ReportConfig resolved = MAPPER.convertValue(config, ReportConfig.class);
+        ReportConfig.Datasource datasource = resolved.getDatasource();
+        if (datasource.getSpParams() != null) {
+            datasource.setSpParams(resolve(datasource.getSpParams(), day));
+        }
+        if (resolved.getMeta().getFilters() != null) {
+            for (ReportConfig.Filter filter : resolved.getMeta().getFilters()) {
+                if (filter.getValue() != null) {
+                    filter.setValue(resolve(filter.getValue(), day));
+                }
+                if (filter.getValues() != null) {
+                    filter.setValues(resolve(filter.getValues(), day));
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private List<String> resolve(List<String> values, LocalDate day) {
+        List<String> resolved = new ArrayList<>(values.size());
+        for (String value : values) {
+            resolved.add(value == null ? null : resolve(value, day));
+        }
+        return resolved;
+    }
+
+    String resolve(String value, LocalDate day) {
+        Matcher placeholder = PLACEHOLDER.matcher(value);
+        return placeholder.replaceAll(match -> Matcher.quoteReplacement(dateFormatter.format(date(match.group(1), day))));
+    }
+
+    private static LocalDate date(String placeholder, LocalDate day) {
+        return switch (placeholder) {
+            case "today" -> day;
+            case "yesterday" -> day.minusDays(1);
+            case "week.start" -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case "week.end" -> day.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+            case "month.start" -> day.withDayOfMonth(1);
+            case "month.end" -> day.with(TemporalAdjusters.lastDayOfMonth());
+            case "previousMonth.start" -> day.minusMonths(1).withDayOfMonth(1);
+            case "previousMonth.end" -> day.withDayOfMonth(1).minusDays(1);
+            default -> throw new IllegalArgumentException("Unknown date placeholder {" + placeholder + "}");
+        };
+    }
+
+    /**
+     * Marks the report as running, false if a run is already in progress.
+     */
+    boolean start() {
+        return running.compareAndSet(false, true);
+    }
+
+    void finished(String status, String error) {
+        lastRunAt = Instant.now();
+        lastStatus = status;
+        lastError = error;
+        running.set(false);
+    }
+
+    void setFuture(ScheduledFuture<?> future) {
+        this.future = future;
+    }
+
+    void unschedule() {
+        ScheduledFuture<?> scheduled = future;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+}
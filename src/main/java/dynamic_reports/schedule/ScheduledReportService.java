@@ -0,0 +1,208 @@
+package dynamic_reports.schedule;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.dto.ScheduledReportConfig;
+import dynamic_reports.service.ReportAdmission;
+import dynamic_reports.service.ReportConfigHash;
+import dynamic_reports.service.ReportResult;
+import dynamic_reports.service.ReportService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates registered reports on their cron schedules, off-peak, into the {@link ReportStore}. An on-demand
+ * request whose configuration is the one a schedule generated, once its placeholders are resolved, is served the
+ * stored file without running the source again. Schedules are kept in memory, at most
+ * {@code reports.scheduled.max-schedules} of them.
+ */
+@Slf4j
+@Service
+public class ScheduledReportService {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    private static final String DEFAULT_DATE_FORMAT = "dd-MM-yyyy";
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    private final ReportService reportService;
+    private final ReportStore reportStore;
+    private final TaskScheduler taskScheduler;
+    private final ZoneId defaultZone;
+    private final int maxSchedules;
+    private final Map<String, ScheduledReport> schedules = new ConcurrentHashMap<>();
+    private final AtomicLong served = new AtomicLong();
+    // the trigger only hands the run over, a long report does not hold the shared scheduler thread
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("report-scheduled-", 0).factory());
+
+    public ScheduledReportService(ReportService reportService, ReportStore reportStore, TaskScheduler taskScheduler,
+            MeterRegistry meterRegistry,
+            @Value("${reports.scheduled.zone:}") String zone,
+            @Value("${reports.scheduled.max-schedules:100}") int maxSchedules) {
+        this.reportService = reportService;
+        this.reportStore = reportStore;
+        this.taskScheduler = taskScheduler;
+        this.defaultZone = zone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(zone);
+        this.maxSchedules = maxSchedules;
+        FunctionCounter.builder("reports.scheduled.served", served, AtomicLong::get)
+                .description("Report requests served a pre-generated file")
+                .register(meterRegistry);
+        Gauge.builder("reports.scheduled.stored", reportStore, ReportStore::size)
+                .description("Pre-generated report files in the store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers {@code scheduled} as schedule {@code name}, replacing the schedule of that name if there is one.
+     *
+     * @throws IllegalArgumentException if the schedule or its report configuration is invalid
+     */
+    public ScheduledReport register(String name, ScheduledReportConfig scheduled) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Schedule names are 1 to 64 letters, digits, '_', '.' or '-'");
+        }
+        if (scheduled == null || scheduled.getCron() == null || scheduled.getReport() == null) {
+            throw new IllegalArgumentException("A schedule needs a cron expression and a report");
+        }
+        if (!schedules.containsKey(name) && schedules.size() >= maxSchedules) {
+            throw new IllegalArgumentException("At most " + maxSchedules + " schedules can be registered");
+        }
+        ScheduledReport report;
+        try {
+            ZoneId zone = scheduled.getZone() == null || scheduled.getZone().isBlank() ? defaultZone : ZoneId.of(scheduled.getZone());
+            String dateFormat = scheduled.getDateFormat() == null || scheduled.getDateFormat().isBlank() ? DEFAULT_DATE_FORMAT
+                    : scheduled.getDateFormat();
+            reportService.validateConfig(scheduled.getReport());
+            report = new ScheduledReport(name, scheduled.getCron(), zone, dateFormat, scheduled.getReport());
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid zone or date format: " + e.getMessage(), e);
+        }
+        report.setFuture(taskScheduler.schedule(() -> executor.execute(() -> run(report)), new CronTrigger(report.getCron(), report.getZone())));
+        ScheduledReport replaced = schedules.put(name, report);
+        if (replaced != null) {
+            replaced.unschedule();
+        }
+        log.info("Scheduled report {} at \"{}\" {}, next run at {}", name, report.getCron(), report.getZone(), report.getNextRunAt());
+        return report;
+    }
+
+    public ScheduledReport get(String name) {
+        return schedules.get(name);
+    }
+
+    public List<ScheduledReport> list() {
+        return schedules.values().stream().sorted(Comparator.comparing(ScheduledReport::getName)).toList();
+    }
+
+    public boolean remove(String name) {
+        ScheduledReport removed = schedules.remove(name);
+        if (removed == null) {
+            return false;
+        }
+        removed.unschedule();
+        log.info("Removed scheduled report {}", name);
+        return true;
+    }
+
+    /**
+     * Runs the schedule now, in the background, as if it had fired.
+     *
+     * @return false if there is no such schedule
+     */
+    public boolean runNow(String name) {
+        ScheduledReport report = schedules.get(name);
+        if (report == null) {
+            return false;
+        }
+        executor.execute(() -> run(report));
+        return true;
+    }
+
+    /**
+     * The stored file generated from {@code reportConfig}, null if no schedule has generated it or it expired.
+     */
+    public StoredReport find(ReportConfig reportConfig) {
+        return reportStore.find(ReportConfigHash.of(reportConfig));
+    }
+
+    /**
+     * The file of {@code stored} opened for reading, or null if it cannot be read, e.g. because the store replaced
+     * or removed it after it was found; the report is then generated instead. Once open, the file can be read to
+     * its end even if the store deletes it. Only a request that gets the open file counts as served.
+     */
+    public InputStream open(StoredReport stored) {
+        try {
+            InputStream content = Files.newInputStream(stored.file());
+            served.incrementAndGet();
+            return content;
+        } catch (NoSuchFileException e) {
+            log.info("Pre-generated report {} was replaced or removed, generating the report", stored.file().getFileName());
+        } catch (IOException e) {
+            log.error("Could not open pre-generated report {}, generating the report", stored.file(), e);
+        }
+        return null;
+    }
+
+    void run(ScheduledReport report) {
+        if (!report.start()) {
+            log.warn("Scheduled report {} is still running, skipping this run", report.getName());
+            return;
+        }
+        ReportConfig reportConfig = report.resolve(LocalDate.now(report.getZone()));
+        String hash = ReportConfigHash.of(reportConfig);
+        Instant createdAt = Instant.now();
+        Path part = reportStore.partFile(hash, createdAt);
+        try {
+            ReportResult result;
+            try (ReportAdmission.Permit permit = reportService.admit(reportConfig);
+                    OutputStream out = new BufferedOutputStream(Files.newOutputStream(part), FILE_BUFFER_SIZE)) {
+                result = reportService.streamReport(reportConfig, out);
+            }
+            if (result.getRowsFetched() == 0) {
+                // an on-demand request gets the usual answer for an empty source
+                ReportStore.delete(part);
+                report.finished("EMPTY", null);
+                log.warn("Scheduled report {} returned no rows, nothing stored", report.getName());
+                return;
+            }
+            StoredReport stored = reportStore.publish(hash, createdAt, part);
+            report.finished("SUCCEEDED", null);
+            log.info("Scheduled report {} stored {} bytes for {}", report.getName(), stored.size(), reportConfig.getDatasource().getSpParams());
+        } catch (IOException | RuntimeException e) {
+            ReportStore.delete(part);
+            report.finished("FAILED", e.getLocalizedMessage());
+            log.error("Scheduled report {} failed", report.getName(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,23 @@
+package dynamic_reports.schedule;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * A pre-generated report file in the {@link ReportStore}.
+ *
+ * @param hash the {@link dynamic_reports.service.ReportConfigHash} of the configuration it was generated from
+ */
+public record StoredReport(String hash, Path file, long size, Instant createdAt, Instant expiresAt) {
+
+    boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+
+    /**
+     * Identifies the content of the file: a configuration is stored once per creation time, so its file name.
+     */
+    public String version() {
+        return file.getFileName().toString();
+    }
+}
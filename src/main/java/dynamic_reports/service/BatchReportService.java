@@ -0,0 +1,575 @@
+package dynamic_reports.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import dynamic_reports.cache.CachedResult;
+import dynamic_reports.dto.BatchReportConfig;
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.pipeline.SourceColumns;
+import dynamic_reports.store.ColumnBatch;
+import dynamic_reports.store.RowStore;
+import dynamic_reports.writer.ReportWriter;
+import dynamic_reports.writer.ReportWriterFactory;
+import dynamic_reports.writer.ReportWriters;
+import dynamic_reports.writer.XlsxWorkbook;
+import dynamic_reports.writer.XlsxWriterFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates several reports over one datasource with a single fetch. The source is executed once, without
+ * filter pushdown since every report filters differently, and its rows are handed in chunks to one pipeline per
+ * report. Each pipeline projects, filters, aggregates, sorts and writes its report on its own thread, so the
+ * reports are produced in parallel and the fetch only waits for the slowest of them. A cached result is read by
+ * every pipeline directly.
+ *
+ * The reports are written as the sheets of one workbook, or as files spooled to {@code reports.batch.spool-dir}
+ * and then zipped.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class BatchReportService {
+
+    public static final String XLSX = "xlsx";
+    public static final String ZIP = "zip";
+
+    private static final int CHUNK_SIZE = 512;
+    // chunks queued per pipeline, bounds the rows held for the slowest report
+    private static final int QUEUED_CHUNKS = 16;
+    private static final Object[][] END = new Object[0][];
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${reports.batch.max-reports:20}")
+    private int maxReports;
+
+    @Value("${reports.batch.spool-dir:${java.io.tmpdir}/dynamic-reports/batch}")
+    private String spoolDirectory;
+
+    private final ReportService reportService;
+    private final ReportWriters reportWriters;
+    private final XlsxWriterFactory xlsxWriterFactory;
+    private final SourceQueryFactory sourceQueryFactory;
+    private final SourceReader sourceReader;
+    private final ReportMetrics reportMetrics;
+    private final ReportAdmission reportAdmission;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("report-batch-", 0).factory());
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Throws {@link IllegalArgumentException} when the batch cannot be executed, before any bytes are committed.
+     */
+    public void validateConfig(BatchReportConfig batch) {
+        if (batch == null || batch.getDatasource() == null || batch.getReports() == null || batch.getReports().isEmpty()) {
+            throw new IllegalArgumentException("Invalid batch configuration: missing datasource or reports");
+        }
+        if (batch.getReports().size() > maxReports) {
+            throw new IllegalArgumentException("A batch holds at most " + maxReports + " reports");
+        }
+        boolean zip = isZip(batch);
+        for (ReportConfig reportConfig : reportConfigs(batch)) {
+            reportService.validateConfig(reportConfig);
+            if (!zip && !XLSX.equals(reportWriters.get(reportConfig.getFormat()).getFormat())) {
+                throw new IllegalArgumentException("Report " + reportConfig.getName() + " cannot be a sheet of a workbook, use a zip batch for "
+                        + reportConfig.getFormat());
+            }
+        }
+    }
+
+    private static boolean isZip(BatchReportConfig batch) {
+        String format = batch.getFormat() == null || batch.getFormat().isBlank() ? XLSX : batch.getFormat().trim().toLowerCase(Locale.ROOT);
+        if (!format.equals(XLSX) && !format.equals(ZIP)) {
+            throw new IllegalArgumentException("Unsupported batch format: " + batch.getFormat() + ", expected xlsx or zip");
+        }
+        return format.equals(ZIP);
+    }
+
+    /**
+     * One report configuration per entry of the batch, over the batch datasource.
+     */
+    private static List<ReportConfig> reportConfigs(BatchReportConfig batch) {
+        List<ReportConfig> reportConfigs = new ArrayList<>();
+        for (int i = 0; i < batch.getReports().size(); i++) {
+            BatchReportConfig.Report report = batch.getReports().get(i);
+            if (report == null) {
+                throw new IllegalArgumentException("Invalid batch configuration: report " + (i + 1) + " is empty");
+            }
+            ReportConfig reportConfig = new ReportConfig();
+            reportConfig.setName(report.getName() != null && !report.getName().isBlank() ? report.getName() : "report " + (i + 1));
+            reportConfig.setDatasource(batch.getDatasource());
+            reportConfig.setMeta(report.getMeta());
+            reportConfig.setFormat(report.getFormat());
+            reportConfigs.add(reportConfig);
+        }
+        return reportConfigs;
+    }
+
+    public String contentType(BatchReportConfig batch) {
+        return isZip(batch) ? "application/zip" : xlsxWriterFactory.getContentType();
+    }
+
+    public String fileName(BatchReportConfig batch) {
+        return isZip(batch) ? "reports.zip" : "reports.xlsx";
+    }
+
+    /**
+     * Reserves the estimated heap of every report of the batch, generated at the same time, see
+     * {@link ReportService#admit(ReportConfig)}.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the batch cannot be admitted in time
+     */
+    public ReportAdmission.Permit admit(BatchReportConfig batch) {
+        String source = ReportService.sourceName(batch.getDatasource());
+        SourceQuery.FetchMode fetchMode = sourceQueryFactory.fetchMode(source);
+        long estimate = 0;
+        for (ReportConfig reportConfig : reportConfigs(batch)) {
+            // the rows a buffered or cursor fetch holds are held once, for all the reports
+            estimate += reportAdmission.estimate(reportConfig, estimate == 0 ? fetchMode : SourceQuery.FetchMode.STREAMING, false);
+        }
+        return reportAdmission.admit(batch.getName() != null ? batch.getName() : source, estimate);
+    }
+
+    /**
+     * Runs every report of the batch over one fetch of its datasource and writes the workbook or zip to
+     * {@code out}. Returns the result of each report, in batch order.
+     */
+    public List<ReportResult> streamBatch(BatchReportConfig batch, OutputStream out) throws IOException {
+        return streamBatch(batch, out, new ReportCancellation());
+    }
+
+    /**
+     * {@link #streamBatch(BatchReportConfig, OutputStream)}, stopped with a {@link CancellationException} as soon as
+     * {@code cancellation} is cancelled.
+     */
+    public List<ReportResult> streamBatch(BatchReportConfig batch, OutputStream out, ReportCancellation cancellation) throws IOException {
+        validateConfig(batch);
+        ReportConfig.Datasource datasource = batch.getDatasource();
+        String source = ReportService.sourceName(datasource);
+        boolean zip = isZip(batch);
+
+        List<Pipeline> pipelines = new ArrayList<>();
+        long sourceRows;
+        XlsxWorkbook workbook = zip ? null : xlsxWriterFactory.createWorkbook();
+        try {
+            Path directory = zip ? Files.createDirectories(Paths.get(spoolDirectory)) : null;
+            for (ReportConfig reportConfig : reportConfigs(batch)) {
+                pipelines.add(zip ? new Pipeline(reportConfig, reportWriters.get(reportConfig.getFormat()), directory)
+                        : new Pipeline(reportConfig, workbook.newSheet(reportConfig.getName())));
+            }
+            sourceRows = fetch(datasource, source, pipelines, cancellation);
+            if (zip) {
+                writeZip(pipelines, out);
+            } else {
+                workbook.write(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (Pipeline pipeline : pipelines) {
+                pipeline.result.completed(-1, -1);
+                reportMetrics.recordFailure(pipeline.reportConfig.getName(), source, pipeline.result);
+            }
+            if (cancellation.isCancelled()) {
+                log.info("Batch {} cancelled: {}", batch.getName(), cancellation.getReason());
+                CancellationException cancelled = new CancellationException(cancellation.getReason());
+                if (!(e instanceof CancellationException)) {
+                    cancelled.initCause(e);
+                }
+                throw cancelled;
+            }
+            throw e;
+        } finally {
+            for (Pipeline pipeline : pipelines) {
+                pipeline.close();
+            }
+            if (workbook != null) {
+                workbook.close();
+            }
+        }
+
+        List<ReportResult> results = new ArrayList<>();
+        for (Pipeline pipeline : pipelines) {
+            pipeline.result.completed(pipeline.bytesWritten(), -1);
+            reportMetrics.recordSuccess(pipeline.reportConfig.getName(), source, pipeline.result);
+            results.add(pipeline.result);
+            log.info("Batch {} report {} wrote {} rows ({})", batch.getName(), pipeline.reportConfig.getName(),
+                    pipeline.result.getRowsWritten(), pipeline.result.getTimings().toServerTiming());
+        }
+        if (sourceRows >= 0) {
+            reportAdmission.observe(source, sourceRows);
+        }
+        log.info("Batch {} fetched {} rows{} once for {} reports", batch.getName(), results.get(0).getRowsFetched(),
+                results.get(0).isCacheHit() ? " from the cache" : "", results.size());
+        return results;
+    }
+
+    /**
+     * Hands the rows of the batch source to every pipeline. Returns how many rows the source returns, or
+     * {@link SourceReader#TRUNCATED} when every report had its rows before the result set was read to its end.
+     */
+    private long fetch(ReportConfig.Datasource datasource, String source, List<Pipeline> pipelines, ReportCancellation cancellation)
+            throws IOException {
+        // no pushdown: the reports filter differently, and the unfiltered rows are what the cache shares
+        SourceQuery sourceQuery = sourceQueryFactory.create(datasource, Map.of(), List.of());
+        FanOut rows = new FanOut(pipelines, cancellation);
+        try {
+            return sourceReader.read(source, sourceQuery, cancellation, rows);
+        } finally {
+            rows.stop();
+        }
+    }
+
+    private List<Future<?>> start(List<Pipeline> pipelines, PipelineTask task) {
+        List<Future<?>> workers = new ArrayList<>();
+        for (Pipeline pipeline : pipelines) {
+            workers.add(executor.submit(() -> {
+                task.run(pipeline);
+                return null;
+            }));
+        }
+        return workers;
+    }
+
+    private static boolean isDone(List<Pipeline> pipelines) {
+        boolean allComplete = true;
+        for (Pipeline pipeline : pipelines) {
+            if (pipeline.failed) {
+                return true;
+            }
+            allComplete &= pipeline.complete;
+        }
+        return allComplete;
+    }
+
+    private static void publish(List<Pipeline> pipelines, Object[][] chunk) throws IOException {
+        try {
+            for (Pipeline pipeline : pipelines) {
+                // a report that has its rows, or failed, only needs the end marker
+                if (chunk == END || !(pipeline.complete || pipeline.failed)) {
+                    pipeline.chunks.put(chunk);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while handing rows to the batch reports");
+        }
+    }
+
+    private static void endQuietly(List<Pipeline> pipelines) {
+        try {
+            publish(pipelines, END);
+        } catch (IOException e) {
+            log.warn("Batch reports were not all stopped", e);
+        }
+    }
+
+    /**
+     * Waits for every worker and rethrows the first failure.
+     */
+    private static void awaitAll(List<Future<?>> workers) throws IOException {
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the batch reports");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private static void awaitQuietly(List<Future<?>> workers) {
+        for (Future<?> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                // reported by awaitAll, or superseded by the failure of the fetch
+            }
+        }
+    }
+
+    private static void writeZip(List<Pipeline> pipelines, OutputStream out) throws IOException {
+        ZipOutputStream zipOut = new ZipOutputStream(out);
+        Set<String> entryNames = new HashSet<>();
+        for (Pipeline pipeline : pipelines) {
+            zipOut.putNextEntry(new ZipEntry(entryName(pipeline.reportConfig.getName(), pipeline.writerFactory.getFileExtension(), entryNames)));
+            Files.copy(pipeline.file, zipOut);
+            zipOut.closeEntry();
+        }
+        zipOut.finish();
+    }
+
+    private static String entryName(String name, String extension, Set<String> entryNames) {
+        String baseName = name.replaceAll("[\\\\/:*?\"<>|]", "_");
+        String entryName = baseName + "." + extension;
+        for (int n = 2; !entryNames.add(entryName.toLowerCase(Locale.ROOT)); n++) {
+            entryName = baseName + " (" + n + ")." + extension;
+        }
+        return entryName;
+    }
+
+    /**
+     * Hands the source rows to every pipeline in chunks, each pipeline on its own worker. A cached result is read
+     * by every pipeline directly.
+     */
+    private final class FanOut implements SourceReader.Rows {
+
+        private final List<Pipeline> pipelines;
+        private final ReportCancellation cancellation;
+        private List<Future<?>> workers = List.of();
+        private SourceColumns columns;
+        private Object[][] chunk = new Object[CHUNK_SIZE][];
+        private int size;
+        private boolean started;
+        private boolean ended;
+
+        FanOut(List<Pipeline> pipelines, ReportCancellation cancellation) {
+            this.pipelines = pipelines;
+            this.cancellation = cancellation;
+        }
+
+        @Override
+        public void readCache(CachedResult cached) throws IOException {
+            for (Pipeline pipeline : pipelines) {
+                pipeline.compile(cached.getColumns());
+            }
+            RowStore rows = cached.getRows();
+            workers = start(pipelines, pipeline -> pipeline.readCache(rows, cancellation));
+            awaitAll(workers);
+        }
+
+        @Override
+        public void open(SourceColumns columns) {
+            this.columns = columns;
+            for (Pipeline pipeline : pipelines) {
+                pipeline.compile(columns);
+            }
+            workers = start(pipelines, Pipeline::readChunks);
+            started = true;
+        }
+
+        @Override
+        public boolean isDone() {
+            // stop reading once every report has its rows or one of them failed
+            return BatchReportService.isDone(pipelines);
+        }
+
+        @Override
+        public void read(ResultSet rs, Object[] sourceRow) throws IOException, SQLException {
+            chunk[size++] = sourceRow != null ? sourceRow : columns.read(rs);
+            if (size == CHUNK_SIZE) {
+                publish(pipelines, chunk);
+                chunk = new Object[CHUNK_SIZE][];
+                size = 0;
+            }
+        }
+
+        @Override
+        public void end(boolean complete) throws IOException {
+            if (size > 0) {
+                publish(pipelines, Arrays.copyOf(chunk, size));
+            }
+            publish(pipelines, END);
+            ended = true;
+            awaitAll(workers);
+        }
+
+        /**
+         * Stops the workers of a failed fetch, which skip what is queued and stop at the end marker, and waits for
+         * every worker.
+         */
+        void stop() {
+            if (started && !ended) {
+                for (Pipeline pipeline : pipelines) {
+                    pipeline.cancel();
+                }
+                endQuietly(pipelines);
+            }
+            awaitQuietly(workers);
+        }
+    }
+
+    @FunctionalInterface
+    private interface PipelineTask {
+        void run(Pipeline pipeline) throws IOException, InterruptedException;
+    }
+
+    /**
+     * One report of a batch: its rows, writer and result, and the queue of source rows it reads from.
+     * {@link #failed}, {@link #complete} and {@link #ended} are set by the worker thread and read by the fetch.
+     */
+    private final class Pipeline {
+
+        private final ReportConfig reportConfig;
+        private final ReportWriterFactory writerFactory;
+        private final ReportResult result = new ReportResult();
+        private final BlockingQueue<Object[][]> chunks = new ArrayBlockingQueue<>(QUEUED_CHUNKS);
+        private final Path file; // the spooled file of a zip entry, null for a sheet
+        private final OutputStream fileOut;
+        private final ReportWriter writer;
+        private ProjectionPlan plan;
+        private ReportRows reportRows;
+        private long fileSize = -1;
+        private volatile boolean failed;
+        private volatile boolean complete;
+        private volatile boolean ended;
+        private volatile boolean cancelled;
+
+        Pipeline(ReportConfig reportConfig, ReportWriter sheet) {
+            this.reportConfig = reportConfig;
+            this.writerFactory = xlsxWriterFactory;
+            this.file = null;
+            this.fileOut = null;
+            this.writer = sheet;
+        }
+
+        Pipeline(ReportConfig reportConfig, ReportWriterFactory writerFactory, Path directory) throws IOException {
+            this.reportConfig = reportConfig;
+            this.writerFactory = writerFactory;
+            this.file = Files.createTempFile(directory, "batch-", "." + writerFactory.getFileExtension());
+            this.fileOut = new BufferedOutputStream(Files.newOutputStream(file), FILE_BUFFER_SIZE);
+            this.writer = writerFactory.create(fileOut);
+        }
+
+        /**
+         * Compiles the report against the source columns, on the calling thread so that an invalid
+         * configuration fails the batch before any worker starts.
+         */
+        void compile(SourceColumns columns) {
+            ReportPlan reportPlan = ReportPlan.compile(reportConfig.getMeta(), columns);
+            plan = reportPlan.getProjection();
+            reportRows = reportService.newReportRows(reportPlan, writer, result);
+        }
+
+        void readChunks() throws IOException, InterruptedException {
+            ReportTimings timings = result.getTimings();
+            try {
+                reportRows.writeHeader();
+                boolean first = true;
+                for (Object[][] chunk = take(); chunk != END; chunk = take()) {
+                    // the wait for the first rows is the query, later waits are the shared fetch
+                    timings.lap(first ? ReportTimings.Stage.QUERY : ReportTimings.Stage.FETCH);
+                    first = false;
+                    for (int i = 0; i < chunk.length && !complete && !cancelled; i++) {
+                        result.rowsFetched(1);
+                        reportRows.push(plan.project(chunk[i]));
+                        complete = reportRows.isComplete();
+                    }
+                    timings.lap(ReportTimings.Stage.TRANSFORM);
+                }
+                if (!cancelled) {
+                    finish();
+                }
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                // keep taking chunks so the fetch is never blocked on this queue
+                while (!ended) {
+                    take();
+                }
+                throw e;
+            }
+        }
+
+        private Object[][] take() throws InterruptedException {
+            Object[][] chunk = chunks.take();
+            ended = chunk == END;
+            return chunk;
+        }
+
+        void readCache(RowStore rows, ReportCancellation cancellation) throws IOException {
+            ReportTimings timings = result.getTimings();
+            reportRows.writeHeader();
+            for (int b = 0; b < rows.batchCount() && !reportRows.isComplete(); b++) {
+                cancellation.check();
+                ColumnBatch batch = rows.batch(b);
+                result.rowsFetched(batch.rowCount());
+                timings.lap(ReportTimings.Stage.FETCH);
+                reportRows.push(batch);
+                timings.lap(ReportTimings.Stage.TRANSFORM);
+            }
+            result.cacheHit();
+            finish();
+        }
+
+        private void finish() throws IOException {
+            reportRows.finish();
+            writer.finish();
+            if (fileOut != null) {
+                fileOut.close();
+                fileSize = Files.size(file);
+            }
+            result.getTimings().lap(ReportTimings.Stage.WRITE);
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        long bytesWritten() {
+            return fileSize;
+        }
+
+        void close() {
+            try {
+                if (reportRows != null) {
+                    reportRows.close();
+                }
+                writer.close();
+                if (fileOut != null) {
+                    fileOut.close();
+                }
+            } catch (IOException e) {
+                log.warn("Could not close batch report {}", reportConfig.getName(), e);
+            }
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Could not delete batch file {}", file, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dynamic_reports.service;
+
+/**
+ * A report generated in memory by {@link ReportService#generateReport}.
+ *
+ * @param content the report file, or an error message when {@code failure} is set
+ * @param result the counters and timings of the run, shared by coalesced requests, null when {@code failure} is set
+ * @param failure why no report was generated, null if it was
+ */
+public record GeneratedReport(byte[] content, ReportResult result, Failure failure) {
+
+    /**
+     * Why a report could not be generated, so the caller can answer with a matching status.
+     */
+    public enum Failure {
+        /** The configuration cannot be executed against its source. */
+        INVALID_CONFIG,
+        /** The source returned no rows. */
+        NO_DATA,
+        /** The source or the writer failed. */
+        ERROR
+    }
+
+    public GeneratedReport(byte[] content, ReportResult result) {
+        this(content, result, null);
+    }
+
+    static GeneratedReport error(Failure failure, byte[] message) {
+        return new GeneratedReport(message, null, failure);
+    }
+}
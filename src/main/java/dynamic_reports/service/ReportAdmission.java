@@ -0,0 +1,349 @@
+package dynamic_reports.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import dynamic_reports.dto.ReportConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Limits the reports generated at the same time by the heap they are estimated to need. Every report reserves
+ * its estimate against {@code reports.admission.memory-budget} before it runs and releases it when it is done; a
+ * report that does not fit waits, in arrival order, up to {@code reports.admission.max-wait}, and is rejected
+ * with a {@link RejectedExecutionException} after that or when {@code reports.admission.max-queued} reports are
+ * already waiting.
+ *
+ * At most {@code reports.admission.max-concurrent-per-report} reports of the same name run at once. A report
+ * held back by that limit does not hold back the reports queued behind it, so a burst of one report cannot
+ * take the whole budget from the others. A report larger than the whole budget runs alone.
+ *
+ * The estimate is made from the fixed columns and the rows the source returned the last time it ran, see
+ * {@link #estimate}. Published metrics: {@code reports.admission.queued}, {@code reports.admission.running},
+ * {@code reports.admission.reserved}, {@code reports.admission.wait} tagged by outcome and
+ * {@code reports.admission.rejected} tagged by reason.
+ */
+@Slf4j
+@Component
+public class ReportAdmission {
+
+    // heap of a report whatever its size: writer buffers, transform chunks, the compiled plan
+    static final long BASE_BYTES = 2L * 1024 * 1024;
+    // a row held as an Object[]: array header and one reference per column, plus the boxed value or short string
+    static final long ROW_BYTES = 16;
+    static final long CELL_BYTES = 48;
+    // an SXSSF cell in the row access window, with its value and style reference
+    static final long XLSX_WINDOW_CELL_BYTES = 100;
+    // response bytes per cell of a buffered report; ByteArrayOutputStream doubles its array and copies it once more
+    static final long TEXT_OUTPUT_CELL_BYTES = 12;
+    static final long XLSX_OUTPUT_CELL_BYTES = 6;
+    static final int OUTPUT_COPIES = 3;
+
+    private final boolean enabled;
+    private final long memoryBudget;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final int maxConcurrentPerReport;
+    private final long defaultRows;
+    private final int xlsxRowAccessWindow;
+    private final long sortMemoryBudget;
+    private final int cursorFetchSize;
+
+    // rows fetched by the last run of each source, halved towards a smaller run so one large month fades out
+    private final Map<String, Long> observedRows = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition changed = lock.newCondition();
+    private final List<Waiter> queue = new ArrayList<>(); // guarded by lock, in arrival order
+    private final Map<String, Integer> running = new HashMap<>(); // guarded by lock
+    private long reserved; // guarded by lock
+
+    private final Timer admittedWait;
+    private final Timer rejectedWait;
+    private final MeterRegistry meterRegistry;
+
+    public ReportAdmission(MeterRegistry meterRegistry,
+            @Value("${reports.admission.enabled:true}") boolean enabled,
+            @Value("${reports.admission.memory-budget:0}") DataSize memoryBudget,
+            @Value("${reports.admission.max-queued:50}") int maxQueued,
+            @Value("${reports.admission.max-wait:30s}") Duration maxWait,
+            @Value("${reports.admission.max-concurrent-per-report:2}") int maxConcurrentPerReport,
+            @Value("${reports.admission.default-rows:100000}") long defaultRows,
+            @Value("${reports.xlsx.row-access-window:500}") int xlsxRowAccessWindow,
+            @Value("${reports.sort.memory-budget:64MB}") DataSize sortMemoryBudget,
+            @Value("${reports.fetch.cursor-size:1000}") int cursorFetchSize) {
+        this.enabled = enabled;
+        // half the heap by default, the rest is left to the cache, the pool and everything else
+        this.memoryBudget = memoryBudget.toBytes() > 0 ? memoryBudget.toBytes() : Runtime.getRuntime().maxMemory() / 2;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+        this.maxConcurrentPerReport = maxConcurrentPerReport;
+        this.defaultRows = defaultRows;
+        this.xlsxRowAccessWindow = xlsxRowAccessWindow;
+        this.sortMemoryBudget = sortMemoryBudget.toBytes();
+        this.cursorFetchSize = cursorFetchSize;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("reports.admission.queued", this, ReportAdmission::getQueued)
+                .description("Reports waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder("reports.admission.running", this, ReportAdmission::getRunning)
+                .description("Reports admitted and not finished")
+                .register(meterRegistry);
+        Gauge.builder("reports.admission.reserved", this, ReportAdmission::getReserved)
+                .description("Heap reserved by the reports running, of the admission budget")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.admittedWait = waitTimer("admitted");
+        this.rejectedWait = waitTimer("rejected");
+    }
+
+    private Timer waitTimer(String outcome) {
+        return Timer.builder("reports.admission.wait")
+                .description("Time a report waited for admission")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * The estimated heap of {@code reportConfig}, fetched in {@code fetchMode}: rows held by the driver, the
+     * xlsx row access window, sorted rows or groups up to the sort budget, beyond which they spill, and the
+     * response of a {@code buffered} report, held until it is sent. A row is estimated at {@link #ROW_BYTES} plus
+     * {@link #CELL_BYTES} per fixed column, for the rows the source returned last time or
+     * {@code reports.admission.default-rows}, capped by the report's limit where the limit bounds what is held.
+     */
+    public long estimate(ReportConfig reportConfig, SourceQuery.FetchMode fetchMode, boolean buffered) {
+        ReportConfig.Meta meta = reportConfig.getMeta();
+        int columns = meta.getFixed() == null ? 0 : meta.getFixed().size();
+        long rowBytes = ROW_BYTES + columns * CELL_BYTES;
+        long rows = expectedRows(ReportService.sourceName(reportConfig.getDatasource()));
+        long written = meta.getLimit() != null ? Math.min(rows, meta.getLimit()) : rows;
+        boolean xlsx = isXlsx(reportConfig.getFormat());
+
+        long estimate = BASE_BYTES;
+        if (fetchMode == SourceQuery.FetchMode.BUFFERED) {
+            estimate += rows * rowBytes;
+        } else if (fetchMode == SourceQuery.FetchMode.CURSOR) {
+            estimate += cursorFetchSize * rowBytes;
+        }
+        if (xlsx) {
+            estimate += (long) xlsxRowAccessWindow * columns * XLSX_WINDOW_CELL_BYTES;
+        }
+        boolean sorted = meta.getSorting() != null && !meta.getSorting().isEmpty();
+        boolean aggregated = meta.getCustom() != null && !meta.getCustom().isEmpty();
+        if (sorted || aggregated) {
+            // a sorted limit keeps only the top rows, an aggregation every group of what it reads
+            estimate += Math.min((aggregated ? rows : written) * rowBytes, sortMemoryBudget);
+        }
+        if (buffered) {
+            estimate += written * columns * (xlsx ? XLSX_OUTPUT_CELL_BYTES : TEXT_OUTPUT_CELL_BYTES) * OUTPUT_COPIES;
+        }
+        return estimate;
+    }
+
+    private static boolean isXlsx(String format) {
+        return format == null || format.isBlank() || format.trim().toLowerCase(Locale.ROOT).equals("xlsx");
+    }
+
+    /**
+     * Rows {@code source} is expected to return: what it returned the last time it ran, or
+     * {@code reports.admission.default-rows} until it has.
+     */
+    public long expectedRows(String source) {
+        return observedRows.getOrDefault(source, defaultRows);
+    }
+
+    /**
+     * Records the rows a complete run of {@code source} fetched, for the estimates of its next runs.
+     */
+    public void observe(String source, long rows) {
+        if (rows >= 0) {
+            observedRows.merge(source, rows, (previous, latest) -> Math.max(latest, previous / 2));
+        }
+    }
+
+    /**
+     * Waits until {@code bytes} of the budget are free for a report named {@code report} and reserves them.
+     * Closing the permit releases them.
+     *
+     * @throws RejectedExecutionException if too many reports are waiting, or the report waited too long
+     * @throws CancellationException if the thread is interrupted while it waits
+     */
+    public Permit admit(String report, long bytes) {
+        if (!enabled) {
+            return new Permit(null, 0);
+        }
+        report = report != null ? report : "unnamed";
+        // a report larger than the budget takes all of it, and runs alone
+        Waiter waiter = new Waiter(report, Math.min(bytes, memoryBudget));
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (queue.size() >= maxQueued && !canRun(waiter)) {
+                rejected("queue-full", start);
+                throw new RejectedExecutionException("Too many reports are waiting to run, try again later");
+            }
+            queue.add(waiter);
+            try {
+                long remaining = maxWait.toNanos();
+                while (!canRun(waiter)) {
+                    if (remaining <= 0) {
+                        rejected("timeout", start);
+                        throw new RejectedExecutionException("Report " + report + " could not get the " + megabytes(waiter.bytes)
+                                + " of heap it needs within " + maxWait.toMillis() + " ms, try again later");
+                    }
+                    remaining = changed.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for admission");
+            } finally {
+                queue.remove(waiter);
+                // the reports behind it may run now
+                changed.signalAll();
+            }
+            reserved += waiter.bytes;
+            running.merge(report, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+        long waited = System.nanoTime() - start;
+        admittedWait.record(waited, TimeUnit.NANOSECONDS);
+        if (waited >= TimeUnit.SECONDS.toNanos(1)) {
+            log.info("Report {} waited {} ms for {} of heap", report, TimeUnit.NANOSECONDS.toMillis(waited), megabytes(waiter.bytes));
+        }
+        return new Permit(report, waiter.bytes);
+    }
+
+    /**
+     * Whether {@code waiter} can run now: its report is under its limit, and its bytes fit in what is left once
+     * the reports queued ahead of it that can run have taken theirs. A report ahead that waits for memory keeps
+     * the later ones from overtaking it, one that waits for its report's limit does not.
+     */
+    private boolean canRun(Waiter waiter) {
+        long free = memoryBudget - reserved;
+        Map<String, Integer> runs = new HashMap<>(running);
+        for (Waiter ahead : queue) {
+            boolean underLimit = runs.getOrDefault(ahead.report, 0) < maxConcurrentPerReport;
+            if (ahead == waiter) {
+                return underLimit && ahead.bytes <= free;
+            }
+            if (underLimit) {
+                if (ahead.bytes > free) {
+                    return false;
+                }
+                free -= ahead.bytes;
+                runs.merge(ahead.report, 1, Integer::sum);
+            }
+        }
+        // not queued yet: behind every report waiting
+        return runs.getOrDefault(waiter.report, 0) < maxConcurrentPerReport && waiter.bytes <= free;
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private void rejected(String reason, long start) {
+        rejectedWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("reports.admission.rejected", "reason", reason).increment();
+    }
+
+    private void release(Permit permit) {
+        lock.lock();
+        try {
+            reserved -= permit.bytes;
+            running.computeIfPresent(permit.report, (report, count) -> count > 1 ? count - 1 : null);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running.values().stream().mapToInt(Integer::intValue).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getReserved() {
+        lock.lock();
+        try {
+            return reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // compared by identity, two waiting reports may have the same name and estimate
+    private static final class Waiter {
+
+        final String report;
+        final long bytes;
+
+        Waiter(String report, long bytes) {
+            this.report = report;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The heap reserved for one report, released once when it is closed.
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final String report;
+        private final long bytes;
+        private boolean released;
+
+        private Permit(String report, long bytes) {
+            this.report = report;
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (released || report == null) {
+                return;
+            }
+            released = true;
+            release(this);
+        }
+    }
+}
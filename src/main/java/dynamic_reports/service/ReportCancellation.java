@@ -0,0 +1,115 @@
+package dynamic_reports.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cooperative cancellation of one report, for a client that disconnected or a job that was cancelled. The
+ * pipeline checks it between rows, and {@link #cancel(String)} also cancels the JDBC statement in flight, so the
+ * database stops executing and a streaming result set does not have to be read to its end before it can be
+ * closed.
+ */
+@Slf4j
+public final class ReportCancellation {
+
+    private volatile String reason;
+    private Statement statement; // guarded by this
+
+    public void cancel(String reason) {
+        if (this.reason != null) {
+            return;
+        }
+        this.reason = reason;
+        cancelStatement();
+    }
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * {@code out}, cancelling the report with {@code reason} when a write fails, e.g. because the client closed
+     * the connection.
+     */
+    public OutputStream cancelOnFailure(OutputStream out, String reason) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                try {
+                    out.write(b);
+                } catch (IOException e) {
+                    cancel(reason);
+                    throw e;
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                try {
+                    out.write(b, off, len);
+                } catch (IOException e) {
+                    cancel(reason);
+                    throw e;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                try {
+                    out.flush();
+                } catch (IOException e) {
+                    cancel(reason);
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * @throws CancellationException once the report is cancelled
+     */
+    void check() {
+        if (reason != null) {
+            throw new CancellationException(reason);
+        }
+    }
+
+    /**
+     * Registers the statement that produces the rows, until {@link #detach()}.
+     *
+     * @throws CancellationException if the report is already cancelled
+     */
+    synchronized void attach(Statement statement) {
+        check();
+        this.statement = statement;
+    }
+
+    synchronized void detach() {
+        statement = null;
+    }
+
+    /**
+     * Stops the statement without cancelling the report, when the rest of its rows are not needed: closing a
+     * MySQL streaming result set would otherwise read them all.
+     */
+    synchronized void cancelStatement() {
+        if (statement == null) {
+            return;
+        }
+        try {
+            statement.cancel();
+        } catch (SQLException | RuntimeException e) {
+            log.debug("Could not cancel the report statement", e);
+        }
+    }
+}
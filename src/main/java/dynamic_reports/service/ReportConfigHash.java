@@ -0,0 +1,50 @@
+package dynamic_reports.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.writer.ReportWriters;
+
+/**
+ * SHA-256 of the canonical form of a {@link ReportConfig}: two configurations hash the same when they produce
+ * the same file. Properties are serialized in a fixed order, nulls are dropped, defaults are spelled out and the
+ * report name, which only appears in logs, is left out. Map entries keep their order because the order of
+ * {@code meta.fixed} is the column order of the report.
+ */
+public final class ReportConfigHash {
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+
+    private ReportConfigHash() {
+    }
+
+    public static String of(ReportConfig reportConfig) {
+        // a normalized deep copy, the request itself is left untouched
+        ReportConfig canonical = MAPPER.convertValue(reportConfig, ReportConfig.class);
+        canonical.setName(null);
+        String format = reportConfig.getFormat();
+        canonical.setFormat(format == null || format.isBlank() ? ReportWriters.DEFAULT_FORMAT : format.trim().toLowerCase(Locale.ROOT));
+        canonical.setGzip(Boolean.TRUE.equals(reportConfig.getGzip()));
+        if (canonical.getDatasource() != null) {
+            canonical.getDatasource().setType(SourceQueryFactory.isQueryMode(canonical.getDatasource()) ? SourceQueryFactory.QUERY : "procedure");
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(MAPPER.writeValueAsBytes(canonical)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash the report configuration", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dynamic_reports.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Publishes the timings and counters of every generated report, tagged by report name and source
+ * (spName or queryName):
+ *
+ * <ul>
+ * <li>{@code reports.generation} time per report, also tagged by cache hit and outcome</li>
+ * <li>{@code reports.stage} time per report and {@link ReportTimings.Stage stage}</li>
+ * <li>{@code reports.rows.fetched} and {@code reports.rows.written}</li>
+ * <li>{@code reports.bytes.written} response bytes per report</li>
+ * <li>{@code reports.allocated} heap bytes allocated by the generating thread per report</li>
+ * </ul>
+ */
+@RequiredArgsConstructor
+@Component
+public class ReportMetrics {
+
+    private static final String UNNAMED = "unnamed";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Heap allocated so far by the current thread, -1 if the JVM does not support measuring it.
+     */
+    static long currentThreadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean allocations && allocations.isThreadAllocatedMemoryEnabled()) {
+            return allocations.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    void recordSuccess(String reportName, String source, ReportResult result) {
+        Tags tags = tags(reportName, source);
+        ReportTimings timings = result.getTimings();
+        Timer.builder("reports.generation")
+                .description("Time to generate a report")
+                .tags(tags)
+                .tag("cache", result.isCacheHit() ? "hit" : "miss")
+                .tag("outcome", "success")
+                .register(meterRegistry)
+                .record(timings.getTotal());
+        for (ReportTimings.Stage stage : ReportTimings.Stage.values()) {
+            Timer.builder("reports.stage")
+                    .description("Time spent in one stage of report generation")
+                    .tags(tags)
+                    .tag("stage", stage.key())
+                    .register(meterRegistry)
+                    .record(timings.get(stage));
+        }
+        meterRegistry.counter("reports.rows.fetched", tags).increment(result.getRowsFetched());
+        meterRegistry.counter("reports.rows.written", tags).increment(result.getRowsWritten());
+        // a sheet of a batch workbook has no size of its own
+        if (result.getBytesWritten() >= 0) {
+            DistributionSummary.builder("reports.bytes.written")
+                    .description("Bytes of a generated report")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .record(result.getBytesWritten());
+        }
+        if (result.getAllocatedBytes() >= 0) {
+            DistributionSummary.builder("reports.allocated")
+                    .description("Heap allocated by the thread generating a report")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(meterRegistry)
+                    .record(result.getAllocatedBytes());
+        }
+    }
+
+    void recordFailure(String reportName, String source, ReportResult result) {
+        Timer.builder("reports.generation")
+                .description("Time to generate a report")
+                .tags(tags(reportName, source))
+                .tag("cache", result.isCacheHit() ? "hit" : "miss")
+                .tag("outcome", "error")
+                .register(meterRegistry)
+                .record(result.getTimings().getTotal());
+    }
+
+    private static Tags tags(String reportName, String source) {
+        return Tags.of("report", reportName != null ? reportName : UNNAMED, "source", source != null ? source : UNNAMED);
+    }
+}
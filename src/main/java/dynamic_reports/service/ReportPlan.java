@@ -0,0 +1,108 @@
+package dynamic_reports.service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.pipeline.AggregationPlan;
+import dynamic_reports.pipeline.FilterCompiler;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.pipeline.SortCompiler;
+import dynamic_reports.pipeline.SourceColumns;
+
+/**
+ * The {@code meta} of a report compiled against the columns of its source: the projection, row filter, summary,
+ * sort order and partition column. Every part is immutable, so a plan compiled once for a {@link ReportTemplate}
+ * serves all of its executions.
+ */
+final class ReportPlan {
+
+    private final ReportConfig.Meta meta;
+    private final SourceColumns columns;
+    private final ProjectionPlan projection;
+    private final Predicate<Object[]> rowFilter;
+    private final AggregationPlan aggregation;
+    private final Comparator<Object[]> order;
+    private final int partitionColumn; // -1 when the report is not partitioned
+
+    private ReportPlan(ReportConfig.Meta meta, SourceColumns columns, ProjectionPlan projection, Predicate<Object[]> rowFilter,
+            AggregationPlan aggregation, Comparator<Object[]> order, int partitionColumn) {
+        this.meta = meta;
+        this.columns = columns;
+        this.projection = projection;
+        this.rowFilter = rowFilter;
+        this.aggregation = aggregation;
+        this.order = order;
+        this.partitionColumn = partitionColumn;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a column, format, filter, sort or summary of {@code meta} is invalid
+     */
+    static ReportPlan compile(ReportConfig.Meta meta, SourceColumns columns) {
+        Map<String, ReportConfig.ColumnConfig> fixedData = Optional.ofNullable(meta.getFixed()).orElse(Map.of());
+        ProjectionPlan projection = ProjectionPlan.compile(fixedData, columns);
+        AggregationPlan aggregation = AggregationPlan.compile(meta.getCustom(), meta.getGroupBy(), projection);
+        // a summary report sorts and partitions its summary rows
+        ProjectionPlan output = aggregation != null ? aggregation.getOutput() : projection;
+        Comparator<Object[]> order = SortCompiler.compile(meta.getSorting(), output);
+        int partitionColumn = -1;
+        if (meta.getPartitionBy() != null) {
+            partitionColumn = output.indexOf(meta.getPartitionBy());
+            if (partitionColumn < 0) {
+                throw new IllegalArgumentException("Partition column " + meta.getPartitionBy() + " is not a column of the report");
+            }
+        }
+        return new ReportPlan(meta, columns, projection, FilterCompiler.compile(filters(meta), projection), aggregation, order,
+                partitionColumn);
+    }
+
+    /**
+     * This plan with the filters of {@code meta} replaced by {@code filters}, only the filter is compiled again.
+     */
+    ReportPlan withFilters(List<ReportConfig.Filter> filters) {
+        return new ReportPlan(meta, columns, projection, FilterCompiler.compile(filters, projection), aggregation, order, partitionColumn);
+    }
+
+    static List<ReportConfig.Filter> filters(ReportConfig.Meta meta) {
+        return Optional.ofNullable(meta.getFilters()).orElse(List.of());
+    }
+
+    /**
+     * Whether the plan was compiled for a source returning {@code columns}.
+     */
+    boolean isCompiledFor(SourceColumns columns) {
+        return this.columns.equals(columns);
+    }
+
+    SourceColumns getSourceColumns() {
+        return columns;
+    }
+
+    ProjectionPlan getProjection() {
+        return projection;
+    }
+
+    Predicate<Object[]> getRowFilter() {
+        return rowFilter;
+    }
+
+    AggregationPlan getAggregation() {
+        return aggregation;
+    }
+
+    Comparator<Object[]> getOrder() {
+        return order;
+    }
+
+    long getLimit() {
+        return meta.getLimit() != null ? meta.getLimit() : 0;
+    }
+
+    int getPartitionColumn() {
+        return partitionColumn;
+    }
+}
@@ -0,0 +1,36 @@
+package dynamic_reports.service;
+
+import lombok.Getter;
+
+/**
+ * Row counters and timings collected while a report is generated.
+ */
+@Getter
+public class ReportResult {
+
+    private final ReportTimings timings = new ReportTimings();
+    private long rowsFetched;
+    private long rowsWritten;
+    private long bytesWritten;
+    // heap allocated by the generating thread, -1 when the JVM cannot measure it
+    private long allocatedBytes = -1;
+    private boolean cacheHit;
+
+    void rowsFetched(int count) {
+        rowsFetched += count;
+    }
+
+    void rowWritten() {
+        rowsWritten++;
+    }
+
+    void cacheHit() {
+        cacheHit = true;
+    }
+
+    void completed(long bytesWritten, long allocatedBytes) {
+        this.bytesWritten = bytesWritten;
+        this.allocatedBytes = allocatedBytes;
+        timings.stop();
+    }
+}
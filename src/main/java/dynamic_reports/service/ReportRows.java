@@ -0,0 +1,151 @@
+package dynamic_reports.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+import dynamic_reports.pipeline.AggregationPlan;
+import dynamic_reports.pipeline.ChunkedTransform;
+import dynamic_reports.pipeline.HashAggregator;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.pipeline.RowSorter;
+import dynamic_reports.pipeline.RowSorters;
+import dynamic_reports.pipeline.TransformPool;
+import dynamic_reports.store.ColumnBatch;
+import dynamic_reports.writer.ReportWriter;
+
+/**
+ * Takes the projected rows of one report through the rest of the pipeline: filtered, aggregated into summary rows
+ * when the report has custom columns, sorted when it asks for it, formatted and written, up to the row limit.
+ * Sorted and aggregated rows are formatted only once they are in order, so they work on their typed source values.
+ */
+final class ReportRows implements Closeable {
+
+    private static final Predicate<Object[]> ALL_ROWS = row -> true;
+
+    private final TransformPool transformPool;
+    private final ProjectionPlan outputPlan;
+    private final ReportResult result;
+    private final ReportTimings timings;
+    private final ReportWriter writer;
+    private final long limit;
+    private final HashAggregator aggregator;
+    private final RowSorter sorter;
+    private final ChunkedTransform input;
+    private ChunkedTransform output;
+
+    /**
+     * @param aggregation the summary of the rows, null to write the rows themselves
+     * @param order the sort order over the output rows, null to write them in source order
+     * @param limit rows written at most, 0 for all
+     */
+    ReportRows(TransformPool transformPool, RowSorters rowSorters, ProjectionPlan plan, Predicate<Object[]> rowFilter,
+            AggregationPlan aggregation, Comparator<Object[]> order, long limit, ReportWriter writer, ReportResult result) {
+        this.transformPool = transformPool;
+        ProjectionPlan rows = aggregation != null ? aggregation.getOutput() : plan;
+        boolean[] nativeFormats = writer.formatsNatively(rows.getFormats());
+        // columns the writer formats itself keep their typed values, e.g. dates for native xlsx date cells
+        this.outputPlan = rows.withoutFormats(nativeFormats);
+        this.result = result;
+        this.timings = result.getTimings();
+        this.writer = writer;
+        this.limit = limit;
+        this.aggregator = aggregation != null ? aggregation.newAggregator() : null;
+        this.sorter = order != null ? rowSorters.create(order, limit) : null;
+        if (aggregator != null) {
+            input = transformPool.newFilter(plan, rowFilter, this::aggregate);
+        } else if (sorter != null) {
+            input = transformPool.newFilter(plan, rowFilter, this::sort);
+        } else {
+            input = transformPool.newTransform(outputPlan, rowFilter, this::write);
+        }
+    }
+
+    void writeHeader() throws IOException {
+        writer.writeHeader(outputPlan.getNames());
+    }
+
+    void push(Object[] row) throws IOException {
+        input.push(row);
+    }
+
+    void push(ColumnBatch batch) throws IOException {
+        input.push(batch);
+    }
+
+    /**
+     * Whether no further row can be written, so the rest of the source need not be read.
+     */
+    boolean isComplete() {
+        return aggregator == null && sorter == null && limit > 0 && result.getRowsWritten() >= limit;
+    }
+
+    /**
+     * Writes the rows still pending, for a sorted or aggregated report all of them.
+     */
+    void finish() throws IOException {
+        input.finish();
+        if (aggregator == null && sorter == null) {
+            return;
+        }
+        timings.lap(ReportTimings.Stage.TRANSFORM);
+        output = transformPool.newTransform(outputPlan, ALL_ROWS, this::write);
+        if (aggregator != null) {
+            aggregator.drain(row -> {
+                timings.lap(ReportTimings.Stage.AGGREGATE);
+                if (sorter != null) {
+                    sorter.add(row);
+                    timings.lap(ReportTimings.Stage.SORT);
+                } else {
+                    output.push(row);
+                    timings.lap(ReportTimings.Stage.TRANSFORM);
+                }
+            });
+            timings.lap(ReportTimings.Stage.AGGREGATE);
+        }
+        if (sorter != null) {
+            sorter.drain(row -> {
+                timings.lap(ReportTimings.Stage.SORT);
+                output.push(row);
+                timings.lap(ReportTimings.Stage.TRANSFORM);
+            });
+        }
+        output.finish();
+        timings.lap(ReportTimings.Stage.TRANSFORM);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+        if (output != null) {
+            output.close();
+        }
+        if (sorter != null) {
+            sorter.close();
+        }
+    }
+
+    private void aggregate(Object[] row) {
+        timings.lap(ReportTimings.Stage.TRANSFORM);
+        aggregator.add(row);
+        timings.lap(ReportTimings.Stage.AGGREGATE);
+    }
+
+    private void sort(Object[] row) throws IOException {
+        timings.lap(ReportTimings.Stage.TRANSFORM);
+        sorter.add(row);
+        timings.lap(ReportTimings.Stage.SORT);
+    }
+
+    private void write(Object[] row) throws IOException {
+        // rows of chunks that were transformed before the limit was reached are dropped
+        if (limit > 0 && result.getRowsWritten() >= limit) {
+            return;
+        }
+        timings.lap(ReportTimings.Stage.TRANSFORM);
+        writer.writeRow(row);
+        timings.lap(ReportTimings.Stage.WRITE);
+        result.rowWritten();
+    }
+}
@@ -2,20 +2,37 @@ package dynamic_reports.service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
 
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import dynamic_reports.cache.CachedResult;
 import dynamic_reports.dto.ReportConfig;
-import dynamic_reports.dto.ReportConfig.ColumnConfig;
+import dynamic_reports.dto.ReportTemplateCall;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.pipeline.RowSorters;
+import dynamic_reports.pipeline.SourceColumns;
+import dynamic_reports.pipeline.TransformPool;
+import dynamic_reports.store.ColumnBatch;
+import dynamic_reports.store.RowStore;
+import dynamic_reports.writer.ReportWriter;
+import dynamic_reports.writer.ReportWriterFactory;
+import dynamic_reports.writer.ReportWriters;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -24,236 +41,407 @@ import lombok.extern.slf4j.Slf4j;
 @Service
 public class ReportService {
 
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final String PREVIEW_FORMAT = "json";
+
     @Value("${reports.header.outward}")
     private String outwardHeader;
     
     @Value("${reports.header.error}")
     private String errorHeader;
+
+    @Value("${reports.preview.default-rows:100}")
+    private int previewDefaultRows;
+
+    @Value("${reports.preview.max-rows:1000}")
+    private int previewMaxRows;
     
     private final JdbcTemplate jdbcTemplate;
-    
-    public byte[] generateReport(ReportConfig reportConfig) throws IOException {
-        // Validate reportConfig to ensure required parameters are provided
-        if (reportConfig == null || reportConfig.getDatasource() == null || reportConfig.getMeta() == null) {
-            log.error("Invalid report configuration: missing required fields");
-            return createErrorResponse("Invalid report configuration: missing required fields");
+    private final ReportWriters reportWriters;
+    private final SourceQueryFactory sourceQueryFactory;
+    private final SourceReader sourceReader;
+    private final TransformPool transformPool;
+    private final RowSorters rowSorters;
+    private final ReportMetrics reportMetrics;
+    private final ReportAdmission reportAdmission;
+    private final MeterRegistry meterRegistry;
+
+    // identical buffered reports requested while one is being generated share its bytes
+    private final SingleFlight<String, GeneratedReport> inFlightReports = new SingleFlight<>();
+
+    @PostConstruct
+    void registerMetrics() {
+        FunctionCounter.builder("reports.requests.coalesced", inFlightReports, SingleFlight::coalescedCount)
+                .description("Report requests served by an identical request already in flight")
+                .tag("mode", "buffered")
+                .register(meterRegistry);
+        Gauge.builder("reports.requests.in-flight", inFlightReports, SingleFlight::inFlightCount)
+                .description("Distinct buffered reports being generated")
+                .tag("mode", "buffered")
+                .register(meterRegistry);
+    }
+
+    public GeneratedReport generateReport(ReportConfig reportConfig) throws IOException {
+        if (reportConfig == null) {
+            return buildReport(null);
         }
+        return inFlightReports.execute(ReportConfigHash.of(reportConfig), () -> buildReport(reportConfig));
+    }
 
-        List<String> filterList = reportConfig.getDatasource().getSpParams();
-        String spName = reportConfig.getDatasource().getSpName();
+    private GeneratedReport buildReport(ReportConfig reportConfig) throws IOException {
+        // Validate reportConfig to ensure required parameters are provided
+        try {
+            validateConfig(reportConfig);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return GeneratedReport.error(GeneratedReport.Failure.INVALID_CONFIG, createErrorResponse(e.getMessage()));
+        }
 
-        if (filterList == null || filterList.isEmpty()) {
-            log.error("No filters provided for the stored procedure");
-            return createErrorResponse("No filters provided for the stored procedure");
+        // the whole response is held until it is sent, so the report reserves it along with its pipeline
+        try (ReportAdmission.Permit permit = admit(reportConfig, true)) {
+            return bufferReport(reportConfig);
         }
+    }
 
-        // Fetch data from stored procedure
-        List<Map<String, Object>> actualData = null;
+    private GeneratedReport bufferReport(ReportConfig reportConfig) throws IOException {
+        // The buffered mode runs the same row-at-a-time pipeline as streamReport, it only collects the output
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        ReportResult result;
         try {
-            actualData = fetchDataFromStoredProcedure(filterList, reportConfig.getName(), spName);
-        } catch (Exception e) {
+            result = streamReport(reportConfig, byteOut);
+        } catch (IllegalArgumentException e) {
+            // invalid column formats or filters, detected when the plan is compiled against the result set
+            log.error("Error compiling report columns and filters", e);
+            return GeneratedReport.error(GeneratedReport.Failure.INVALID_CONFIG, createErrorResponse("Invalid report configuration: " + e.getLocalizedMessage()));
+        } catch (DataAccessException e) {
             log.error("Error fetching data from stored procedure", e);
-            return createErrorResponse("Error fetching data from stored procedure: " + e.getLocalizedMessage());
+            return GeneratedReport.error(GeneratedReport.Failure.ERROR, createErrorResponse("Error fetching data from stored procedure: " + e.getLocalizedMessage()));
+        } catch (IOException e) {
+            log.error("Error writing report data", e);
+            return GeneratedReport.error(GeneratedReport.Failure.ERROR, createErrorResponse("Error writing report data: " + e.getLocalizedMessage()));
         }
 
         // If no data is returned, return an empty response
-        if (actualData == null || actualData.isEmpty()) {
+        if (result.getRowsFetched() == 0) {
             log.warn("No data returned from the stored procedure");
-            return createErrorResponse("No data returned from the stored procedure");
+            return GeneratedReport.error(GeneratedReport.Failure.NO_DATA, createErrorResponse("No data returned from the stored procedure"));
         }
-
-        Map<String, ReportConfig.ColumnConfig> fixedData = Optional.ofNullable(reportConfig.getMeta().getFixed()).orElse(new HashMap<>());
-        
-        List<Map<String, Object>> requiredData = new ArrayList<>();
-        
-        try {
-            processFixedData(actualData, fixedData, requiredData);
-        } catch (Exception e) {
-            log.error("Error processing fixed data", e);
-            return createErrorResponse("Error processing fixed data: " + e.getLocalizedMessage());
+        if (result.getRowsWritten() == 0) {
+            return new GeneratedReport(new byte[0], result);
         }
+        return new GeneratedReport(byteOut.toByteArray(), result);
+    }
 
-        List<ReportConfig.Filter> filters = Optional.ofNullable(reportConfig.getMeta().getFilters()).orElse(new ArrayList<>());
-        try {
-            applyFilters(requiredData, filters, fixedData);
-        } catch (Exception e) {
-            log.error("Error applying filters", e);
-            return createErrorResponse("Error applying filters: " + e.getLocalizedMessage());
+    /**
+     * Runs a preview configuration from {@link #previewConfig} into memory.
+     */
+    public GeneratedReport previewReport(ReportConfig preview) throws IOException {
+        try (ReportAdmission.Permit permit = admit(preview, true)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ReportResult result = streamReport(preview, out);
+            return new GeneratedReport(out.toByteArray(), result);
         }
+    }
 
-        // Write data to Excel
-        try {
-            return writeDataToExcel(requiredData);
-        } catch (IOException e) {
-            log.error("Error writing data to Excel", e);
-            return createErrorResponse("Error writing data to Excel: " + e.getLocalizedMessage());
+    /**
+     * Waits until the estimated heap of {@code reportConfig}, streamed to its client, fits in the admission
+     * budget and reserves it until the permit is closed. Buffered reports and previews are admitted by this
+     * service.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the report cannot be admitted in time
+     */
+    public ReportAdmission.Permit admit(ReportConfig reportConfig) {
+        return admit(reportConfig, false);
+    }
+
+    private ReportAdmission.Permit admit(ReportConfig reportConfig, boolean buffered) {
+        String source = sourceName(reportConfig.getDatasource());
+        long estimate = reportAdmission.estimate(reportConfig, sourceQueryFactory.fetchMode(source), buffered);
+        return reportAdmission.admit(reportConfig.getName() != null ? reportConfig.getName() : source, estimate);
+    }
+
+    /**
+     * The configuration of a preview of the first {@code rows} rows of the report in {@code format}, json by
+     * default: projected, filtered and formatted, in source order. Sorting, summaries and partitions need every
+     * row, a preview leaves them out. The query is cancelled as soon as the rows are written.
+     *
+     * @throws IllegalArgumentException if the preview cannot be executed
+     */
+    public ReportConfig previewConfig(ReportConfig reportConfig, Integer rows, String format) {
+        validateConfig(reportConfig);
+        int previewRows = rows != null ? rows : previewDefaultRows;
+        if (previewRows < 1 || previewRows > previewMaxRows) {
+            throw new IllegalArgumentException("A preview has between 1 and " + previewMaxRows + " rows");
         }
+        ReportConfig.Meta meta = new ReportConfig.Meta();
+        meta.setFixed(reportConfig.getMeta().getFixed());
+        meta.setFilters(reportConfig.getMeta().getFilters());
+        Integer limit = reportConfig.getMeta().getLimit();
+        meta.setLimit(limit != null ? Math.min(limit, previewRows) : previewRows);
+
+        ReportConfig preview = new ReportConfig();
+        preview.setName(reportConfig.getName() + " (preview)");
+        preview.setDatasource(reportConfig.getDatasource());
+        preview.setMeta(meta);
+        preview.setFormat(format != null && !format.isBlank() ? format : PREVIEW_FORMAT);
+        validateConfig(preview);
+        return preview;
     }
 
-    private void processFixedData(List<Map<String, Object>> actualData, Map<String, ReportConfig.ColumnConfig> fixedData, List<Map<String, Object>> requiredData) {
-        actualData.forEach(dataItem -> {
-            Map<String, Object> mapData = new LinkedHashMap<>();
-            
-            for (Entry<String, ColumnConfig> entry : fixedData.entrySet()) {
-                Integer index = entry.getValue().getMappedIndex();
-                if (index >= 0) {
-                    Object value = getDataByIndex(dataItem, index);
-                    String formattedData = formatData(value, entry.getValue().getFormat());
-
-                    mapData.put(entry.getValue().getName(), formattedData);
-                }
-            }
+    /**
+     * Runs the report and writes it to {@code out} in the requested format. Rows are read one at a time from
+     * the result set, projected by position, filtered, formatted and handed to a streaming writer, so the heap
+     * footprint does not depend on how many rows the stored procedure returns. Past
+     * {@code reports.pipeline.parallel-threshold} rows, filtering and formatting run in chunks on the
+     * {@link TransformPool} while this thread keeps reading and writing.
+     */
+    public ReportResult streamReport(ReportConfig reportConfig, OutputStream out) throws IOException {
+        return streamReport(reportConfig, out, new ReportCancellation());
+    }
 
-            if (!mapData.isEmpty()) requiredData.add(mapData);
-        });
+    /**
+     * {@link #streamReport(ReportConfig, OutputStream)}, stopped as soon as {@code cancellation} is cancelled: the
+     * query is cancelled and the pipeline throws a {@link CancellationException}.
+     */
+    public ReportResult streamReport(ReportConfig reportConfig, OutputStream out, ReportCancellation cancellation) throws IOException {
+        validateConfig(reportConfig);
+        return run(reportConfig, columns -> ReportPlan.compile(reportConfig.getMeta(), columns), out, cancellation);
     }
 
-    private static Object getDataByIndex(Map<String, Object> dataItem, int index) {
-        Iterator<Map.Entry<String, Object>> iterator = dataItem.entrySet().iterator();
-        int currentIndex = 0;
-        while (iterator.hasNext()) {
-            Map.Entry<String, Object> entry = iterator.next();
-            if (currentIndex == index) {
-                return entry.getValue(); // Return value at the given index
-            }
-            currentIndex++;
-        }
-        return null; // Return null if index is out of bounds
+    /**
+     * Runs {@code template} with the parameters and filter overrides of {@code call}, from the plan compiled when
+     * the template was registered unless the source now returns different columns.
+     */
+    public ReportResult streamTemplate(ReportTemplate template, ReportTemplateCall call, OutputStream out, ReportCancellation cancellation)
+            throws IOException {
+        ReportConfig reportConfig = template.execution(call);
+        validateConfig(reportConfig);
+        return run(reportConfig, template.planner(call), out, cancellation);
     }
 
-    private void applyFilters(List<Map<String, Object>> data, List<ReportConfig.Filter> filters,Map<String, ReportConfig.ColumnConfig> fixedData) {
-        if (filters != null) {
-            for (ReportConfig.Filter filter : filters) {
-                String column = filter.getColumn();
-                String condition = filter.getCondition();
-                String value = filter.getValue();
-               
-                for(String key : fixedData.keySet()) {
-                	if(key.equals(column)) {  // if filter column name is equal to key of the meta then only below filter will be applied
-                		String upColumn = fixedData.get(key).getName();
-                		 if (condition.equals(">")) {
-                             data.removeIf(row -> ((Comparable) row.get(upColumn)).compareTo(value) <= 0);
-                         } else if (condition.equals("<")) {
-                             data.removeIf(row -> ((Comparable) row.get(upColumn)).compareTo(value) >= 0);
-                         } else if(condition.equals("contains")) {
-                             data.removeIf(row -> ( value.contains((CharSequence) row.get(upColumn))) );
-                         }
-                	}
+    private ReportResult run(ReportConfig reportConfig, Function<SourceColumns, ReportPlan> planner, OutputStream out,
+            ReportCancellation cancellation) throws IOException {
+        String source = sourceName(reportConfig.getDatasource());
+        ReportResult result = new ReportResult();
+        long allocatedBefore = ReportMetrics.currentThreadAllocatedBytes();
+        CountingOutputStream countingOut = new CountingOutputStream(out);
+        long sourceRows;
+        try {
+            sourceRows = writeReport(reportConfig, planner, source, countingOut, result, cancellation);
+        } catch (IOException | RuntimeException e) {
+            result.completed(countingOut.getCount(), -1);
+            reportMetrics.recordFailure(reportConfig.getName(), source, result);
+            if (cancellation.isCancelled()) {
+                // the failure is the cancelled statement or the closed response
+                log.info("Report {} cancelled after {} rows: {}", reportConfig.getName(), result.getRowsFetched(), cancellation.getReason());
+                CancellationException cancelled = new CancellationException(cancellation.getReason());
+                if (!(e instanceof CancellationException)) {
+                    cancelled.initCause(e);
                 }
-              
-
-                // Filter data based on conditions
-               
+                throw cancelled;
             }
+            throw e;
         }
+        long allocatedAfter = ReportMetrics.currentThreadAllocatedBytes();
+        result.completed(countingOut.getCount(), allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1);
+        reportMetrics.recordSuccess(reportConfig.getName(), source, result);
+        if (sourceRows != SourceReader.TRUNCATED) {
+            // a limited report may stop reading early, only complete reads tell how many rows the source returns
+            reportAdmission.observe(source, sourceRows);
+        }
+
+        log.info("Report {} fetched {} rows{}, wrote {} rows, {} bytes ({})", reportConfig.getName(), result.getRowsFetched(),
+                result.isCacheHit() ? " from the cache" : "", result.getRowsWritten(), result.getBytesWritten(),
+                result.getTimings().toServerTiming());
+        return result;
     }
 
-    private byte[] createErrorResponse(String errorMessage) {
-        return ("Error: " + errorMessage).getBytes(StandardCharsets.UTF_8);
+    /**
+     * Writes the report and returns how many rows its source returns, {@link SourceReader#TRUNCATED} if the report
+     * stopped reading early.
+     */
+    private long writeReport(ReportConfig reportConfig, Function<SourceColumns, ReportPlan> planner, String source, OutputStream out,
+            ReportResult result, ReportCancellation cancellation) throws IOException {
+        ReportWriterFactory writerFactory = reportWriters.get(reportConfig.getFormat());
+
+        Map<String, ReportConfig.ColumnConfig> fixedData = Optional.ofNullable(reportConfig.getMeta().getFixed()).orElse(new LinkedHashMap<>());
+        List<ReportConfig.Filter> filters = ReportPlan.filters(reportConfig.getMeta());
+        SourceQuery sourceQuery = sourceQueryFactory.create(reportConfig.getDatasource(), fixedData, filters);
+
+        long sourceRows;
+        GZIPOutputStream gzipOut = isGzip(reportConfig) ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : null;
+        try (ReportWriter writer = writerFactory.create(gzipOut != null ? gzipOut : out)) {
+            try (ReportReader rows = new ReportReader(planner, writer, result, cancellation)) {
+                sourceRows = sourceReader.read(source, sourceQuery, cancellation, rows);
+            }
+            writer.finish();
+        }
+        if (gzipOut != null) {
+            gzipOut.finish();
+        }
+        result.getTimings().lap(ReportTimings.Stage.WRITE);
+        return sourceRows;
     }
 
-    public List<Map<String, Object>> fetchDataFromStoredProcedure(List<String> filterList, String reportName, String spName) throws Exception {
-        StringBuilder spParams = new StringBuilder();
-        for (String s : filterList) {
-            spParams.append("'").append(s).append("',");
+    ReportRows newReportRows(ReportPlan plan, ReportWriter writer, ReportResult result) {
+        if (plan.getPartitionColumn() >= 0) {
+            writer.partitionBy(plan.getPartitionColumn());
         }
-        String params = spParams.toString();
-        params = params.substring(0, params.length() - 1);
+        return new ReportRows(transformPool, rowSorters, plan.getProjection(), plan.getRowFilter(), plan.getAggregation(),
+                plan.getOrder(), plan.getLimit(), writer, result);
+    }
 
-        String storedProcCall = "CALL `" + spName + "`(" + params + ")";
+    /**
+     * Plans a report against the columns of its source and pushes the source rows through it, on the thread that
+     * reads them.
+     */
+    private final class ReportReader implements SourceReader.Rows, AutoCloseable {
+
+        private final Function<SourceColumns, ReportPlan> planner;
+        private final ReportWriter writer;
+        private final ReportResult result;
+        private final ReportTimings timings;
+        private final ReportCancellation cancellation;
+        private ProjectionPlan plan;
+        private ReportRows reportRows;
+
+        ReportReader(Function<SourceColumns, ReportPlan> planner, ReportWriter writer, ReportResult result, ReportCancellation cancellation) {
+            this.planner = planner;
+            this.writer = writer;
+            this.result = result;
+            this.timings = result.getTimings();
+            this.cancellation = cancellation;
+        }
 
-        try {
-            return jdbcTemplate.queryForList(storedProcCall);
-        } catch (Exception e) {
-            throw new Exception("Error executing stored procedure: " + e.getMessage());
+        private void start(SourceColumns columns) throws IOException {
+            // Resolve the mapped indexes once per query, every row is then read by position
+            ReportPlan reportPlan = planner.apply(columns);
+            plan = reportPlan.getProjection();
+            reportRows = newReportRows(reportPlan, writer, result);
+            reportRows.writeHeader();
         }
-    }
 
-    public String formatData(Object data, String format) {
-        if (format == null) return String.valueOf(data);
-
-        String formattedData = null;
-
-        if (format.contains("dd") && format.contains("MM")) {
-            // Case 1: If data is already a String, parse it into Date and reformat
-            if (data instanceof String) {
-                String dateString = (String) data;
-                try {
-                    SimpleDateFormat sdfInput = new SimpleDateFormat("dd/MM/yyyy", Locale.ROOT);
-                    Date parsedDate = sdfInput.parse(dateString);  // Parse string to Date
-                    SimpleDateFormat sdfOutput = new SimpleDateFormat(format, Locale.ROOT);
-                    formattedData = sdfOutput.format(parsedDate);  // Format Date to the desired output
-                } catch (ParseException e) {
-                    formattedData = (String) data;  // Return original if parsing fails
-                }
-            } else if (data instanceof Date) {
-                SimpleDateFormat sdfOutput = new SimpleDateFormat(format, Locale.ROOT);
-                formattedData = sdfOutput.format((Date) data);
+        @Override
+        public void readCache(CachedResult cached) throws IOException {
+            timings.lap(ReportTimings.Stage.FETCH);
+            start(cached.getColumns());
+            RowStore rows = cached.getRows();
+            for (int b = 0; b < rows.batchCount() && !reportRows.isComplete(); b++) {
+                cancellation.check();
+                ColumnBatch batch = rows.batch(b);
+                result.rowsFetched(batch.rowCount());
+                reportRows.push(batch);
+                timings.lap(ReportTimings.Stage.TRANSFORM);
             }
-            return formattedData;
+            reportRows.finish();
+            result.cacheHit();
         }
 
-        switch (format.toLowerCase()) {
-            case "uppercase":
-                if (data instanceof String) {
-                    formattedData = ((String) data).toUpperCase(Locale.ROOT);
-                }
-                break;
-            case "lowercase":
-                if (data instanceof String) {
-                    formattedData = ((String) data).toLowerCase(Locale.ROOT);
-                }
-                break;
-            case "sentencecase":
-                if (data instanceof String) {
-                    String str = (String) data;
-                    formattedData = str.substring(0, 1).toUpperCase(Locale.ROOT) + str.substring(1).toLowerCase(Locale.ROOT);
-                }
-                break;
-            default:
-                formattedData = (String) data;
-                break;
+        @Override
+        public void open(SourceColumns columns) throws IOException {
+            timings.lap(ReportTimings.Stage.QUERY);
+            start(columns);
         }
 
-        return formattedData;
-    }
+        @Override
+        public boolean isDone() {
+            // a limited, unsorted report stops reading once enough rows are written, without waiting for another
+            return reportRows.isComplete();
+        }
 
-    public byte[] writeDataToExcel(List<Map<String, Object>> data) throws IOException {
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("report");
+        @Override
+        public void read(ResultSet rs, Object[] sourceRow) throws IOException, SQLException {
+            Object[] row = sourceRow != null ? plan.project(sourceRow) : plan.project(rs);
+            result.rowsFetched(1);
+            timings.lap(ReportTimings.Stage.FETCH);
+            reportRows.push(row);
+            timings.lap(ReportTimings.Stage.TRANSFORM);
+        }
 
-        if (data == null || data.isEmpty()) {
-            workbook.close();
-            return new byte[0];
+        @Override
+        public void end(boolean complete) throws IOException {
+            reportRows.finish();
+            timings.lap(ReportTimings.Stage.FETCH);
         }
 
-        // Create header row
-        Row headerRow = sheet.createRow(0);
-        Map<String, Object> headerMap = data.get(0);
-        String[] headers = headerMap.keySet().toArray(new String[0]);
-        
-        for (int i = 0; i < headers.length; i++) {
-            Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
+        @Override
+        public void close() throws IOException {
+            if (reportRows != null) {
+                reportRows.close();
+            }
         }
+    }
 
-        // Create data rows
-        int rowIndex = 1;
-        for (Map<String, Object> rowData : data) {
-            Row row = sheet.createRow(rowIndex++);
-            for (int i = 0; i < headers.length; i++) {
-                Cell cell = row.createCell(i);
-                Object value = rowData.get(headers[i]);
-                if (value != null) {
-                    cell.setCellValue(value.toString());
-                }
+    static String sourceName(ReportConfig.Datasource datasource) {
+        return SourceQueryFactory.isQueryMode(datasource) ? datasource.getQueryName() : datasource.getSpName();
+    }
+
+    /**
+     * Content type of the response for {@code reportConfig}.
+     */
+    public String contentType(ReportConfig reportConfig) {
+        return isGzip(reportConfig) ? "application/gzip" : reportWriters.get(reportConfig.getFormat()).getContentType();
+    }
+
+    /**
+     * Download file name for {@code reportConfig}, e.g. report.csv or report.csv.gz.
+     */
+    public String fileName(ReportConfig reportConfig) {
+        String fileName = "report." + reportWriters.get(reportConfig.getFormat()).getFileExtension();
+        return isGzip(reportConfig) ? fileName + ".gz" : fileName;
+    }
+
+    /**
+     * Whether a report of {@code reportConfig} gets smaller when compressed for transfer: not if its format is
+     * already compressed or the file is gzipped.
+     */
+    public boolean isCompressible(ReportConfig reportConfig) {
+        return !isGzip(reportConfig) && reportWriters.get(reportConfig.getFormat()).isCompressible();
+    }
+
+    private static boolean isGzip(ReportConfig reportConfig) {
+        return Boolean.TRUE.equals(reportConfig.getGzip());
+    }
+
+    /**
+     * Throws {@link IllegalArgumentException} when the configuration cannot be executed. Callers that stream
+     * the response use this to reject a request before any bytes are committed.
+     */
+    public void validateConfig(ReportConfig reportConfig) {
+        if (reportConfig == null || reportConfig.getDatasource() == null || reportConfig.getMeta() == null) {
+            throw new IllegalArgumentException("Invalid report configuration: missing required fields");
+        }
+        if (SourceQueryFactory.isQueryMode(reportConfig.getDatasource())) {
+            if (reportConfig.getDatasource().getQueryName() == null) {
+                throw new IllegalArgumentException("No queryName provided for the query datasource");
+            }
+        } else {
+            SourceQuery.validateProcedureName(reportConfig.getDatasource().getSpName());
+            List<String> filterList = reportConfig.getDatasource().getSpParams();
+            if (filterList == null || filterList.isEmpty()) {
+                throw new IllegalArgumentException("No filters provided for the stored procedure");
             }
         }
+        if (reportConfig.getMeta().getLimit() != null && reportConfig.getMeta().getLimit() < 1) {
+            throw new IllegalArgumentException("The row limit must be positive");
+        }
+        ReportWriterFactory writerFactory = reportWriters.get(reportConfig.getFormat());
+        if (reportConfig.getMeta().getPartitionBy() != null && !writerFactory.getFormat().equals(ReportWriters.DEFAULT_FORMAT)) {
+            throw new IllegalArgumentException("Only xlsx reports can be partitioned into sheets");
+        }
+    }
 
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        workbook.write(byteOut);
-        workbook.close();
+    private byte[] createErrorResponse(String errorMessage) {
+        return ("Error: " + errorMessage).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public List<Map<String, Object>> fetchDataFromStoredProcedure(List<String> filterList, String reportName, String spName) throws Exception {
+        SourceQuery storedProcCall = SourceQuery.call(spName, filterList);
 
-        return byteOut.toByteArray();
+        try {
+            return jdbcTemplate.query(storedProcCall.buffered(), new ColumnMapRowMapper());
+        } catch (Exception e) {
+            throw new Exception("Error executing stored procedure: " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,128 @@
+package dynamic_reports.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.dto.ReportTemplateCall;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.pipeline.SourceColumns;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A report configuration registered under a name, validated against the columns of its source and compiled once.
+ * A call only supplies the source parameters and filter overrides, the columns, formats, summary and sort order
+ * of the compiled plan are reused.
+ */
+@Slf4j
+@Getter
+public final class ReportTemplate {
+
+    private final String name;
+    private final ReportConfig config; // a private copy, never modified
+    private final String source;
+    private final Instant registeredAt = Instant.now();
+    @Getter(AccessLevel.NONE)
+    private final ReportPlan plan;
+
+    ReportTemplate(String name, ReportConfig config, ReportPlan plan) {
+        this.name = name;
+        this.config = config;
+        this.source = ReportService.sourceName(config.getDatasource());
+        this.plan = plan;
+    }
+
+    public List<String> getColumns() {
+        return List.of(plan.getProjection().getNames());
+    }
+
+    public int getSourceColumnCount() {
+        return plan.getSourceColumns().count();
+    }
+
+    /**
+     * The configuration {@code call} runs: this template with the call's parameters and merged filters.
+     */
+    ReportConfig execution(ReportTemplateCall call) {
+        ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+        datasource.setType(config.getDatasource().getType());
+        datasource.setSpName(config.getDatasource().getSpName());
+        datasource.setQueryName(config.getDatasource().getQueryName());
+        datasource.setSpParams(call.getSpParams() != null ? List.copyOf(call.getSpParams()) : config.getDatasource().getSpParams());
+
+        ReportConfig.Meta templateMeta = config.getMeta();
+        ReportConfig.Meta meta = new ReportConfig.Meta();
+        meta.setFixed(templateMeta.getFixed());
+        meta.setCustom(templateMeta.getCustom());
+        meta.setGroupBy(templateMeta.getGroupBy());
+        meta.setFilters(mergeFilters(call.getFilters()));
+        meta.setSorting(templateMeta.getSorting());
+        meta.setLimit(templateMeta.getLimit());
+        meta.setPartitionBy(templateMeta.getPartitionBy());
+
+        ReportConfig reportConfig = new ReportConfig();
+        reportConfig.setName(call.getName() != null && !call.getName().isBlank() ? call.getName() : name);
+        reportConfig.setDatasource(datasource);
+        reportConfig.setMeta(meta);
+        reportConfig.setFormat(config.getFormat());
+        reportConfig.setGzip(config.getGzip());
+        return reportConfig;
+    }
+
+    /**
+     * The plan of {@code call} for the columns its source returns. The filter overrides are compiled here, so an
+     * invalid one fails before the source runs.
+     *
+     * @throws IllegalArgumentException if a filter override is invalid
+     */
+    Function<SourceColumns, ReportPlan> planner(ReportTemplateCall call) {
+        boolean overridden = call.getFilters() != null && !call.getFilters().isEmpty();
+        List<ReportConfig.Filter> filters = overridden ? mergeFilters(call.getFilters()) : null;
+        ReportPlan callPlan = overridden ? plan.withFilters(filters) : plan;
+        return columns -> {
+            if (callPlan.isCompiledFor(columns)) {
+                return callPlan;
+            }
+            // the source changed its columns since the template was registered
+            log.warn("Source {} of template {} returns other columns than when it was registered, compiling it again", source, name);
+            ReportPlan compiled = ReportPlan.compile(config.getMeta(), columns);
+            return overridden ? compiled.withFilters(filters) : compiled;
+        };
+    }
+
+    /**
+     * {@code overrides} replace the template filters on the same columns, by key or name, the others are kept.
+     *
+     * @throws IllegalArgumentException if an override is on a column the report does not have
+     */
+    private List<ReportConfig.Filter> mergeFilters(List<ReportConfig.Filter> overrides) {
+        List<ReportConfig.Filter> filters = ReportPlan.filters(config.getMeta());
+        if (overrides == null || overrides.isEmpty()) {
+            return filters;
+        }
+        ProjectionPlan projection = plan.getProjection();
+        Set<Integer> replaced = new HashSet<>();
+        for (ReportConfig.Filter override : overrides) {
+            int column = override == null ? -1 : projection.indexOf(override.getColumn());
+            if (column < 0) {
+                throw new IllegalArgumentException("Filter override on " + (override == null ? null : override.getColumn())
+                        + " is not a column of template " + name);
+            }
+            replaced.add(column);
+        }
+        List<ReportConfig.Filter> merged = new ArrayList<>();
+        for (ReportConfig.Filter filter : filters) {
+            if (!replaced.contains(projection.indexOf(filter.getColumn()))) {
+                merged.add(filter);
+            }
+        }
+        merged.addAll(overrides);
+        return merged;
+    }
+}
@@ -0,0 +1,104 @@
+package dynamic_reports.service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.dto.ReportTemplateCall;
+import dynamic_reports.pipeline.SourceColumns;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Report templates registered by name. A template is validated and compiled against the columns of its source
+ * when it is registered, so calls skip both. Templates are kept in memory, at most
+ * {@code reports.templates.max-templates} of them.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class ReportTemplateService {
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    private static final ObjectMapper MAPPER = JsonMapper.builder().build();
+
+    private final ReportService reportService;
+    private final SourceQueryFactory sourceQueryFactory;
+
+    @Value("${reports.templates.max-templates:100}")
+    private int maxTemplates;
+
+    private final Map<String, ReportTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Registers {@code reportConfig} as template {@code name}, replacing the template of that name if there is
+     * one. The source is described with the {@code spParams} of the configuration, which are also the default
+     * parameters of calls.
+     *
+     * @throws IllegalArgumentException if the configuration is invalid or does not compile against its source
+     */
+    public ReportTemplate register(String name, ReportConfig reportConfig) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Template names are 1 to 64 letters, digits, '_', '.' or '-'");
+        }
+        reportService.validateConfig(reportConfig);
+        if (!templates.containsKey(name) && templates.size() >= maxTemplates) {
+            throw new IllegalArgumentException("At most " + maxTemplates + " templates can be registered");
+        }
+        // the caller keeps its instance, the template must not change with it
+        ReportConfig config = MAPPER.convertValue(reportConfig, ReportConfig.class);
+        SourceColumns columns;
+        try {
+            columns = sourceQueryFactory.columns(config.getDatasource());
+        } catch (DataAccessException e) {
+            throw new IllegalArgumentException("Could not read the columns of " + ReportService.sourceName(config.getDatasource()) + ": "
+                    + e.getMostSpecificCause().getMessage(), e);
+        }
+        ReportTemplate template = new ReportTemplate(name, config, ReportPlan.compile(config.getMeta(), columns));
+        templates.put(name, template);
+        log.info("Registered report template {} over {} with {} columns", name, template.getSource(), template.getColumns().size());
+        return template;
+    }
+
+    public ReportTemplate get(String name) {
+        return templates.get(name);
+    }
+
+    public List<ReportTemplate> list() {
+        return templates.values().stream().sorted(Comparator.comparing(ReportTemplate::getName)).toList();
+    }
+
+    public boolean remove(String name) {
+        boolean removed = templates.remove(name) != null;
+        if (removed) {
+            log.info("Removed report template {}", name);
+        }
+        return removed;
+    }
+
+    /**
+     * Throws {@link IllegalArgumentException} when {@code call} cannot be executed, before any bytes are committed.
+     */
+    public void validateCall(ReportTemplate template, ReportTemplateCall call) {
+        reportService.validateConfig(template.execution(call));
+        template.planner(call);
+    }
+
+    public String contentType(ReportTemplate template) {
+        return reportService.contentType(template.getConfig());
+    }
+
+    public String fileName(ReportTemplate template) {
+        return reportService.fileName(template.getConfig());
+    }
+}
@@ -0,0 +1,86 @@
+package dynamic_reports.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Wall-clock time of one report split by pipeline stage, measured on the thread that reads and writes the rows.
+ * Stages interleave row by row, so each {@link #lap(Stage)} charges the time since the previous lap to a stage.
+ * When rows are transformed on the {@code TransformPool}, the transform stage is the time spent waiting for
+ * chunks rather than the CPU time of the pool threads.
+ */
+public final class ReportTimings {
+
+    public enum Stage {
+        /** Preparing and executing the statement until the first result is available. */
+        QUERY,
+        /** Reading rows from the result set or the result cache. */
+        FETCH,
+        /** Projecting, filtering and formatting rows. */
+        TRANSFORM,
+        /** Adding rows to the groups of a summary report and computing their aggregates. */
+        AGGREGATE,
+        /** Ordering the rows of a sorted report, including spilling and merging sorted runs. */
+        SORT,
+        /** Encoding rows in the output format and compressing them. */
+        WRITE;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final long[] nanos = new long[Stage.values().length];
+    private final long start = System.nanoTime();
+    private long last = start;
+    private long totalNanos = -1;
+
+    void lap(Stage stage) {
+        long now = System.nanoTime();
+        nanos[stage.ordinal()] += now - last;
+        last = now;
+    }
+
+    void stop() {
+        totalNanos = last - start;
+    }
+
+    public Duration get(Stage stage) {
+        return Duration.ofNanos(nanos[stage.ordinal()]);
+    }
+
+    public Duration getTotal() {
+        return Duration.ofNanos(totalNanos >= 0 ? totalNanos : System.nanoTime() - start);
+    }
+
+    /**
+     * Milliseconds per stage and in total, in pipeline order.
+     */
+    public Map<String, Long> toMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            millis.put(stage.key(), get(stage).toMillis());
+        }
+        millis.put("total", getTotal().toMillis());
+        return millis;
+    }
+
+    /**
+     * The timings as a {@code Server-Timing} header value, e.g. {@code query;dur=12.5, fetch;dur=310.2, ...}.
+     */
+    public String toServerTiming() {
+        StringJoiner header = new StringJoiner(", ");
+        for (Stage stage : Stage.values()) {
+            header.add(metric(stage.key(), nanos[stage.ordinal()]));
+        }
+        header.add(metric("total", getTotal().toNanos()));
+        return header.toString();
+    }
+
+    private static String metric(String name, long nanos) {
+        return String.format(Locale.ROOT, "%s;dur=%.1f", name, nanos / 1_000_000.0);
+    }
+}
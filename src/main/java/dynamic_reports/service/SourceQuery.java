@@ -0,0 +1,147 @@
+package dynamic_reports.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+import lombok.Getter;
+
+/**
+ * The parameterised statement that produces the rows of a report: a stored procedure call or a named query.
+ * Values are always bound, never concatenated, so the driver and server can reuse the parsed statement.
+ */
+@Getter
+public final class SourceQuery {
+
+    /**
+     * How the rows are transferred from the database.
+     */
+    public enum FetchMode {
+        /** Row by row as the report reads them; on MySQL the connection is busy until the last row is read. */
+        STREAMING,
+        /** In blocks of the fetch size from a server-side cursor; MySQL needs {@code useCursorFetch=true}. */
+        CURSOR,
+        /** The whole result is read into the driver before the first row is returned. */
+        BUFFERED;
+
+        public static FetchMode parse(String mode) {
+            try {
+                return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported fetch mode " + mode + ", expected streaming, cursor or buffered");
+            }
+        }
+    }
+
+    private static final int FETCH_SIZE = 1000;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z0-9_$]+");
+
+    private final String sql;
+    private final List<Object> params;
+    private final boolean callable;
+    private final FetchMode fetchMode;
+    private final int fetchSize;
+    private final Duration timeout; // zero for none
+
+    SourceQuery(String sql, List<Object> params, boolean callable) {
+        this(sql, params, callable, FetchMode.STREAMING, FETCH_SIZE, Duration.ZERO);
+    }
+
+    private SourceQuery(String sql, List<Object> params, boolean callable, FetchMode fetchMode, int fetchSize, Duration timeout) {
+        this.sql = sql;
+        this.params = List.copyOf(params);
+        this.callable = callable;
+        this.fetchMode = fetchMode;
+        this.fetchSize = fetchSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * This query fetched in {@code fetchMode}, with {@code fetchSize} rows per cursor fetch, and cancelled by the
+     * driver when it runs longer than {@code timeout}.
+     */
+    public SourceQuery fetching(FetchMode fetchMode, int fetchSize, Duration timeout) {
+        return new SourceQuery(sql, params, callable, fetchMode, fetchSize, timeout);
+    }
+
+    /**
+     * {@code {call `spName`(?, ?, ...)}} with one bound parameter per value.
+     *
+     * @throws IllegalArgumentException if {@code spName} is not a plain identifier
+     */
+    public static SourceQuery call(String spName, List<String> spParams) {
+        validateProcedureName(spName);
+        StringBuilder sql = new StringBuilder("{call `").append(spName).append("`(");
+        for (int i = 0; i < spParams.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")}");
+        return new SourceQuery(sql.toString(), List.copyOf(spParams), true);
+    }
+
+    public static void validateProcedureName(String spName) {
+        if (spName == null || !IDENTIFIER.matcher(spName).matches()) {
+            throw new IllegalArgumentException("Invalid stored procedure name: " + spName);
+        }
+    }
+
+    /**
+     * A forward-only, read-only statement in the fetch mode of this query, registered with {@code cancellation}
+     * so it can be cancelled while it runs. MySQL only streams the rows when the fetch size is Integer.MIN_VALUE,
+     * otherwise Connector/J buffers the whole result before the first row is returned. Other drivers reject that
+     * value and get a regular fetch size.
+     */
+    public PreparedStatementCreator statement(ReportCancellation cancellation) {
+        return con -> {
+            PreparedStatement ps = prepare(con);
+            boolean mysql = con.getMetaData().getDatabaseProductName().toLowerCase(Locale.ROOT).contains("mysql");
+            switch (fetchMode) {
+                case STREAMING -> ps.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+                case CURSOR -> ps.setFetchSize(fetchSize);
+                case BUFFERED -> {
+                    // the driver's default, the whole result
+                }
+            }
+            if (timeout.isPositive()) {
+                // seconds, at least one
+                ps.setQueryTimeout((int) Math.max(1, Math.min(Integer.MAX_VALUE, timeout.toSeconds())));
+            }
+            try {
+                cancellation.attach(ps);
+            } catch (RuntimeException e) {
+                ps.close();
+                throw e;
+            }
+            return ps;
+        };
+    }
+
+    /**
+     * A statement that returns the whole result at once, for callers that collect every row anyway.
+     */
+    public PreparedStatementCreator buffered() {
+        return this::prepare;
+    }
+
+    private PreparedStatement prepare(Connection con) throws SQLException {
+        PreparedStatement ps = callable
+                ? con.prepareCall(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)
+                : con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        for (int i = 0; i < params.size(); i++) {
+            ps.setObject(i + 1, params.get(i));
+        }
+        return ps;
+    }
+
+    @Override
+    public String toString() {
+        return sql + " " + params;
+    }
+}
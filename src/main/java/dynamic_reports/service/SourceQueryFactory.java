@@ -0,0 +1,230 @@
+package dynamic_reports.service;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.pipeline.FilterCompiler;
+import dynamic_reports.pipeline.FilterCompiler.ResolvedFilter;
+import dynamic_reports.pipeline.FilterCompiler.ValueType;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.pipeline.SourceColumns;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Builds the {@link SourceQuery} for a report datasource.
+ *
+ * In the default "procedure" mode the stored procedure is called with bound parameters. In "query" mode the
+ * SQL comes from {@code reports.query.<queryName>}, with {@code spParams} bound to its placeholders, and every
+ * filter the database can evaluate with the same result is pushed into a WHERE clause around it, so rows the
+ * report would drop are never fetched. The in-memory filter chain still runs on what comes back.
+ *
+ * How the rows are fetched and how long the query may run are set per report source, the stored procedure or
+ * query name: {@code reports.fetch.mode.<source>} and {@code reports.fetch.timeout.<source>}, or the defaults.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class SourceQueryFactory {
+
+    public static final String QUERY = "query";
+
+    private static final Set<String> PUSHABLE_ORDERING = Set.of(">", ">=", "<", "<=", "=", "==", "!=", "<>", "in", "between");
+    private static final Set<String> PUSHABLE_TEXT = Set.of("=", "==", "in", "startswith", "endswith", "contains");
+
+    private final Environment environment;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${reports.fetch.default-mode:streaming}")
+    private String defaultFetchMode;
+
+    @Value("${reports.fetch.cursor-size:1000}")
+    private int cursorFetchSize;
+
+    @Value("${reports.fetch.default-timeout:0}")
+    private Duration defaultTimeout;
+
+    // the columns of a named query only depend on its SQL, so they are probed once
+    private final Map<String, SourceColumns> queryColumns = new ConcurrentHashMap<>();
+
+    public static boolean isQueryMode(ReportConfig.Datasource datasource) {
+        return datasource.getType() != null && datasource.getType().trim().equalsIgnoreCase(QUERY);
+    }
+
+    public SourceQuery create(ReportConfig.Datasource datasource, Map<String, ReportConfig.ColumnConfig> fixedData, List<ReportConfig.Filter> filters) {
+        String source = isQueryMode(datasource) ? datasource.getQueryName() : datasource.getSpName();
+        return query(datasource, fixedData, filters).fetching(fetchMode(source), cursorFetchSize, timeout(source));
+    }
+
+    /**
+     * The columns the source of {@code datasource} returns for its {@code spParams}. A stored procedure is
+     * described by the driver when it can, otherwise it is run and cancelled once its result set is open.
+     */
+    public SourceColumns columns(ReportConfig.Datasource datasource) {
+        List<String> spParams = datasource.getSpParams() == null ? List.of() : datasource.getSpParams();
+        if (isQueryMode(datasource)) {
+            String sql = namedQuery(datasource.getQueryName());
+            return queryColumns.computeIfAbsent(datasource.getQueryName(), name -> probe(sql, spParams));
+        }
+        String source = datasource.getSpName();
+        SourceQuery call = SourceQuery.call(source, spParams).fetching(fetchMode(source), cursorFetchSize, timeout(source));
+        ReportCancellation cancellation = new ReportCancellation();
+        try {
+            return jdbcTemplate.execute(call.statement(cancellation), (PreparedStatementCallback<SourceColumns>) ps -> {
+                ResultSetMetaData metaData = ps.getMetaData();
+                if (metaData != null && metaData.getColumnCount() > 0) {
+                    return SourceColumns.of(metaData);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    SourceColumns columns = SourceColumns.of(rs.getMetaData());
+                    // the rows are not needed
+                    cancellation.cancelStatement();
+                    return columns;
+                }
+            });
+        } finally {
+            cancellation.detach();
+        }
+    }
+
+    public SourceQuery.FetchMode fetchMode(String source) {
+        String mode = environment.getProperty("reports.fetch.mode." + source);
+        return SourceQuery.FetchMode.parse(mode == null ? defaultFetchMode : mode);
+    }
+
+    /**
+     * How long the query of {@code source} may run before the driver cancels it, zero for no limit.
+     */
+    public Duration timeout(String source) {
+        String timeout = environment.getProperty("reports.fetch.timeout." + source);
+        return timeout == null ? defaultTimeout : DurationStyle.detectAndParse(timeout);
+    }
+
+    private SourceQuery query(ReportConfig.Datasource datasource, Map<String, ReportConfig.ColumnConfig> fixedData, List<ReportConfig.Filter> filters) {
+        List<String> spParams = datasource.getSpParams() == null ? List.of() : datasource.getSpParams();
+        if (!isQueryMode(datasource)) {
+            return SourceQuery.call(datasource.getSpName(), spParams);
+        }
+
+        String sql = namedQuery(datasource.getQueryName());
+        SourceColumns columns = queryColumns.computeIfAbsent(datasource.getQueryName(), name -> probe(sql, spParams));
+        ProjectionPlan plan = ProjectionPlan.compile(fixedData, columns);
+
+        List<Object> params = new ArrayList<>(spParams);
+        StringBuilder where = new StringBuilder();
+        for (ResolvedFilter filter : FilterCompiler.resolve(filters, plan)) {
+            String predicate = toSql(filter, plan, columns, params);
+            if (predicate != null) {
+                where.append(where.length() == 0 ? " WHERE " : " AND ").append(predicate);
+            }
+        }
+        if (where.length() == 0) {
+            return new SourceQuery(sql, params, false);
+        }
+        log.debug("Pushed filters of query {} down as{}", datasource.getQueryName(), where);
+        return new SourceQuery("SELECT * FROM (" + sql + ") src" + where, params, false);
+    }
+
+    private String namedQuery(String queryName) {
+        String sql = queryName == null ? null : environment.getProperty("reports.query." + queryName);
+        if (sql == null || sql.isBlank()) {
+            throw new IllegalArgumentException("Unknown report query: " + queryName);
+        }
+        return sql.trim();
+    }
+
+    private SourceColumns probe(String sql, List<String> spParams) {
+        return jdbcTemplate.query("SELECT * FROM (" + sql + ") src WHERE 1 = 0",
+                (ResultSetExtractor<SourceColumns>) rs -> SourceColumns.of(rs.getMetaData()), spParams.toArray());
+    }
+
+    /**
+     * The SQL form of {@code filter}, binding its operands to {@code params}, or null when the database could
+     * drop rows the in-memory filter keeps: text ordering and inequality depend on the collation, text columns
+     * ordered as numbers or dates compare differently in SQL, and approximate numerics are compared as doubles
+     * there but by their decimal form in memory.
+     */
+    private static String toSql(ResolvedFilter filter, ProjectionPlan plan, SourceColumns columns, List<Object> params) {
+        int sourceIndex = plan.getSourceIndex(filter.column());
+        if (sourceIndex == 0) {
+            return null;
+        }
+        String column = "src.`" + columns.label(sourceIndex - 1).replace("`", "``") + "`";
+        String condition = filter.condition();
+        List<Object> operands = filter.operands();
+
+        if (!isTypedSource(filter.type(), plan.getSqlType(filter.column()))
+                || !(filter.type() == ValueType.TEXT ? PUSHABLE_TEXT : PUSHABLE_ORDERING).contains(condition)) {
+            return null;
+        }
+        if (filter.ignoreCase()) {
+            // case formatted columns match regardless of the column collation
+            column = "LOWER(" + column + ")";
+            operands = operands.stream().map(operand -> (Object) ((String) operand).toLowerCase(Locale.ROOT)).toList();
+        }
+
+        switch (condition) {
+            case "startswith":
+                params.add(escapeLike((String) operands.get(0)) + "%");
+                return column + " LIKE ? ESCAPE '!'";
+            case "endswith":
+                params.add("%" + escapeLike((String) operands.get(0)));
+                return column + " LIKE ? ESCAPE '!'";
+            case "contains":
+                params.add("%" + escapeLike((String) operands.get(0)) + "%");
+                return column + " LIKE ? ESCAPE '!'";
+            case "in":
+                params.addAll(operands);
+                return column + " IN (" + "?, ".repeat(operands.size() - 1) + "?)";
+            case "between":
+                params.addAll(operands);
+                return column + " BETWEEN ? AND ?";
+            case "!=":
+            case "<>":
+                params.add(operands.get(0));
+                return "(" + column + " <> ? OR " + column + " IS NULL)"; // the in-memory filter keeps null cells
+            case "==":
+                params.add(operands.get(0));
+                return column + " = ?";
+            default:
+                params.add(operands.get(0));
+                return column + " " + condition + " ?";
+        }
+    }
+
+    // the source column has the type the filter compares as, so SQL and Java order values the same way; a FLOAT
+    // holding 0.1f is 0.1 to the in-memory filter but not equal to 0.1 in SQL, so only exact numerics qualify
+    private static boolean isTypedSource(ValueType type, int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT, Types.NUMERIC, Types.DECIMAL:
+                return type == ValueType.NUMBER;
+            case Types.DATE, Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE:
+                return type == ValueType.DATE;
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR:
+                return type == ValueType.TEXT;
+            default:
+                return false;
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
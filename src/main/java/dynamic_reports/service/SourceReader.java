@@ -0,0 +1,148 @@
+package dynamic_reports.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import dynamic_reports.cache.CachedResult;
+import dynamic_reports.cache.ResultCache;
+import dynamic_reports.cache.ResultCacheKey;
+import dynamic_reports.pipeline.SourceColumns;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads the rows of a report source, from the {@link ResultCache} when it holds them and otherwise from the
+ * database. A result set read to its end is cached for the next report over the same source and parameters. A
+ * read stopped early, because the reports have their rows, cancels the statement rather than draining it and
+ * caches nothing.
+ */
+@Slf4j
+@RequiredArgsConstructor
+@Component
+class SourceReader {
+
+    /**
+     * What {@link #read} returns when the result set was not read to its end.
+     */
+    static final long TRUNCATED = -1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ResultCache resultCache;
+
+    /**
+     * Receives the rows of a source, on the thread that reads them.
+     */
+    interface Rows {
+
+        /**
+         * Reads the rows of a cached result, instead of any of the other calls.
+         */
+        void readCache(CachedResult cached) throws IOException;
+
+        /**
+         * The columns of the result set, before its first row.
+         */
+        void open(SourceColumns columns) throws IOException;
+
+        /**
+         * True once no more rows are needed.
+         */
+        boolean isDone();
+
+        /**
+         * The current row of {@code rs}. {@code sourceRow} holds its columns when they were read for the cache,
+         * otherwise it is null and the row is read from {@code rs}.
+         */
+        void read(ResultSet rs, Object[] sourceRow) throws IOException, SQLException;
+
+        /**
+         * After the last row is read, {@code complete} when the result set was read to its end.
+         */
+        void end(boolean complete) throws IOException;
+    }
+
+    /**
+     * Reads the rows of {@code sourceQuery}, the query of {@code source}, into {@code rows}. Returns how many rows
+     * the source returns, or {@link #TRUNCATED} when {@code rows} was done before the result set was read to its
+     * end.
+     */
+    long read(String source, SourceQuery sourceQuery, ReportCancellation cancellation, Rows rows) throws IOException {
+        // the raw rows of a source are shared by every report over the same procedure/query and parameters
+        ResultCacheKey cacheKey = resultCache.isCached(source) ? new ResultCacheKey(source, sourceQuery.getSql(), sourceQuery.getParams()) : null;
+        CachedResult cached = cacheKey != null ? resultCache.get(cacheKey) : null;
+        try {
+            if (cached != null) {
+                rows.readCache(cached);
+                return cached.size();
+            }
+            return jdbcTemplate.query(sourceQuery.statement(cancellation), (ResultSetExtractor<Long>) rs -> {
+                SourceColumns columns = SourceColumns.of(rs.getMetaData());
+                CachedResult.Builder cacheEntry = cacheKey != null ? resultCache.newEntry(cacheKey, columns) : null;
+                boolean ended = false;
+                try {
+                    rows.open(columns);
+                    boolean complete = false;
+                    long count = 0;
+                    while (!rows.isDone()) {
+                        if (!rs.next()) {
+                            complete = true;
+                            break;
+                        }
+                        cancellation.check();
+                        Object[] sourceRow = null;
+                        if (cacheEntry != null) {
+                            // every source column is kept for the cache, not just the ones the reports map
+                            sourceRow = columns.read(rs);
+                            if (!cacheEntry.add(sourceRow)) {
+                                log.info("Result of {} is larger than the cache entry limit, it is not cached", source);
+                                cacheEntry = null;
+                            }
+                        }
+                        rows.read(rs, sourceRow);
+                        count++;
+                    }
+                    if (!complete) {
+                        // a streaming result set would read the remaining rows when it is closed
+                        cancellation.cancelStatement();
+                    }
+                    rows.end(complete);
+                    ended = true;
+                    // only complete results are cached
+                    if (cacheEntry != null && complete) {
+                        resultCache.put(cacheKey, cacheEntry.build());
+                        cacheEntry = null;
+                    }
+                    return complete ? count : TRUNCATED;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    if (!ended) {
+                        // the client went away or a report failed, nobody reads the remaining rows
+                        cancellation.cancelStatement();
+                    }
+                    if (cacheEntry != null) {
+                        discard(cacheEntry);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            cancellation.detach();
+        }
+    }
+
+    private static void discard(CachedResult.Builder cacheEntry) {
+        try {
+            cacheEntry.discard();
+        } catch (IOException e) {
+            log.warn("Could not release a partially cached result", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The values of one source column within a {@link ColumnBatch}.
+ */
+interface Column {
+
+    Object get(int row);
+
+    /**
+     * Approximate heap footprint, shared dictionaries are accounted for by the store.
+     */
+    long heapBytes();
+
+    /**
+     * Bytes the column takes in a spill file, -1 if it cannot be spilled.
+     */
+    long spillSize();
+
+    /**
+     * Writes the column at the position of {@code target}, which is advanced past it, and returns a column that
+     * reads the written copy.
+     */
+    Column spill(ByteBuffer target);
+}
@@ -0,0 +1,103 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Up to {@link RowStore#BATCH_SIZE} rows of a {@link RowStore}, stored column by column.
+ */
+public final class ColumnBatch {
+
+    private final int rowCount;
+    private final Column[] columns;
+    private final boolean spilled;
+
+    private ColumnBatch(int rowCount, Column[] columns, boolean spilled) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.spilled = spilled;
+    }
+
+    /**
+     * Encodes the first {@code rowCount} of {@code rows}, choosing the most compact encoding per column.
+     */
+    static ColumnBatch encode(Object[][] rows, int rowCount, StringDictionary[] dictionaries) {
+        Column[] columns = new Column[dictionaries.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = encodeColumn(rows, rowCount, c, dictionaries[c]);
+        }
+        return new ColumnBatch(rowCount, columns, false);
+    }
+
+    private static Column encodeColumn(Object[][] rows, int rowCount, int column, StringDictionary dictionary) {
+        Object first = null;
+        for (int r = 0; r < rowCount && first == null; r++) {
+            first = rows[r][column];
+        }
+        if (first == null) {
+            return NullColumn.INSTANCE;
+        }
+
+        Column encoded = null;
+        if (first instanceof String) {
+            encoded = DictionaryColumn.encode(rows, rowCount, column, dictionary);
+            if (encoded == null) {
+                encoded = StringColumn.encode(rows, rowCount, column);
+            }
+        } else {
+            PrimitiveCodec codec = PrimitiveCodec.forValue(first);
+            if (codec != null) {
+                encoded = PrimitiveColumn.encode(rows, rowCount, column, codec, codec.scaleOf(first));
+            }
+        }
+        return encoded != null ? encoded : new ObjectColumn(rows, rowCount, column);
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * The value of the 0-based source {@code column} in {@code row} of this batch.
+     */
+    public Object get(int column, int row) {
+        return columns[column].get(row);
+    }
+
+    boolean isSpilled() {
+        return spilled;
+    }
+
+    long heapBytes() {
+        long heapBytes = 32 + 16 + 4L * columns.length;
+        for (Column column : columns) {
+            heapBytes += column.heapBytes();
+        }
+        return heapBytes;
+    }
+
+    /**
+     * Bytes the batch takes in a spill file, -1 if a column cannot be spilled.
+     */
+    long spillSize() {
+        long spillSize = 0;
+        for (Column column : columns) {
+            long columnSize = column.spillSize();
+            if (columnSize < 0) {
+                return -1;
+            }
+            spillSize += SpillBuffers.aligned(columnSize);
+        }
+        return spillSize;
+    }
+
+    /**
+     * Writes the batch to {@code region} and returns a batch that reads it from there.
+     */
+    ColumnBatch spill(ByteBuffer region) {
+        Column[] spilledColumns = new Column[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            spilledColumns[c] = columns[c].spill(region);
+        }
+        return new ColumnBatch(rowCount, spilledColumns, true);
+    }
+}
@@ -0,0 +1,63 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Strings stored as 16-bit codes into the column's {@link StringDictionary}.
+ */
+final class DictionaryColumn implements Column {
+
+    private final StringDictionary dictionary;
+    private final ShortBuffer codes;
+
+    private DictionaryColumn(StringDictionary dictionary, ShortBuffer codes) {
+        this.dictionary = dictionary;
+        this.codes = codes;
+    }
+
+    /**
+     * Encodes {@code column} of the first {@code rowCount} rows, null if it holds something other than strings
+     * or the dictionary is full.
+     */
+    static DictionaryColumn encode(Object[][] rows, int rowCount, int column, StringDictionary dictionary) {
+        short[] codes = new short[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            Object value = rows[r][column];
+            if (value == null) {
+                codes[r] = (short) StringDictionary.NULL_CODE;
+                continue;
+            }
+            if (!(value instanceof String s)) {
+                return null;
+            }
+            int code = dictionary.encode(s);
+            if (code < 0) {
+                return null;
+            }
+            codes[r] = (short) code;
+        }
+        return new DictionaryColumn(dictionary, ShortBuffer.wrap(codes));
+    }
+
+    @Override
+    public Object get(int row) {
+        int code = Short.toUnsignedInt(codes.get(row));
+        return code == StringDictionary.NULL_CODE ? null : dictionary.get(code);
+    }
+
+    @Override
+    public long heapBytes() {
+        return 24 + SpillBuffers.heapBytes(codes, 2);
+    }
+
+    @Override
+    public long spillSize() {
+        return SpillBuffers.aligned(2L * codes.capacity());
+    }
+
+    @Override
+    public Column spill(ByteBuffer target) {
+        return new DictionaryColumn(dictionary, SpillBuffers.put(target, codes));
+    }
+}
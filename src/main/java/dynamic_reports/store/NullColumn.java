@@ -0,0 +1,34 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A column that is null in every row of the batch.
+ */
+final class NullColumn implements Column {
+
+    static final NullColumn INSTANCE = new NullColumn();
+
+    private NullColumn() {
+    }
+
+    @Override
+    public Object get(int row) {
+        return null;
+    }
+
+    @Override
+    public long heapBytes() {
+        return 0;
+    }
+
+    @Override
+    public long spillSize() {
+        return 0;
+    }
+
+    @Override
+    public Column spill(ByteBuffer target) {
+        return this;
+    }
+}
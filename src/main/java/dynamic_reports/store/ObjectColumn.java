@@ -0,0 +1,42 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Values with no compact encoding, such as mixed types or LOBs. Kept on the heap as they are and never spilled.
+ */
+final class ObjectColumn implements Column {
+
+    private final Object[] values;
+
+    ObjectColumn(Object[][] rows, int rowCount, int column) {
+        values = new Object[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            values[r] = rows[r][column];
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long heapBytes() {
+        long heapBytes = 32 + 16 + 4L * values.length;
+        for (Object value : values) {
+            heapBytes += ValueSizes.estimate(value);
+        }
+        return heapBytes;
+    }
+
+    @Override
+    public long spillSize() {
+        return -1;
+    }
+
+    @Override
+    public Column spill(ByteBuffer target) {
+        throw new UnsupportedOperationException("Object columns are not spilled");
+    }
+}
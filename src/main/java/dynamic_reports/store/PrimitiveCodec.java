@@ -0,0 +1,223 @@
+package dynamic_reports.store;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Maps the JDBC value types that fit in 64 bits to and from a {@code long}, so a column of them can be stored
+ * in a primitive array. Decoding returns a value of the exact type that was encoded, decimals keep the scale of
+ * their column.
+ */
+enum PrimitiveCodec {
+
+    BYTE(Byte.class) {
+        @Override
+        long encode(Object value) {
+            return (Byte) value;
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return (byte) bits;
+        }
+    },
+    SHORT(Short.class) {
+        @Override
+        long encode(Object value) {
+            return (Short) value;
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return (short) bits;
+        }
+    },
+    INTEGER(Integer.class) {
+        @Override
+        long encode(Object value) {
+            return (Integer) value;
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return (int) bits;
+        }
+    },
+    LONG(Long.class) {
+        @Override
+        long encode(Object value) {
+            return (Long) value;
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return bits;
+        }
+    },
+    FLOAT(Float.class) {
+        @Override
+        long encode(Object value) {
+            return Float.floatToRawIntBits((Float) value);
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return Float.intBitsToFloat((int) bits);
+        }
+    },
+    DOUBLE(Double.class) {
+        @Override
+        long encode(Object value) {
+            return Double.doubleToRawLongBits((Double) value);
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return Double.longBitsToDouble(bits);
+        }
+    },
+    BOOLEAN(Boolean.class) {
+        @Override
+        long encode(Object value) {
+            return (Boolean) value ? 1 : 0;
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return bits != 0;
+        }
+    },
+    /**
+     * Unscaled value, the scale is shared by the column.
+     */
+    DECIMAL(BigDecimal.class) {
+        @Override
+        boolean accepts(Object value, int scale) {
+            BigDecimal decimal = (BigDecimal) value;
+            return value.getClass() == BigDecimal.class && decimal.scale() == scale && decimal.unscaledValue().bitLength() < Long.SIZE;
+        }
+
+        @Override
+        int scaleOf(Object value) {
+            return ((BigDecimal) value).scale();
+        }
+
+        @Override
+        long encode(Object value) {
+            return ((BigDecimal) value).unscaledValue().longValue();
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return BigDecimal.valueOf(bits, scale);
+        }
+    },
+    SQL_DATE(Date.class) {
+        @Override
+        long encode(Object value) {
+            return ((Date) value).getTime();
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return new Date(bits);
+        }
+    },
+    /**
+     * Nanoseconds since the epoch, covers the years 1678 to 2261.
+     */
+    SQL_TIMESTAMP(Timestamp.class) {
+        @Override
+        boolean accepts(Object value, int scale) {
+            return value.getClass() == Timestamp.class && inNanoRange(Math.floorDiv(((Timestamp) value).getTime(), 1000));
+        }
+
+        @Override
+        long encode(Object value) {
+            Timestamp timestamp = (Timestamp) value;
+            return Math.floorDiv(timestamp.getTime(), 1000) * NANOS_PER_SECOND + timestamp.getNanos();
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            Timestamp timestamp = new Timestamp(Math.floorDiv(bits, NANOS_PER_SECOND) * 1000);
+            timestamp.setNanos((int) Math.floorMod(bits, NANOS_PER_SECOND));
+            return timestamp;
+        }
+    },
+    LOCAL_DATE(LocalDate.class) {
+        @Override
+        long encode(Object value) {
+            return ((LocalDate) value).toEpochDay();
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return LocalDate.ofEpochDay(bits);
+        }
+    },
+    LOCAL_DATE_TIME(LocalDateTime.class) {
+        @Override
+        boolean accepts(Object value, int scale) {
+            return value.getClass() == LocalDateTime.class && inNanoRange(((LocalDateTime) value).toEpochSecond(ZoneOffset.UTC));
+        }
+
+        @Override
+        long encode(Object value) {
+            LocalDateTime dateTime = (LocalDateTime) value;
+            return dateTime.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + dateTime.getNano();
+        }
+
+        @Override
+        Object decode(long bits, int scale) {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(bits, NANOS_PER_SECOND), (int) Math.floorMod(bits, NANOS_PER_SECOND), ZoneOffset.UTC);
+        }
+    };
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long MAX_NANO_SECONDS = Long.MAX_VALUE / NANOS_PER_SECOND - 1;
+
+    private final Class<?> type;
+
+    PrimitiveCodec(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * The codec for values of the class of {@code value}, or null if it has none.
+     */
+    static PrimitiveCodec forValue(Object value) {
+        for (PrimitiveCodec codec : values()) {
+            if (codec.type == value.getClass()) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether {@code value} can be encoded into a column of this codec with the given scale.
+     */
+    boolean accepts(Object value, int scale) {
+        return value.getClass() == type;
+    }
+
+    /**
+     * The column scale implied by {@code value}, only decimals have one.
+     */
+    int scaleOf(Object value) {
+        return 0;
+    }
+
+    abstract long encode(Object value);
+
+    abstract Object decode(long bits, int scale);
+
+    private static boolean inNanoRange(long epochSecond) {
+        return epochSecond > -MAX_NANO_SECONDS && epochSecond < MAX_NANO_SECONDS;
+    }
+}
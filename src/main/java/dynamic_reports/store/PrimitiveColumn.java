@@ -0,0 +1,87 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Numbers, dates and booleans encoded by a {@link PrimitiveCodec} into an {@code int[]} when every value fits,
+ * a {@code long[]} otherwise, with a null bitmap.
+ */
+final class PrimitiveColumn implements Column {
+
+    private final PrimitiveCodec codec;
+    private final int scale;
+    private final IntBuffer ints;
+    private final LongBuffer longs;
+    private final LongBuffer nulls; // null when the column has no nulls
+
+    private PrimitiveColumn(PrimitiveCodec codec, int scale, IntBuffer ints, LongBuffer longs, LongBuffer nulls) {
+        this.codec = codec;
+        this.scale = scale;
+        this.ints = ints;
+        this.longs = longs;
+        this.nulls = nulls;
+    }
+
+    /**
+     * Encodes {@code column} of the first {@code rowCount} rows, null if a value does not fit the codec.
+     */
+    static PrimitiveColumn encode(Object[][] rows, int rowCount, int column, PrimitiveCodec codec, int scale) {
+        long[] values = new long[rowCount];
+        long[] nulls = null;
+        long min = 0;
+        long max = 0;
+        for (int r = 0; r < rowCount; r++) {
+            Object value = rows[r][column];
+            if (value == null) {
+                nulls = SpillBuffers.markNull(nulls, r, rowCount);
+                continue;
+            }
+            if (!codec.accepts(value, scale)) {
+                return null;
+            }
+            long bits = codec.encode(value);
+            values[r] = bits;
+            min = Math.min(min, bits);
+            max = Math.max(max, bits);
+        }
+
+        LongBuffer nullBitmap = nulls == null ? null : LongBuffer.wrap(nulls);
+        if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE) {
+            int[] narrow = new int[rowCount];
+            for (int r = 0; r < rowCount; r++) {
+                narrow[r] = (int) values[r];
+            }
+            return new PrimitiveColumn(codec, scale, IntBuffer.wrap(narrow), null, nullBitmap);
+        }
+        return new PrimitiveColumn(codec, scale, null, LongBuffer.wrap(values), nullBitmap);
+    }
+
+    @Override
+    public Object get(int row) {
+        if (SpillBuffers.isNull(nulls, row)) {
+            return null;
+        }
+        return codec.decode(ints != null ? ints.get(row) : longs.get(row), scale);
+    }
+
+    @Override
+    public long heapBytes() {
+        return 32 + SpillBuffers.heapBytes(ints, 4) + SpillBuffers.heapBytes(longs, 8) + SpillBuffers.heapBytes(nulls, 8);
+    }
+
+    @Override
+    public long spillSize() {
+        long values = ints != null ? 4L * ints.capacity() : 8L * longs.capacity();
+        return SpillBuffers.aligned(values) + (nulls != null ? 8L * nulls.capacity() : 0);
+    }
+
+    @Override
+    public Column spill(ByteBuffer target) {
+        IntBuffer spilledInts = ints != null ? SpillBuffers.put(target, ints) : null;
+        LongBuffer spilledLongs = longs != null ? SpillBuffers.put(target, longs) : null;
+        LongBuffer spilledNulls = nulls != null ? SpillBuffers.put(target, nulls) : null;
+        return new PrimitiveColumn(codec, scale, spilledInts, spilledLongs, spilledNulls);
+    }
+}
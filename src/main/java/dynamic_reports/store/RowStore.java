@@ -0,0 +1,160 @@
+package dynamic_reports.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import dynamic_reports.pipeline.SourceColumns;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Every column of the rows of a source query, stored in batches of {@link #BATCH_SIZE} rows column by column:
+ * numbers, dates and booleans in primitive arrays, strings as codes into a per-column dictionary, nulls in
+ * bitmaps. Once the batches on the heap exceed the heap budget, further batches are written to a temp file and
+ * read back through a memory mapping, so they live in the page cache instead of the heap.
+ *
+ * Rows are added by one thread, after {@link #finish()} the store is read-only and can be shared.
+ */
+@Slf4j
+public final class RowStore implements Closeable {
+
+    public static final int BATCH_SIZE = 4096;
+
+    private final SourceColumns columns;
+    private final long heapBudget;
+    private final Path spillDirectory;
+    private final StringDictionary[] dictionaries;
+    private final List<ColumnBatch> batches = new ArrayList<>();
+
+    private Object[][] pending = new Object[BATCH_SIZE][];
+    private int pendingCount;
+    private int size;
+    private long batchHeapBytes;
+    private long spilledBytes;
+    private FileChannel spillChannel;
+    private long spillPosition;
+
+    /**
+     * @param heapBudget heap bytes the batches may take before they are spilled
+     * @param spillDirectory where the spill file is created
+     */
+    public RowStore(SourceColumns columns, long heapBudget, Path spillDirectory) {
+        this.columns = columns;
+        this.heapBudget = heapBudget;
+        this.spillDirectory = spillDirectory;
+        this.dictionaries = new StringDictionary[columns.count()];
+        for (int c = 0; c < dictionaries.length; c++) {
+            dictionaries[c] = new StringDictionary();
+        }
+    }
+
+    /**
+     * Adds a row holding every source column by 0-based index. The array is kept until its batch is encoded.
+     */
+    public void add(Object[] row) throws IOException {
+        pending[pendingCount++] = row;
+        size++;
+        if (pendingCount == BATCH_SIZE) {
+            encodePending();
+        }
+    }
+
+    /**
+     * Encodes the last partial batch. No rows can be added afterwards.
+     */
+    public void finish() throws IOException {
+        if (pendingCount > 0) {
+            encodePending();
+        }
+        pending = null;
+        for (StringDictionary dictionary : dictionaries) {
+            dictionary.freeze();
+        }
+    }
+
+    private void encodePending() throws IOException {
+        ColumnBatch batch = ColumnBatch.encode(pending, pendingCount, dictionaries);
+        Arrays.fill(pending, 0, pendingCount, null);
+        pendingCount = 0;
+
+        long spillSize = batch.spillSize();
+        if (heapBytes() + batch.heapBytes() > heapBudget && spillSize >= 0) {
+            batch = spill(batch, spillSize);
+        }
+        batchHeapBytes += batch.heapBytes();
+        batches.add(batch);
+    }
+
+    private ColumnBatch spill(ColumnBatch batch, long spillSize) throws IOException {
+        if (spillChannel == null) {
+            Files.createDirectories(spillDirectory);
+            Path file = Files.createTempFile(spillDirectory, "rows-", ".spill");
+            // the file is deleted when the channel closes (on Linux as soon as it is open), mappings stay readable
+            // until they are collected
+            spillChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            log.debug("Spilling rows to {}", file);
+        }
+        MappedByteBuffer region = spillChannel.map(FileChannel.MapMode.READ_WRITE, spillPosition, Math.max(spillSize, 1));
+        spillPosition += spillSize;
+        spilledBytes += spillSize;
+        return batch.spill(region);
+    }
+
+    public SourceColumns getColumns() {
+        return columns;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int batchCount() {
+        return batches.size();
+    }
+
+    public ColumnBatch batch(int index) {
+        return batches.get(index);
+    }
+
+    /**
+     * Approximate heap footprint of the encoded batches and the dictionaries.
+     */
+    public long heapBytes() {
+        long heapBytes = batchHeapBytes;
+        for (StringDictionary dictionary : dictionaries) {
+            heapBytes += dictionary.heapBytes();
+        }
+        return heapBytes;
+    }
+
+    public long spilledBytes() {
+        return spilledBytes;
+    }
+
+    public int spilledBatches() {
+        int spilled = 0;
+        for (ColumnBatch batch : batches) {
+            if (batch.isSpilled()) {
+                spilled++;
+            }
+        }
+        return spilled;
+    }
+
+    /**
+     * Deletes the spill file. Batches already handed out stay readable.
+     */
+    @Override
+    public void close() throws IOException {
+        if (spillChannel != null) {
+            spillChannel.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Helpers to lay primitive arrays out in a spill region, each one 8-byte aligned, and to view them in place.
+ */
+final class SpillBuffers {
+
+    // approximate size of a buffer object, whatever backs it
+    static final int BUFFER_OVERHEAD = 64;
+
+    private SpillBuffers() {
+    }
+
+    static long aligned(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Heap bytes held by {@code buffer}: its backing array, nothing for a mapped buffer.
+     */
+    static long heapBytes(java.nio.Buffer buffer, int elementSize) {
+        if (buffer == null) {
+            return 0;
+        }
+        return BUFFER_OVERHEAD + (buffer.hasArray() ? 16 + (long) elementSize * buffer.capacity() : 0);
+    }
+
+    static LongBuffer put(ByteBuffer target, LongBuffer source) {
+        ByteBuffer region = region(target, 8L * source.capacity());
+        region.asLongBuffer().put(source.duplicate().clear());
+        return region.asLongBuffer();
+    }
+
+    static IntBuffer put(ByteBuffer target, IntBuffer source) {
+        ByteBuffer region = region(target, 4L * source.capacity());
+        region.asIntBuffer().put(source.duplicate().clear());
+        return region.asIntBuffer();
+    }
+
+    static ShortBuffer put(ByteBuffer target, ShortBuffer source) {
+        ByteBuffer region = region(target, 2L * source.capacity());
+        region.asShortBuffer().put(source.duplicate().clear());
+        return region.asShortBuffer();
+    }
+
+    /**
+     * The next {@code bytes} of {@code target} as a separate buffer, {@code target} is advanced to the next
+     * aligned position after them.
+     */
+    static ByteBuffer region(ByteBuffer target, long bytes) {
+        int start = target.position();
+        ByteBuffer region = target.slice(start, (int) bytes).order(ByteOrder.nativeOrder());
+        target.position(start + (int) aligned(bytes));
+        return region;
+    }
+
+    static boolean isNull(LongBuffer nulls, int row) {
+        return nulls != null && (nulls.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    /**
+     * Sets the bit of {@code row}, allocating the bitmap on the first null.
+     */
+    static long[] markNull(long[] nulls, int row, int rowCount) {
+        if (nulls == null) {
+            nulls = new long[(rowCount + 63) >>> 6];
+        }
+        nulls[row >>> 6] |= 1L << row;
+        return nulls;
+    }
+}
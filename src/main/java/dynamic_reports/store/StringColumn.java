@@ -0,0 +1,116 @@
+package dynamic_reports.store;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strings of a column whose dictionary is full. On the heap they are kept as they are, spilled they are
+ * written as UTF-8 with an offset per row and decoded on every read.
+ */
+final class StringColumn implements Column {
+
+    private final String[] values; // null once spilled
+    private final IntBuffer offsets; // rowCount + 1 offsets into bytes, when spilled
+    private final ByteBuffer bytes;
+    private final LongBuffer nulls;
+
+    private StringColumn(String[] values, IntBuffer offsets, ByteBuffer bytes, LongBuffer nulls) {
+        this.values = values;
+        this.offsets = offsets;
+        this.bytes = bytes;
+        this.nulls = nulls;
+    }
+
+    /**
+     * Copies {@code column} of the first {@code rowCount} rows, null if it holds something other than strings.
+     */
+    static StringColumn encode(Object[][] rows, int rowCount, int column) {
+        String[] values = new String[rowCount];
+        for (int r = 0; r < rowCount; r++) {
+            Object value = rows[r][column];
+            if (value != null && !(value instanceof String)) {
+                return null;
+            }
+            values[r] = (String) value;
+        }
+        return new StringColumn(values, null, null, null);
+    }
+
+    @Override
+    public Object get(int row) {
+        if (values != null) {
+            return values[row];
+        }
+        if (SpillBuffers.isNull(nulls, row)) {
+            return null;
+        }
+        int start = offsets.get(row);
+        byte[] utf8 = new byte[offsets.get(row + 1) - start];
+        bytes.get(start, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public long heapBytes() {
+        if (values == null) {
+            return 32 + 3 * SpillBuffers.BUFFER_OVERHEAD;
+        }
+        long heapBytes = 32 + 16 + 4L * values.length;
+        for (String value : values) {
+            heapBytes += ValueSizes.estimate(value);
+        }
+        return heapBytes;
+    }
+
+    @Override
+    public long spillSize() {
+        long utf8Bytes = 0;
+        for (String value : values) {
+            if (value != null) {
+                utf8Bytes += utf8Length(value);
+            }
+        }
+        return SpillBuffers.aligned(4L * (values.length + 1)) + SpillBuffers.aligned(utf8Bytes) + 8L * ((values.length + 63) >>> 6);
+    }
+
+    @Override
+    public Column spill(ByteBuffer target) {
+        int[] starts = new int[values.length + 1];
+        long[] nullBits = new long[(values.length + 63) >>> 6];
+        for (int r = 0; r < values.length; r++) {
+            if (values[r] == null) {
+                nullBits[r >>> 6] |= 1L << r;
+            }
+            starts[r + 1] = starts[r] + (values[r] == null ? 0 : utf8Length(values[r]));
+        }
+        IntBuffer spilledOffsets = SpillBuffers.put(target, IntBuffer.wrap(starts));
+        ByteBuffer spilledBytes = SpillBuffers.region(target, starts[values.length]);
+        for (String value : values) {
+            if (value != null) {
+                spilledBytes.put(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        LongBuffer spilledNulls = SpillBuffers.put(target, LongBuffer.wrap(nullBits));
+        return new StringColumn(null, spilledOffsets, spilledBytes.clear(), spilledNulls);
+    }
+
+    static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,61 @@
+package dynamic_reports.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The distinct strings of one source column, shared by all batches of a {@link RowStore} so each batch only
+ * holds a 16-bit code per row.
+ */
+final class StringDictionary {
+
+    /**
+     * Codes are unsigned shorts, the last one marks null.
+     */
+    static final int NULL_CODE = 0xFFFF;
+    static final int MAX_SIZE = NULL_CODE;
+
+    private final ArrayList<String> values = new ArrayList<>();
+    private Map<String, Integer> codes = new HashMap<>();
+    private long heapBytes = 64;
+
+    /**
+     * The code of {@code value}, added if it is new; -1 when the dictionary is full or frozen.
+     */
+    int encode(String value) {
+        Integer code = codes == null ? null : codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (codes == null || values.size() >= MAX_SIZE) {
+            return -1;
+        }
+        code = values.size();
+        values.add(value);
+        codes.put(value, code);
+        // the string, its list slot, and a hash map entry while the store is being built
+        heapBytes += ValueSizes.estimate(value) + 4;
+        return code;
+    }
+
+    String get(int code) {
+        return values.get(code);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Drops the lookup map once no more rows are added.
+     */
+    void freeze() {
+        codes = null;
+        values.trimToSize();
+    }
+
+    long heapBytes() {
+        return heapBytes + (codes != null ? 48L * codes.size() : 0);
+    }
+}
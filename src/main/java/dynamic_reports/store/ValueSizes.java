@@ -0,0 +1,42 @@
+package dynamic_reports.store;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public final class ValueSizes {
+
+    private ValueSizes() {
+    }
+
+    /**
+     * Approximate heap size of a JDBC value, with compressed object pointers.
+     */
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String s) {
+            return 40 + 2L * s.length();
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return 24;
+        }
+        if (value instanceof Number && !(value instanceof BigDecimal)) {
+            return 16;
+        }
+        if (value instanceof BigDecimal decimal) {
+            return decimal.precision() > 18 ? 80 + decimal.precision() / 2 : 40;
+        }
+        if (value instanceof byte[] bytes) {
+            return 16 + bytes.length;
+        }
+        if (value instanceof LocalDateTime) {
+            return 72;
+        }
+        if (value instanceof LocalDate) {
+            return 24;
+        }
+        return 32; // java.util.Date and its java.sql subclasses, and anything else
+    }
+}
@@ -0,0 +1,39 @@
+package dynamic_reports.writer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Workbook;
+
+/**
+ * The cell styles of one workbook, one per number format. A workbook holds at most 64000 styles and every
+ * style is written to {@code styles.xml}, so cells share a pooled style instead of creating their own.
+ * The sheets of an {@link XlsxWorkbook} are written in parallel and share one pool, so it is synchronized.
+ */
+final class CellStylePool {
+
+    private final Workbook workbook;
+    private final DataFormat dataFormat;
+    private final Map<String, CellStyle> styles = new HashMap<>();
+
+    CellStylePool(Workbook workbook) {
+        this.workbook = workbook;
+        this.dataFormat = workbook.createDataFormat();
+    }
+
+    synchronized CellStyle get(String format) {
+        CellStyle style = styles.get(format);
+        if (style == null) {
+            style = workbook.createCellStyle();
+            style.setDataFormat(dataFormat.getFormat(format));
+            styles.put(format, style);
+        }
+        return style;
+    }
+
+    synchronized int size() {
+        return styles.size();
+    }
+}
@@ -0,0 +1,77 @@
+package dynamic_reports.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * RFC 4180 CSV: comma separated, CRLF line endings, fields holding a comma, quote or line break are quoted.
+ */
+public class CsvReportWriter implements ReportWriter {
+
+    private final Utf8Buffer buffer;
+
+    public CsvReportWriter(OutputStream out, int bufferSize) {
+        this.buffer = new Utf8Buffer(out, bufferSize);
+    }
+
+    @Override
+    public void writeHeader(String[] names) throws IOException {
+        writeRow(names);
+    }
+
+    @Override
+    public void writeRow(Object[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                buffer.write(',');
+            }
+            Object value = row[i];
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof String) {
+                writeField((String) value);
+            } else if (value instanceof Number) {
+                buffer.writeNumber((Number) value);
+            } else if (!buffer.writeTemporal(value)) {
+                writeField(value.toString());
+            }
+        }
+        buffer.write('\r');
+        buffer.write('\n');
+    }
+
+    private void writeField(String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            buffer.writeText(value);
+            return;
+        }
+
+        buffer.write('"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                buffer.writeText(value, start, i + 1);
+                buffer.write('"');
+                start = i + 1;
+            }
+        }
+        buffer.writeText(value, start, value.length());
+        buffer.write('"');
+    }
+
+    @Override
+    public void finish() throws IOException {
+        buffer.flush();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the target stream is owned by the caller
+    }
+}
@@ -0,0 +1,33 @@
+package dynamic_reports.writer;
+
+import java.io.OutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class CsvWriterFactory implements ReportWriterFactory {
+
+    @Value("${reports.text.buffer-size:65536}")
+    private int bufferSize;
+
+    @Override
+    public String getFormat() {
+        return "csv";
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/csv;charset=UTF-8";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "csv";
+    }
+
+    @Override
+    public ReportWriter create(OutputStream out) {
+        return new CsvReportWriter(out, bufferSize);
+    }
+}
@@ -0,0 +1,68 @@
+package dynamic_reports.writer;
+
+/**
+ * Translates {@link java.time.format.DateTimeFormatter} patterns of date columns into Excel number formats, so a
+ * {@code dd/MM/yyyy} column is written as date cells that display the same way.
+ */
+final class ExcelDateFormats {
+
+    private ExcelDateFormats() {
+    }
+
+    /**
+     * The Excel format for {@code pattern}, or null when it uses fields Excel cannot display, e.g. zones or week
+     * numbers. Excel reads {@code mm} as minutes after hours and before seconds, as month everywhere else.
+     */
+    static String toExcel(String pattern) {
+        StringBuilder excel = new StringBuilder();
+        boolean twelveHour = pattern.indexOf('a') >= 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            int run = 1;
+            while (i + run < pattern.length() && pattern.charAt(i + run) == c) {
+                run++;
+            }
+            switch (c) {
+                case 'y', 'u' -> excel.append(run == 2 ? "yy" : "yyyy");
+                case 'M', 'L' -> excel.append(run >= 4 ? "mmmm" : "m".repeat(run));
+                case 'd' -> {
+                    if (run > 2) {
+                        return null;
+                    }
+                    excel.append("d".repeat(run));
+                }
+                case 'E' -> excel.append(run >= 4 ? "dddd" : "ddd");
+                case 'H' -> {
+                    if (twelveHour) {
+                        return null;
+                    }
+                    excel.append(run >= 2 ? "hh" : "h");
+                }
+                case 'h' -> excel.append(run >= 2 ? "hh" : "h");
+                case 'm' -> excel.append(run >= 2 ? "mm" : "m");
+                case 's' -> excel.append(run >= 2 ? "ss" : "s");
+                case 'S' -> excel.append("0".repeat(Math.min(run, 3)));
+                case 'a' -> excel.append("AM/PM");
+                case '\'' -> {
+                    int end = pattern.indexOf('\'', i + 1);
+                    if (end < 0) {
+                        return null;
+                    }
+                    // '' is a quote, 'text' a literal
+                    String literal = end == i + 1 ? "'" : pattern.substring(i + 1, end);
+                    excel.append('"').append(literal.replace("\"", "")).append('"');
+                    run = end - i + 1;
+                }
+                default -> {
+                    if (Character.isLetter(c)) {
+                        return null;
+                    }
+                    excel.append(String.valueOf(c).repeat(run));
+                }
+            }
+            i += run;
+        }
+        return excel.toString();
+    }
+}
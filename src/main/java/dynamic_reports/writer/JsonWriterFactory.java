@@ -0,0 +1,33 @@
+package dynamic_reports.writer;
+
+import java.io.OutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class JsonWriterFactory implements ReportWriterFactory {
+
+    @Value("${reports.text.buffer-size:65536}")
+    private int bufferSize;
+
+    @Override
+    public String getFormat() {
+        return "json";
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/json";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "json";
+    }
+
+    @Override
+    public ReportWriter create(OutputStream out) {
+        return new NdjsonReportWriter(out, bufferSize, true);
+    }
+}
@@ -0,0 +1,122 @@
+package dynamic_reports.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Newline delimited JSON, one object per row keyed by the column names. Numbers and booleans are written
+ * as JSON literals, dates and everything else as strings. As a JSON array, the same objects are the elements
+ * of one array.
+ */
+public class NdjsonReportWriter implements ReportWriter {
+
+    private final Utf8Buffer buffer;
+    private final boolean array;
+    private byte[][] keys; // '"name":' per column, with the separating comma for all but the first
+    private boolean firstRow = true;
+
+    public NdjsonReportWriter(OutputStream out, int bufferSize) {
+        this(out, bufferSize, false);
+    }
+
+    public NdjsonReportWriter(OutputStream out, int bufferSize, boolean array) {
+        this.buffer = new Utf8Buffer(out, bufferSize);
+        this.array = array;
+    }
+
+    @Override
+    public void writeHeader(String[] names) throws IOException {
+        keys = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            ByteArrayOutputStream key = new ByteArrayOutputStream();
+            Utf8Buffer keyBuffer = new Utf8Buffer(key, 64);
+            if (i > 0) {
+                keyBuffer.write(',');
+            }
+            writeString(keyBuffer, names[i]);
+            keyBuffer.write(':');
+            keyBuffer.flush();
+            keys[i] = key.toByteArray();
+        }
+        if (array) {
+            buffer.write('[');
+        }
+    }
+
+    @Override
+    public void writeRow(Object[] row) throws IOException {
+        if (array && !firstRow) {
+            buffer.write(',');
+        }
+        firstRow = false;
+        buffer.write('{');
+        for (int i = 0; i < row.length; i++) {
+            buffer.write(keys[i]);
+            Object value = row[i];
+            if (value == null) {
+                buffer.writeText("null");
+            } else if (value instanceof String) {
+                writeString(buffer, (String) value);
+            } else if (value instanceof Number) {
+                buffer.writeNumber((Number) value);
+            } else if (value instanceof Boolean) {
+                buffer.writeText(value.toString());
+            } else {
+                buffer.write('"');
+                if (!buffer.writeTemporal(value)) {
+                    writeEscaped(buffer, value.toString());
+                }
+                buffer.write('"');
+            }
+        }
+        buffer.write('}');
+        if (!array) {
+            buffer.write('\n');
+        }
+    }
+
+    private static void writeString(Utf8Buffer buffer, String value) throws IOException {
+        buffer.write('"');
+        writeEscaped(buffer, value);
+        buffer.write('"');
+    }
+
+    private static void writeEscaped(Utf8Buffer buffer, String value) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            buffer.writeText(value, start, i);
+            buffer.write('\\');
+            switch (c) {
+                case '"', '\\' -> buffer.write(c);
+                case '\n' -> buffer.write('n');
+                case '\r' -> buffer.write('r');
+                case '\t' -> buffer.write('t');
+                default -> {
+                    buffer.writeText("u00");
+                    buffer.write(Character.forDigit(c >> 4, 16));
+                    buffer.write(Character.forDigit(c & 0xF, 16));
+                }
+            }
+            start = i + 1;
+        }
+        buffer.writeText(value, start, value.length());
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (array) {
+            buffer.write(']');
+        }
+        buffer.flush();
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the target stream is owned by the caller
+    }
+}
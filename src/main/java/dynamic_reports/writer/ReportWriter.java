@@ -0,0 +1,37 @@
+package dynamic_reports.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the rows of one report in order and encodes them in an output format.
+ * Values are the formatted cells of a row, in header order, and may be {@code null}.
+ */
+public interface ReportWriter extends Closeable {
+
+    /**
+     * Offers the column formats of the report, before the header. The writer returns the columns whose format it
+     * applies itself, the values of those columns then reach {@link #writeRow} unformatted. By default it takes none.
+     */
+    default boolean[] formatsNatively(String[] formats) {
+        return new boolean[formats.length];
+    }
+
+    /**
+     * Splits the output by the values of {@code column}, before the header. Only formats with several sheets
+     * or files per report support it.
+     */
+    default void partitionBy(int column) {
+        throw new IllegalArgumentException("The " + getClass().getSimpleName() + " output cannot be partitioned");
+    }
+
+    void writeHeader(String[] names) throws IOException;
+
+    void writeRow(Object[] row) throws IOException;
+
+    /**
+     * Completes the output and flushes everything still buffered to the target stream.
+     * The target stream itself is left open.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,28 @@
+package dynamic_reports.writer;
+
+import java.io.OutputStream;
+
+/**
+ * One output format of the report service. Implementations are Spring beans and are
+ * picked up by {@link ReportWriters}, selected through {@code ReportConfig.format}.
+ */
+public interface ReportWriterFactory {
+
+    /**
+     * Format name as used in the request, matched case-insensitively.
+     */
+    String getFormat();
+
+    String getContentType();
+
+    String getFileExtension();
+
+    /**
+     * Whether the output is worth compressing for transfer. Formats that are already compressed say no.
+     */
+    default boolean isCompressible() {
+        return true;
+    }
+
+    ReportWriter create(OutputStream out);
+}
@@ -0,0 +1,39 @@
+package dynamic_reports.writer;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the available {@link ReportWriterFactory} beans.
+ */
+@Component
+public class ReportWriters {
+
+    public static final String DEFAULT_FORMAT = "xlsx";
+
+    private final Map<String, ReportWriterFactory> factories;
+
+    public ReportWriters(List<ReportWriterFactory> factories) {
+        this.factories = factories.stream()
+                .collect(Collectors.toMap(factory -> factory.getFormat().toLowerCase(Locale.ROOT), Function.identity()));
+    }
+
+    /**
+     * The factory for {@code format}, xlsx when no format is given.
+     *
+     * @throws IllegalArgumentException if no writer supports the format
+     */
+    public ReportWriterFactory get(String format) {
+        String key = format == null || format.isBlank() ? DEFAULT_FORMAT : format.trim().toLowerCase(Locale.ROOT);
+        ReportWriterFactory factory = factories.get(key);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unsupported report format: " + format + ", expected one of " + factories.keySet());
+        }
+        return factory;
+    }
+}
@@ -0,0 +1,32 @@
+package dynamic_reports.writer;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.poi.ss.util.WorkbookUtil;
+
+/**
+ * The sheet names taken in one workbook. Excel limits sheet names to 31 characters, forbids some characters and
+ * compares names case-insensitively, so a requested name is made safe and numbered if it is taken.
+ */
+final class SheetNames {
+
+    private static final int MAX_LENGTH = 31;
+
+    private final Set<String> taken = new HashSet<>();
+
+    synchronized String unique(String name) {
+        String safeName = WorkbookUtil.createSafeSheetName(name == null || name.isBlank() ? "report" : name);
+        String sheetName = safeName;
+        for (int n = 2; !taken.add(sheetName.toLowerCase(Locale.ROOT)); n++) {
+            String suffix = " (" + n + ")";
+            sheetName = safeName.substring(0, Math.min(safeName.length(), MAX_LENGTH - suffix.length())) + suffix;
+        }
+        return sheetName;
+    }
+
+    synchronized void release(String sheetName) {
+        taken.remove(sheetName.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,180 @@
+package dynamic_reports.writer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.openxml4j.util.ZipArchiveThresholdInputStream;
+import org.apache.poi.openxml4j.util.ZipEntrySource;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.streaming.GZIPSheetDataWriter;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.streaming.SheetDataWriter;
+import org.apache.poi.xssf.usermodel.XSSFChartSheet;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+
+/**
+ * The SXSSF workbook of the xlsx writers.
+ *
+ * Rows flushed from the window are written through an unsynchronized UTF-8 writer, into temp files compressed
+ * at the fastest deflate level. The temp files are read once, when the workbook is written and deflated
+ * again, so a better ratio there is not worth the time.
+ *
+ * Deflating the sheets into the package is most of the time spent writing a workbook. With several sheets they
+ * are deflated in parallel, each into a scatter file of its own, and the compressed entries are then copied
+ * into the package one after the other.
+ */
+final class TempFileWorkbook extends SXSSFWorkbook {
+
+    private static final int TEMP_FILE_BUFFER_SIZE = 65536;
+    private static final String SHEET_DATA = "<sheetData";
+
+    TempFileWorkbook(int rowAccessWindow) {
+        // inline strings: no shared-strings table grows with the number of distinct values
+        super(null, rowAccessWindow, true, false);
+        // no creation time in the package properties, the same rows give the same file and the same ETag
+        getXSSFWorkbook().getProperties().getCoreProperties().setCreated(Optional.empty());
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        return new TempFileWriter(getSharedStringSource());
+    }
+
+    @Override
+    protected void injectData(ZipEntrySource zipEntrySource, OutputStream out) throws IOException {
+        if (getNumberOfSheets() < 2) {
+            super.injectData(zipEntrySource, out);
+            return;
+        }
+        int threads = Math.min(getNumberOfSheets(), Runtime.getRuntime().availableProcessors());
+        // the scatter creator shuts its executor down once the entries are written
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ParallelScatterZipCreator sheets = new ParallelScatterZipCreator(executor);
+        // POI's own Zip64 stream cannot take the raw entries of the scatter files; sizes of those are known, so
+        // only an entry that needs Zip64 gets the extra fields Excel has trouble with
+        ZipArchiveOutputStream zos = new ZipArchiveOutputStream(out);
+        zos.setUseZip64(Zip64Mode.AsNeeded);
+        try {
+            // the other parts are small and keep their order ahead of the sheets
+            for (ZipArchiveEntry entry : Collections.list(zipEntrySource.getEntries())) {
+                try (InputStream is = zipEntrySource.getInputStream(entry)) {
+                    if (is instanceof ZipArchiveThresholdInputStream threshold) {
+                        // SXSSF sheets are highly repetitive, as for POI's own copy
+                        threshold.setGuardState(false);
+                    }
+                    XSSFSheet xSheet = getSheetFromZipEntryName(entry.getName());
+                    if (xSheet != null && !(xSheet instanceof XSSFChartSheet)) {
+                        addSheet(sheets, entry, is.readAllBytes(), getSheet(xSheet.getSheetName()));
+                    } else {
+                        zos.putArchiveEntry(copyOf(entry));
+                        is.transferTo(zos);
+                        zos.closeArchiveEntry();
+                    }
+                }
+            }
+            sheets.writeTo(zos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the sheets", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof UncheckedIOException io ? io.getCause() : new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            zos.finish();
+            zipEntrySource.close();
+        }
+    }
+
+    /**
+     * Queues the worksheet part: the template part written by XSSF, with the rows of the temp file as its
+     * {@code sheetData}, as {@code SXSSFWorkbook} injects them.
+     */
+    private static void addSheet(ParallelScatterZipCreator sheets, ZipArchiveEntry template, byte[] templateXml, SXSSFSheet sheet) {
+        String xml = new String(templateXml, StandardCharsets.UTF_8);
+        int start = xml.indexOf(SHEET_DATA);
+        String head;
+        String tail;
+        if (start < 0) {
+            head = xml + "<sheetData>\n";
+            tail = "</sheetData>";
+        } else if (xml.startsWith("<sheetData/>", start)) {
+            head = xml.substring(0, start) + "<sheetData>\n";
+            tail = "</sheetData>" + xml.substring(start + "<sheetData/>".length());
+        } else {
+            int end = xml.indexOf("</sheetData>", start);
+            head = xml.substring(0, xml.indexOf('>', start) + 1);
+            tail = xml.substring(end);
+        }
+        ZipArchiveEntry entry = copyOf(template);
+        entry.setMethod(ZipEntry.DEFLATED);
+        sheets.addArchiveEntry(entry, () -> {
+            try {
+                return new SequenceInputStream(Collections.enumeration(List.of(
+                        new ByteArrayInputStream(head.getBytes(StandardCharsets.UTF_8)),
+                        sheet.getWorksheetXMLInputStream(),
+                        new ByteArrayInputStream(tail.getBytes(StandardCharsets.UTF_8)))));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static ZipArchiveEntry copyOf(ZipArchiveEntry entry) {
+        ZipArchiveEntry copy = new ZipArchiveEntry(entry.getName());
+        if (entry.getTime() >= 0) {
+            copy.setTime(entry.getTime());
+        }
+        return copy;
+    }
+
+    private static final class TempFileWriter extends GZIPSheetDataWriter {
+
+        TempFileWriter(SharedStringsTable sharedStrings) throws IOException {
+            super(sharedStrings);
+        }
+
+        // the only hook that replaces the Writer of the temp file, decorateOutputStream only wraps its stream
+        @SuppressWarnings("deprecation")
+        @Override
+        public Writer createWriter(File file) throws IOException {
+            FileOutputStream fos = new FileOutputStream(file);
+            try {
+                return new Utf8Writer(decorateOutputStream(fos), TEMP_FILE_BUFFER_SIZE);
+            } catch (IOException e) {
+                fos.close();
+                throw e;
+            }
+        }
+
+        @Override
+        protected OutputStream decorateOutputStream(FileOutputStream fos) throws IOException {
+            return new GZIPOutputStream(fos, TEMP_FILE_BUFFER_SIZE) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package dynamic_reports.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * A reusable byte buffer in front of the response stream. Text is encoded to UTF-8 and numbers and dates
+ * are rendered digit by digit straight into the buffer, so the text writers do not create a String per cell.
+ */
+public final class Utf8Buffer {
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private final byte[] digits = new byte[20];
+    private int position;
+
+    public Utf8Buffer(OutputStream out, int size) {
+        this.out = out;
+        this.buffer = new byte[Math.max(size, 64)];
+    }
+
+    public void write(int b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    public void write(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            drain();
+            if (bytes.length > buffer.length) {
+                out.write(bytes);
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    public void writeText(CharSequence text) throws IOException {
+        writeText(text, 0, text.length());
+    }
+
+    /**
+     * Encodes {@code text[from, to)} as UTF-8. Unpaired surrogates are written as '?'.
+     */
+    public void writeText(CharSequence text, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            if (buffer.length - position < 4) {
+                drain();
+            }
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeText(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        writeDigits(value, 1);
+    }
+
+    /**
+     * Plain (non scientific) notation, like {@link BigDecimal#toPlainString()}.
+     */
+    public void writeDecimal(BigDecimal value) throws IOException {
+        int scale = value.scale();
+        BigInteger unscaled = value.unscaledValue();
+        if (scale < 0 || scale >= POWERS_OF_TEN.length || unscaled.bitLength() >= 63) {
+            writeText(value.toPlainString());
+            return;
+        }
+        long digitsValue = unscaled.longValue();
+        if (digitsValue < 0) {
+            write('-');
+            digitsValue = -digitsValue;
+        }
+        writeDigits(digitsValue / POWERS_OF_TEN[scale], 1);
+        if (scale > 0) {
+            write('.');
+            writeDigits(digitsValue % POWERS_OF_TEN[scale], scale);
+        }
+    }
+
+    public void writeNumber(Number value) throws IOException {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeLong(value.longValue());
+        } else if (value instanceof BigDecimal) {
+            writeDecimal((BigDecimal) value);
+        } else {
+            writeText(value.toString());
+        }
+    }
+
+    /**
+     * Writes dates as {@code yyyy-MM-dd} and date-times as {@code yyyy-MM-dd HH:mm:ss}.
+     *
+     * @return false if {@code value} is not a date type
+     */
+    public boolean writeTemporal(Object value) throws IOException {
+        if (value instanceof java.sql.Date) {
+            writeDate(((java.sql.Date) value).toLocalDate());
+        } else if (value instanceof Timestamp) {
+            writeDateTime(((Timestamp) value).toLocalDateTime());
+        } else if (value instanceof LocalDate) {
+            writeDate((LocalDate) value);
+        } else if (value instanceof LocalDateTime) {
+            writeDateTime((LocalDateTime) value);
+        } else if (value instanceof Date) {
+            writeDateTime(LocalDateTime.ofInstant(((Date) value).toInstant(), ZoneId.systemDefault()));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void writeDate(LocalDate date) throws IOException {
+        writeDigits(date.getYear(), 4);
+        write('-');
+        writeDigits(date.getMonthValue(), 2);
+        write('-');
+        writeDigits(date.getDayOfMonth(), 2);
+    }
+
+    private void writeDateTime(LocalDateTime dateTime) throws IOException {
+        writeDate(dateTime.toLocalDate());
+        write(' ');
+        writeDigits(dateTime.getHour(), 2);
+        write(':');
+        writeDigits(dateTime.getMinute(), 2);
+        write(':');
+        writeDigits(dateTime.getSecond(), 2);
+    }
+
+    // non-negative value, left padded with zeros to minWidth
+    private void writeDigits(long value, int minWidth) throws IOException {
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+        while (count < minWidth) {
+            digits[count++] = '0';
+        }
+        if (buffer.length - position < count) {
+            drain();
+        }
+        while (count > 0) {
+            buffer[position++] = digits[--count];
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the target stream and flushes it.
+     */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
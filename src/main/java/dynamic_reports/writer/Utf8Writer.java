@@ -0,0 +1,60 @@
+package dynamic_reports.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * An unsynchronized {@link Writer} over a {@link Utf8Buffer}. SXSSF writes the XML of every cell as a series of
+ * short strings, and a {@link java.io.BufferedWriter} takes a lock for each of them; this writer only copies.
+ */
+final class Utf8Writer extends Writer {
+
+    private final OutputStream out;
+    private final Utf8Buffer buffer;
+
+    Utf8Writer(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = new Utf8Buffer(out, bufferSize);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (c < 0x80) {
+            buffer.write(c);
+        } else {
+            buffer.writeText(String.valueOf((char) c));
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        buffer.writeText(text, offset, offset + length);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        buffer.writeText(CharBuffer.wrap(chars), offset, offset + length);
+    }
+
+    @Override
+    public Writer append(CharSequence text) throws IOException {
+        buffer.writeText(text != null ? text : "null");
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        buffer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.flush();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package dynamic_reports.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import dynamic_reports.pipeline.CellFormatter;
+import dynamic_reports.pipeline.CellFormatters;
+
+/**
+ * Writes report rows into a windowed SXSSF workbook. Only the last
+ * {@code rowAccessWindow} rows are kept on the heap, older rows are flushed
+ * to a compressed temp file and copied into the final package on {@link #finish()}.
+ *
+ * With typed cells, numbers are written as numeric cells and dates as date cells, styled from a per-workbook
+ * {@link CellStylePool}; date columns with a {@code dd/MM/yyyy} style format get the equivalent Excel format.
+ * Otherwise every value is written as its text, as before. Text is always written as inline strings, so no
+ * shared-strings table is held in memory.
+ *
+ * A sheet that reaches {@code maxSheetRows} rows, the Excel limit by default, is continued on a new sheet
+ * named {@code report (2)} and so on, with the header repeated. {@link #partitionBy(int)} writes the rows of
+ * every value of a column to a sheet of their own instead. The sheets are deflated in parallel when the
+ * workbook is written.
+ */
+public class XlsxReportWriter implements ReportWriter {
+
+    // the Excel limit, SpreadsheetVersion.EXCEL2007.getMaxRows()
+    public static final int MAX_SHEET_ROWS = 1_048_576;
+    // every partition sheet keeps its window of rows and a temp file open until the workbook is written
+    public static final int MAX_PARTITIONS = 100;
+
+    // doubles hold integers up to 2^53 and 15 significant decimal digits exactly, larger numbers stay text
+    private static final long MAX_EXACT_LONG = 1L << 53;
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final int MAX_DECIMAL_STYLES = 10;
+    private static final String DATE_FORMAT = "yyyy-mm-dd";
+    private static final String DATE_TIME_FORMAT = "yyyy-mm-dd hh:mm:ss";
+    // rows are only appended, a partition sheet need not hold the full window
+    private static final int PARTITION_WINDOW = 50;
+    private static final String BLANK_PARTITION = "(blank)";
+
+    private final OutputStream out; // null for a sheet of a shared XlsxWorkbook
+    private final SXSSFWorkbook workbook;
+    private final SheetNames sheetNames;
+    private final int maxSheetRows;
+    private final boolean typedCells;
+    private final CellStylePool styles;
+    private final CellStyle defaultStyle;
+    private final CellStyle[] decimalStyles = new CellStyle[MAX_DECIMAL_STYLES + 1];
+    private CellStyle dateStyle;
+    private CellStyle dateTimeStyle;
+    private CellStyle[] dateStyles = new CellStyle[0]; // per column, for columns formatted natively
+    private CellFormatter[] textFormats = new CellFormatter[0]; // their format for values that are not dates
+    private String[] headers = new String[0];
+    private final SheetRows sheet; // the sheet created with the writer
+    private int partitionColumn = -1;
+    private Map<String, SheetRows> partitions;
+
+    public XlsxReportWriter(OutputStream out, int rowAccessWindow) {
+        this(out, rowAccessWindow, true);
+    }
+
+    public XlsxReportWriter(OutputStream out, int rowAccessWindow, boolean typedCells) {
+        this(out, rowAccessWindow, typedCells, MAX_SHEET_ROWS);
+    }
+
+    public XlsxReportWriter(OutputStream out, int rowAccessWindow, boolean typedCells, int maxSheetRows) {
+        this(out, new TempFileWorkbook(rowAccessWindow), new SheetNames(), "report", null, typedCells, maxSheetRows);
+    }
+
+    /**
+     * A writer for one sheet of {@code workbook}, which is written and closed by its owner.
+     */
+    XlsxReportWriter(SXSSFWorkbook workbook, SheetNames sheetNames, String sheetName, CellStylePool styles, boolean typedCells,
+            int maxSheetRows) {
+        this(null, workbook, sheetNames, sheetName, styles, typedCells, maxSheetRows);
+    }
+
+    private XlsxReportWriter(OutputStream out, SXSSFWorkbook workbook, SheetNames sheetNames, String sheetName, CellStylePool styles,
+            boolean typedCells, int maxSheetRows) {
+        if (maxSheetRows < 2 || maxSheetRows > MAX_SHEET_ROWS) {
+            throw new IllegalArgumentException("Sheets hold between 2 and " + MAX_SHEET_ROWS + " rows, not " + maxSheetRows);
+        }
+        this.out = out;
+        this.workbook = workbook;
+        this.sheetNames = sheetNames;
+        this.maxSheetRows = maxSheetRows;
+        this.typedCells = typedCells;
+        this.styles = styles != null ? styles : new CellStylePool(workbook);
+        this.defaultStyle = workbook.getCellStyleAt(0);
+        this.sheet = new SheetRows(sheetName);
+    }
+
+    @Override
+    public boolean[] formatsNatively(String[] formats) {
+        boolean[] columns = new boolean[formats.length];
+        if (!typedCells) {
+            return columns;
+        }
+        dateStyles = new CellStyle[formats.length];
+        textFormats = new CellFormatter[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            String excelFormat = CellFormatters.isDatePattern(formats[i]) ? ExcelDateFormats.toExcel(formats[i]) : null;
+            if (excelFormat != null) {
+                dateStyles[i] = styles.get(excelFormat);
+                textFormats[i] = CellFormatters.compile(formats[i]);
+                columns[i] = true;
+            }
+        }
+        return columns;
+    }
+
+    @Override
+    public void partitionBy(int column) {
+        partitionColumn = column;
+        partitions = new HashMap<>();
+    }
+
+    @Override
+    public void writeHeader(String[] headers) {
+        this.headers = headers;
+        sheet.writeHeader();
+    }
+
+    @Override
+    public void writeRow(Object[] rowData) {
+        SheetRows target = partitionColumn >= 0 ? partition(rowData[partitionColumn]) : sheet;
+        Row row = target.nextRow();
+        for (int i = 0; i < rowData.length; i++) {
+            Object value = rowData[i];
+            if (value == null) {
+                continue;
+            }
+            // a cell without a style has the workbook default looked up, and rebuilt, whenever it is flushed
+            Cell cell = row.createCell(i);
+            cell.setCellStyle(defaultStyle);
+            if (typedCells) {
+                writeTyped(cell, i, value);
+            } else {
+                cell.setCellValue(value.toString());
+            }
+        }
+    }
+
+    private SheetRows partition(Object value) {
+        String name = value == null ? BLANK_PARTITION : partitionName(value);
+        SheetRows partition = partitions.get(name);
+        if (partition != null) {
+            return partition;
+        }
+        if (partitions.size() == MAX_PARTITIONS) {
+            throw new IllegalArgumentException("The report has more than " + MAX_PARTITIONS + " partitions");
+        }
+        if (partitions.isEmpty()) {
+            // the first partition takes over the sheet created with the writer
+            sheet.rename(name);
+            partition = sheet;
+        } else {
+            partition = new SheetRows(name);
+            partition.setWindow(PARTITION_WINDOW);
+            partition.writeHeader();
+        }
+        partitions.put(name, partition);
+        return partition;
+    }
+
+    private String partitionName(Object value) {
+        // a natively formatted date column is named as it is displayed
+        CellFormatter format = partitionColumn < textFormats.length ? textFormats[partitionColumn] : null;
+        String name = String.valueOf(format != null ? format.format(value) : value);
+        return name.isBlank() ? BLANK_PARTITION : name;
+    }
+
+    /**
+     * One sheet of rows: a partition, or the report when it is not partitioned, continued on further sheets
+     * when it grows past {@code maxSheetRows}.
+     */
+    private final class SheetRows {
+
+        private String name;
+        private SXSSFSheet sheet;
+        private int rowIndex;
+        private int parts = 1;
+        private int window = -1; // the workbook's by default
+
+        SheetRows(String name) {
+            this.name = name;
+            this.sheet = newSheet(name);
+        }
+
+        Row nextRow() {
+            if (rowIndex == maxSheetRows) {
+                parts++;
+                sheet = newSheet(name + " (" + parts + ")");
+                setWindow(window);
+                rowIndex = 0;
+                writeHeader();
+            }
+            return sheet.createRow(rowIndex++);
+        }
+
+        void setWindow(int rows) {
+            window = rows;
+            if (rows > 0) {
+                sheet.setRandomAccessWindowSize(rows);
+            }
+        }
+
+        void writeHeader() {
+            Row headerRow = sheet.createRow(rowIndex++);
+            for (int i = 0; i < headers.length; i++) {
+                Cell cell = headerRow.createCell(i);
+                cell.setCellStyle(defaultStyle);
+                cell.setCellValue(headers[i]);
+            }
+        }
+
+        void rename(String newName) {
+            synchronized (workbook) {
+                String sheetName = sheetNames.unique(newName);
+                sheetNames.release(sheet.getSheetName());
+                workbook.setSheetName(workbook.getSheetIndex(sheet), sheetName);
+            }
+            name = newName;
+        }
+    }
+
+    private SXSSFSheet newSheet(String name) {
+        // the sheets of a shared workbook are created from the threads writing them
+        synchronized (workbook) {
+            return workbook.createSheet(sheetNames.unique(name));
+        }
+    }
+
+    private void writeTyped(Cell cell, int column, Object value) {
+        if (value instanceof String text) {
+            // text in a natively formatted date column, e.g. a dd/MM/yyyy string from the source
+            boolean dateColumn = column < textFormats.length && textFormats[column] != null;
+            cell.setCellValue(dateColumn ? String.valueOf(textFormats[column].format(text)) : text);
+        } else if (value instanceof BigDecimal decimal) {
+            if (decimal.precision() > MAX_EXACT_DIGITS) {
+                cell.setCellValue(decimal.toString());
+                return;
+            }
+            cell.setCellValue(decimal.doubleValue());
+            if (decimal.scale() > 0) {
+                cell.setCellStyle(decimalStyle(decimal.scale()));
+            }
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            long number = ((Number) value).longValue();
+            if (Math.abs(number) <= MAX_EXACT_LONG) {
+                cell.setCellValue(number);
+            } else {
+                cell.setCellValue(value.toString());
+            }
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (Double.isFinite(number)) {
+                cell.setCellValue(number);
+            } else {
+                cell.setCellValue(value.toString());
+            }
+        } else if (value instanceof BigInteger integer && integer.bitLength() <= 53) {
+            cell.setCellValue(integer.doubleValue());
+        } else if (value instanceof Boolean bool) {
+            cell.setCellValue(bool);
+        } else {
+            LocalDateTime dateTime = CellFormatters.toLocalDateTime(value);
+            if (dateTime != null) {
+                cell.setCellValue(dateTime);
+                cell.setCellStyle(dateStyle(column, value));
+            } else {
+                cell.setCellValue(value.toString());
+            }
+        }
+    }
+
+    private CellStyle decimalStyle(int scale) {
+        int digits = Math.min(scale, MAX_DECIMAL_STYLES);
+        CellStyle style = decimalStyles[digits];
+        if (style == null) {
+            style = styles.get("0." + "0".repeat(digits));
+            decimalStyles[digits] = style;
+        }
+        return style;
+    }
+
+    private CellStyle dateStyle(int column, Object value) {
+        if (column < dateStyles.length && dateStyles[column] != null) {
+            return dateStyles[column];
+        }
+        if (value instanceof java.sql.Date || value instanceof LocalDate) {
+            if (dateStyle == null) {
+                dateStyle = styles.get(DATE_FORMAT);
+            }
+            return dateStyle;
+        }
+        if (dateTimeStyle == null) {
+            dateTimeStyle = styles.get(DATE_TIME_FORMAT);
+        }
+        return dateTimeStyle;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (out != null) {
+            workbook.write(out);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null) {
+            return;
+        }
+        // also removes the temp files backing flushed rows
+        workbook.close();
+    }
+}
@@ -0,0 +1,55 @@
+package dynamic_reports.writer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * A workbook with one sheet per report. Each {@link #newSheet(String) sheet writer} can be written from its own
+ * thread: every sheet flushes to its own temp file, and the shared state, the cell styles and the sheet names,
+ * is guarded by locks. A report continued on further sheets, or partitioned, adds them as it writes.
+ * {@link ReportWriter#finish()} and {@link ReportWriter#close()} of a sheet do nothing, the workbook is written
+ * once all sheets are complete.
+ */
+public class XlsxWorkbook implements Closeable {
+
+    private final SXSSFWorkbook workbook;
+    private final CellStylePool styles;
+    private final boolean typedCells;
+    private final int maxSheetRows;
+    private final SheetNames sheetNames = new SheetNames();
+
+    public XlsxWorkbook(int rowAccessWindow, boolean typedCells) {
+        this(rowAccessWindow, typedCells, XlsxReportWriter.MAX_SHEET_ROWS);
+    }
+
+    public XlsxWorkbook(int rowAccessWindow, boolean typedCells, int maxSheetRows) {
+        this.workbook = new TempFileWorkbook(rowAccessWindow);
+        this.styles = new CellStylePool(workbook);
+        this.typedCells = typedCells;
+        this.maxSheetRows = maxSheetRows;
+    }
+
+    /**
+     * Adds a sheet named after {@code name}, made safe for Excel and numbered if another sheet has the name.
+     */
+    public ReportWriter newSheet(String name) {
+        return new XlsxReportWriter(workbook, sheetNames, name, styles, typedCells, maxSheetRows);
+    }
+
+    public int getSheetCount() {
+        return workbook.getNumberOfSheets();
+    }
+
+    public void write(OutputStream out) throws IOException {
+        workbook.write(out);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // also removes the temp files backing flushed rows
+        workbook.close();
+    }
+}
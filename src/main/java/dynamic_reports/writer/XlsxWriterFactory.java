@@ -0,0 +1,52 @@
+package dynamic_reports.writer;
+
+import java.io.OutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class XlsxWriterFactory implements ReportWriterFactory {
+
+    @Value("${reports.xlsx.row-access-window:500}")
+    private int rowAccessWindow;
+
+    @Value("${reports.xlsx.typed-cells:true}")
+    private boolean typedCells;
+
+    @Value("${reports.xlsx.max-sheet-rows:" + XlsxReportWriter.MAX_SHEET_ROWS + "}")
+    private int maxSheetRows;
+
+    @Override
+    public String getFormat() {
+        return "xlsx";
+    }
+
+    @Override
+    public String getContentType() {
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "xlsx";
+    }
+
+    @Override
+    public boolean isCompressible() {
+        // a workbook is a zip archive of deflated parts
+        return false;
+    }
+
+    @Override
+    public ReportWriter create(OutputStream out) {
+        return new XlsxReportWriter(out, rowAccessWindow, typedCells, maxSheetRows);
+    }
+
+    /**
+     * An empty workbook that several reports write their own sheet of.
+     */
+    public XlsxWorkbook createWorkbook() {
+        return new XlsxWorkbook(rowAccessWindow, typedCells, maxSheetRows);
+    }
+}
@@ -0,0 +1,78 @@
+package dynamic_reports.bench;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import dynamic_reports.pipeline.CellFormatter;
+import dynamic_reports.pipeline.CellFormatters;
+
+/**
+ * Each column format branch on the values it sees in outward registers: text for the case formats, the JDBC
+ * and java.time date types plus dd/MM/yyyy strings for date patterns. Scores are cells per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+    static final int CELLS = 4096;
+
+    @Param({ "none", "uppercase", "lowercase", "sentencecase", "dd/MM/yyyy", "dd-MM-yyyy HH:mm:ss" })
+    public String format;
+
+    private CellFormatter formatter;
+    private Object[] cells;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        formatter = CellFormatters.compile(format.equals("none") ? null : format);
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        cells = new Object[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            LocalDate date = start.plusDays(random.nextInt(365));
+            if (!CellFormatters.isDatePattern(format)) {
+                cells[i] = random.nextInt(8) == 0 ? null : "maharashtra Value " + random.nextInt(1000);
+                continue;
+            }
+            cells[i] = switch (i % 5) {
+                case 0 -> Date.valueOf(date);
+                case 1 -> Timestamp.valueOf(date.atTime(10, 30));
+                case 2 -> date;
+                case 3 -> LocalDateTime.of(date, LocalTime.NOON);
+                default -> String.format("%02d/%02d/%04d", date.getDayOfMonth(), date.getMonthValue(), date.getYear());
+            };
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void formatCells(Blackhole bh) {
+        for (Object cell : cells) {
+            bh.consume(formatter.format(cell));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package dynamic_reports.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.dto.ReportConfig.ColumnConfig;
+import dynamic_reports.pipeline.FilterCompiler;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.writer.CsvReportWriter;
+import dynamic_reports.writer.NdjsonReportWriter;
+import dynamic_reports.writer.ReportWriter;
+import dynamic_reports.writer.XlsxReportWriter;
+
+/**
+ * Every stage of the row pipeline over whole reports of 10k, 100k and 1M outward rows: projection, filtering,
+ * formatting, each writer on already formatted rows, and the complete xlsx report. The source cycles through
+ * {@value #DISTINCT_ROWS} generated rows so the 1M row runs do not need 1M rows on the heap.
+ *
+ * The primary score is reports per second, the {@code rows} counter is rows per second. Run with the gc
+ * profiler ({@link ReportBenchmarks} adds it) for the allocation per report.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    static final int DISTINCT_ROWS = 4096;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int rowCount;
+
+    private String[] columns;
+    private Object[][] sourceRows;
+    private Map<String, ColumnConfig> fixed;
+    private List<ReportConfig.Filter> filters;
+    private Object[][] formattedRows;
+
+    /**
+     * Rows processed per second, reported next to the per-report score.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rows {
+
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        columns = SyntheticResultSet.outwardColumns();
+        sourceRows = SyntheticResultSet.generateRows(columns, DISTINCT_ROWS, 42);
+        fixed = new LinkedHashMap<>();
+        for (int i = 0; i < ProjectionBenchmark.FIXED_INDEXES.length; i++) {
+            int index = ProjectionBenchmark.FIXED_INDEXES[i];
+            ColumnConfig column = new ColumnConfig();
+            column.setName(columns[index]);
+            column.setMappedIndex(index);
+            column.setFormat(format(columns[index]));
+            fixed.put("column" + (i + 1), column);
+        }
+        filters = List.of(
+                filter("Total Invoice Amt", ">", "10000"),
+                filter("Invoice Date", "between", "05/01/2025,20/02/2025"),
+                filter("Buyer State", "in", "MAHARASHTRA,GUJARAT,DELHI,KARNATAKA"));
+
+        ResultSet rs = source();
+        ProjectionPlan plan = ProjectionPlan.compile(fixed, rs.getMetaData());
+        formattedRows = new Object[DISTINCT_ROWS][];
+        for (int r = 0; rs.next(); r++) {
+            Object[] row = plan.project(rs);
+            plan.format(row);
+            formattedRows[r] = row;
+        }
+    }
+
+    @Benchmark
+    public void project(Rows counter, Blackhole bh) throws SQLException {
+        ResultSet rs = source(rowCount);
+        ProjectionPlan plan = ProjectionPlan.compile(fixed, rs.getMetaData());
+        while (rs.next()) {
+            bh.consume(plan.project(rs));
+        }
+        counter.rows += rowCount;
+    }
+
+    @Benchmark
+    public void filter(Rows counter, Blackhole bh) throws SQLException {
+        ResultSet rs = source(rowCount);
+        ProjectionPlan plan = ProjectionPlan.compile(fixed, rs.getMetaData());
+        Predicate<Object[]> rowFilter = FilterCompiler.compile(filters, plan);
+        while (rs.next()) {
+            bh.consume(rowFilter.test(plan.project(rs)));
+        }
+        counter.rows += rowCount;
+    }
+
+    @Benchmark
+    public void format(Rows counter, Blackhole bh) throws SQLException {
+        ResultSet rs = source(rowCount);
+        ProjectionPlan plan = ProjectionPlan.compile(fixed, rs.getMetaData());
+        while (rs.next()) {
+            Object[] row = plan.project(rs);
+            plan.format(row);
+            bh.consume(row);
+        }
+        counter.rows += rowCount;
+    }
+
+    @Benchmark
+    public void writeXlsx(Rows counter) throws IOException {
+        write(new XlsxReportWriter(OutputStream.nullOutputStream(), 500), counter);
+    }
+
+    @Benchmark
+    public void writeCsv(Rows counter) throws IOException {
+        write(new CsvReportWriter(OutputStream.nullOutputStream(), 65536), counter);
+    }
+
+    @Benchmark
+    public void writeNdjson(Rows counter) throws IOException {
+        write(new NdjsonReportWriter(OutputStream.nullOutputStream(), 65536), counter);
+    }
+
+    /**
+     * The whole report the way ReportService runs it on one thread: project, filter, format and write xlsx.
+     */
+    @Benchmark
+    public void xlsxReport(Rows counter) throws SQLException, IOException {
+        ResultSet rs = source(rowCount);
+        ProjectionPlan plan = ProjectionPlan.compile(fixed, rs.getMetaData());
+        Predicate<Object[]> rowFilter = FilterCompiler.compile(filters, plan);
+        try (ReportWriter writer = new XlsxReportWriter(OutputStream.nullOutputStream(), 500)) {
+            writer.writeHeader(plan.getNames());
+            while (rs.next()) {
+                Object[] row = plan.project(rs);
+                if (rowFilter.test(row)) {
+                    plan.format(row);
+                    writer.writeRow(row);
+                }
+            }
+            writer.finish();
+        }
+        counter.rows += rowCount;
+    }
+
+    private void write(ReportWriter reportWriter, Rows counter) throws IOException {
+        try (ReportWriter writer = reportWriter) {
+            writer.writeHeader(fixed.values().stream().map(ColumnConfig::getName).toArray(String[]::new));
+            for (int r = 0; r < rowCount; r++) {
+                writer.writeRow(formattedRows[r % DISTINCT_ROWS]);
+            }
+            writer.finish();
+        }
+        counter.rows += rowCount;
+    }
+
+    private ResultSet source() {
+        return SyntheticResultSet.of(columns, sourceRows);
+    }
+
+    private ResultSet source(int rows) {
+        return SyntheticResultSet.cycling(columns, sourceRows, rows);
+    }
+
+    // the formats outward report configurations use, so every formatter branch is exercised
+    static String format(String column) {
+        return switch (column) {
+            case "Supplier GSTIN", "Buyer GSTIN" -> "uppercase";
+            case "Doc Type", "UOM" -> "lowercase";
+            case "Buyer State", "Supply Direction" -> "sentencecase";
+            case "Invoice Date" -> "dd/MM/yyyy";
+            default -> null;
+        };
+    }
+
+    private static ReportConfig.Filter filter(String column, String condition, String value) {
+        ReportConfig.Filter filter = new ReportConfig.Filter();
+        filter.setColumn(column);
+        filter.setCondition(condition);
+        filter.setValue(value);
+        return filter;
+    }
+}
@@ -0,0 +1,107 @@
+package dynamic_reports.bench;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+
+import dynamic_reports.dto.ReportConfig.ColumnConfig;
+import dynamic_reports.pipeline.ProjectionPlan;
+
+/**
+ * Row projection on 140-column outward rows: the previous map-per-row path (ColumnMapRowMapper
+ * plus a positional scan of the LinkedHashMap for every fixed column) against {@link ProjectionPlan}.
+ * Scores are rows per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    static final int ROWS = 1_000;
+
+    // the readme example plus the amount and tax columns typically pulled into outward reports
+    static final int[] FIXED_INDEXES = { 1, 0, 2, 73, 41, 40, 15, 22, 47, 49, 54, 57, 59, 61, 69, 135 };
+
+    private String[] columns;
+    private Object[][] rows;
+    private Map<String, ColumnConfig> fixed;
+    private ResultSet rs;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        columns = SyntheticResultSet.outwardColumns();
+        rows = SyntheticResultSet.generateRows(columns, ROWS, 42);
+        fixed = new LinkedHashMap<>();
+        for (int i = 0; i < FIXED_INDEXES.length; i++) {
+            ColumnConfig column = new ColumnConfig();
+            column.setName(columns[FIXED_INDEXES[i]]);
+            column.setMappedIndex(FIXED_INDEXES[i]);
+            fixed.put("column" + (i + 1), column);
+        }
+        rs = SyntheticResultSet.of(columns, rows);
+    }
+
+    @Setup(Level.Invocation)
+    public void rewind() throws SQLException {
+        rs.beforeFirst();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapPerRow(Blackhole bh) throws SQLException {
+        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+        int rowNum = 0;
+        while (rs.next()) {
+            Map<String, Object> dataItem = rowMapper.mapRow(rs, rowNum++);
+            Map<String, Object> mapData = new LinkedHashMap<>();
+            for (ColumnConfig column : fixed.values()) {
+                mapData.put(column.getName(), getDataByIndex(dataItem, column.getMappedIndex()));
+            }
+            bh.consume(mapData);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void projectionPlan(Blackhole bh) throws SQLException {
+        ProjectionPlan plan = ProjectionPlan.compile(fixed, rs.getMetaData());
+        while (rs.next()) {
+            bh.consume(plan.project(rs));
+        }
+    }
+
+    // the lookup ReportService used before the projection plan
+    private static Object getDataByIndex(Map<String, Object> dataItem, int index) {
+        Iterator<Map.Entry<String, Object>> iterator = dataItem.entrySet().iterator();
+        int currentIndex = 0;
+        while (iterator.hasNext()) {
+            Map.Entry<String, Object> entry = iterator.next();
+            if (currentIndex == index) {
+                return entry.getValue();
+            }
+            currentIndex++;
+        }
+        return null;
+    }
+}
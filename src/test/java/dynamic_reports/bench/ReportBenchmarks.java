@@ -0,0 +1,37 @@
+package dynamic_reports.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the report pipeline benchmarks with the gc profiler, so every score comes with its allocation rate
+ * ({@code gc.alloc.rate}) and bytes allocated per operation ({@code gc.alloc.rate.norm}). Arguments are JMH
+ * command line options, e.g. a benchmark regex or {@code -p rowCount=100000}:
+ *
+ * <pre>
+ * mvn -B -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) dynamic_reports.bench.ReportBenchmarks PipelineBenchmark
+ * </pre>
+ */
+public final class ReportBenchmarks {
+
+    private ReportBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(ReportBenchmarks.class.getPackageName() + ".*Benchmark");
+        }
+        Options withProfiler = options.parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(withProfiler).run();
+    }
+}
@@ -0,0 +1,202 @@
+package dynamic_reports.bench;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.google.gson.Gson;
+
+import dynamic_reports.DynamicReportsApplication;
+
+/**
+ * Load test of {@code POST /report} without MySQL. Starts the application in-process with the {@code loadtest}
+ * profile, H2 in MySQL mode and the synthetic {@link SalesRegisterProcedure}, then sends the outward register,
+ * every column of {@code reports.header.outward}, from N parallel clients and reports throughput, p50/p99
+ * latency and the peak heap of the JVM, which holds the clients and the database as well as the service.
+ *
+ * <pre>
+ * mvn -B -q test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -Xmx2g -cp target/classes:target/test-classes:$(cat cp.txt) dynamic_reports.bench.ReportLoadTest --clients=8 --rows=100000
+ * </pre>
+ *
+ * Options: {@code --clients} (8), {@code --requests} per client (10), {@code --rows} per report (10000),
+ * {@code --format} (xlsx), {@code --endpoint} (/report), {@code --warmup} requests (2) and {@code --identical}
+ * (false: every request asks for another supplier, so identical requests are not coalesced). Other
+ * {@code --name=value} arguments are passed to the application, e.g. {@code --reports.admission.memory-budget=256MB}.
+ */
+public final class ReportLoadTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private ReportLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of("clients", "8", "requests", "10", "rows", "10000", "format", "xlsx",
+                "endpoint", "/report", "warmup", "2", "identical", "false"));
+        List<String> applicationArgs = new ArrayList<>(List.of("--server.port=0"));
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            if (options.containsKey(option[0])) {
+                options.put(option[0], option.length > 1 ? option[1] : "true");
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+        int clients = Integer.parseInt(options.get("clients"));
+        int requests = Integer.parseInt(options.get("requests"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        boolean identical = Boolean.parseBoolean(options.get("identical"));
+        System.setProperty(SalesRegisterProcedure.ROWS_PROPERTY, options.get("rows"));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DynamicReportsApplication.class)
+                .profiles("loadtest")
+                .run(applicationArgs.toArray(String[]::new))) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + options.get("endpoint"));
+            HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            AtomicInteger suppliers = new AtomicInteger();
+
+            for (int i = 0; i < warmup; i++) {
+                send(http, uri, body(options.get("format"), identical ? 0 : suppliers.incrementAndGet()));
+            }
+
+            Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+            AtomicLong bytes = new AtomicLong();
+            long[] latencies = new long[clients * requests];
+            AtomicInteger completed = new AtomicInteger();
+            HeapSampler heap = new HeapSampler();
+            long gcBefore = gcMillis();
+            Thread sampler = Thread.ofPlatform().daemon().start(heap);
+            long start = System.nanoTime();
+            try (ExecutorService executor = Executors.newFixedThreadPool(clients)) {
+                List<Future<?>> running = new ArrayList<>();
+                for (int c = 0; c < clients; c++) {
+                    running.add(executor.submit(() -> {
+                        for (int r = 0; r < requests; r++) {
+                            String body = body(options.get("format"), identical ? 0 : suppliers.incrementAndGet());
+                            long sent = System.nanoTime();
+                            Response response = send(http, uri, body);
+                            latencies[completed.getAndIncrement()] = System.nanoTime() - sent;
+                            statuses.computeIfAbsent(response.status(), status -> new AtomicInteger()).incrementAndGet();
+                            bytes.addAndGet(response.bytes());
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> client : running) {
+                    client.get();
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            sampler.interrupt();
+            sampler.join();
+
+            Arrays.sort(latencies);
+            double seconds = elapsed / 1e9;
+            int ok = statuses.getOrDefault(200, new AtomicInteger()).get();
+            System.out.printf(Locale.ROOT, "%nPOST %s, %d clients x %d requests, %s rows, %s%n", options.get("endpoint"), clients, requests,
+                    options.get("rows"), options.get("format"));
+            System.out.printf(Locale.ROOT, "requests    %d in %.1f s, %d ok, statuses %s%n", latencies.length, seconds, ok, new TreeMap<>(statuses));
+            System.out.printf(Locale.ROOT, "throughput  %.2f requests/s, %.1f MB/s%n", latencies.length / seconds, bytes.get() / seconds / MB);
+            System.out.printf(Locale.ROOT, "latency     p50 %d ms, p99 %d ms, max %d ms%n", millis(percentile(latencies, 50)),
+                    millis(percentile(latencies, 99)), millis(latencies[latencies.length - 1]));
+            System.out.printf(Locale.ROOT, "heap        peak %d MB of %d MB, %d ms in gc%n", heap.peak() / MB, Runtime.getRuntime().maxMemory() / MB,
+                    gcMillis() - gcBefore);
+        }
+    }
+
+    private record Response(int status, long bytes) {
+    }
+
+    private static Response send(HttpClient http, URI uri, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<InputStream> response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        // read and discarded, the clients hold no report on the heap
+        try (InputStream in = response.body()) {
+            return new Response(response.statusCode(), in.transferTo(OutputStream.nullOutputStream()));
+        }
+    }
+
+    /**
+     * The outward register of one supplier for January, every column of the layout in order.
+     */
+    static String body(String format, int supplier) {
+        String[] columns = SyntheticResultSet.outwardColumns();
+        Map<String, Object> fixed = new LinkedHashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            fixed.put("column" + (i + 1), Map.of("name", columns[i], "mappedIndex", i));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("name", "outward load test");
+        report.put("format", format);
+        report.put("datasource", Map.of("spName", "sp_reports_SalesRegister",
+                "spParams", List.of(String.format(Locale.ROOT, "27ABCDE%04dF1Z5", supplier), "01-01-2025", "31-01-2025")));
+        report.put("meta", Map.of("fixed", fixed));
+        return new Gson().toJson(report);
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    /**
+     * Samples the used heap every 10 ms until interrupted.
+     */
+    private static final class HeapSampler implements Runnable {
+
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private volatile long peak;
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak = Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long peak() {
+            return Math.max(peak, memory.getHeapMemoryUsage().getUsed());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package dynamic_reports.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+
+import dynamic_reports.pipeline.SourceColumns;
+import dynamic_reports.store.RowStore;
+
+/**
+ * Retained heap per row of 141-column outward rows held as JDBC row maps (what ColumnMapRowMapper returned to
+ * the old pipeline), as plain {@code Object[]} rows, and in a {@link RowStore}. Measured as the difference in
+ * used heap after full GCs, run with a fixed heap so the numbers are stable:
+ *
+ * <pre>
+ * java -Xms2g -Xmx2g -cp target/classes:target/test-classes:$(cat cp.txt) dynamic_reports.bench.RowFootprint 20000
+ * </pre>
+ */
+public final class RowFootprint {
+
+    private RowFootprint() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        String[] columns = SyntheticResultSet.outwardColumns();
+        Path spillDir = Files.createTempDirectory("row-footprint");
+
+        report("row maps", rowCount, measure(() -> rowMaps(columns, rowCount)));
+        report("Object[] rows", rowCount, measure(() -> SyntheticResultSet.generateRows(columns, rowCount, 42)));
+        RowStore[] store = new RowStore[1];
+        report("row store", rowCount, measure(() -> store[0] = rowStore(columns, rowCount, spillDir)));
+        System.out.printf("%-14s %8.1f bytes/row (estimated by the store)%n", "", (double) store[0].heapBytes() / rowCount);
+        store[0].close();
+    }
+
+    private static List<Map<String, Object>> rowMaps(String[] columns, int rowCount) {
+        ResultSet rs = SyntheticResultSet.of(columns, SyntheticResultSet.generateRows(columns, rowCount, 42));
+        ColumnMapRowMapper mapper = new ColumnMapRowMapper();
+        List<Map<String, Object>> rows = new ArrayList<>(rowCount);
+        try {
+            for (int i = 0; rs.next(); i++) {
+                rows.add(mapper.mapRow(rs, i));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return rows;
+    }
+
+    private static RowStore rowStore(String[] columns, int rowCount, Path spillDir) {
+        int[] sqlTypes = new int[columns.length];
+        for (int c = 0; c < columns.length; c++) {
+            sqlTypes[c] = SyntheticResultSet.sqlType(columns[c]);
+        }
+        RowStore store = new RowStore(new SourceColumns(columns, sqlTypes), Long.MAX_VALUE, spillDir);
+        try {
+            // generated a batch at a time, so the source rows do not outlive their batch
+            for (int start = 0; start < rowCount; start += RowStore.BATCH_SIZE) {
+                Object[][] rows = SyntheticResultSet.generateRows(columns, Math.min(RowStore.BATCH_SIZE, rowCount - start), start);
+                for (Object[] row : rows) {
+                    store.add(row);
+                }
+            }
+            store.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return store;
+    }
+
+    private static long measure(Supplier<Object> build) {
+        long before = usedHeap();
+        Object structure = build.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(structure);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static void report(String layout, int rowCount, long bytes) {
+        System.out.printf("%-14s %8.1f bytes/row (%,d bytes for %,d rows)%n", layout, (double) bytes / rowCount, bytes, rowCount);
+    }
+}
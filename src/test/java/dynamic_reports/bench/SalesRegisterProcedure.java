@@ -0,0 +1,59 @@
+package dynamic_reports.bench;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+
+/**
+ * H2 stand-in for sp_reports_SalesRegister, registered by {@code loadtest/schema.sql}: returns
+ * {@code loadtest.rows} rows (system property, 10000 by default) in the {@code reports.header.outward} layout,
+ * generated as they are read. The supplier GSTIN parameter seeds the values, so different suppliers get
+ * different registers; the date parameters are ignored.
+ */
+public final class SalesRegisterProcedure {
+
+    public static final String ROWS_PROPERTY = "loadtest.rows";
+
+    // distinct rows generated per call, cycled through for the rest
+    private static final int POOL_SIZE = 1024;
+    private static final String[] COLUMNS = SyntheticResultSet.outwardColumns();
+
+    private SalesRegisterProcedure() {
+    }
+
+    public static ResultSet call(Connection connection, String supplierGstin, String fromDate, String toDate) throws SQLException {
+        boolean columnsOnly = connection.getMetaData().getURL().equals("jdbc:columnlist:connection");
+        long rowCount = columnsOnly ? 0 : Long.getLong(ROWS_PROPERTY, 10_000);
+        Object[][] pool = columnsOnly ? new Object[0][] : SyntheticResultSet.generateRows(COLUMNS, POOL_SIZE, String.valueOf(supplierGstin).hashCode());
+
+        SimpleResultSet rs = new SimpleResultSet(new SimpleRowSource() {
+            private long row;
+
+            @Override
+            public Object[] readRow() {
+                return row < rowCount ? pool[(int) (row++ % POOL_SIZE)] : null;
+            }
+
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public void reset() {
+                row = 0;
+            }
+        });
+        for (String column : COLUMNS) {
+            switch (SyntheticResultSet.sqlType(column)) {
+                case Types.DATE -> rs.addColumn(column, Types.DATE, 0, 0);
+                case Types.DECIMAL -> rs.addColumn(column, Types.DECIMAL, 18, 2);
+                default -> rs.addColumn(column, Types.VARCHAR, 255, 0);
+            }
+        }
+        return rs;
+    }
+}
@@ -0,0 +1,120 @@
+package dynamic_reports.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * In-memory {@link ResultSet} shaped like the {@code reports.header.outward} layout of
+ * sp_reports_SalesRegister, so the pipeline can be benchmarked without MySQL.
+ */
+public final class SyntheticResultSet {
+
+    private static final String[] STATES = { "MAHARASHTRA", "KARNATAKA", "GUJARAT", "DELHI", "TAMIL NADU", "UTTAR PRADESH" };
+    private static final String[] DOC_TYPES = { "INV", "CRN", "DBN" };
+    private static final String[] UOMS = { "NOS", "KGS", "BOX", "PCS", "LTR" };
+
+    private SyntheticResultSet() {
+    }
+
+    public static String[] outwardColumns() {
+        Properties properties = new Properties();
+        try (InputStream in = SyntheticResultSet.class.getResourceAsStream("/application.properties")) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Arrays.stream(properties.getProperty("reports.header.outward").split(","))
+                .map(String::trim)
+                .toArray(String[]::new);
+    }
+
+    public static int sqlType(String column) {
+        String lower = column.toLowerCase();
+        if (lower.contains("date") || lower.contains("till")) return Types.DATE;
+        if (lower.contains("amt") || lower.contains("amount") || lower.contains("rate") || lower.contains("value")
+                || lower.contains("qty") || lower.equals("quantity") || lower.contains("duty")) return Types.DECIMAL;
+        return Types.VARCHAR;
+    }
+
+    /**
+     * Rows with repetitive GSTINs, states, doc types and UOMs, the way real registers look.
+     */
+    public static Object[][] generateRows(String[] columns, int rowCount, long seed) {
+        Random random = new Random(seed);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        Object[][] rows = new Object[rowCount][];
+        for (int r = 0; r < rowCount; r++) {
+            Object[] row = new Object[columns.length];
+            int supplier = random.nextInt(50);
+            for (int c = 0; c < columns.length; c++) {
+                String lower = columns[c].toLowerCase();
+                switch (sqlType(columns[c])) {
+                    case Types.DATE -> row[c] = Date.valueOf(start.plusDays(random.nextInt(60)));
+                    case Types.DECIMAL -> row[c] = BigDecimal.valueOf(random.nextInt(10_000_000), 2);
+                    default -> {
+                        if (lower.contains("gstin")) row[c] = String.format("27ABCDE%04dF1Z5", supplier);
+                        else if (lower.contains("state") || lower.contains("place of supply")) row[c] = STATES[random.nextInt(STATES.length)];
+                        else if (lower.contains("doc type")) row[c] = DOC_TYPES[random.nextInt(DOC_TYPES.length)];
+                        else if (lower.equals("uom")) row[c] = UOMS[random.nextInt(UOMS.length)];
+                        else if (lower.contains("invoice no")) row[c] = "INV/" + (r / 4);
+                        else if (random.nextInt(4) == 0) row[c] = null;
+                        else row[c] = "value " + random.nextInt(1000);
+                    }
+                }
+            }
+            rows[r] = row;
+        }
+        return rows;
+    }
+
+    /**
+     * A forward-only result set over {@code rows}. Only the methods used by the report pipeline are implemented.
+     */
+    public static ResultSet of(String[] columns, Object[][] rows) {
+        return cycling(columns, rows, rows.length);
+    }
+
+    /**
+     * A forward-only result set of {@code rowCount} rows that cycles through {@code rows}, so large results can
+     * be simulated without holding every row.
+     */
+    public static ResultSet cycling(String[] columns, Object[][] rows, int rowCount) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(SyntheticResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> columns.length;
+                    case "getColumnLabel", "getColumnName" -> columns[(int) args[0] - 1];
+                    case "getColumnType" -> sqlType(columns[(int) args[0] - 1]);
+                    case "getColumnClassName" -> switch (sqlType(columns[(int) args[0] - 1])) {
+                        case Types.DATE -> Date.class.getName();
+                        case Types.DECIMAL -> BigDecimal.class.getName();
+                        default -> String.class.getName();
+                    };
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        int[] cursor = { -1 };
+        return (ResultSet) Proxy.newProxyInstance(SyntheticResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> ++cursor[0] < rowCount;
+                    case "beforeFirst" -> {
+                        cursor[0] = -1;
+                        yield null;
+                    }
+                    case "getObject" -> rows[cursor[0] % rows.length][(int) args[0] - 1];
+                    case "wasNull" -> false;
+                    case "getMetaData" -> metaData;
+                    case "close" -> null;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
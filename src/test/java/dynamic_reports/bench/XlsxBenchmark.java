@@ -0,0 +1,120 @@
+package dynamic_reports.bench;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import dynamic_reports.dto.ReportConfig.ColumnConfig;
+import dynamic_reports.pipeline.ProjectionPlan;
+import dynamic_reports.writer.ReportWriter;
+import dynamic_reports.writer.XlsxReportWriter;
+
+/**
+ * The xlsx writer with typed cells against the text cells every value used to be written as, on the outward
+ * columns of {@link PipelineBenchmark}, in one sheet or split into sheets that are deflated in parallel. The score
+ * is the time to write a whole workbook; the size of the workbook is printed when the trial ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class XlsxBenchmark {
+
+    @Param({ "10000", "100000" })
+    public int rowCount;
+
+    @Param({ "text", "typed" })
+    public String cells;
+
+    // rows per sheet: one sheet, or sheets of 25000 rows deflated in parallel
+    @Param({ "1048576", "25000" })
+    public int sheetRows;
+
+    private String[] names;
+    private String[] formats;
+    private ProjectionPlan plan;
+    private Object[][] sourceRows;
+    private String[] columns;
+    private long bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        columns = SyntheticResultSet.outwardColumns();
+        sourceRows = SyntheticResultSet.generateRows(columns, PipelineBenchmark.DISTINCT_ROWS, 42);
+        Map<String, ColumnConfig> fixed = new LinkedHashMap<>();
+        for (int i = 0; i < ProjectionBenchmark.FIXED_INDEXES.length; i++) {
+            int index = ProjectionBenchmark.FIXED_INDEXES[i];
+            ColumnConfig column = new ColumnConfig();
+            column.setName(columns[index]);
+            column.setMappedIndex(index);
+            column.setFormat(PipelineBenchmark.format(columns[index]));
+            fixed.put("column" + (i + 1), column);
+        }
+        try {
+            plan = ProjectionPlan.compile(fixed, SyntheticResultSet.of(columns, sourceRows).getMetaData());
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        names = plan.getNames();
+        formats = plan.getFormats();
+    }
+
+    @Benchmark
+    public long write() throws IOException, SQLException {
+        CountingStream out = new CountingStream();
+        try (ReportWriter writer = new XlsxReportWriter(out, 500, cells.equals("typed"), sheetRows)) {
+            // rows are formatted like ReportRows does, without the formats the writer applies natively
+            ProjectionPlan written = plan.withoutFormats(writer.formatsNatively(formats));
+            writer.writeHeader(names);
+            ResultSet rs = SyntheticResultSet.cycling(columns, sourceRows, rowCount);
+            while (rs.next()) {
+                Object[] row = written.project(rs);
+                written.format(row);
+                writer.writeRow(row);
+            }
+            writer.finish();
+        }
+        bytes = out.count;
+        return bytes;
+    }
+
+    @TearDown(Level.Trial)
+    public void printSize() {
+        System.out.printf("%n%s cells, %d rows, %d per sheet: %,d bytes%n", cells, rowCount, sheetRows, bytes);
+    }
+
+    private static final class CountingStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package dynamic_reports.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+
+import dynamic_reports.pipeline.SourceColumns;
+import dynamic_reports.store.ColumnBatch;
+import dynamic_reports.store.RowStore;
+
+class ResultCacheTests {
+
+	private static final SourceColumns COLUMNS = new SourceColumns(new String[] { "gstin", "state" }, new int[] { Types.VARCHAR, Types.VARCHAR });
+
+	private final MockEnvironment environment = new MockEnvironment().withProperty("reports.cache.ttl.sp_live", "0");
+
+	@TempDir
+	Path spillDir;
+
+	private ResultCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new ResultCache(environment, true, DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), Duration.ofMinutes(10),
+				DataSize.ofMegabytes(1), spillDir.toString());
+	}
+
+	@Test
+	void cachesRowsPerSourceAndParameters() throws IOException {
+		ResultCacheKey january = new ResultCacheKey("sp_outward", "{call `sp_outward`(?)}", List.of("2025-01"));
+		assertThat(cache.get(january)).isNull();
+
+		CachedResult.Builder entry = cache.newEntry(january, COLUMNS);
+		assertThat(entry.add(new Object[] { "27AAA", new String("Maharashtra") })).isTrue();
+		assertThat(entry.add(new Object[] { "27BBB", new String("Maharashtra") })).isTrue();
+		cache.put(january, entry.build());
+
+		CachedResult cached = cache.get(new ResultCacheKey("sp_outward", "{call `sp_outward`(?)}", List.of("2025-01")));
+		assertThat(cached.size()).isEqualTo(2);
+		ColumnBatch batch = cached.getRows().batch(0);
+		assertThat(batch.get(0, 1)).isEqualTo("27BBB");
+		// repeated values of a column share one instance
+		assertThat(batch.get(1, 1)).isSameAs(batch.get(1, 0));
+		assertThat(cache.get(new ResultCacheKey("sp_outward", "{call `sp_outward`(?)}", List.of("2025-02")))).isNull();
+
+		ResultCacheStatistics statistics = cache.statistics();
+		assertThat(statistics.entries()).isEqualTo(1);
+		assertThat(statistics.weightedBytes()).isEqualTo(cached.getEstimatedBytes());
+		assertThat(statistics.hitCount()).isEqualTo(1);
+		assertThat(statistics.missCount()).isEqualTo(2);
+	}
+
+	@Test
+	void resultsOverTheEntryLimitAreNotCollected() throws IOException {
+		CachedResult.Builder entry = cache.newEntry(new ResultCacheKey("sp_outward", "{call `sp_outward`()}", List.of()), COLUMNS);
+		boolean accepted = true;
+		for (int i = 0; i < 10 * RowStore.BATCH_SIZE && accepted; i++) {
+			accepted = entry.add(new Object[] { "27AAA" + i, "Maharashtra" });
+		}
+		assertThat(accepted).isFalse();
+		assertThat(entry.add(new Object[] { "27BBB", "Goa" })).isFalse();
+	}
+
+	@Test
+	void ttlIsConfiguredPerSource() {
+		assertThat(cache.isCached("sp_outward")).isTrue();
+		assertThat(cache.ttl("sp_outward")).isEqualTo(Duration.ofMinutes(10));
+		assertThat(cache.isCached("sp_live")).isFalse();
+
+		environment.setProperty("reports.cache.ttl.sp_daily", "1h");
+		assertThat(cache.ttl("sp_daily")).isEqualTo(Duration.ofHours(1));
+	}
+
+	@Test
+	void invalidatesOneSource() throws IOException {
+		ResultCacheKey outward = new ResultCacheKey("sp_outward", "{call `sp_outward`(?)}", List.of("2025-01"));
+		ResultCacheKey inward = new ResultCacheKey("sp_inward", "{call `sp_inward`(?)}", List.of("2025-01"));
+		cache.put(outward, cache.newEntry(outward, COLUMNS).build());
+		cache.put(inward, cache.newEntry(inward, COLUMNS).build());
+
+		assertThat(cache.invalidate("sp_outward")).isEqualTo(1);
+		assertThat(cache.get(outward)).isNull();
+		assertThat(cache.get(inward)).isNotNull();
+
+		cache.invalidateAll();
+		assertThat(cache.get(inward)).isNull();
+	}
+}
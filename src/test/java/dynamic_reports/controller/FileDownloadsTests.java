@@ -0,0 +1,78 @@
+package dynamic_reports.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class FileDownloadsTests {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void servesTheWholeFile() throws IOException {
+		MockHttpServletResponse response = download(null);
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+		assertThat(response.getContentLengthLong()).isEqualTo(10);
+		assertThat(response.getContentType()).isEqualTo("text/csv");
+		assertThat(response.getContentAsString()).isEqualTo("0123456789");
+	}
+
+	@Test
+	void resumesFromARange() throws IOException {
+		MockHttpServletResponse response = download("bytes=4-");
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 4-9/10");
+		assertThat(response.getContentAsString()).isEqualTo("456789");
+
+		assertThat(download("bytes=2-3").getContentAsString()).isEqualTo("23");
+		assertThat(download("bytes=-3").getHeader("Content-Range")).isEqualTo("bytes 7-9/10");
+		assertThat(download("bytes=5-100").getContentAsString()).isEqualTo("56789");
+	}
+
+	@Test
+	void rejectsRangesPastTheEnd() throws IOException {
+		MockHttpServletResponse response = download("bytes=10-");
+
+		assertThat(response.getStatus()).isEqualTo(416);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+		assertThat(download("bytes=0-1,4-5").getStatus()).isEqualTo(200);
+	}
+
+	@Test
+	void handsTheFileToSendfileWhenSupported() throws IOException {
+		Path file = Files.writeString(dir.resolve("job"), "0123456789", StandardCharsets.UTF_8);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/report/jobs/1/file");
+		request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		request.addHeader("Range", "bytes=4-");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		FileDownloads.send(file, "report.csv", "text/csv", request, response);
+
+		assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(4L);
+		assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(10L);
+		assertThat(response.getContentAsByteArray()).isEmpty();
+	}
+
+	private MockHttpServletResponse download(String range) throws IOException {
+		Path file = Files.writeString(dir.resolve("job"), "0123456789", StandardCharsets.UTF_8);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/report/jobs/1/file");
+		if (range != null) {
+			request.addHeader("Range", range);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		FileDownloads.send(file, "report.csv", "text/csv", request, response);
+		return response;
+	}
+}
@@ -0,0 +1,75 @@
+package dynamic_reports.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncManager;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+
+import dynamic_reports.service.ReportAdmission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+class ReportsControllerTests {
+
+	private static final long MB = 1024 * 1024;
+
+	private final ReportAdmission admission = new ReportAdmission(new SimpleMeterRegistry(), true, DataSize.ofMegabytes(100), 10,
+			Duration.ofSeconds(1), 2, 100_000, 500, DataSize.ofMegabytes(64), 1000);
+
+	@Test
+	void releasesThePermitWhenTheRequestCompletesBeforeTheBodyRuns() throws Exception {
+		MockHttpServletRequest request = startStreaming(admission.admit("outward", 10 * MB));
+		assertThat(admission.getReserved()).isEqualTo(10 * MB);
+
+		((MockAsyncContext) request.getAsyncContext()).complete();
+
+		assertThat(admission.getReserved()).isZero();
+		assertThat(admission.getRunning()).isZero();
+	}
+
+	@Test
+	void releasesThePermitWhenTheRequestTimesOut() throws Exception {
+		ReportAdmission.Permit permit = admission.admit("outward", 10 * MB);
+		MockHttpServletRequest request = startStreaming(permit);
+
+		MockAsyncContext asyncContext = (MockAsyncContext) request.getAsyncContext();
+		for (AsyncListener listener : asyncContext.getListeners()) {
+			listener.onTimeout(new AsyncEvent(asyncContext));
+		}
+		assertThat(admission.getReserved()).isZero();
+
+		// the body closing it as well does not release it twice
+		permit.close();
+		asyncContext.complete();
+		assertThat(admission.getReserved()).isZero();
+	}
+
+	/**
+	 * A request streaming a report whose body is never run, as when the client is gone before it starts.
+	 */
+	private static MockHttpServletRequest startStreaming(ReportAdmission.Permit permit) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/report/stream");
+		request.setAsyncSupported(true);
+		WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+		asyncManager.setAsyncWebRequest(new StandardServletAsyncWebRequest(request, new MockHttpServletResponse()));
+		asyncManager.setTaskExecutor(new TaskExecutorAdapter(task -> {
+		}));
+
+		ReportsController.closeOnCompletion(request, permit);
+		asyncManager.startCallableProcessing(() -> {
+			throw new IOException("the body must not run");
+		});
+		return request;
+	}
+}
@@ -0,0 +1,166 @@
+package dynamic_reports.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.util.unit.DataSize;
+
+import dynamic_reports.controller.ResponseCompression.Coding;
+
+class ResponseCompressionTests {
+
+	private static final byte[] REPORT = "Invoice No.,Total Invoice Amt\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+	private final ResponseCompression compression = new ResponseCompression(true, DataSize.ofKilobytes(2));
+
+	@Test
+	void negotiatesTheCodingTheClientPrefers() {
+		assertThat(ResponseCompression.negotiate("gzip, deflate, br")).isEqualTo(Coding.GZIP);
+		assertThat(ResponseCompression.negotiate("deflate")).isEqualTo(Coding.DEFLATE);
+		assertThat(ResponseCompression.negotiate("gzip;q=0.5, deflate;q=0.8")).isEqualTo(Coding.DEFLATE);
+		assertThat(ResponseCompression.negotiate("x-gzip")).isEqualTo(Coding.GZIP);
+		assertThat(ResponseCompression.negotiate("*")).isEqualTo(Coding.GZIP);
+		assertThat(ResponseCompression.negotiate("*, gzip;q=0")).isEqualTo(Coding.DEFLATE);
+		assertThat(ResponseCompression.negotiate("gzip;q=0, deflate;q=0")).isNull();
+		assertThat(ResponseCompression.negotiate("br, identity")).isNull();
+		assertThat(ResponseCompression.negotiate(null)).isNull();
+	}
+
+	@Test
+	void compressesWithTheLengthOfTheCompressedBody() throws IOException {
+		MockHttpServletRequest request = request("gzip");
+		ResponseEntity<byte[]> response = compression.send(request, csvHeaders(), REPORT, true);
+
+		assertThat(response.getStatusCode().value()).isEqualTo(200);
+		assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+		assertThat(response.getHeaders().getContentType()).hasToString("text/csv;charset=UTF-8");
+		assertThat(response.getHeaders().getContentLength()).isEqualTo(response.getBody().length).isLessThan(REPORT.length);
+		assertThat(new GZIPInputStream(new ByteArrayInputStream(response.getBody())).readAllBytes()).isEqualTo(REPORT);
+
+		ResponseEntity<byte[]> deflated = compression.send(request("deflate"), csvHeaders(), REPORT, true);
+		assertThat(deflated.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("deflate");
+		assertThat(new InflaterInputStream(new ByteArrayInputStream(deflated.getBody())).readAllBytes()).isEqualTo(REPORT);
+	}
+
+	@Test
+	void sendsSmallOrIncompressibleReportsAsTheyAre() {
+		byte[] small = "Invoice No.\n".getBytes(StandardCharsets.UTF_8);
+		ResponseEntity<byte[]> response = compression.send(request("gzip"), csvHeaders(), small, true);
+		assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+		assertThat(response.getHeaders().getContentLength()).isEqualTo(small.length);
+		assertThat(response.getBody()).isSameAs(small);
+
+		ResponseEntity<byte[]> workbook = compression.send(request("gzip"), new HttpHeaders(), REPORT, false);
+		assertThat(workbook.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+		assertThat(workbook.getHeaders().containsKey(HttpHeaders.VARY)).isFalse();
+
+		ResponseEntity<byte[]> disabled = new ResponseCompression(false, DataSize.ofKilobytes(2)).send(request("gzip"), new HttpHeaders(), REPORT, true);
+		assertThat(disabled.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)).isFalse();
+	}
+
+	@Test
+	void tagsEveryCodingOfTheContentDifferently() {
+		String identity = compression.send(request(null), csvHeaders(), REPORT, true).getHeaders().getETag();
+		String gzip = compression.send(request("gzip"), csvHeaders(), REPORT, true).getHeaders().getETag();
+		String other = compression.send(request(null), csvHeaders(), "other".getBytes(StandardCharsets.UTF_8), true).getHeaders().getETag();
+
+		assertThat(identity).startsWith("\"").endsWith("\"");
+		assertThat(gzip).isEqualTo(identity.replace("\"", "").transform(hash -> "\"" + hash + "-gzip\""));
+		assertThat(other).isNotEqualTo(identity);
+		assertThat(compression.send(request(null), csvHeaders(), REPORT, true).getHeaders().getETag()).isEqualTo(identity);
+	}
+
+	@Test
+	void answersARepeatedDownloadWithNotModified() {
+		String etag = compression.send(request("gzip"), csvHeaders(), REPORT, true).getHeaders().getETag();
+
+		MockHttpServletRequest repeated = request("gzip");
+		repeated.addHeader(HttpHeaders.IF_NONE_MATCH, "\"stale\", " + etag);
+		ResponseEntity<byte[]> response = compression.send(repeated, csvHeaders(), REPORT, true);
+		assertThat(response.getStatusCode().value()).isEqualTo(304);
+		assertThat(response.getHeaders().getETag()).isEqualTo(etag);
+		assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+		assertThat(response.getHeaders().containsKey(HttpHeaders.CONTENT_TYPE)).isFalse();
+		assertThat(response.getBody()).isNull();
+
+		// the client holds the gzip copy, a request without Accept-Encoding still matches it
+		MockHttpServletRequest identity = request(null);
+		identity.addHeader(HttpHeaders.IF_NONE_MATCH, "W/" + etag);
+		assertThat(compression.send(identity, csvHeaders(), REPORT, true).getStatusCode().value()).isEqualTo(304);
+
+		MockHttpServletRequest changed = request("gzip");
+		changed.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		assertThat(compression.send(changed, csvHeaders(), "changed".repeat(1000).getBytes(StandardCharsets.UTF_8), true).getStatusCode().value())
+				.isEqualTo(200);
+	}
+
+	@Test
+	void streamsThroughTheCodingAndLeavesTheTargetOpen() throws IOException {
+		ClosingOutputStream target = new ClosingOutputStream();
+		try (OutputStream out = ResponseCompression.encode(target, Coding.GZIP)) {
+			out.write(REPORT, 0, 100);
+			out.write(REPORT, 100, REPORT.length - 100);
+		}
+		assertThat(target.closed).isFalse();
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(target.toByteArray()))) {
+			assertThat(in.readAllBytes()).isEqualTo(REPORT);
+		}
+
+		ClosingOutputStream plain = new ClosingOutputStream();
+		try (OutputStream out = ResponseCompression.encode(plain, null)) {
+			out.write(REPORT);
+		}
+		assertThat(plain.closed).isFalse();
+		assertThat(plain.toByteArray()).isEqualTo(REPORT);
+	}
+
+	@Test
+	void negotiatesStreamedReportsOnTheirHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		assertThat(compression.negotiate(request("deflate"), headers, true)).isEqualTo(Coding.DEFLATE);
+		assertThat(headers.getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("deflate");
+		assertThat(headers.getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+
+		HttpHeaders workbook = new HttpHeaders();
+		assertThat(compression.negotiate(request("deflate"), workbook, false)).isNull();
+		assertThat(workbook.isEmpty()).isTrue();
+	}
+
+	private static MockHttpServletRequest request(String acceptEncoding) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/report");
+		if (acceptEncoding != null) {
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+		}
+		return request;
+	}
+
+	private static HttpHeaders csvHeaders() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("Content-Disposition", "attachment; filename=report.csv");
+		headers.add("Content-Type", "text/csv;charset=UTF-8");
+		return headers;
+	}
+
+	private static final class ClosingOutputStream extends ByteArrayOutputStream {
+
+		boolean closed;
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
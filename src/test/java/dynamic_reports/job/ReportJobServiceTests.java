@@ -0,0 +1,242 @@
+package dynamic_reports.job;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.service.ReportCancellation;
+import dynamic_reports.service.ReportResult;
+import dynamic_reports.service.ReportService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReportJobServiceTests {
+
+	@TempDir
+	Path spoolDir;
+
+	private final ReportService reportService = mock(ReportService.class);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private ReportJobService jobs;
+
+	@AfterEach
+	void shutdown() {
+		jobs.shutdown();
+	}
+
+	@Test
+	void spoolsTheReportToAFile() throws Exception {
+		when(reportService.fileName(any())).thenReturn("report.csv");
+		when(reportService.streamReport(any(), any(), any())).thenAnswer(invocation -> {
+			invocation.getArgument(1, OutputStream.class).write("a,b\r\n".getBytes(StandardCharsets.UTF_8));
+			return new ReportResult();
+		});
+		jobs = new ReportJobService(reportService, new ReportSpool(spoolDir.toString()), meterRegistry, 2, 10, Duration.ofHours(1));
+
+		ReportJob job = jobs.submit(new ReportConfig());
+		awaitFinished(job);
+
+		assertThat(job.getStatus()).isEqualTo(ReportJob.Status.SUCCEEDED);
+		assertThat(job.getFileName()).isEqualTo("report.csv");
+		assertThat(job.getSize()).isEqualTo(5);
+		assertThat(Files.readString(job.getFile())).isEqualTo("a,b\r\n");
+		assertThat(jobs.get(job.getId())).isSameAs(job);
+
+		// nothing has expired yet
+		jobs.removeExpiredJobs();
+		assertThat(jobs.get(job.getId())).isSameAs(job);
+
+		assertThat(jobs.cancel(job.getId())).isTrue();
+		assertThat(jobs.get(job.getId())).isNull();
+		// a download handed to sendfile may not have opened the file yet
+		assertThat(job.getFile()).exists();
+		jobs.removeExpiredJobs();
+		assertThat(job.getFile()).exists();
+		jobs.removeExpiredJobs();
+		assertThat(job.getFile()).doesNotExist();
+	}
+
+	@Test
+	void deletesTheFileOfAnExpiredJobAtTheNextSweep() throws Exception {
+		when(reportService.streamReport(any(), any(), any())).thenAnswer(invocation -> {
+			invocation.getArgument(1, OutputStream.class).write("a,b\r\n".getBytes(StandardCharsets.UTF_8));
+			return new ReportResult();
+		});
+		jobs = new ReportJobService(reportService, new ReportSpool(spoolDir.toString()), meterRegistry, 2, 10, Duration.ZERO);
+
+		ReportJob job = jobs.submit(new ReportConfig());
+		awaitFinished(job);
+		Thread.sleep(5);
+
+		jobs.removeExpiredJobs();
+		assertThat(jobs.get(job.getId())).isNull();
+		assertThat(job.getFile()).exists();
+		jobs.removeExpiredJobs();
+		assertThat(job.getFile()).doesNotExist();
+	}
+
+	@Test
+	void recordsFailuresWithoutLeavingFiles() throws Exception {
+		when(reportService.streamReport(any(), any(), any())).thenThrow(new IOException("disk full"));
+		jobs = new ReportJobService(reportService, new ReportSpool(spoolDir.toString()), meterRegistry, 2, 10, Duration.ZERO);
+
+		ReportJob job = jobs.submit(new ReportConfig());
+		awaitFinished(job);
+
+		assertThat(job.getStatus()).isEqualTo(ReportJob.Status.FAILED);
+		assertThat(job.getError()).isEqualTo("disk full");
+		try (var files = Files.list(spoolDir)) {
+			assertThat(files).isEmpty();
+		}
+
+		Thread.sleep(5);
+		jobs.removeExpiredJobs();
+		assertThat(jobs.get(job.getId())).isNull();
+	}
+
+	@Test
+	void rejectsInvalidConfigurationsAndFullQueues() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(reportService.streamReport(any(), any(), any())).thenAnswer(invocation -> {
+			release.await();
+			return new ReportResult();
+		});
+		jobs = new ReportJobService(reportService, new ReportSpool(spoolDir.toString()), meterRegistry, 1, 1, Duration.ofHours(1));
+
+		ReportConfig invalid = config("sp_broken");
+		doThrow(new IllegalArgumentException("missing datasource")).when(reportService).validateConfig(invalid);
+		assertThatThrownBy(() -> jobs.submit(invalid)).isInstanceOf(IllegalArgumentException.class);
+
+		ReportJob running = jobs.submit(config("sp_outward"));
+		awaitStatus(running, ReportJob.Status.RUNNING);
+		ReportJob waiting = jobs.submit(config("sp_inward"));
+		assertThatThrownBy(() -> jobs.submit(config("sp_errors"))).isInstanceOf(RejectedExecutionException.class);
+
+		assertThat(jobs.cancel(waiting.getId())).isTrue();
+		assertThat(waiting.getStatus()).isEqualTo(ReportJob.Status.CANCELLED);
+		release.countDown();
+		awaitFinished(running);
+		assertThat(running.getStatus()).isEqualTo(ReportJob.Status.SUCCEEDED);
+	}
+
+	@Test
+	void cancellingAJobBeforeItsTaskStartsFreesItsPlaceInTheQueue() throws Exception {
+		when(reportService.streamReport(any(), any(), any())).thenReturn(new ReportResult());
+		// the only thread of the executor is busy, submitted jobs do not start
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		jobs = new ReportJobService(reportService, new ReportSpool(spoolDir.toString()), meterRegistry, 1, 1, Duration.ofHours(1), executor);
+
+		for (int i = 0; i < 3; i++) {
+			ReportJob job = jobs.submit(config("sp_outward"));
+			assertThat(jobs.cancel(job.getId())).isTrue();
+			assertThat(job.getStatus()).isEqualTo(ReportJob.Status.CANCELLED);
+		}
+		ReportJob job = jobs.submit(config("sp_outward"));
+		assertThatThrownBy(() -> jobs.submit(config("sp_inward"))).isInstanceOf(RejectedExecutionException.class);
+
+		release.countDown();
+		awaitFinished(job);
+		assertThat(job.getStatus()).isEqualTo(ReportJob.Status.SUCCEEDED);
+	}
+
+	@Test
+	void cancellingARunningJobCancelsItsReport() throws Exception {
+		when(reportService.streamReport(any(), any(), any())).thenAnswer(invocation -> {
+			ReportCancellation cancellation = invocation.getArgument(2, ReportCancellation.class);
+			// like a query that does not respond to interrupts
+			while (!cancellation.isCancelled()) {
+				Thread.onSpinWait();
+			}
+			throw new CancellationException(cancellation.getReason());
+		});
+		jobs = new ReportJobService(reportService, new ReportSpool(spoolDir.toString()), meterRegistry, 1, 10, Duration.ofHours(1));
+
+		ReportJob job = jobs.submit(config("sp_outward"));
+		awaitStatus(job, ReportJob.Status.RUNNING);
+		assertThat(jobs.cancel(job.getId())).isTrue();
+
+		assertThat(job.getCancellation().getReason()).isEqualTo("job " + job.getId() + " cancelled");
+		assertThat(job.getStatus()).isEqualTo(ReportJob.Status.CANCELLED);
+	}
+
+	@Test
+	void identicalSubmissionsShareTheJobInFlight() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		when(reportService.streamReport(any(), any(), any())).thenAnswer(invocation -> {
+			release.await();
+			return new ReportResult();
+		});
+		jobs = new ReportJobService(reportService, new ReportSpool(spoolDir.toString()), meterRegistry, 1, 10, Duration.ofHours(1));
+
+		ReportConfig first = config("sp_outward");
+		first.setName("outward for alice");
+		ReportConfig second = config("sp_outward");
+		second.setName("outward for bob");
+		second.setFormat("XLSX");
+
+		ReportJob job = jobs.submit(first);
+		assertThat(jobs.submit(second)).isSameAs(job);
+		assertThat(jobs.submit(config("sp_inward"))).isNotSameAs(job);
+		assertThat(meterRegistry.get("reports.requests.coalesced").tag("mode", "job").functionCounter().count()).isEqualTo(1);
+
+		release.countDown();
+		awaitFinished(job);
+		// once finished, the same configuration runs again
+		assertThat(jobs.submit(first)).isNotSameAs(job);
+	}
+
+	private static ReportConfig config(String spName) {
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setSpName(spName);
+		datasource.setSpParams(List.of("2025-01"));
+		ReportConfig reportConfig = new ReportConfig();
+		reportConfig.setDatasource(datasource);
+		reportConfig.setMeta(new ReportConfig.Meta());
+		return reportConfig;
+	}
+
+	private static void awaitFinished(ReportJob job) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!job.getStatus().isFinished() && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+
+	private static void awaitStatus(ReportJob job, ReportJob.Status status) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (job.getStatus() != status && System.nanoTime() < deadline) {
+			Thread.sleep(5);
+		}
+	}
+}
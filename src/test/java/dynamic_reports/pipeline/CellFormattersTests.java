@@ -0,0 +1,50 @@
+package dynamic_reports.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+class CellFormattersTests {
+
+	@Test
+	void formatsEveryDateType() {
+		CellFormatter formatter = CellFormatters.compile("dd-MM-yyyy");
+
+		assertThat(formatter.format(Date.valueOf("2025-01-09"))).isEqualTo("09-01-2025");
+		assertThat(formatter.format(Timestamp.valueOf("2025-01-09 23:10:00"))).isEqualTo("09-01-2025");
+		assertThat(formatter.format(LocalDate.of(2025, 1, 9))).isEqualTo("09-01-2025");
+		assertThat(formatter.format(LocalDateTime.of(2025, 1, 9, 8, 0))).isEqualTo("09-01-2025");
+		assertThat(formatter.format("09/01/2025")).isEqualTo("09-01-2025");
+		assertThat(formatter.format("not a date")).isEqualTo("not a date");
+		assertThat(formatter.format(null)).isNull();
+	}
+
+	@Test
+	void sharesFormattersByPattern() {
+		assertThat(CellFormatters.pattern("dd/MM/yyyy HH:mm")).isSameAs(CellFormatters.pattern("dd/MM/yyyy HH:mm"));
+		assertThat(CellFormatters.cachedPatterns()).isLessThanOrEqualTo(CellFormatters.MAX_CACHED_PATTERNS);
+	}
+
+	@Test
+	void appliesCaseTransformsToTextOnly() {
+		assertThat(CellFormatters.compile("UpperCase").format("27aaa")).isEqualTo("27AAA");
+		assertThat(CellFormatters.compile("lowercase").format("INV")).isEqualTo("inv");
+		assertThat(CellFormatters.compile("sentencecase").format("tAX INVOICE")).isEqualTo("Tax invoice");
+		assertThat(CellFormatters.compile("sentencecase").format("")).isEqualTo("");
+		assertThat(CellFormatters.compile("uppercase").format(BigDecimal.TEN)).isEqualTo(BigDecimal.TEN);
+		assertThat(CellFormatters.compile(null).format(7L)).isEqualTo(7L);
+	}
+
+	@Test
+	void rejectsInvalidDatePatterns() {
+		assertThatThrownBy(() -> CellFormatters.compile("dd/MM/yyyy {"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,136 @@
+package dynamic_reports.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.store.RowStore;
+
+class ChunkedTransformTests {
+
+	private static final SourceColumns COLUMNS = new SourceColumns(new String[] { "gstin", "amount" }, new int[] { Types.VARCHAR, Types.INTEGER });
+
+	private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+	private final ProjectionPlan plan = ProjectionPlan.compile(fixed(), COLUMNS);
+
+	// even amounts only
+	private final Predicate<Object[]> evenAmounts = row -> ((Integer) row[1]) % 2 == 0;
+
+	private final List<Object[]> written = new ArrayList<>();
+
+	@TempDir
+	Path spillDir;
+
+	@AfterEach
+	void tearDown() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	void keepsSourceOrderAcrossChunks() throws IOException {
+		try (ChunkedTransform transform = new ChunkedTransform(plan, evenAmounts, true, written::add, pool, 100, 64, 3)) {
+			for (int i = 0; i < 10_000; i++) {
+				transform.push(plan.project(new Object[] { "27aaa" + i, i }));
+			}
+			transform.finish();
+		}
+
+		assertThat(written).hasSize(5_000);
+		for (int i = 0; i < written.size(); i++) {
+			assertThat(written.get(i)).containsExactly("27AAA" + 2 * i, 2 * i);
+		}
+	}
+
+	@Test
+	void smallReportsStayOnTheCallingThread() throws IOException {
+		Thread caller = Thread.currentThread();
+		List<Thread> transformedOn = new ArrayList<>();
+		Predicate<Object[]> recordingFilter = row -> transformedOn.add(Thread.currentThread());
+		try (ChunkedTransform transform = new ChunkedTransform(plan, recordingFilter, true, written::add, pool, 1_000, 64, 3)) {
+			for (int i = 0; i < 1_000; i++) {
+				transform.push(plan.project(new Object[] { "27aaa", i }));
+			}
+			transform.finish();
+		}
+
+		assertThat(written).hasSize(1_000);
+		assertThat(transformedOn).containsOnly(caller);
+	}
+
+	@Test
+	void projectsBatchesInOrder() throws IOException {
+		RowStore store = new RowStore(COLUMNS, Long.MAX_VALUE, spillDir);
+		for (int i = 0; i < 3 * RowStore.BATCH_SIZE + 10; i++) {
+			store.add(new Object[] { "27aaa" + i, i });
+		}
+		store.finish();
+
+		try (ChunkedTransform transform = new ChunkedTransform(plan, evenAmounts, true, written::add, pool, 100, 500, 4)) {
+			// rows pushed one at a time and as batches are written in the order they were pushed
+			transform.push(plan.project(new Object[] { "first", -2 }));
+			for (int b = 0; b < store.batchCount(); b++) {
+				transform.push(store.batch(b));
+			}
+			transform.push(plan.project(new Object[] { "last", -4 }));
+			transform.finish();
+		}
+		store.close();
+
+		assertThat(written).hasSize((3 * RowStore.BATCH_SIZE + 10) / 2 + 2);
+		assertThat(written.get(0)).containsExactly("FIRST", -2);
+		assertThat(written.get(written.size() - 1)).containsExactly("LAST", -4);
+		for (int i = 1; i < written.size() - 1; i++) {
+			assertThat(written.get(i)[1]).isEqualTo(2 * (i - 1));
+		}
+	}
+
+	@Test
+	void failedChunksFailTheReport() {
+		Predicate<Object[]> failing = row -> {
+			if ((Integer) row[1] == 5_000) {
+				throw new IllegalArgumentException("bad row");
+			}
+			return true;
+		};
+		ChunkedTransform transform = new ChunkedTransform(plan, failing, true, written::add, pool, 0, 64, 3);
+		assertThatThrownBy(() -> {
+			for (int i = 0; i < 10_000; i++) {
+				transform.push(plan.project(new Object[] { "27aaa", i }));
+			}
+			transform.finish();
+		}).isInstanceOf(IllegalArgumentException.class).hasMessage("bad row");
+		transform.close();
+		assertThat(written).hasSizeLessThanOrEqualTo(5_000);
+	}
+
+	private static Map<String, ReportConfig.ColumnConfig> fixed() {
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		fixed.put("column1", column("Supplier GSTIN", 0, "uppercase"));
+		fixed.put("column2", column("Amount", 1, null));
+		return fixed;
+	}
+
+	private static ReportConfig.ColumnConfig column(String name, int index, String format) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName(name);
+		column.setMappedIndex(index);
+		column.setFormat(format);
+		return column;
+	}
+}
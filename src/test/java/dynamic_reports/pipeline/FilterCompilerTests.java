@@ -0,0 +1,131 @@
+package dynamic_reports.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dynamic_reports.dto.ReportConfig;
+
+class FilterCompilerTests {
+
+	private ProjectionPlan plan;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+		when(metaData.getColumnCount()).thenReturn(4);
+		when(metaData.getColumnType(1)).thenReturn(Types.VARCHAR);
+		when(metaData.getColumnType(2)).thenReturn(Types.DECIMAL);
+		when(metaData.getColumnType(3)).thenReturn(Types.DATE);
+		when(metaData.getColumnType(4)).thenReturn(Types.VARCHAR);
+
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		fixed.put("column1", column("Supplier GSTIN", 0, "uppercase"));
+		fixed.put("column2", column("Invoice Amount", 1, null));
+		fixed.put("column3", column("Invoice Date", 2, "dd/MM/yyyy"));
+		fixed.put("column4", column("Quantity", 3, null));
+		plan = ProjectionPlan.compile(fixed, metaData);
+	}
+
+	@Test
+	void comparesNumbersByValueNotLexically() {
+		Predicate<Object[]> filter = compile(filter("Invoice Amount", ">", "1000"));
+
+		assertThat(filter.test(row("27AAA", new BigDecimal("9999.50"), null, null))).isTrue();
+		assertThat(filter.test(row("27AAA", new BigDecimal("200"), null, null))).isFalse();
+		assertThat(filter.test(row("27AAA", null, null, null))).isFalse();
+	}
+
+	@Test
+	void comparesDatesUsingTheColumnFormat() {
+		Predicate<Object[]> filter = compile(filter("column3", "<", "13/01/2025"));
+
+		assertThat(filter.test(row(null, null, Date.valueOf("2025-01-02"), null))).isTrue();
+		assertThat(filter.test(row(null, null, Date.valueOf("2025-01-13"), null))).isFalse();
+		assertThat(filter.test(row(null, null, Date.valueOf("2024-12-31"), null))).isTrue();
+	}
+
+	@Test
+	void ordersNumericTextColumnsByValue() {
+		Predicate<Object[]> filter = compile(filter("Quantity", ">=", "9"));
+
+		assertThat(filter.test(row(null, null, null, "10"))).isTrue();
+		assertThat(filter.test(row(null, null, null, "8"))).isFalse();
+		assertThat(filter.test(row(null, null, null, "n/a"))).isFalse();
+	}
+
+	@Test
+	void supportsSetRangeAndPrefixConditions() {
+		ReportConfig.Filter in = filter("Supplier GSTIN", "in", null);
+		in.setValues(List.of("27AAA", "29BBB"));
+		ReportConfig.Filter between = filter("Invoice Amount", "between", "100, 500");
+		ReportConfig.Filter prefix = filter("Supplier GSTIN", "startsWith", "27");
+		ReportConfig.Filter notEqual = filter("Invoice Amount", "!=", "300");
+
+		assertThat(compile(in).test(row("29bbb", null, null, null))).isTrue();
+		assertThat(compile(in).test(row("33CCC", null, null, null))).isFalse();
+		assertThat(compile(between).test(row(null, new BigDecimal("500.00"), null, null))).isTrue();
+		assertThat(compile(between).test(row(null, new BigDecimal("500.01"), null, null))).isFalse();
+		assertThat(compile(prefix).test(row("27AAA", null, null, null))).isTrue();
+		assertThat(compile(prefix).test(row("29BBB", null, null, null))).isFalse();
+		assertThat(compile(notEqual).test(row(null, new BigDecimal("300.00"), null, null))).isFalse();
+		assertThat(compile(notEqual).test(row(null, null, null, null))).isTrue();
+	}
+
+	@Test
+	void appliesEveryFilterToTheSameRow() {
+		Predicate<Object[]> filter = FilterCompiler.compile(List.of(
+				filter("column2", ">", "1000"),
+				filter("column1", "startsWith", "27")), plan);
+
+		assertThat(filter.test(row("27AAA", new BigDecimal("5000"), null, null))).isTrue();
+		assertThat(filter.test(row("29BBB", new BigDecimal("5000"), null, null))).isFalse();
+		assertThat(filter.test(row("27AAA", new BigDecimal("10"), null, null))).isFalse();
+	}
+
+	@Test
+	void rejectsInvalidOperands() {
+		assertThatThrownBy(() -> compile(filter("Invoice Amount", ">", "abc")))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> compile(filter("Invoice Amount", "like", "1")))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private Predicate<Object[]> compile(ReportConfig.Filter filter) {
+		return FilterCompiler.compile(List.of(filter), plan);
+	}
+
+	private static Object[] row(Object... values) {
+		return values;
+	}
+
+	private static ReportConfig.ColumnConfig column(String name, int index, String format) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName(name);
+		column.setMappedIndex(index);
+		column.setFormat(format);
+		return column;
+	}
+
+	private static ReportConfig.Filter filter(String column, String condition, String value) {
+		ReportConfig.Filter filter = new ReportConfig.Filter();
+		filter.setColumn(column);
+		filter.setCondition(condition);
+		filter.setValue(value);
+		return filter;
+	}
+}
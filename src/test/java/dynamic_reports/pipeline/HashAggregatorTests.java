@@ -0,0 +1,148 @@
+package dynamic_reports.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dynamic_reports.dto.ReportConfig;
+
+class HashAggregatorTests {
+
+	private static final SourceColumns COLUMNS = new SourceColumns(new String[] { "gstin", "state", "invoice", "amount", "date" },
+			new int[] { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.DECIMAL, Types.DATE });
+
+	private final ProjectionPlan plan = ProjectionPlan.compile(fixed(), COLUMNS);
+
+	@Test
+	void groupsOnTheColumnsNoAggregateReads() throws IOException {
+		Map<String, ReportConfig.CustomColumn> custom = new LinkedHashMap<>();
+		custom.put("total", custom("Invoice Amount", "Total", "sum"));
+		custom.put("invoices", custom("column3", "Invoices", "distinct count"));
+		custom.put("rows", custom(null, "Rows", "count"));
+		custom.put("first", custom("Invoice Date", "First Invoice", "min"));
+		custom.put("last", custom("Invoice Date", "Last Invoice", "max"));
+		custom.put("average", custom("Invoice Amount", "Average", "avg"));
+		AggregationPlan aggregation = AggregationPlan.compile(custom, null, plan);
+
+		List<Object[]> summary = aggregate(aggregation,
+				row("27AAA", "MH", "INV-1", new BigDecimal("100.50"), Date.valueOf("2025-01-13")),
+				row("29BBB", "KA", "INV-2", new BigDecimal("10.00"), Date.valueOf("2025-01-02")),
+				row("27AAA", "MH", "INV-1", new BigDecimal("200.25"), Date.valueOf("2025-01-01")),
+				row("27AAA", "MH", "INV-3", null, null));
+
+		assertThat(aggregation.getOutput().getNames()).containsExactly("Supplier GSTIN", "State", "Total", "Invoices", "Rows",
+				"First Invoice", "Last Invoice", "Average");
+		assertThat(summary).hasSize(2);
+		assertThat(summary.get(0)).containsExactly("27AAA", "MH", new BigDecimal("300.75"), 2L, 3L, Date.valueOf("2025-01-01"),
+				Date.valueOf("2025-01-13"), new BigDecimal("150.3750"));
+		assertThat(summary.get(1)).containsExactly("29BBB", "KA", new BigDecimal("10.00"), 1L, 1L, Date.valueOf("2025-01-02"),
+				Date.valueOf("2025-01-02"), new BigDecimal("10.0000"));
+	}
+
+	@Test
+	void groupsOnlyOnTheGroupByColumns() throws IOException {
+		AggregationPlan aggregation = AggregationPlan.compile(Map.of("total", custom("column4", "Total", "SUM")), List.of("State"), plan);
+
+		List<Object[]> summary = aggregate(aggregation,
+				row("27AAA", "MH", "INV-1", new BigDecimal("1.10"), null),
+				row("27BBB", "MH", "INV-2", 2L, null),
+				row("29CCC", "KA", "INV-3", "3.5", null));
+
+		assertThat(summary).extracting(row -> row[0] + "=" + row[1]).containsExactly("MH=3.10", "KA=3.50");
+		// summary rows are sorted and filtered by their output columns
+		assertThat(aggregation.getOutput().indexOf("total")).isEqualTo(1);
+		assertThat(aggregation.getOutput().getSqlType(1)).isEqualTo(Types.DECIMAL);
+	}
+
+	@Test
+	void sumsStayExactPastTheRangeOfALong() throws IOException {
+		AggregationPlan aggregation = AggregationPlan.compile(Map.of("total", custom("column4", "Total", "sum")), List.of(), plan);
+		BigDecimal large = new BigDecimal("92233720368547758.07"); // Long.MAX_VALUE at scale 2
+
+		List<Object[]> summary = aggregate(aggregation,
+				row(null, null, null, large, null),
+				row(null, null, null, large, null),
+				row(null, null, null, new BigDecimal("0.001"), null));
+
+		assertThat(summary).hasSize(1);
+		assertThat(summary.get(0)[0]).isEqualTo(large.add(large).add(new BigDecimal("0.001")));
+	}
+
+	@Test
+	void keepsOneRowPerGroupAcrossManyGroups() throws IOException {
+		AggregationPlan aggregation = AggregationPlan.compile(Map.of("rows", custom(null, "Rows", "count")), List.of("column1"), plan);
+		HashAggregator aggregator = aggregation.newAggregator();
+		for (int i = 0; i < 100_000; i++) {
+			aggregator.add(row("GSTIN" + (i % 5_000), null, null, null, null));
+		}
+		List<Object[]> summary = new ArrayList<>();
+		aggregator.drain(summary::add);
+
+		assertThat(aggregator.groupCount()).isEqualTo(5_000);
+		assertThat(summary).allSatisfy(row -> assertThat(row[1]).isEqualTo(20L));
+		assertThat(summary.get(4_999)[0]).isEqualTo("GSTIN4999");
+	}
+
+	@Test
+	void rejectsUnknownActionsAndColumns() {
+		assertThatThrownBy(() -> AggregationPlan.compile(Map.of("x", custom("column4", "X", "median")), null, plan))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Unsupported custom column action median");
+		assertThatThrownBy(() -> AggregationPlan.compile(Map.of("x", custom("Buyer GSTIN", "X", "count")), null, plan))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("not a fixed column");
+		assertThatThrownBy(() -> AggregationPlan.compile(Map.of("x", custom("Invoice Date", "X", "sum")), null, plan))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("cannot sum the dates");
+		assertThat(AggregationPlan.compile(null, List.of("State"), plan)).isNull();
+	}
+
+	private static List<Object[]> aggregate(AggregationPlan aggregation, Object[]... rows) throws IOException {
+		HashAggregator aggregator = aggregation.newAggregator();
+		for (Object[] row : rows) {
+			aggregator.add(row);
+		}
+		List<Object[]> summary = new ArrayList<>();
+		aggregator.drain(summary::add);
+		return summary;
+	}
+
+	private static Object[] row(Object... values) {
+		return values;
+	}
+
+	private static Map<String, ReportConfig.ColumnConfig> fixed() {
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		fixed.put("column1", column("Supplier GSTIN", 0));
+		fixed.put("column2", column("State", 1));
+		fixed.put("column3", column("Invoice No.", 2));
+		fixed.put("column4", column("Invoice Amount", 3));
+		fixed.put("column5", column("Invoice Date", 4));
+		return fixed;
+	}
+
+	private static ReportConfig.ColumnConfig column(String name, int index) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName(name);
+		column.setMappedIndex(index);
+		return column;
+	}
+
+	private static ReportConfig.CustomColumn custom(String mappedTo, String name, String action) {
+		ReportConfig.CustomColumn column = new ReportConfig.CustomColumn();
+		column.setMappedTo(mappedTo);
+		column.setName(name);
+		column.setAction(action);
+		return column;
+	}
+}
@@ -0,0 +1,126 @@
+package dynamic_reports.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RowSorterTests {
+
+	// by amount, rows with equal amounts must keep their source order
+	private static final Comparator<Object[]> BY_AMOUNT = Comparator.comparing(row -> (Integer) row[1]);
+
+	@TempDir
+	Path spillDir;
+
+	private final List<Object[]> drained = new ArrayList<>();
+
+	@Test
+	void sortsInMemoryWithinTheBudget() throws IOException {
+		try (RowSorter sorter = new RowSorter(BY_AMOUNT, 0, Long.MAX_VALUE, spillDir)) {
+			addShuffled(sorter, 1_000);
+			sorter.drain(drained::add);
+			assertThat(sorter.spilledRuns()).isZero();
+		}
+
+		assertSortedAndStable(1_000);
+	}
+
+	@Test
+	void spillsSortedRunsAndMergesThem() throws IOException {
+		try (RowSorter sorter = new RowSorter(BY_AMOUNT, 0, 16 * 1024, spillDir)) {
+			addShuffled(sorter, 10_000);
+			assertThat(sorter.spilledRuns()).isGreaterThan(5);
+			sorter.drain(drained::add);
+		}
+
+		assertSortedAndStable(10_000);
+		try (Stream<Path> runs = Files.list(spillDir)) {
+			assertThat(runs).isEmpty();
+		}
+	}
+
+	@Test
+	void keepsTheTopRowsOfALimit() throws IOException {
+		try (RowSorter sorter = new RowSorter(BY_AMOUNT, 100, Long.MAX_VALUE, spillDir)) {
+			addShuffled(sorter, 10_000);
+			sorter.drain(drained::add);
+			assertThat(sorter.spilledRuns()).isZero();
+		}
+
+		assertSortedAndStable(100);
+	}
+
+	@Test
+	void aLimitBeyondTheBudgetFallsBackToRuns() throws IOException {
+		try (RowSorter sorter = new RowSorter(BY_AMOUNT, 5_000, 16 * 1024, spillDir)) {
+			addShuffled(sorter, 10_000);
+			assertThat(sorter.spilledRuns()).isPositive();
+			sorter.drain(drained::add);
+		}
+
+		assertSortedAndStable(5_000);
+	}
+
+	@Test
+	void runsKeepValueTypes() throws IOException {
+		Object[] row = { "27AAA", 7, 9L, new BigDecimal("123456789012345678901234.50"), Date.valueOf("2025-01-13"),
+				Timestamp.valueOf("2025-01-13 10:15:30.123456789"), LocalDate.of(2025, 1, 13),
+				LocalDateTime.of(2025, 1, 13, 10, 15, 30, 5), 1.5d, true, null, new byte[] { 1, 2 } };
+		try (RowSorter sorter = new RowSorter(BY_AMOUNT, 0, 1, spillDir)) {
+			sorter.add(row);
+			assertThat(sorter.spilledRuns()).isEqualTo(1);
+			sorter.drain(drained::add);
+		}
+
+		assertThat(drained).hasSize(1);
+		assertThat(drained.get(0)).isNotSameAs(row).containsExactly(row);
+	}
+
+	// amounts repeat every 100 rows, the sequence number in column 0 checks stability
+	private static void addShuffled(RowSorter sorter, int rowCount) throws IOException {
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < rowCount; i++) {
+			rows.add(new Object[] { i, (i * 7919) % 100, "row " + i });
+		}
+		Random random = new Random(7);
+		for (int i = rows.size() - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			Object[] swap = rows.get(i);
+			rows.set(i, rows.get(j));
+			rows.set(j, swap);
+		}
+		for (int i = 0; i < rows.size(); i++) {
+			// renumber after the shuffle so source order is the order of addition
+			rows.get(i)[0] = i;
+			sorter.add(rows.get(i));
+		}
+	}
+
+	private void assertSortedAndStable(int expectedRows) {
+		assertThat(drained).hasSize(expectedRows);
+		for (int i = 1; i < drained.size(); i++) {
+			Object[] previous = drained.get(i - 1);
+			Object[] current = drained.get(i);
+			int order = BY_AMOUNT.compare(previous, current);
+			assertThat(order).isLessThanOrEqualTo(0);
+			if (order == 0) {
+				assertThat((Integer) previous[0]).isLessThan((Integer) current[0]);
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package dynamic_reports.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dynamic_reports.dto.ReportConfig;
+
+class SortCompilerTests {
+
+	private static final SourceColumns COLUMNS = new SourceColumns(new String[] { "gstin", "amount", "date" },
+			new int[] { Types.VARCHAR, Types.DECIMAL, Types.DATE });
+
+	private final ProjectionPlan plan = ProjectionPlan.compile(fixed(), COLUMNS);
+
+	@Test
+	void sortsNumbersByValue() {
+		List<Object[]> rows = sort(List.of(sorting("Invoice Amount", null)),
+				row("a", new BigDecimal("1000.50"), null),
+				row("b", new BigDecimal("200"), null),
+				row("c", 99L, null),
+				row("d", null, null));
+
+		assertThat(rows).extracting(row -> row[0]).containsExactly("c", "b", "a", "d");
+	}
+
+	@Test
+	void sortsDatesChronologicallyWhateverTheirOutputFormat() {
+		List<Object[]> rows = sort(List.of(sorting("column3", "desc")),
+				row("a", null, Date.valueOf("2025-01-13")),
+				row("b", null, Timestamp.valueOf("2025-02-01 10:00:00")),
+				row("c", null, null),
+				row("d", null, Date.valueOf("2024-12-31")));
+
+		// empty cells stay last when descending
+		assertThat(rows).extracting(row -> row[0]).containsExactly("b", "a", "d", "c");
+	}
+
+	@Test
+	void appliesKeysInOrderAndIgnoresCaseForText() {
+		List<Object[]> rows = sort(List.of(sorting("Supplier GSTIN", "asc"), sorting("Invoice Amount", "DESC")),
+				row("29bbb", BigDecimal.ONE, null),
+				row("27AAA", BigDecimal.ONE, null),
+				row("27aaa", BigDecimal.TEN, null),
+				row("27AAA", BigDecimal.TEN, null));
+
+		// rows equal on every key keep their source order
+		assertThat(rows).extracting(row -> row[0] + "/" + row[1]).containsExactly("27aaa/10", "27AAA/10", "27AAA/1", "29bbb/1");
+	}
+
+	@Test
+	void unknownColumnsAreIgnored() {
+		assertThat(SortCompiler.compile(List.of(sorting("Buyer GSTIN", "asc")), plan)).isNull();
+		assertThat(SortCompiler.compile(null, plan)).isNull();
+	}
+
+	@Test
+	void rejectsUnknownOrders() {
+		assertThatThrownBy(() -> SortCompiler.compile(List.of(sorting("column1", "up")), plan))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("expected asc or desc");
+	}
+
+	private List<Object[]> sort(List<ReportConfig.Sorting> sorting, Object[]... rows) {
+		Comparator<Object[]> order = SortCompiler.compile(sorting, plan);
+		List<Object[]> sorted = new ArrayList<>(Arrays.asList(rows));
+		sorted.sort(order);
+		return sorted;
+	}
+
+	private static Object[] row(Object... values) {
+		return values;
+	}
+
+	private static Map<String, ReportConfig.ColumnConfig> fixed() {
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		fixed.put("column1", column("Supplier GSTIN", 0));
+		fixed.put("column2", column("Invoice Amount", 1));
+		fixed.put("column3", column("Invoice Date", 2));
+		return fixed;
+	}
+
+	private static ReportConfig.ColumnConfig column(String name, int index) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName(name);
+		column.setMappedIndex(index);
+		return column;
+	}
+
+	private static ReportConfig.Sorting sorting(String column, String order) {
+		ReportConfig.Sorting sorting = new ReportConfig.Sorting();
+		sorting.setColumn(column);
+		sorting.setOrder(order);
+		return sorting;
+	}
+}
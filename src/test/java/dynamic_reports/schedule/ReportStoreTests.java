@@ -0,0 +1,72 @@
+package dynamic_reports.schedule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReportStoreTests {
+
+	private static final String HASH = "a".repeat(64);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void servesTheNewestFileOfAConfigurationAcrossRestarts() throws Exception {
+		ReportStore store = new ReportStore(directory.toString(), Duration.ofHours(1));
+		assertThat(store.find(HASH)).isNull();
+
+		StoredReport first = publish(store, Instant.now().minusSeconds(60), "first");
+		StoredReport second = publish(store, Instant.now(), "second run");
+
+		assertThat(store.find(HASH)).isEqualTo(second);
+		assertThat(second.size()).isEqualTo(10);
+		assertThat(first.file()).doesNotExist();
+
+		// an interrupted run leaves a part file, which is not served and is removed at startup
+		Files.writeString(store.partFile("b".repeat(64), Instant.now()), "half");
+		ReportStore restarted = new ReportStore(directory.toString(), Duration.ofHours(1));
+		assertThat(restarted.find(HASH)).isEqualTo(second);
+		assertThat(restarted.size()).isEqualTo(1);
+		try (var files = Files.list(directory)) {
+			assertThat(files).containsExactly(second.file());
+		}
+	}
+
+	@Test
+	void aReportOpenedBeforeItIsReplacedIsStillReadToItsEnd() throws Exception {
+		ReportStore store = new ReportStore(directory.toString(), Duration.ofHours(1));
+		StoredReport first = publish(store, Instant.now().minusSeconds(60), "first run");
+
+		try (InputStream in = Files.newInputStream(first.file())) {
+			publish(store, Instant.now(), "second run");
+			assertThat(first.file()).doesNotExist();
+			assertThat(in.readAllBytes()).asString(StandardCharsets.UTF_8).isEqualTo("first run");
+		}
+	}
+
+	@Test
+	void removesReportsPastTheirRetention() throws Exception {
+		ReportStore store = new ReportStore(directory.toString(), Duration.ofMinutes(10));
+		StoredReport old = publish(store, Instant.now().minus(Duration.ofMinutes(11)), "old");
+
+		assertThat(store.find(HASH)).isNull();
+		store.removeExpired();
+		assertThat(old.file()).doesNotExist();
+		assertThat(store.size()).isZero();
+	}
+
+	private static StoredReport publish(ReportStore store, Instant createdAt, String content) throws Exception {
+		Path part = store.partFile(HASH, createdAt);
+		Files.writeString(part, content);
+		return store.publish(HASH, createdAt, part);
+	}
+}
@@ -0,0 +1,65 @@
+package dynamic_reports.schedule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.scheduling.TaskScheduler;
+
+import dynamic_reports.service.ReportService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ScheduledReportServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private ScheduledReportService service;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		ReportStore store = new ReportStore(directory.resolve("store").toString(), Duration.ofHours(1));
+		service = new ScheduledReportService(mock(ReportService.class), store, mock(TaskScheduler.class), meterRegistry, "UTC", 10);
+	}
+
+	@Test
+	void countsAStoredReportAsServedOnceItIsOpen() throws Exception {
+		Path file = Files.writeString(directory.resolve("report.csv"), "stored");
+
+		try (InputStream in = service.open(stored(file))) {
+			assertThat(in.readAllBytes()).asString(StandardCharsets.UTF_8).isEqualTo("stored");
+		}
+		assertThat(served()).isEqualTo(1);
+	}
+
+	@Test
+	void fallsBackToGeneratingWhenTheStoredFileCannotBeOpened() throws Exception {
+		// removed by the store after it was found
+		assertThat(service.open(stored(directory.resolve("removed.csv")))).isNull();
+		// any other failure to open it, here a path through a regular file
+		Path file = Files.writeString(directory.resolve("report.csv"), "stored");
+		assertThat(service.open(stored(file.resolve("unreadable.csv")))).isNull();
+
+		assertThat(served()).isZero();
+	}
+
+	private static StoredReport stored(Path file) {
+		Instant now = Instant.now();
+		return new StoredReport("a".repeat(64), file, 6, now, now.plus(Duration.ofHours(1)));
+	}
+
+	private double served() {
+		return meterRegistry.get("reports.scheduled.served").functionCounter().count();
+	}
+}
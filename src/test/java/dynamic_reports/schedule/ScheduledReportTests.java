@@ -0,0 +1,92 @@
+package dynamic_reports.schedule;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.service.ReportConfigHash;
+
+class ScheduledReportTests {
+
+	private static final ZoneId ZONE = ZoneId.of("Asia/Kolkata");
+
+	@Test
+	void resolvesDatePlaceholdersOnTheDayOfTheRun() {
+		ScheduledReport scheduled = new ScheduledReport("daily", "0 0 2 * * *", ZONE, "dd-MM-yyyy",
+				report(List.of("27AAACX", "{yesterday}", "{yesterday}"), "{month.start}"));
+
+		ReportConfig resolved = scheduled.resolve(LocalDate.of(2025, 3, 1));
+
+		assertThat(resolved.getDatasource().getSpParams()).containsExactly("27AAACX", "28-02-2025", "28-02-2025");
+		assertThat(resolved.getMeta().getFilters().get(0).getValue()).isEqualTo("01-03-2025");
+		// the schedule keeps its placeholders
+		assertThat(scheduled.getConfig().getDatasource().getSpParams()).containsExactly("27AAACX", "{yesterday}", "{yesterday}");
+		// a request for the same day is the configuration the schedule stored
+		assertThat(ReportConfigHash.of(report(List.of("27AAACX", "28-02-2025", "28-02-2025"), "01-03-2025")))
+				.isEqualTo(ReportConfigHash.of(resolved));
+	}
+
+	@Test
+	void resolvesMonthsAndWeeks() {
+		ScheduledReport scheduled = new ScheduledReport("monthly", "0 0 3 1 * *", ZONE, "yyyy-MM-dd", report(List.of(), null));
+		LocalDate day = LocalDate.of(2024, 3, 13); // a Wednesday
+
+		assertThat(scheduled.resolve("{previousMonth.start}..{previousMonth.end}", day)).isEqualTo("2024-02-01..2024-02-29");
+		assertThat(scheduled.resolve("{month.start}..{month.end}", day)).isEqualTo("2024-03-01..2024-03-31");
+		assertThat(scheduled.resolve("{week.start}..{week.end}", day)).isEqualTo("2024-03-11..2024-03-17");
+		assertThat(scheduled.resolve("{today}", day)).isEqualTo("2024-03-13");
+		assertThat(scheduled.getNextRunAt()).isNotNull();
+	}
+
+	@Test
+	void formatsMonthNamesTheSameInEveryDefaultLocale() {
+		Locale defaultLocale = Locale.getDefault();
+		try {
+			Locale.setDefault(Locale.GERMANY);
+			ScheduledReport scheduled = new ScheduledReport("monthly", "0 0 3 1 * *", ZONE, "dd-MMM-yyyy", report(List.of(), null));
+			assertThat(scheduled.resolve("{today}", LocalDate.of(2025, 3, 1))).isEqualTo("01-Mar-2025");
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	@Test
+	void rejectsInvalidSchedules() {
+		assertThatThrownBy(() -> new ScheduledReport("bad", "0 0 2 * *", ZONE, "dd-MM-yyyy", report(List.of(), null)))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new ScheduledReport("bad", "0 0 2 * * *", ZONE, "dd-MM-yyyy", report(List.of("{tomorrow}"), null)))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("{tomorrow}");
+	}
+
+	private static ReportConfig report(List<String> spParams, String filterValue) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName("Invoice Date");
+		column.setMappedIndex(3);
+		ReportConfig.Meta meta = new ReportConfig.Meta();
+		meta.setFixed(Map.of("date", column));
+		if (filterValue != null) {
+			ReportConfig.Filter filter = new ReportConfig.Filter();
+			filter.setColumn("Invoice Date");
+			filter.setCondition(">=");
+			filter.setValue(filterValue);
+			meta.setFilters(List.of(filter));
+		}
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setSpName("sp_outward");
+		datasource.setSpParams(spParams);
+		ReportConfig reportConfig = new ReportConfig();
+		reportConfig.setName("outward");
+		reportConfig.setMeta(meta);
+		reportConfig.setDatasource(datasource);
+		return reportConfig;
+	}
+}
@@ -0,0 +1,301 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import dynamic_reports.bench.SyntheticResultSet;
+import dynamic_reports.cache.ResultCache;
+import dynamic_reports.dto.BatchReportConfig;
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.pipeline.RowSorters;
+import dynamic_reports.pipeline.TransformPool;
+import dynamic_reports.writer.ReportWriter;
+import dynamic_reports.writer.ReportWriterFactory;
+import dynamic_reports.writer.ReportWriters;
+import dynamic_reports.writer.XlsxReportWriter;
+import dynamic_reports.writer.XlsxWriterFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class BatchReportServiceTests {
+
+	private static final String SOURCE = "sp_sales";
+	private static final String[] COLUMNS = { "Supplier GSTIN", "Invoice Amount" };
+	// more than the chunks queued per pipeline, so the fetch waits for the slowest report
+	private static final int ROWS = 20_000;
+	private static final long DEFAULT_ROWS = 100_000;
+
+	@TempDir
+	Path directory;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+	private final SourceQueryFactory sourceQueryFactory = mock(SourceQueryFactory.class);
+	private final ReportAdmission admission = new ReportAdmission(meterRegistry, true, DataSize.ofMegabytes(100), 10, Duration.ofSeconds(1), 2,
+			DEFAULT_ROWS, 500, DataSize.ofMegabytes(64), 1000);
+	private final TransformPool transformPool = new TransformPool(2, Long.MAX_VALUE, 512);
+
+	private Supplier<ResultSet> resultSets = () -> SyntheticResultSet.of(COLUMNS, rows(ROWS));
+	private int queries;
+	private ResultCache resultCache;
+	private BatchReportService service;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() throws IOException {
+		when(sourceQueryFactory.create(any(), any(), any())).thenReturn(SourceQuery.call(SOURCE, List.of("2025-01")));
+		when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(ResultSetExtractor.class))).thenAnswer(invocation -> {
+			queries++;
+			return invocation.<ResultSetExtractor<?>> getArgument(1).extractData(resultSets.get());
+		});
+
+		resultCache = new ResultCache(new MockEnvironment(), true, DataSize.ofMegabytes(64), DataSize.ofMegabytes(16), Duration.ofMinutes(10),
+				DataSize.ofMegabytes(16), Files.createDirectories(directory.resolve("cache")).toString());
+		XlsxWriterFactory xlsxWriterFactory = new XlsxWriterFactory();
+		ReflectionTestUtils.setField(xlsxWriterFactory, "rowAccessWindow", 500);
+		ReflectionTestUtils.setField(xlsxWriterFactory, "typedCells", true);
+		ReflectionTestUtils.setField(xlsxWriterFactory, "maxSheetRows", XlsxReportWriter.MAX_SHEET_ROWS);
+		ReportWriters reportWriters = new ReportWriters(List.of(xlsxWriterFactory, new LinesWriterFactory("txt", -1),
+				new LinesWriterFactory("failing", 1000)));
+
+		SourceReader sourceReader = new SourceReader(jdbcTemplate, resultCache);
+		ReportMetrics reportMetrics = new ReportMetrics(meterRegistry);
+		ReportService reportService = new ReportService(jdbcTemplate, reportWriters, sourceQueryFactory, sourceReader, transformPool,
+				new RowSorters(DataSize.ofMegabytes(8), directory.resolve("sort").toString()), reportMetrics, admission, meterRegistry);
+		service = new BatchReportService(reportService, reportWriters, xlsxWriterFactory, sourceQueryFactory, sourceReader, reportMetrics,
+				admission);
+		ReflectionTestUtils.setField(service, "maxReports", 20);
+		ReflectionTestUtils.setField(service, "spoolDirectory", directory.resolve("spool").toString());
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.shutdown();
+		transformPool.shutdown();
+	}
+
+	@Test
+	void handsEveryRowToEveryReport() throws IOException {
+		ReportConfig.Filter large = new ReportConfig.Filter();
+		large.setColumn("Amount");
+		large.setCondition(">=");
+		large.setValue("15000");
+		BatchReportConfig batch = batch("zip", report("all", "txt", null), report("large", "txt", null, large));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		List<ReportResult> results = service.streamBatch(batch, out);
+
+		Map<String, String> entries = unzip(out.toByteArray());
+		assertThat(entries).containsOnlyKeys("all.txt", "large.txt");
+		List<String> all = entries.get("all.txt").lines().toList();
+		assertThat(all).hasSize(ROWS + 1).startsWith("GSTIN,Amount", "27AAA0,0").endsWith("27AAA" + (ROWS - 1) % 7 + "," + (ROWS - 1));
+		List<String> largeLines = entries.get("large.txt").lines().toList();
+		assertThat(largeLines).hasSize(ROWS - 15_000 + 1).element(1).isEqualTo("27AAA" + 15_000 % 7 + ",15000");
+		assertThat(results).extracting(ReportResult::getRowsFetched).containsExactly((long) ROWS, (long) ROWS);
+		assertThat(results).extracting(ReportResult::getRowsWritten).containsExactly((long) ROWS, (long) ROWS - 15_000);
+		assertThat(admission.expectedRows(SOURCE)).isEqualTo(ROWS);
+
+		// the complete result was cached, the next batch over the source reads it from there
+		assertThat(resultCache.statistics().entries()).isEqualTo(1);
+		ByteArrayOutputStream again = new ByteArrayOutputStream();
+		List<ReportResult> cached = service.streamBatch(batch, again);
+		assertThat(queries).isEqualTo(1);
+		assertThat(cached).allMatch(ReportResult::isCacheHit);
+		assertThat(unzip(again.toByteArray())).isEqualTo(entries);
+	}
+
+	@Test
+	void failsTheBatchWhenOneReportFailsWithoutBlockingTheFetch() {
+		// rows without end: the fetch has to stop once a report failed
+		resultSets = () -> SyntheticResultSet.cycling(COLUMNS, rows(ROWS), Integer.MAX_VALUE);
+		BatchReportConfig batch = batch("zip", report("good", "txt", null), report("bad", "failing", null));
+
+		assertTimeoutPreemptively(Duration.ofSeconds(30),
+				() -> assertThatThrownBy(() -> service.streamBatch(batch, new ByteArrayOutputStream())).isInstanceOf(IOException.class)
+						.hasMessage("disk full"));
+		assertThat(resultCache.statistics().entries()).isZero();
+		assertThat(directory.resolve("spool")).isEmptyDirectory();
+	}
+
+	@Test
+	void stopsFetchingOnceEveryLimitedReportHasItsRows() throws IOException {
+		resultSets = () -> SyntheticResultSet.cycling(COLUMNS, rows(ROWS), Integer.MAX_VALUE);
+		BatchReportConfig batch = batch("zip", report("top 10", "txt", 10), report("top 25", "txt", 25));
+
+		List<ReportResult> results = assertTimeoutPreemptively(Duration.ofSeconds(30),
+				() -> service.streamBatch(batch, new ByteArrayOutputStream()));
+
+		assertThat(results).extracting(ReportResult::getRowsWritten).containsExactly(10L, 25L);
+		assertThat(results).allMatch(result -> result.getRowsFetched() < ROWS);
+		// a partial result is neither cached nor taken for the size of the source
+		assertThat(resultCache.statistics().entries()).isZero();
+		assertThat(admission.expectedRows(SOURCE)).isEqualTo(DEFAULT_ROWS);
+	}
+
+	@Test
+	void namesEveryZipEntryDifferently() throws IOException {
+		BatchReportConfig batch = batch("zip", report("Sales", "txt", null), report("sales", "txt", null), report("a/b:c", "txt", null),
+				report(null, "txt", null));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.streamBatch(batch, out);
+
+		assertThat(unzip(out.toByteArray())).containsOnlyKeys("Sales.txt", "sales (2).txt", "a_b_c.txt", "report 4.txt");
+	}
+
+	@Test
+	void writesEveryReportAsASheetOfOneWorkbook() throws IOException {
+		BatchReportConfig batch = batch(null, report("All", null, null), report("First", null, 5));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		service.streamBatch(batch, out);
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+			assertThat(workbook.getNumberOfSheets()).isEqualTo(2);
+			assertThat(workbook.getSheetName(0)).isEqualTo("All");
+			assertThat(workbook.getSheetAt(0).getLastRowNum()).isEqualTo(ROWS);
+			assertThat(workbook.getSheetName(1)).isEqualTo("First");
+			assertThat(workbook.getSheetAt(1).getLastRowNum()).isEqualTo(5);
+			assertThat(workbook.getSheetAt(1).getRow(5).getCell(1).getNumericCellValue()).isEqualTo(4);
+		}
+	}
+
+	private static Object[][] rows(int count) {
+		Object[][] rows = new Object[count][];
+		for (int i = 0; i < count; i++) {
+			rows[i] = new Object[] { "27AAA" + i % 7, BigDecimal.valueOf(i) };
+		}
+		return rows;
+	}
+
+	private static BatchReportConfig batch(String format, BatchReportConfig.Report... reports) {
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setSpName(SOURCE);
+		datasource.setSpParams(List.of("2025-01"));
+		BatchReportConfig batch = new BatchReportConfig();
+		batch.setName("sales");
+		batch.setFormat(format);
+		batch.setDatasource(datasource);
+		batch.setReports(List.of(reports));
+		return batch;
+	}
+
+	private static BatchReportConfig.Report report(String name, String format, Integer limit, ReportConfig.Filter... filters) {
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		fixed.put("column1", column("GSTIN", 0));
+		fixed.put("column2", column("Amount", 1));
+		ReportConfig.Meta meta = new ReportConfig.Meta();
+		meta.setFixed(fixed);
+		meta.setFilters(filters.length == 0 ? null : List.of(filters));
+		meta.setLimit(limit);
+		BatchReportConfig.Report report = new BatchReportConfig.Report();
+		report.setName(name);
+		report.setFormat(format);
+		report.setMeta(meta);
+		return report;
+	}
+
+	private static ReportConfig.ColumnConfig column(String name, int index) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName(name);
+		column.setMappedIndex(index);
+		return column;
+	}
+
+	private static Map<String, String> unzip(byte[] zip) throws IOException {
+		Map<String, String> entries = new LinkedHashMap<>();
+		try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+			for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+				entries.put(entry.getName(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Writes each row as a line of comma separated values, failing at row {@code failAt} if it is not negative.
+	 */
+	private record LinesWriterFactory(String format, int failAt) implements ReportWriterFactory {
+
+		@Override
+		public String getFormat() {
+			return format;
+		}
+
+		@Override
+		public String getContentType() {
+			return "text/plain";
+		}
+
+		@Override
+		public String getFileExtension() {
+			return "txt";
+		}
+
+		@Override
+		public ReportWriter create(OutputStream out) {
+			Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+			return new ReportWriter() {
+
+				private int written;
+
+				@Override
+				public void writeHeader(String[] names) throws IOException {
+					writer.write(String.join(",", names) + "\n");
+				}
+
+				@Override
+				public void writeRow(Object[] row) throws IOException {
+					if (written++ == failAt) {
+						throw new IOException("disk full");
+					}
+					writer.write(String.join(",", Stream.of(row).map(String::valueOf).toList()) + "\n");
+				}
+
+				@Override
+				public void finish() throws IOException {
+					writer.flush();
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+	}
+}
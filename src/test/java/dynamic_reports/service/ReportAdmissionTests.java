@@ -0,0 +1,149 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import dynamic_reports.dto.ReportConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReportAdmissionTests {
+
+	private static final long MB = 1024 * 1024;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private ReportAdmission admission(long budget, int maxQueued, Duration maxWait) {
+		return new ReportAdmission(meterRegistry, true, DataSize.ofBytes(budget), maxQueued, maxWait, 2, 100_000, 500,
+				DataSize.ofMegabytes(64), 1000);
+	}
+
+	@Test
+	void estimatesFromTheColumnsAndTheRowsTheSourceReturned() {
+		ReportAdmission admission = admission(1024 * MB, 10, Duration.ofSeconds(1));
+		ReportConfig narrow = report("outward", 5, "csv");
+		ReportConfig wide = report("outward", 130, "csv");
+
+		long streamed = admission.estimate(wide, SourceQuery.FetchMode.STREAMING, false);
+		long buffered = admission.estimate(wide, SourceQuery.FetchMode.STREAMING, true);
+		assertThat(admission.estimate(narrow, SourceQuery.FetchMode.STREAMING, true)).isLessThan(buffered);
+		// a buffered response and a buffered result grow with the rows, a stream does not
+		assertThat(buffered).isGreaterThan(streamed);
+		assertThat(admission.estimate(wide, SourceQuery.FetchMode.BUFFERED, false)).isGreaterThan(streamed);
+
+		admission.observe("sp_outward", 1_000_000);
+		assertThat(admission.expectedRows("sp_outward")).isEqualTo(1_000_000);
+		assertThat(admission.estimate(wide, SourceQuery.FetchMode.STREAMING, true)).isGreaterThan(buffered);
+		assertThat(admission.estimate(wide, SourceQuery.FetchMode.STREAMING, false)).isEqualTo(streamed);
+		// a smaller run pulls the expectation down by half at most
+		admission.observe("sp_outward", 10);
+		assertThat(admission.expectedRows("sp_outward")).isEqualTo(500_000);
+	}
+
+	@Test
+	void reportsThatDoNotFitWaitUntilTheBudgetIsReleased() throws Exception {
+		ReportAdmission admission = admission(100 * MB, 10, Duration.ofSeconds(10));
+		ReportAdmission.Permit first = admission.admit("outward", 60 * MB);
+		assertThat(admission.getReserved()).isEqualTo(60 * MB);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<ReportAdmission.Permit> second = executor.submit(() -> admission.admit("error", 60 * MB));
+			while (admission.getQueued() == 0) {
+				Thread.sleep(1);
+			}
+			assertThat(second.isDone()).isFalse();
+
+			first.close();
+			first.close();
+			try (ReportAdmission.Permit permit = second.get(10, TimeUnit.SECONDS)) {
+				assertThat(permit.getBytes()).isEqualTo(60 * MB);
+				assertThat(admission.getReserved()).isEqualTo(60 * MB);
+			}
+		}
+		assertThat(admission.getReserved()).isZero();
+		assertThat(admission.getRunning()).isZero();
+		assertThat(meterRegistry.get("reports.admission.wait").tag("outcome", "admitted").timer().count()).isEqualTo(2);
+	}
+
+	@Test
+	void aReportAtItsLimitDoesNotHoldBackOtherReports() throws Exception {
+		ReportAdmission admission = admission(100 * MB, 10, Duration.ofSeconds(10));
+		List<ReportAdmission.Permit> outward = List.of(admission.admit("outward", MB), admission.admit("outward", MB));
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Future<ReportAdmission.Permit> third = executor.submit(() -> admission.admit("outward", MB));
+			while (admission.getQueued() == 0) {
+				Thread.sleep(1);
+			}
+			// queued behind the third outward report, which only waits for its own limit
+			try (ReportAdmission.Permit error = admission.admit("error", MB)) {
+				assertThat(admission.getRunning()).isEqualTo(3);
+			}
+			assertThat(third.isDone()).isFalse();
+
+			outward.get(0).close();
+			third.get(10, TimeUnit.SECONDS).close();
+			outward.get(1).close();
+		}
+		assertThat(admission.getRunning()).isZero();
+	}
+
+	@Test
+	void rejectsWhenTheQueueIsFullOrTheWaitIsOver() throws Exception {
+		ReportAdmission admission = admission(100 * MB, 1, Duration.ofMillis(50));
+		try (ReportAdmission.Permit whole = admission.admit("outward", 500 * MB)) {
+			// larger than the budget, it takes all of it
+			assertThat(whole.getBytes()).isEqualTo(100 * MB);
+
+			assertThatThrownBy(() -> admission.admit("error", MB))
+					.isInstanceOf(RejectedExecutionException.class)
+					.hasMessageContaining("try again later");
+
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				Future<ReportAdmission.Permit> waiting = executor.submit(() -> admission.admit("error", MB));
+				while (admission.getQueued() == 0 && !waiting.isDone()) {
+					Thread.sleep(1);
+				}
+				assertThatThrownBy(() -> admission.admit("error", MB))
+						.isInstanceOf(RejectedExecutionException.class)
+						.hasMessageContaining("Too many reports");
+				assertThatThrownBy(() -> waiting.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(RejectedExecutionException.class);
+			}
+		}
+		assertThat(meterRegistry.get("reports.admission.rejected").tag("reason", "timeout").counter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get("reports.admission.rejected").tag("reason", "queue-full").counter().count()).isEqualTo(1);
+		assertThat(admission.getReserved()).isZero();
+	}
+
+	private static ReportConfig report(String name, int columns, String format) {
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		for (int i = 0; i < columns; i++) {
+			ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+			column.setName("c" + i);
+			column.setMappedIndex(i);
+			fixed.put("c" + i, column);
+		}
+		ReportConfig.Meta meta = new ReportConfig.Meta();
+		meta.setFixed(fixed);
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setSpName("sp_outward");
+		ReportConfig reportConfig = new ReportConfig();
+		reportConfig.setName(name);
+		reportConfig.setMeta(meta);
+		reportConfig.setDatasource(datasource);
+		reportConfig.setFormat(format);
+		return reportConfig;
+	}
+}
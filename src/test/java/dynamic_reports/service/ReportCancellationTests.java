@@ -0,0 +1,76 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+class ReportCancellationTests {
+
+	@Test
+	void cancelsTheAttachedStatement() throws Exception {
+		ReportCancellation cancellation = new ReportCancellation();
+		Statement statement = mock(Statement.class);
+		cancellation.attach(statement);
+		cancellation.check();
+
+		cancellation.cancel("client disconnected");
+		cancellation.cancel("job cancelled");
+
+		verify(statement).cancel();
+		assertThat(cancellation.isCancelled()).isTrue();
+		assertThat(cancellation.getReason()).isEqualTo("client disconnected");
+		assertThatThrownBy(cancellation::check).isInstanceOf(CancellationException.class).hasMessage("client disconnected");
+		// a statement created after the cancellation is not executed
+		assertThatThrownBy(() -> cancellation.attach(mock(Statement.class))).isInstanceOf(CancellationException.class);
+	}
+
+	@Test
+	void leavesDetachedStatementsAlone() throws Exception {
+		ReportCancellation cancellation = new ReportCancellation();
+		Statement statement = mock(Statement.class);
+		cancellation.attach(statement);
+		cancellation.detach();
+
+		cancellation.cancel("job cancelled");
+
+		verify(statement, never()).cancel();
+	}
+
+	@Test
+	void ignoresStatementsThatCannotBeCancelled() throws Exception {
+		ReportCancellation cancellation = new ReportCancellation();
+		Statement statement = mock(Statement.class);
+		doThrow(new SQLException("statement is closed")).when(statement).cancel();
+		cancellation.attach(statement);
+
+		cancellation.cancelStatement();
+
+		assertThat(cancellation.isCancelled()).isFalse();
+	}
+
+	@Test
+	void cancelsWhenTheOutputFails() throws Exception {
+		ReportCancellation cancellation = new ReportCancellation();
+		OutputStream closed = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+		OutputStream out = cancellation.cancelOnFailure(closed, "client disconnected");
+
+		assertThatThrownBy(() -> out.write(new byte[] { 1, 2 })).isInstanceOf(IOException.class);
+		assertThat(cancellation.getReason()).isEqualTo("client disconnected");
+	}
+}
@@ -0,0 +1,53 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dynamic_reports.dto.ReportConfig;
+
+class ReportConfigHashTests {
+
+	@Test
+	void hashesEquivalentConfigurationsTheSame() {
+		ReportConfig first = config("Invoice No.", "Invoice Date");
+		first.setName("outward for alice");
+		ReportConfig second = config("Invoice No.", "Invoice Date");
+		second.setName("outward for bob");
+		second.setFormat(" XLSX ");
+		second.setGzip(false);
+		second.getDatasource().setType("procedure");
+
+		assertThat(ReportConfigHash.of(first)).isEqualTo(ReportConfigHash.of(second)).hasSize(64);
+		assertThat(first.getName()).isEqualTo("outward for alice");
+		assertThat(first.getFormat()).isNull();
+
+		// the column order is part of the report
+		assertThat(ReportConfigHash.of(config("Invoice Date", "Invoice No."))).isNotEqualTo(ReportConfigHash.of(first));
+		second.setGzip(true);
+		assertThat(ReportConfigHash.of(second)).isNotEqualTo(ReportConfigHash.of(first));
+	}
+
+	private static ReportConfig config(String... columns) {
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		for (int i = 0; i < columns.length; i++) {
+			ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+			column.setName(columns[i]);
+			column.setMappedIndex(i);
+			fixed.put("column" + i, column);
+		}
+		ReportConfig.Meta meta = new ReportConfig.Meta();
+		meta.setFixed(fixed);
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setSpName("sp_outward");
+		datasource.setSpParams(List.of("01-01-2025", "31-01-2025"));
+		ReportConfig reportConfig = new ReportConfig();
+		reportConfig.setMeta(meta);
+		reportConfig.setDatasource(datasource);
+		return reportConfig;
+	}
+}
@@ -0,0 +1,100 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.dto.ReportTemplateCall;
+import dynamic_reports.pipeline.SourceColumns;
+
+class ReportTemplateTests {
+
+	private static final SourceColumns COLUMNS = new SourceColumns(new String[] { "gstin", "amount", "date" },
+			new int[] { Types.VARCHAR, Types.DECIMAL, Types.DATE });
+
+	@Test
+	void reusesThePlanCompiledAtRegistration() {
+		ReportTemplate template = template(filter("Supplier GSTIN", "startswith", "27"));
+
+		ReportPlan plan = template.planner(new ReportTemplateCall()).apply(COLUMNS);
+
+		assertThat(template.planner(new ReportTemplateCall()).apply(new SourceColumns(new String[] { "gstin", "amount", "date" },
+				new int[] { Types.VARCHAR, Types.DECIMAL, Types.DATE }))).isSameAs(plan);
+		assertThat(plan.getRowFilter().test(new Object[] { "27AAA", BigDecimal.ONE })).isTrue();
+		assertThat(plan.getRowFilter().test(new Object[] { "29BBB", BigDecimal.ONE })).isFalse();
+		// a source that changed its columns is compiled again
+		SourceColumns changed = new SourceColumns(new String[] { "gstin", "amount" }, new int[] { Types.VARCHAR, Types.DECIMAL });
+		assertThat(template.planner(new ReportTemplateCall()).apply(changed)).isNotSameAs(plan);
+	}
+
+	@Test
+	void overridesFiltersOnTheSameColumn() {
+		ReportTemplate template = template(filter("Supplier GSTIN", "startswith", "27"), filter("column2", ">", "100"));
+		ReportTemplateCall call = new ReportTemplateCall();
+		call.setSpParams(List.of("29BBB", "2025-02"));
+		call.setFilters(List.of(filter("column1", "startswith", "29")));
+
+		ReportConfig execution = template.execution(call);
+		ReportPlan plan = template.planner(call).apply(COLUMNS);
+
+		assertThat(execution.getName()).isEqualTo("outward");
+		assertThat(execution.getDatasource().getSpParams()).containsExactly("29BBB", "2025-02");
+		assertThat(execution.getMeta().getFilters()).extracting(ReportConfig.Filter::getColumn).containsExactly("column2", "column1");
+		assertThat(plan.getRowFilter().test(new Object[] { "29BBB", new BigDecimal("150") })).isTrue();
+		assertThat(plan.getRowFilter().test(new Object[] { "27AAA", new BigDecimal("150") })).isFalse();
+		assertThat(plan.getRowFilter().test(new Object[] { "29BBB", new BigDecimal("50") })).isFalse();
+		// the template itself is unchanged
+		assertThat(template.getConfig().getMeta().getFilters()).hasSize(2);
+		assertThat(template.getConfig().getDatasource().getSpParams()).containsExactly("27AAA", "2025-01");
+	}
+
+	@Test
+	void rejectsOverridesOnUnknownColumns() {
+		ReportTemplate template = template();
+		ReportTemplateCall call = new ReportTemplateCall();
+		call.setFilters(List.of(filter("Buyer GSTIN", "=", "27AAA")));
+
+		assertThatThrownBy(() -> template.planner(call)).isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Buyer GSTIN");
+	}
+
+	private static ReportTemplate template(ReportConfig.Filter... filters) {
+		Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+		fixed.put("column1", column("Supplier GSTIN", 0));
+		fixed.put("column2", column("Invoice Amount", 1));
+		ReportConfig.Meta meta = new ReportConfig.Meta();
+		meta.setFixed(fixed);
+		meta.setFilters(List.of(filters));
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setSpName("sp_outward");
+		datasource.setSpParams(List.of("27AAA", "2025-01"));
+		ReportConfig config = new ReportConfig();
+		config.setName("outward");
+		config.setDatasource(datasource);
+		config.setMeta(meta);
+		return new ReportTemplate("outward", config, ReportPlan.compile(meta, COLUMNS));
+	}
+
+	private static ReportConfig.ColumnConfig column(String name, int mappedIndex) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName(name);
+		column.setMappedIndex(mappedIndex);
+		return column;
+	}
+
+	private static ReportConfig.Filter filter(String column, String condition, String value) {
+		ReportConfig.Filter filter = new ReportConfig.Filter();
+		filter.setColumn(column);
+		filter.setCondition(condition);
+		filter.setValue(value);
+		return filter;
+	}
+}
@@ -0,0 +1,39 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import dynamic_reports.service.ReportTimings.Stage;
+
+class ReportTimingsTests {
+
+	@Test
+	void lapsChargeTheElapsedTimeToAStage() throws InterruptedException {
+		ReportTimings timings = new ReportTimings();
+		Thread.sleep(20);
+		timings.lap(Stage.QUERY);
+		Thread.sleep(5);
+		timings.lap(Stage.WRITE);
+		Thread.sleep(5);
+		timings.lap(Stage.WRITE);
+		timings.stop();
+
+		assertThat(timings.get(Stage.QUERY)).isGreaterThanOrEqualTo(Duration.ofMillis(20));
+		assertThat(timings.get(Stage.WRITE)).isGreaterThanOrEqualTo(Duration.ofMillis(10)).isLessThan(timings.get(Stage.QUERY).plusMillis(15));
+		assertThat(timings.get(Stage.FETCH)).isZero();
+		assertThat(timings.getTotal()).isEqualTo(timings.get(Stage.QUERY).plus(timings.get(Stage.WRITE)));
+		assertThat(timings.toMillis()).containsOnlyKeys("query", "fetch", "transform", "aggregate", "sort", "write", "total");
+	}
+
+	@Test
+	void formatsAServerTimingHeader() {
+		ReportTimings timings = new ReportTimings();
+		timings.stop();
+
+		assertThat(timings.toServerTiming()).matches(
+				"query;dur=\\d+\\.\\d, fetch;dur=0\\.0, transform;dur=0\\.0, aggregate;dur=0\\.0, sort;dur=0\\.0, write;dur=0\\.0, total;dur=\\d+\\.\\d");
+	}
+}
@@ -0,0 +1,61 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTests {
+
+	@Test
+	void concurrentCallersShareOneExecution() throws Exception {
+		SingleFlight<String, byte[]> flight = new SingleFlight<>();
+		AtomicInteger executions = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		byte[] report = { 1, 2, 3 };
+
+		List<Future<byte[]>> results = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(() -> flight.execute("outward", () -> {
+					executions.incrementAndGet();
+					release.await();
+					return report;
+				})));
+			}
+			while (flight.coalescedCount() < 7) {
+				Thread.sleep(1);
+			}
+			release.countDown();
+			for (Future<byte[]> result : results) {
+				assertThat(result.get(10, TimeUnit.SECONDS)).isSameAs(report);
+			}
+		}
+
+		assertThat(executions).hasValue(1);
+		assertThat(flight.executedCount()).isEqualTo(1);
+		assertThat(flight.inFlightCount()).isZero();
+		// the result is not kept once the call has completed
+		assertThat(flight.execute("outward", () -> new byte[0])).isEmpty();
+	}
+
+	@Test
+	void failuresAreNotRemembered() {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+
+		assertThatThrownBy(() -> flight.execute("outward", () -> {
+			throw new IOException("connection reset");
+		})).isInstanceOf(IOException.class);
+		assertThat(flight.execute("outward", () -> "ok")).isEqualTo("ok");
+	}
+}
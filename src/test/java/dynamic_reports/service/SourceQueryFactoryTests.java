@@ -0,0 +1,182 @@
+package dynamic_reports.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.mock.env.MockEnvironment;
+
+import dynamic_reports.dto.ReportConfig;
+import dynamic_reports.pipeline.SourceColumns;
+
+class SourceQueryFactoryTests {
+
+	private static final String SQL = "SELECT * FROM sales WHERE region = ?";
+	private static final String WRAPPED = "SELECT * FROM (" + SQL + ") src WHERE ";
+
+	private static final SourceColumns COLUMNS = new SourceColumns(
+			new String[] { "supplier", "amount", "invoice_date", "quantity", "rate", "gstin", "odd`label" },
+			new int[] { Types.VARCHAR, Types.DECIMAL, Types.DATE, Types.VARCHAR, Types.FLOAT, Types.VARCHAR, Types.INTEGER });
+
+	private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+	private final MockEnvironment environment = new MockEnvironment().withProperty("reports.query.sales", SQL)
+			.withProperty("reports.fetch.mode.sales", "streaming").withProperty("reports.fetch.timeout.sales", "0s");
+
+	private final Map<String, ReportConfig.ColumnConfig> fixed = new LinkedHashMap<>();
+
+	private SourceQueryFactory factory;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), any(Object[].class))).thenReturn(COLUMNS);
+		factory = new SourceQueryFactory(environment, jdbcTemplate);
+
+		fixed.put("column1", column("Supplier", 0, null));
+		fixed.put("column2", column("Amount", 1, null));
+		fixed.put("column3", column("Invoice Date", 2, null));
+		fixed.put("column4", column("Quantity", 3, null));
+		fixed.put("column5", column("Rate", 4, null));
+		fixed.put("column6", column("GSTIN", 5, "uppercase"));
+		fixed.put("column7", column("Odd", 6, null));
+	}
+
+	@Test
+	void pushesComparisonsIntoAWhereClauseAroundTheQuery() {
+		SourceQuery query = create(filter("Amount", ">", "100"), filter("Invoice Date", "<=", "2025-01-31"));
+
+		assertThat(query.getSql()).isEqualTo(WRAPPED + "src.`amount` > ? AND src.`invoice_date` <= ?");
+		// the query's own parameters are bound before the filter operands
+		assertThat(query.getParams()).containsExactly("west", new BigDecimal("100"), LocalDateTime.parse("2025-01-31T00:00"));
+		assertThat(query.isCallable()).isFalse();
+	}
+
+	@Test
+	void bindsTheOperandsOfEveryCondition() {
+		assertPushed(filter("Amount", "=", "5"), "src.`amount` = ?", new BigDecimal("5"));
+		assertPushed(filter("Amount", "==", "5"), "src.`amount` = ?", new BigDecimal("5"));
+		assertPushed(filter("Amount", ">=", "5"), "src.`amount` >= ?", new BigDecimal("5"));
+		assertPushed(filter("Amount", "<", "5"), "src.`amount` < ?", new BigDecimal("5"));
+		assertPushed(filter("Amount", "between", "100, 500"), "src.`amount` BETWEEN ? AND ?", new BigDecimal("100"), new BigDecimal("500"));
+		assertPushed(filter("Supplier", "=", "Acme"), "src.`supplier` = ?", "Acme");
+
+		ReportConfig.Filter in = filter("Amount", "in", null);
+		in.setValues(List.of("1", "2", "3"));
+		assertPushed(in, "src.`amount` IN (?, ?, ?)", new BigDecimal("1"), new BigDecimal("2"), new BigDecimal("3"));
+	}
+
+	@Test
+	void keepsNullCellsOnInequality() {
+		assertPushed(filter("Amount", "!=", "5"), "(src.`amount` <> ? OR src.`amount` IS NULL)", new BigDecimal("5"));
+		assertPushed(filter("Amount", "<>", "5"), "(src.`amount` <> ? OR src.`amount` IS NULL)", new BigDecimal("5"));
+	}
+
+	@Test
+	void escapesBackticksInTheColumnLabel() {
+		assertPushed(filter("Odd", "=", "7"), "src.`odd``label` = ?", new BigDecimal("7"));
+	}
+
+	@Test
+	void escapesLikeWildcardsInTextOperands() {
+		assertPushed(filter("Supplier", "contains", "5%_off!"), "src.`supplier` LIKE ? ESCAPE '!'", "%5!%!_off!!%");
+		assertPushed(filter("Supplier", "startsWith", "a_"), "src.`supplier` LIKE ? ESCAPE '!'", "a!_%");
+		assertPushed(filter("Supplier", "endsWith", "%"), "src.`supplier` LIKE ? ESCAPE '!'", "%!%");
+	}
+
+	@Test
+	void matchesCaseFormattedColumnsInLowerCase() {
+		assertPushed(filter("GSTIN", "startsWith", "27AaA"), "LOWER(src.`gstin`) LIKE ? ESCAPE '!'", "27aaa%");
+		assertPushed(filter("GSTIN", "=", "27AAA"), "LOWER(src.`gstin`) = ?", "27aaa");
+	}
+
+	@Test
+	void leavesFiltersTheDatabaseCouldEvaluateDifferentlyInMemory() {
+		// text ordering and inequality depend on the collation
+		assertNotPushed(filter("Supplier", ">", "M"));
+		assertNotPushed(filter("Supplier", "!=", "Acme"));
+		// a text column holding numbers is ordered by value in memory
+		assertNotPushed(filter("Quantity", ">=", "9"));
+		// a FLOAT holding 0.1f is 0.1 in memory but not in SQL
+		assertNotPushed(filter("Rate", "=", "0.1"));
+		assertNotPushed(filter("Rate", ">", "0.1"));
+	}
+
+	@Test
+	void pushesTheFiltersItCanNextToOnesItCannot() {
+		SourceQuery query = create(filter("Rate", "=", "0.1"), filter("Amount", ">", "100"), filter("Supplier", ">", "M"));
+
+		assertThat(query.getSql()).isEqualTo(WRAPPED + "src.`amount` > ?");
+		assertThat(query.getParams()).containsExactly("west", new BigDecimal("100"));
+	}
+
+	@Test
+	void callsAStoredProcedureWithoutPushingFilters() {
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setSpName("sp_sales");
+		datasource.setSpParams(List.of("west"));
+		environment.setProperty("reports.fetch.mode.sp_sales", "streaming");
+
+		SourceQuery query = factory.create(datasource, fixed, List.of(filter("Amount", ">", "100")));
+
+		assertThat(query.getSql()).isEqualTo("{call `sp_sales`(?)}");
+		assertThat(query.getParams()).containsExactly("west");
+		assertThat(query.isCallable()).isTrue();
+	}
+
+	private void assertPushed(ReportConfig.Filter filter, String predicate, Object... operands) {
+		SourceQuery query = create(filter);
+		assertThat(query.getSql()).isEqualTo(WRAPPED + predicate);
+		assertThat(query.getParams()).containsExactly(prepend("west", operands));
+	}
+
+	private void assertNotPushed(ReportConfig.Filter filter) {
+		SourceQuery query = create(filter);
+		assertThat(query.getSql()).isEqualTo(SQL);
+		assertThat(query.getParams()).containsExactly("west");
+	}
+
+	private SourceQuery create(ReportConfig.Filter... filters) {
+		ReportConfig.Datasource datasource = new ReportConfig.Datasource();
+		datasource.setType("query");
+		datasource.setQueryName("sales");
+		datasource.setSpParams(List.of("west"));
+		return factory.create(datasource, fixed, List.of(filters));
+	}
+
+	private static Object[] prepend(Object first, Object[] rest) {
+		Object[] values = new Object[rest.length + 1];
+		values[0] = first;
+		System.arraycopy(rest, 0, values, 1, rest.length);
+		return values;
+	}
+
+	private static ReportConfig.ColumnConfig column(String name, int index, String format) {
+		ReportConfig.ColumnConfig column = new ReportConfig.ColumnConfig();
+		column.setName(name);
+		column.setMappedIndex(index);
+		column.setFormat(format);
+		return column;
+	}
+
+	private static ReportConfig.Filter filter(String column, String condition, String value) {
+		ReportConfig.Filter filter = new ReportConfig.Filter();
+		filter.setColumn(column);
+		filter.setCondition(condition);
+		filter.setValue(value);
+		return filter;
+	}
+}
@@ -0,0 +1,154 @@
+package dynamic_reports.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dynamic_reports.pipeline.SourceColumns;
+
+class RowStoreTests {
+
+	private static final String[] LABELS = { "gstin", "invoice no", "amount", "big amount", "invoice date", "created",
+			"updated", "due", "qty", "ratio", "flag", "remarks", "blob", "empty" };
+
+	@TempDir
+	Path spillDir;
+
+	@Test
+	void roundTripsEveryValueTypeOnTheHeap() throws IOException {
+		List<Object[]> rows = rows(RowStore.BATCH_SIZE + 10);
+		try (RowStore store = store(Long.MAX_VALUE)) {
+			rows.forEach(row -> add(store, row.clone()));
+			store.finish();
+
+			assertThat(store.size()).isEqualTo(rows.size());
+			assertThat(store.batchCount()).isEqualTo(2);
+			assertThat(store.spilledBatches()).isZero();
+			assertRows(store, rows);
+		}
+	}
+
+	@Test
+	void spillsBatchesBeyondTheHeapBudget() throws IOException {
+		List<Object[]> rows = rows(3 * RowStore.BATCH_SIZE);
+		// drop the columns without a compact encoding, they would keep every batch on the heap
+		rows.forEach(row -> {
+			row[3] = null;
+			row[12] = null;
+		});
+		try (RowStore store = store(0)) {
+			rows.forEach(row -> add(store, row.clone()));
+			store.finish();
+
+			assertThat(store.spilledBatches()).isEqualTo(3);
+			assertThat(store.spilledBytes()).isPositive();
+			assertRows(store, rows);
+
+			store.close();
+			try (var files = Files.list(spillDir)) {
+				assertThat(files).isEmpty();
+			}
+			// batches stay readable after the spill file is closed
+			assertThat(store.batch(2).get(0, 5)).isEqualTo(rows.get(2 * RowStore.BATCH_SIZE + 5)[0]);
+		}
+	}
+
+	@Test
+	void batchesWithUnencodableColumnsStayOnTheHeap() throws IOException {
+		List<Object[]> rows = rows(10);
+		try (RowStore store = store(0)) {
+			rows.forEach(row -> add(store, row.clone()));
+			store.finish();
+
+			assertThat(store.spilledBatches()).isZero();
+			assertRows(store, rows);
+		}
+	}
+
+	@Test
+	void encodesRepetitiveColumnsCompactly() throws IOException {
+		List<Object[]> rows = rows(RowStore.BATCH_SIZE);
+		rows.forEach(row -> row[12] = null);
+		try (RowStore store = store(Long.MAX_VALUE)) {
+			rows.forEach(row -> add(store, row.clone()));
+			store.finish();
+
+			long rawBytes = 0;
+			for (Object[] row : rows) {
+				rawBytes += 16 + 4L * row.length;
+				for (Object value : row) {
+					rawBytes += ValueSizes.estimate(value);
+				}
+			}
+			assertThat(store.heapBytes()).isLessThan(rawBytes / 2);
+		}
+	}
+
+	private RowStore store(long heapBudget) {
+		int[] types = new int[LABELS.length];
+		Arrays.fill(types, Types.OTHER);
+		return new RowStore(new SourceColumns(LABELS, types), heapBudget, spillDir);
+	}
+
+	private static List<Object[]> rows(int count) {
+		List<Object[]> rows = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			rows.add(new Object[] {
+					"27ABCDE" + (i % 50) + "F1Z5",
+					i % 7 == 0 ? null : "INV/" + i,
+					BigDecimal.valueOf(i * 125L - 5000, 2),
+					i % 2 == 0 ? new BigDecimal("12345678901234567890.12") : BigDecimal.valueOf(i, 2),
+					Date.valueOf(LocalDate.of(2025, 1, 1).plusDays(i % 60)),
+					Timestamp.valueOf(LocalDateTime.of(2025, 1, 1, 10, 5, 1, 123_456_789).plusSeconds(i)),
+					LocalDateTime.of(2024, 12, 31, 23, 59).plusMinutes(i),
+					LocalDate.of(2025, 3, 1).plusDays(i % 10),
+					i % 3 == 0 ? null : i,
+					i * 0.5d,
+					i % 2 == 0,
+					"remark " + i + " ₹ 😀",
+					new byte[] { (byte) i },
+					null });
+		}
+		return rows;
+	}
+
+	private static void assertRows(RowStore store, List<Object[]> expected) {
+		int index = 0;
+		for (int b = 0; b < store.batchCount(); b++) {
+			ColumnBatch batch = store.batch(b);
+			for (int r = 0; r < batch.rowCount(); r++, index++) {
+				Object[] row = expected.get(index);
+				for (int c = 0; c < row.length; c++) {
+					assertThat(batch.get(c, r)).as("row %d column %s", index, LABELS[c]).isEqualTo(row[c]);
+					if (row[c] != null) {
+						assertThat(batch.get(c, r)).hasSameClassAs(row[c]);
+					}
+				}
+			}
+		}
+		assertThat(index).isEqualTo(expected.size());
+	}
+
+	private static void add(RowStore store, Object[] row) {
+		try {
+			store.add(row);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package dynamic_reports.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+
+import org.junit.jupiter.api.Test;
+
+class TextReportWritersTests {
+
+	private static final String[] HEADER = { "Supplier GSTIN", "Invoice Amount", "Invoice Date", "Remarks" };
+
+	@Test
+	void writesRfc4180Csv() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// a tiny buffer forces the encoder to drain mid-row
+		ReportWriter writer = new CsvReportWriter(out, 8);
+		writer.writeHeader(HEADER);
+		writer.writeRow(new Object[] { "27AAA", new BigDecimal("-0.50"), Date.valueOf("2025-01-09"), "said \"hi\", left" });
+		writer.writeRow(new Object[] { "29BBB", 1200L, null, "Bengaluru ₹ 😀" });
+		writer.finish();
+
+		assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+				"Supplier GSTIN,Invoice Amount,Invoice Date,Remarks\r\n"
+				+ "27AAA,-0.50,2025-01-09,\"said \"\"hi\"\", left\"\r\n"
+				+ "29BBB,1200,,Bengaluru ₹ 😀\r\n");
+	}
+
+	@Test
+	void writesOneJsonObjectPerLine() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ReportWriter writer = new NdjsonReportWriter(out, 16);
+		writer.writeHeader(HEADER);
+		writer.writeRow(new Object[] { "27AAA", new BigDecimal("12345678901234567890.10"), Timestamp.valueOf("2025-01-09 10:05:00"), "tab\there \\ \"q\"" });
+		writer.writeRow(new Object[] { null, 7, null, "\u0001" });
+		writer.finish();
+
+		assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+				"{\"Supplier GSTIN\":\"27AAA\",\"Invoice Amount\":12345678901234567890.10,\"Invoice Date\":\"2025-01-09 10:05:00\",\"Remarks\":\"tab\\there \\\\ \\\"q\\\"\"}\n"
+				+ "{\"Supplier GSTIN\":null,\"Invoice Amount\":7,\"Invoice Date\":null,\"Remarks\":\"\\u0001\"}\n");
+	}
+
+	@Test
+	void writesTheRowsAsOneJsonArray() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ReportWriter writer = new NdjsonReportWriter(out, 16, true);
+		writer.writeHeader(HEADER);
+		writer.writeRow(new Object[] { "27AAA", 1, null, "a" });
+		writer.writeRow(new Object[] { "29BBB", 2, null, "b" });
+		writer.finish();
+
+		assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+				"[{\"Supplier GSTIN\":\"27AAA\",\"Invoice Amount\":1,\"Invoice Date\":null,\"Remarks\":\"a\"},"
+				+ "{\"Supplier GSTIN\":\"29BBB\",\"Invoice Amount\":2,\"Invoice Date\":null,\"Remarks\":\"b\"}]");
+
+		ByteArrayOutputStream empty = new ByteArrayOutputStream();
+		ReportWriter emptyWriter = new NdjsonReportWriter(empty, 16, true);
+		emptyWriter.writeHeader(HEADER);
+		emptyWriter.finish();
+		assertThat(empty.toString(StandardCharsets.UTF_8)).isEqualTo("[]");
+	}
+}
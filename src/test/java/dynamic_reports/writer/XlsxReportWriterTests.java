@@ -0,0 +1,142 @@
+package dynamic_reports.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+class XlsxReportWriterTests {
+
+	private static final String[] HEADER = { "Supplier GSTIN", "Invoice Amount", "Invoice Date", "Quantity", "Created" };
+	private static final String[] FORMATS = { "uppercase", null, "dd/MM/yyyy", null, null };
+
+	@Test
+	void writesNumbersAndDatesAsTypedCells() throws IOException {
+		byte[] xlsx = write(true, new Object[] { "27AAA", new BigDecimal("1200.50"), Date.valueOf("2025-01-13"), 7L,
+				Timestamp.valueOf("2025-01-13 10:15:30") },
+				new Object[] { "29BBB <Bengaluru> ₹ 😀", new BigDecimal("12345678901234567890.10"), "09/01/2025", Long.MAX_VALUE, null });
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(xlsx))) {
+			DataFormatter formatter = new DataFormatter();
+			Row row = workbook.getSheetAt(0).getRow(1);
+			assertThat(row.getCell(0).getStringCellValue()).isEqualTo("27AAA");
+			assertThat(row.getCell(1).getCellType()).isEqualTo(CellType.NUMERIC);
+			assertThat(formatter.formatCellValue(row.getCell(1))).isEqualTo("1200.50");
+			assertThat(row.getCell(2).getLocalDateTimeCellValue()).isEqualTo(LocalDateTime.of(2025, 1, 13, 0, 0));
+			assertThat(formatter.formatCellValue(row.getCell(2))).isEqualTo("13/01/2025");
+			assertThat(row.getCell(3).getNumericCellValue()).isEqualTo(7.0);
+			assertThat(formatter.formatCellValue(row.getCell(4))).isEqualTo("2025-01-13 10:15:30");
+
+			// numbers a double cannot hold exactly and text dates stay text
+			Row large = workbook.getSheetAt(0).getRow(2);
+			assertThat(large.getCell(0).getStringCellValue()).isEqualTo("29BBB <Bengaluru> ₹ 😀");
+			assertThat(large.getCell(1).getStringCellValue()).isEqualTo("12345678901234567890.10");
+			assertThat(large.getCell(2).getStringCellValue()).isEqualTo("09/01/2025");
+			assertThat(large.getCell(3).getStringCellValue()).isEqualTo(String.valueOf(Long.MAX_VALUE));
+		}
+	}
+
+	@Test
+	void sharesOneStylePerFormat() throws IOException {
+		Object[][] rows = new Object[1_000][];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = new Object[] { "27AAA", new BigDecimal(i + ".25"), Date.valueOf("2025-01-13"), (long) i, Timestamp.valueOf("2025-01-13 10:15:30") };
+		}
+		byte[] typed = write(true, rows);
+		byte[] text = write(false, rows);
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(typed))) {
+			// the default style, 0.00, dd/mm/yyyy and the date-time style
+			assertThat(workbook.getNumCellStyles()).isEqualTo(4);
+		}
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(text))) {
+			assertThat(workbook.getSheetAt(0).getRow(1).getCell(1).getStringCellValue()).isEqualTo("0.25");
+		}
+	}
+
+	@Test
+	void continuesOnNewSheetsPastTheRowLimit() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ReportWriter writer = new XlsxReportWriter(out, 2, true, 5)) {
+			writer.writeHeader(new String[] { "Row" });
+			for (long i = 1; i <= 10; i++) {
+				writer.writeRow(new Object[] { i });
+			}
+			writer.finish();
+		}
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+			// four rows and the header per sheet
+			assertThat(workbook.getNumberOfSheets()).isEqualTo(3);
+			assertThat(workbook.getSheetName(1)).isEqualTo("report (2)");
+			Sheet second = workbook.getSheetAt(1);
+			assertThat(second.getRow(0).getCell(0).getStringCellValue()).isEqualTo("Row");
+			assertThat(second.getRow(1).getCell(0).getNumericCellValue()).isEqualTo(5.0);
+			assertThat(workbook.getSheetAt(2).getLastRowNum()).isEqualTo(2);
+			assertThat(workbook.getSheetAt(2).getRow(2).getCell(0).getNumericCellValue()).isEqualTo(10.0);
+		}
+	}
+
+	@Test
+	void partitionsRowsIntoSheetsByColumn() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ReportWriter writer = new XlsxReportWriter(out, 2, true, 3)) {
+			writer.formatsNatively(FORMATS);
+			writer.partitionBy(2);
+			writer.writeHeader(HEADER);
+			for (int i = 0; i < 9; i++) {
+				Date date = Date.valueOf(i % 2 == 0 ? "2025-01-13" : "2025-01-14");
+				writer.writeRow(new Object[] { "27AAA", new BigDecimal(i), i == 8 ? null : date, (long) i, null });
+			}
+			writer.finish();
+		}
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+			List<String> names = new ArrayList<>();
+			workbook.forEach(sheet -> names.add(sheet.getSheetName()));
+			// sheets are named by the displayed value, without the characters Excel forbids, and continued past the row limit
+			assertThat(names).containsExactly("13 01 2025", "14 01 2025", "13 01 2025 (2)", "14 01 2025 (2)", "(blank)");
+			Sheet continued = workbook.getSheet("13 01 2025 (2)");
+			assertThat(continued.getRow(0).getCell(0).getStringCellValue()).isEqualTo("Supplier GSTIN");
+			assertThat(continued.getRow(1).getCell(3).getNumericCellValue()).isEqualTo(4.0);
+			assertThat(workbook.getSheet("(blank)").getRow(1).getCell(3).getNumericCellValue()).isEqualTo(8.0);
+		}
+	}
+
+	@Test
+	void translatesDatePatterns() {
+		assertThat(ExcelDateFormats.toExcel("dd/MM/yyyy")).isEqualTo("dd/mm/yyyy");
+		assertThat(ExcelDateFormats.toExcel("dd-MMM-yy HH:mm:ss")).isEqualTo("dd-mmm-yy hh:mm:ss");
+		assertThat(ExcelDateFormats.toExcel("EEEE, dd MMMM yyyy hh:mm a")).isEqualTo("dddd, dd mmmm yyyy hh:mm AM/PM");
+		assertThat(ExcelDateFormats.toExcel("yyyy-MM-dd'T'HH:mm:ss.SSS")).isEqualTo("yyyy-mm-dd\"T\"hh:mm:ss.000");
+		assertThat(ExcelDateFormats.toExcel("dd/MM/yyyy z")).isNull();
+	}
+
+	private static byte[] write(boolean typedCells, Object[]... rows) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ReportWriter writer = new XlsxReportWriter(out, 100, typedCells)) {
+			boolean[] nativeFormats = writer.formatsNatively(FORMATS);
+			assertThat(nativeFormats).containsExactly(false, false, typedCells, false, false);
+			writer.writeHeader(HEADER);
+			for (Object[] row : rows) {
+				writer.writeRow(row);
+			}
+			writer.finish();
+		}
+		return out.toByteArray();
+	}
+}
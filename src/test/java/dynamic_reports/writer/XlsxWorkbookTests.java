@@ -0,0 +1,88 @@
+package dynamic_reports.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+class XlsxWorkbookTests {
+
+	private static final String[] FORMATS = { null, null, "dd/MM/yyyy" };
+
+	@Test
+	void writesSheetsInParallel() throws Exception {
+		int sheets = 6;
+		int rows = 2_000;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (XlsxWorkbook workbook = new XlsxWorkbook(100, true);
+				ExecutorService executor = Executors.newFixedThreadPool(sheets)) {
+			List<ReportWriter> writers = new ArrayList<>();
+			for (int s = 0; s < sheets; s++) {
+				writers.add(workbook.newSheet("report " + s));
+			}
+			List<Future<?>> futures = new ArrayList<>();
+			for (int s = 0; s < sheets; s++) {
+				int sheet = s;
+				ReportWriter writer = writers.get(s);
+				futures.add(executor.submit(() -> {
+					writer.formatsNatively(FORMATS);
+					writer.writeHeader(new String[] { "Sheet", "Amount", "Date" });
+					for (int i = 0; i < rows; i++) {
+						// every sheet asks the shared pool for its own decimal style
+						writer.writeRow(new Object[] { "sheet " + sheet, new BigDecimal(i).movePointLeft(sheet % 4 + 1), Date.valueOf("2025-01-13") });
+					}
+					writer.finish();
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+			workbook.write(out);
+		}
+
+		try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+			assertThat(workbook.getNumberOfSheets()).isEqualTo(sheets);
+			for (int s = 0; s < sheets; s++) {
+				Sheet sheet = workbook.getSheetAt(s);
+				assertThat(sheet.getSheetName()).isEqualTo("report " + s);
+				assertThat(sheet.getLastRowNum()).isEqualTo(rows);
+				assertThat(sheet.getRow(rows).getCell(0).getStringCellValue()).isEqualTo("sheet " + s);
+			}
+			// the default style, the date style and four decimal styles, each created once
+			assertThat(workbook.getNumCellStyles()).isEqualTo(6);
+		}
+	}
+
+	@Test
+	void namesSheetsUniquely() throws IOException {
+		try (XlsxWorkbook workbook = new XlsxWorkbook(100, false)) {
+			workbook.newSheet("outward");
+			workbook.newSheet("Outward");
+			workbook.newSheet("errors/by state: 2025");
+			workbook.newSheet("a sheet name that is longer than excel allows");
+			workbook.newSheet("a sheet name that is longer than excel allows");
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			workbook.write(out);
+
+			try (XSSFWorkbook written = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+				List<String> names = new ArrayList<>();
+				written.forEach(sheet -> names.add(sheet.getSheetName()));
+				assertThat(names).containsExactly("outward", "Outward (2)", "errors by state  2025",
+						"a sheet name that is longer tha", "a sheet name that is longer (2)");
+			}
+		}
+	}
+}
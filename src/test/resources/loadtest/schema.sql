@@ -0,0 +1,2 @@
+-- the stand-in of the production stored procedure, see dynamic_reports.bench.SalesRegisterProcedure
+CREATE ALIAS IF NOT EXISTS sp_reports_SalesRegister FOR "dynamic_reports.bench.SalesRegisterProcedure.call";